@@ -0,0 +1,123 @@
+package org.example;
+
+import org.example.models.LibraryOperations;
+import org.example.models.UserType;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Random;
+
+/**
+ * Детерминированные тестовые данные для бенчмарков.
+ */
+final class CatalogFixture {
+
+    static final String[] WORDS = {
+            "java", "python", "history", "war", "peace", "garden", "river", "night", "dream", "shadow",
+            "empire", "winter", "summer", "ocean", "mountain", "secret", "journey", "kingdom", "silent", "fire"
+    };
+    static final String[] AUTHORS = {
+            "Leo Tolstoy", "Jane Austen", "George Orwell", "Harper Lee", "J.R.R. Tolkien",
+            "Mark Twain", "Agatha Christie", "Ray Bradbury", "Ursula Le Guin", "Isaac Asimov"
+    };
+    static final String[] GENRES = {
+            "Fiction", "Science Fiction", "Fantasy", "Romance", "Classic", "Dystopian", "Mystery", "Programming"
+    };
+
+    // больше срока выдачи преподавателю, чтобы выдачи при подготовке к замеру были просрочены
+    static final Duration LOAN_AGE = Duration.ofDays(60);
+
+    private CatalogFixture() {
+    }
+
+    static String isbn(int i) {
+        String digits = Integer.toString(i);
+        return "978" + "0000000000".substring(digits.length()) + digits;
+    }
+
+    static String userId(int i) {
+        return "user" + i;
+    }
+
+    /**
+     * Заполнение библиотеки книгами.
+     * @param library Библиотека.
+     * @param size    Количество книг.
+     */
+    static void fill(LibraryOperations library, int size) {
+        Random random = new Random(42);
+        for (int i = 0; i < size; i++) {
+            String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+            library.addBook(title, AUTHORS[random.nextInt(AUTHORS.length)], isbn(i), GENRES[random.nextInt(GENRES.length)]);
+        }
+    }
+
+    /**
+     * Регистрация преподавателей, у которых самый большой лимит книг.
+     * @param library Библиотека.
+     * @param count   Количество пользователей.
+     */
+    static void registerFaculty(LibraryOperations library, int count) {
+        for (int i = 0; i < count; i++) {
+            library.registerUser("User " + i, userId(i), userId(i) + "@example.com", UserType.FACULTY);
+        }
+    }
+
+    /**
+     * Выдача первых {@code count} книг каталога преподавателям, по 10 на каждого, задним числом
+     * на {@link #LOAN_AGE}, так что все они просрочены.
+     * @param library Библиотека, созданная с часами {@code clock}.
+     * @param clock   Часы библиотеки.
+     * @param count   Количество выдач.
+     */
+    static void lendOverdue(LibraryOperations library, RewindableClock clock, int count) {
+        registerFaculty(library, count / 10 + 1);
+        clock.rewind(LOAN_AGE);
+        try {
+            for (int i = 0; i < count; i++) {
+                library.borrowBook(userId(i / 10), isbn(i));
+            }
+        } finally {
+            clock.rewind(Duration.ZERO);
+        }
+    }
+
+    /**
+     * Системные часы, которые можно временно отвести назад.
+     */
+    static final class RewindableClock extends Clock {
+        private final Clock base;
+        private volatile Duration lag = Duration.ZERO;
+
+        RewindableClock() {
+            this(Clock.systemDefaultZone());
+        }
+
+        private RewindableClock(Clock base) {
+            this.base = base;
+        }
+
+        void rewind(Duration lag) {
+            this.lag = lag;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return base.getZone();
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            RewindableClock clock = new RewindableClock(base.withZone(zone));
+            clock.lag = lag;
+            return clock;
+        }
+
+        @Override
+        public Instant instant() {
+            return base.instant().minus(lag);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.example;
+
+import org.example.models.Book;
+import org.example.models.BorrowingRecord;
+import org.example.models.ConcurrentLibrary;
+import org.example.models.UserType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Многопоточные бенчмарки {@link ConcurrentLibrary}.
+ * <p>
+ * По умолчанию запускается по потоку на ядро; число потоков меняется через
+ * {@code -PjmhArgs="-t 4"}. Каждый поток выдаёт книги своему пользователю из своего
+ * диапазона ISBN, так что пара borrow/return показывает масштабирование на непересекающихся книгах.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(Threads.MAX)
+@Fork(1)
+public class ConcurrentLibraryBenchmark {
+
+    private static final String[] QUERIES = {"river", "tolstoy", "fantasy", "ja", "secret journey", "ghost"};
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int catalogSize;
+
+    private ConcurrentLibrary library;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        CatalogFixture.RewindableClock clock = new CatalogFixture.RewindableClock();
+        library = new ConcurrentLibrary(clock);
+        CatalogFixture.fill(library, catalogSize);
+        CatalogFixture.lendOverdue(library, clock, catalogSize / 100);
+    }
+
+    /**
+     * Состояние отдельного потока: свой пользователь и свой диапазон книг.
+     */
+    @State(Scope.Thread)
+    public static class Desk {
+        String userId;
+        int from;
+        int size;
+        int cursor;
+
+        @Setup(Level.Trial)
+        public void setUp(ConcurrentLibraryBenchmark benchmark, ThreadParams threads) {
+            userId = "desk" + threads.getThreadIndex();
+            benchmark.library.registerUser("Desk", userId, userId + "@example.com", UserType.FACULTY);
+
+            int half = benchmark.catalogSize / 2;
+            size = Math.max(1, half / threads.getThreadCount());
+            from = half + threads.getThreadIndex() * size;
+            cursor = threads.getThreadIndex();
+        }
+
+        int next(int bound) {
+            cursor = (cursor * 1_103_515_245 + 12_345) & Integer.MAX_VALUE;
+            return cursor % bound;
+        }
+    }
+
+    @Benchmark
+    public Book findBook(Desk desk) {
+        return library.findBook(CatalogFixture.isbn(desk.next(catalogSize)));
+    }
+
+    @Benchmark
+    public List<Book> searchBooks(Desk desk) {
+        return library.searchBooks(QUERIES[desk.next(QUERIES.length)]);
+    }
+
+    @Benchmark
+    public boolean borrowReturn(Desk desk) {
+        String isbn = CatalogFixture.isbn(desk.from + desk.next(desk.size));
+        return library.borrowBook(desk.userId, isbn) && library.returnBook(desk.userId, isbn);
+    }
+
+    @Benchmark
+    public List<BorrowingRecord> getOverdueBooks() {
+        return library.getOverdueBooks();
+    }
+}
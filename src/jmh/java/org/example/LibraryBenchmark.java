@@ -0,0 +1,99 @@
+package org.example;
+
+import org.example.models.Book;
+import org.example.models.BorrowingRecord;
+import org.example.models.Library;
+import org.example.models.Suggestion;
+import org.example.models.UserType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Однопоточные бенчмарки {@link Library}.
+ * <p>
+ * Throughput показывает пропускную способность, SampleTime — перцентили задержки, а профайлер
+ * GC (включён в задаче {@code jmh}) — скорость аллокаций. Каталог на 10M книг требует большой
+ * кучи: {@code -PjmhArgs="-jvmArgsAppend -Xmx24g -p catalogSize=10000000"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LibraryBenchmark {
+
+    private static final String[] QUERIES = {"river", "tolstoy", "fantasy", "ja", "secret journey", "ghost"};
+    // начала названий и авторов, в том числе с опечатками
+    private static final String[] PREFIXES = {"riv", "leo tolsyt", "secert jour", "ocaen mou", "agath chr", "kingdm"};
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int catalogSize;
+
+    private Library library;
+    private int nextIsbn;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        CatalogFixture.RewindableClock clock = new CatalogFixture.RewindableClock();
+        library = new Library(clock);
+        CatalogFixture.fill(library, catalogSize);
+
+        // 1% каталога на руках и просрочен, по 10 книг на преподавателя
+        CatalogFixture.lendOverdue(library, clock, catalogSize / 100);
+        // отдельный пользователь для пары borrow/return
+        library.registerUser("Bench User", "bench", "bench@example.com", UserType.FACULTY);
+        nextIsbn = catalogSize;
+    }
+
+    @Benchmark
+    public void addBook() {
+        library.addBook("benchmark title", "Benchmark Author", CatalogFixture.isbn(nextIsbn++), "Fiction");
+    }
+
+    @Benchmark
+    public Book findBook() {
+        return library.findBook(CatalogFixture.isbn(next(catalogSize)));
+    }
+
+    @Benchmark
+    public List<Book> searchBooks() {
+        return library.searchBooks(QUERIES[next(QUERIES.length)]);
+    }
+
+    @Benchmark
+    public List<Suggestion> suggest() {
+        return library.suggest(PREFIXES[next(PREFIXES.length)], 10);
+    }
+
+    @Benchmark
+    public boolean borrowReturn() {
+        // книги из второй половины каталога никогда не выдаются при подготовке
+        String isbn = CatalogFixture.isbn(catalogSize / 2 + next(catalogSize / 2));
+        return library.borrowBook("bench", isbn) && library.returnBook("bench", isbn);
+    }
+
+    @Benchmark
+    public List<BorrowingRecord> getOverdueBooks() {
+        return library.getOverdueBooks();
+    }
+
+    private int next(int bound) {
+        cursor = (cursor * 1_103_515_245 + 12_345) & Integer.MAX_VALUE;
+        return cursor % bound;
+    }
+}
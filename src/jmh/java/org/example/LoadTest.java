@@ -0,0 +1,324 @@
+package org.example;
+
+import org.example.models.Book;
+import org.example.models.BorrowingRecord;
+import org.example.models.ConcurrentLibrary;
+import org.example.models.InstrumentedLibrary;
+import org.example.models.LibraryOperations;
+import org.example.models.LoanResult;
+import org.example.models.LoanStatus;
+import org.example.models.OperationStats;
+import org.example.models.ShardedLibrary;
+import org.example.models.User;
+import org.example.models.UserType;
+import org.example.models.VersionedLibrary;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Нагрузочный тест: население студентов, преподавателей и гостей, каждый в своём виртуальном
+ * потоке, берёт, возвращает и ищет книги каталога с популярностью по Ципфу.
+ * <p>
+ * В конце печатаются пропускная способность, перцентили задержек и отказы по операциям, а также
+ * горячие точки: книги, за которые чаще всего боролись, и доля ожиданий глобальной блокировки.
+ * <pre>
+ * ./gradlew loadTest -PloadArgs="--impl ConcurrentLibrary --books 100000 --duration 10"
+ * </pre>
+ * Параметры: {@code --impl} (класс с конструктором без аргументов, короткое имя ищется в
+ * {@code org.example.models}), {@code --books}, {@code --students}, {@code --faculty},
+ * {@code --guests}, {@code --duration} (секунды), {@code --zipf} (показатель),
+ * {@code --mix} (доли выдачи:возврата:поиска:просрочек), {@code --lock auto|global|none},
+ * {@code --seed}. Реализации, кроме {@link ConcurrentLibrary}, {@link ShardedLibrary} и
+ * {@link VersionedLibrary}, по умолчанию закрываются глобальной блокировкой, потому что не потокобезопасны.
+ */
+public final class LoadTest {
+
+    private static final int HOT_SPOTS = 10;
+
+    private final LibraryOperations target;
+    private final InstrumentedLibrary library;
+    private final GlobalLock lock;
+    private final ZipfDistribution popularity;
+    private final Options options;
+    private final Map<Integer, LongAdder> refusals = new ConcurrentHashMap<>();
+
+    private LoadTest(LibraryOperations target, Options options) {
+        this.options = options;
+        this.target = target;
+        boolean locked = switch (options.lock) {
+            case "global" -> true;
+            case "none" -> false;
+            default -> !(target instanceof ConcurrentLibrary || target instanceof ShardedLibrary
+                    || target instanceof VersionedLibrary);
+        };
+        this.lock = locked ? new GlobalLock(target) : null;
+        this.library = new InstrumentedLibrary(locked ? lock : target);
+        this.popularity = new ZipfDistribution(options.books, options.zipf);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        LoadTest test = new LoadTest(instantiate(options.impl), options);
+        test.populate();
+        Duration elapsed = test.run();
+        test.report(elapsed);
+    }
+
+    private void populate() {
+        CatalogFixture.fill(target, options.books);
+        int id = 0;
+        for (int i = 0; i < options.students; i++) {
+            target.registerUser("Student " + i, CatalogFixture.userId(id++), "student" + i + "@example.com", UserType.STUDENT);
+        }
+        for (int i = 0; i < options.faculty; i++) {
+            target.registerUser("Faculty " + i, CatalogFixture.userId(id++), "faculty" + i + "@example.com", UserType.FACULTY);
+        }
+        for (int i = 0; i < options.guests; i++) {
+            target.registerUser("Guest " + i, CatalogFixture.userId(id++), "guest" + i + "@example.com", UserType.GUEST);
+        }
+    }
+
+    private Duration run() {
+        int patrons = options.students + options.faculty + options.guests;
+        long started = System.nanoTime();
+        long deadline = started + options.duration.toNanos();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < patrons; i++) {
+                String userId = CatalogFixture.userId(i);
+                SplittableRandom random = new SplittableRandom(options.seed + i);
+                executor.submit(() -> patron(userId, random, deadline));
+            }
+        }
+        return Duration.ofNanos(System.nanoTime() - started);
+    }
+
+    private void patron(String userId, SplittableRandom random, long deadline) {
+        List<String> held = new ArrayList<>();
+        int[] mix = options.mix;
+        int total = mix[0] + mix[1] + mix[2] + mix[3];
+        while (System.nanoTime() < deadline) {
+            int choice = random.nextInt(total);
+            if (choice < mix[0] || (choice < mix[0] + mix[1] && held.isEmpty())) {
+                // возвращать нечего — берём книгу
+                int rank = popularity.sample(random);
+                String isbn = CatalogFixture.isbn(rank);
+                LoanStatus status = library.tryBorrowBook(userId, isbn);
+                if (status == LoanStatus.OK) {
+                    held.add(isbn);
+                } else if (status == LoanStatus.NOT_AVAILABLE) {
+                    refusals.computeIfAbsent(rank, r -> new LongAdder()).increment();
+                }
+            } else if (choice < mix[0] + mix[1]) {
+                String isbn = held.remove(random.nextInt(held.size()));
+                library.tryReturnBook(userId, isbn);
+            } else if (choice < mix[0] + mix[1] + mix[2]) {
+                library.searchBooks(CatalogFixture.WORDS[random.nextInt(CatalogFixture.WORDS.length)]);
+            } else {
+                library.getOverdueBooks();
+            }
+            // виртуальные потоки не вытесняются по времени: без уступки первые читатели
+            // заняли бы все потоки-носители до конца теста
+            Thread.yield();
+        }
+    }
+
+    private void report(Duration elapsed) {
+        List<OperationStats> stats = library.snapshot();
+        long calls = stats.stream().mapToLong(OperationStats::calls).sum();
+        double seconds = elapsed.toNanos() / 1e9;
+
+        System.out.printf("%s, %d books (zipf %.2f), %d students / %d faculty / %d guests, %s lock%n",
+                target.getClass().getSimpleName(), options.books, options.zipf,
+                options.students, options.faculty, options.guests, lock == null ? "no" : "global");
+        System.out.printf("%d operations in %.1f s: %.0f ops/s%n%n", calls, seconds, calls / seconds);
+
+        for (OperationStats operation : stats) {
+            if (operation.calls() == 0) {
+                continue;
+            }
+            System.out.println(operation);
+            operation.failures().forEach((reason, count) -> System.out.printf("    %s: %d%n", reason, count));
+        }
+
+        System.out.println("\nHot spots (borrow refused as NOT_AVAILABLE):");
+        long refused = refusals.values().stream().mapToLong(LongAdder::sum).sum();
+        refusals.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<Integer, LongAdder> e) -> e.getValue().sum()).reversed())
+                .limit(HOT_SPOTS)
+                .forEach(e -> System.out.printf("  ISBN %s (popularity rank %d): %d refusals, %.1f%%%n",
+                        CatalogFixture.isbn(e.getKey()), e.getKey() + 1, e.getValue().sum(),
+                        100.0 * e.getValue().sum() / Math.max(1, refused)));
+        if (lock != null) {
+            System.out.printf("Global lock: %d acquisitions, %.1f%% had to wait%n",
+                    lock.acquisitions.sum(), 100.0 * lock.contended.sum() / Math.max(1, lock.acquisitions.sum()));
+        }
+    }
+
+    private static LibraryOperations instantiate(String impl) throws ReflectiveOperationException {
+        String name = impl.contains(".") ? impl : "org.example.models." + impl;
+        return (LibraryOperations) Class.forName(name).getDeclaredConstructor().newInstance();
+    }
+
+    /**
+     * Параметры запуска.
+     */
+    private static final class Options {
+        String impl = "ConcurrentLibrary";
+        int books = 100_000;
+        int students = 1_000;
+        int faculty = 100;
+        int guests = 200;
+        Duration duration = Duration.ofSeconds(10);
+        double zipf = 1.0;
+        int[] mix = {45, 40, 14, 1};
+        String lock = "auto";
+        long seed = 42;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i + 1 < args.length; i += 2) {
+                String value = args[i + 1];
+                switch (args[i]) {
+                    case "--impl" -> options.impl = value;
+                    case "--books" -> options.books = Integer.parseInt(value);
+                    case "--students" -> options.students = Integer.parseInt(value);
+                    case "--faculty" -> options.faculty = Integer.parseInt(value);
+                    case "--guests" -> options.guests = Integer.parseInt(value);
+                    case "--duration" -> options.duration = Duration.ofSeconds(Long.parseLong(value));
+                    case "--zipf" -> options.zipf = Double.parseDouble(value);
+                    case "--lock" -> options.lock = value;
+                    case "--seed" -> options.seed = Long.parseLong(value);
+                    case "--mix" -> {
+                        String[] parts = value.split(":");
+                        if (parts.length != 4) {
+                            throw new IllegalArgumentException("--mix expects borrow:return:search:overdue");
+                        }
+                        for (int p = 0; p < 4; p++) {
+                            options.mix[p] = Integer.parseInt(parts[p]);
+                        }
+                    }
+                    default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            if (args.length % 2 != 0) {
+                throw new IllegalArgumentException("Missing value for " + args[args.length - 1]);
+            }
+            return options;
+        }
+    }
+
+    /**
+     * Глобальная блокировка для реализаций, которые не потокобезопасны. {@link ReentrantLock}
+     * вместо {@code synchronized}, чтобы ожидающие виртуальные потоки не занимали потоки-носители.
+     */
+    private static final class GlobalLock implements LibraryOperations {
+        private final LibraryOperations delegate;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LongAdder acquisitions = new LongAdder();
+        private final LongAdder contended = new LongAdder();
+
+        GlobalLock(LibraryOperations delegate) {
+            this.delegate = delegate;
+        }
+
+        private <T> T locked(Supplier<T> call) {
+            acquisitions.increment();
+            if (!lock.tryLock()) {
+                contended.increment();
+                lock.lock();
+            }
+            try {
+                return call.get();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void addBook(String title, String author, String isbn, String genre) {
+            locked(() -> {
+                delegate.addBook(title, author, isbn, genre);
+                return null;
+            });
+        }
+
+        @Override
+        public boolean removeBook(String isbn) {
+            return locked(() -> delegate.removeBook(isbn));
+        }
+
+        @Override
+        public Book findBook(String isbn) {
+            return locked(() -> delegate.findBook(isbn));
+        }
+
+        @Override
+        public List<Book> searchBooks(String query) {
+            return locked(() -> delegate.searchBooks(query));
+        }
+
+        @Override
+        public List<Book> searchBooks(String query, int limit) {
+            return locked(() -> delegate.searchBooks(query, limit));
+        }
+
+        @Override
+        public void registerUser(String name, String userId, String email, UserType type) {
+            locked(() -> {
+                delegate.registerUser(name, userId, email, type);
+                return null;
+            });
+        }
+
+        @Override
+        public User findUser(String userId) {
+            return locked(() -> delegate.findUser(userId));
+        }
+
+        @Override
+        public boolean borrowBook(String userId, String isbn) {
+            return locked(() -> delegate.borrowBook(userId, isbn));
+        }
+
+        @Override
+        public boolean returnBook(String userId, String isbn) {
+            return locked(() -> delegate.returnBook(userId, isbn));
+        }
+
+        @Override
+        public LoanStatus tryBorrowBook(String userId, String isbn) {
+            return locked(() -> delegate.tryBorrowBook(userId, isbn));
+        }
+
+        @Override
+        public LoanStatus tryReturnBook(String userId, String isbn) {
+            return locked(() -> delegate.tryReturnBook(userId, isbn));
+        }
+
+        @Override
+        public List<LoanResult> borrowBooks(String userId, List<String> isbns) {
+            return locked(() -> delegate.borrowBooks(userId, isbns));
+        }
+
+        @Override
+        public List<LoanResult> returnBooks(String userId, List<String> isbns) {
+            return locked(() -> delegate.returnBooks(userId, isbns));
+        }
+
+        @Override
+        public List<BorrowingRecord> getOverdueBooks() {
+            return locked(() -> List.copyOf(delegate.getOverdueBooks()));
+        }
+    }
+}
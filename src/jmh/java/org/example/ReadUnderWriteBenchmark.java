@@ -0,0 +1,107 @@
+package org.example;
+
+import org.example.models.Book;
+import org.example.models.BorrowingRecord;
+import org.example.models.LibraryOperations;
+import org.example.models.UserType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.time.Clock;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Задержка чтения на фоне потока выдач: в одной группе четыре потока непрерывно берут и
+ * возвращают книги, а два ищут и собирают просрочки. Сравнивает {@code ConcurrentLibrary}
+ * и {@code VersionedLibrary}, в которой чтение идёт по неизменяемой версии.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadUnderWriteBenchmark {
+
+    private static final String[] QUERIES = {"river", "tolstoy", "fantasy", "ja", "secret journey", "ghost"};
+
+    @Param({"ConcurrentLibrary", "VersionedLibrary"})
+    public String impl;
+
+    @Param({"100000"})
+    public int catalogSize;
+
+    private LibraryOperations library;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ReflectiveOperationException {
+        CatalogFixture.RewindableClock clock = new CatalogFixture.RewindableClock();
+        library = (LibraryOperations) Class.forName("org.example.models." + impl)
+                .getDeclaredConstructor(Clock.class).newInstance(clock);
+        CatalogFixture.fill(library, catalogSize);
+        CatalogFixture.lendOverdue(library, clock, catalogSize / 100);
+    }
+
+    /**
+     * Состояние отдельного потока: свой пользователь и свой диапазон книг.
+     */
+    @State(Scope.Thread)
+    public static class Desk {
+        String userId;
+        int from;
+        int size;
+        int cursor;
+
+        @Setup(Level.Trial)
+        public void setUp(ReadUnderWriteBenchmark benchmark, ThreadParams threads) {
+            userId = "desk" + threads.getThreadIndex();
+            benchmark.library.registerUser("Desk", userId, userId + "@example.com", UserType.FACULTY);
+
+            int half = benchmark.catalogSize / 2;
+            size = Math.max(1, half / threads.getThreadCount());
+            from = half + threads.getThreadIndex() * size;
+            cursor = threads.getThreadIndex();
+        }
+
+        int next(int bound) {
+            cursor = (cursor * 1_103_515_245 + 12_345) & Integer.MAX_VALUE;
+            return cursor % bound;
+        }
+    }
+
+    @Benchmark
+    @Group("circulation")
+    @GroupThreads(4)
+    public boolean borrowReturn(Desk desk) {
+        String isbn = CatalogFixture.isbn(desk.from + desk.next(desk.size));
+        return library.borrowBook(desk.userId, isbn) && library.returnBook(desk.userId, isbn);
+    }
+
+    @Benchmark
+    @Group("circulation")
+    @GroupThreads(1)
+    public List<Book> searchBooks(Desk desk) {
+        return library.searchBooks(QUERIES[desk.next(QUERIES.length)]);
+    }
+
+    @Benchmark
+    @Group("circulation")
+    @GroupThreads(1)
+    public List<BorrowingRecord> getOverdueBooks() {
+        return library.getOverdueBooks();
+    }
+}
@@ -0,0 +1,38 @@
+package org.example;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Распределение Ципфа на номерах 0..n-1: вероятность номера k пропорциональна 1 / (k + 1)^s.
+ * Функция распределения считается один раз, выборка — двоичным поиском по ней.
+ */
+final class ZipfDistribution {
+
+    private final double[] cdf;
+
+    /**
+     * @param n        Количество элементов.
+     * @param exponent Показатель s; 0 — равномерное распределение, около 1 — типичная популярность книг.
+     */
+    ZipfDistribution(int n, double exponent) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("Size must be positive: " + n);
+        }
+        cdf = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1 / Math.pow(k + 1, exponent);
+            cdf[k] = sum;
+        }
+        for (int k = 0; k < n; k++) {
+            cdf[k] /= sum;
+        }
+    }
+
+    int sample(RandomGenerator random) {
+        int index = Arrays.binarySearch(cdf, random.nextDouble());
+        // отрицательный результат — точка вставки, то есть первый элемент с cdf > u
+        return Math.min(index >= 0 ? index : -index - 1, cdf.length - 1);
+    }
+}
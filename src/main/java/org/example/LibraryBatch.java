@@ -0,0 +1,259 @@
+package org.example;
+
+import org.example.models.Book;
+import org.example.models.InstrumentedLibrary;
+import org.example.models.LibraryOperations;
+import org.example.models.LoanResult;
+import org.example.models.LoanStatus;
+import org.example.models.OperationStats;
+import org.example.models.User;
+import org.example.models.UserType;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Пакетный режим: выполнение сценария команд без меню.
+ * <p>
+ * Каждая строка сценария — команда и её аргументы, разделённые табуляцией. Пустые строки и
+ * строки, начинающиеся с {@code #}, пропускаются. На каждую команду выводится ровно одна строка
+ * {@code ok[\t поля]} или {@code err\t<причина>}; {@code stats} перед ней выводит строки {@code stat}.
+ * <pre>
+ * add       title author isbn [genre]     → ok
+ * remove    isbn                          → ok | err NOT_FOUND
+ * find      isbn                          → ok isbn title author genre available|borrowed
+ * search    query [limit]                 → ok count isbn,isbn,...   (с limit — лучшие по релевантности)
+ * register  name userId email type        → ok
+ * user      userId                        → ok userId name email type borrowed
+ * borrow    userId isbn [isbn...]         → ok | err LoanStatus isbn   (несколько книг — «всё или ничего»)
+ * return    userId isbn [isbn...]         → ok | err LoanStatus isbn   (каждая книга отдельно, первая неудача)
+ * overdue                                 → ok count
+ * stats                                   → stat operation calls failed p50 p99 p999 max (нс), затем ok
+ * </pre>
+ */
+public class LibraryBatch {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final InstrumentedLibrary operations;
+
+    /**
+     * @param library Библиотека.
+     */
+    public LibraryBatch(LibraryOperations library) {
+        this.operations = new InstrumentedLibrary(library);
+    }
+
+    public InstrumentedLibrary getOperations() {
+        return operations;
+    }
+
+    /**
+     * Выполнение сценария.
+     * @param script  Источник команд.
+     * @param results Получатель результатов; сбрасывается в конце, но не закрывается.
+     * @return количество выполненных команд.
+     * @throws IOException при ошибке чтения или записи.
+     */
+    public long run(Reader script, Writer results) throws IOException {
+        BufferedReader in = script instanceof BufferedReader buffered ? buffered : new BufferedReader(script, BUFFER_SIZE);
+        BufferedWriter out = new BufferedWriter(results, BUFFER_SIZE);
+        StringBuilder line = new StringBuilder(128);
+        List<String> fields = new ArrayList<>(8);
+        long commands = 0;
+
+        String command;
+        while ((command = in.readLine()) != null) {
+            if (command.isBlank() || command.startsWith("#")) {
+                continue;
+            }
+            split(command, fields);
+            line.setLength(0);
+            execute(fields, line, out);
+            out.append(line).append('\n');
+            commands++;
+        }
+        out.flush();
+        return commands;
+    }
+
+    private void execute(List<String> args, StringBuilder result, Writer out) throws IOException {
+        String command = args.get(0).toLowerCase(Locale.ROOT);
+        int count = args.size() - 1;
+        switch (command) {
+            case "add" -> {
+                if (count < 3 || count > 4) {
+                    usage(result);
+                    return;
+                }
+                operations.addBook(args.get(1), args.get(2), args.get(3), count == 4 ? args.get(4) : "");
+                result.append("ok");
+            }
+            case "remove" -> {
+                if (count != 1) {
+                    usage(result);
+                    return;
+                }
+                outcome(result, operations.removeBook(args.get(1)), "NOT_FOUND");
+            }
+            case "find" -> {
+                if (count != 1) {
+                    usage(result);
+                    return;
+                }
+                Book book = operations.findBook(args.get(1));
+                if (book == null) {
+                    result.append("err\tNOT_FOUND");
+                    return;
+                }
+                result.append("ok\t").append(book.getIsbn())
+                        .append('\t').append(book.getTitle())
+                        .append('\t').append(book.getAuthor())
+                        .append('\t').append(book.getGenre() == null ? "" : book.getGenre())
+                        .append('\t').append(book.isAvailable() ? "available" : "borrowed");
+            }
+            case "search" -> {
+                int limit = count == 2 ? limit(args.get(2)) : 0;
+                if (count < 1 || count > 2 || limit < 0) {
+                    usage(result);
+                    return;
+                }
+                List<Book> books = limit == 0
+                        ? operations.searchBooks(args.get(1))
+                        : operations.searchBooks(args.get(1), limit);
+                result.append("ok\t").append(books.size()).append('\t');
+                for (int i = 0; i < books.size(); i++) {
+                    if (i > 0) {
+                        result.append(',');
+                    }
+                    result.append(books.get(i).getIsbn());
+                }
+            }
+            case "register" -> {
+                UserType type = count == 4 ? userType(args.get(4)) : null;
+                if (type == null) {
+                    usage(result);
+                    return;
+                }
+                operations.registerUser(args.get(1), args.get(2), args.get(3), type);
+                result.append("ok");
+            }
+            case "user" -> {
+                if (count != 1) {
+                    usage(result);
+                    return;
+                }
+                User user = operations.findUser(args.get(1));
+                if (user == null) {
+                    result.append("err\tNOT_FOUND");
+                    return;
+                }
+                result.append("ok\t").append(user.getUserId())
+                        .append('\t').append(user.getName())
+                        .append('\t').append(user.getEmail())
+                        .append('\t').append(user.getUserType())
+                        .append('\t').append(user.getBorrowedBooks().size());
+            }
+            case "borrow" -> {
+                if (count < 2) {
+                    usage(result);
+                    return;
+                }
+                if (count == 2) {
+                    status(result, operations.tryBorrowBook(args.get(1), args.get(2)), args.get(2));
+                } else {
+                    status(result, operations.borrowBooks(args.get(1), args.subList(2, args.size())));
+                }
+            }
+            case "return" -> {
+                if (count < 2) {
+                    usage(result);
+                    return;
+                }
+                if (count == 2) {
+                    status(result, operations.tryReturnBook(args.get(1), args.get(2)), args.get(2));
+                } else {
+                    status(result, operations.returnBooks(args.get(1), args.subList(2, args.size())));
+                }
+            }
+            case "overdue" -> result.append("ok\t").append(operations.getOverdueBooks().size());
+            case "stats" -> {
+                for (OperationStats stats : operations.snapshot()) {
+                    out.append("stat\t").append(stats.operation())
+                            .append('\t').append(String.valueOf(stats.calls()))
+                            .append('\t').append(String.valueOf(stats.failureCount()))
+                            .append('\t').append(String.valueOf(stats.p50Nanos()))
+                            .append('\t').append(String.valueOf(stats.p99Nanos()))
+                            .append('\t').append(String.valueOf(stats.p999Nanos()))
+                            .append('\t').append(String.valueOf(stats.maxNanos()))
+                            .append('\n');
+                }
+                result.append("ok");
+            }
+            default -> result.append("err\tUNKNOWN_COMMAND");
+        }
+    }
+
+    private static void usage(StringBuilder result) {
+        result.append("err\tBAD_ARGUMENTS");
+    }
+
+    private static void outcome(StringBuilder result, boolean ok, String failure) {
+        result.append(ok ? "ok" : "err\t" + failure);
+    }
+
+    private static void status(StringBuilder result, LoanStatus status, String isbn) {
+        if (status == LoanStatus.OK) {
+            result.append("ok");
+        } else {
+            result.append("err\t").append(status.name()).append('\t').append(isbn);
+        }
+    }
+
+    private static void status(StringBuilder result, List<LoanResult> results) {
+        for (LoanResult loan : results) {
+            // SKIPPED — только следствие отказа по другой книге
+            if (!loan.isOk() && loan.status() != LoanStatus.SKIPPED) {
+                result.append("err\t").append(loan.status().name()).append('\t').append(loan.isbn());
+                return;
+            }
+        }
+        result.append("ok");
+    }
+
+    // -1 — не положительное число
+    private static int limit(String value) {
+        try {
+            int parsed = Integer.parseInt(value);
+            return parsed > 0 ? parsed : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static UserType userType(String value) {
+        return switch (value.toUpperCase(Locale.ROOT)) {
+            case "STUDENT" -> UserType.STUDENT;
+            case "FACULTY" -> UserType.FACULTY;
+            case "GUEST" -> UserType.GUEST;
+            default -> null;
+        };
+    }
+
+    private static void split(String line, List<String> fields) {
+        fields.clear();
+        int start = 0;
+        int tab;
+        while ((tab = line.indexOf('\t', start)) >= 0) {
+            fields.add(line.substring(start, tab));
+            start = tab + 1;
+        }
+        fields.add(line.substring(start));
+    }
+}
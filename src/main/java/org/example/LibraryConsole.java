@@ -3,30 +3,144 @@ package org.example;
 
 import org.example.models.Book;
 import org.example.models.BorrowingRecord;
+import org.example.models.BulkImporter;
+import org.example.models.ImportReport;
+import org.example.models.InstrumentedLibrary;
 import org.example.models.Library;
+import org.example.models.LibraryJournal;
+import org.example.models.LibrarySnapshot;
+import org.example.models.OperationStats;
+import org.example.models.Page;
+import org.example.models.ReplicationLeader;
+import org.example.models.Suggestion;
 import org.example.models.User;
 import org.example.models.UserType;
 
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Scanner;
 
 public class LibraryConsole {
 
+    // строк на экран при просмотре списков
+    private static final int PAGE_SIZE = 20;
+    private static final int SUGGESTIONS = 5;
+
     private final Library library;
+    // операции из меню идут через обёртку, чтобы по ним собиралась статистика
+    private final InstrumentedLibrary operations;
     private final Scanner scanner;
 
 
     public LibraryConsole() {
-        this.library = new Library();
+        this(new Library(), true);
+    }
+
+    /**
+     * @param library         Библиотека.
+     * @param loadSampleData  Загружать ли тестовые данные.
+     */
+    public LibraryConsole(Library library, boolean loadSampleData) {
+        this.library = library;
+        this.operations = new InstrumentedLibrary(library);
         this.scanner = new Scanner(System.in);
 
-        // Добавим немного тестовых данных для демонстрации
-        initializeSampleData();
+        if (loadSampleData) {
+            // Добавим немного тестовых данных для демонстрации
+            initializeSampleData();
+        }
     }
 
-    public static void main(String[] args) {
-        LibraryConsole app = new LibraryConsole();
-        app.run();
+    /**
+     * Запуск. С аргументом {@code --journal <каталог>} состояние библиотеки сохраняется в журнал
+     * и восстанавливается из него при следующем запуске. С аргументом {@code --batch <файл>}
+     * вместо меню выполняется сценарий команд ({@code -} — из стандартного ввода), см. {@link LibraryBatch}.
+     * С аргументом {@code --replicate <порт>} изменения раздаются репликам, см. {@link ReplicationLeader}.
+     * С аргументом {@code --snapshot <файл>} состояние загружается из снимка, если он есть,
+     * и сохраняется в него при выходе, см. {@link LibrarySnapshot}.
+     */
+    public static void main(String[] args) throws IOException {
+        Path journalDir = null;
+        String script = null;
+        int replicationPort = -1;
+        Path snapshot = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--journal") && i + 1 < args.length) {
+                journalDir = Path.of(args[++i]);
+            } else if (args[i].equals("--batch") && i + 1 < args.length) {
+                script = args[++i];
+            } else if (args[i].equals("--replicate") && i + 1 < args.length) {
+                replicationPort = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--snapshot") && i + 1 < args.length) {
+                snapshot = Path.of(args[++i]);
+            } else {
+                usage();
+            }
+        }
+        if (journalDir != null && snapshot != null) {
+            // журнал сам восстанавливает состояние: второй источник его бы удвоил
+            usage();
+        }
+
+        Library library = new Library();
+        boolean restored = snapshot != null && Files.exists(snapshot);
+        if (restored) {
+            long started = System.nanoTime();
+            LibrarySnapshot.load(snapshot, library);
+            System.err.printf("Snapshot loaded in %d ms%n", (System.nanoTime() - started) / 1_000_000);
+        }
+        LibraryJournal journal = journalDir == null ? null : LibraryJournal.open(journalDir, library,
+                LibraryJournal.DEFAULT_SEGMENT_SIZE, LibraryJournal.DEFAULT_COMPACTION_THRESHOLD, 1000);
+        ReplicationLeader leader = null;
+        if (replicationPort >= 0) {
+            leader = ReplicationLeader.start(library, new InetSocketAddress(replicationPort));
+            System.err.println("Replication leader listening on port " + leader.getPort());
+        }
+        try {
+            if (script != null) {
+                runBatch(library, script);
+            } else {
+                new LibraryConsole(library, !restored && (journal == null || journal.isEmpty())).run();
+            }
+        } finally {
+            if (leader != null) {
+                leader.close();
+            }
+            if (journal != null) {
+                journal.close();
+            }
+        }
+        if (snapshot != null) {
+            LibrarySnapshot.save(library, snapshot);
+        }
+    }
+
+    private static void usage() {
+        System.err.println("Usage: LibraryConsole [--journal <dir>|--snapshot <file>] [--batch <file>|-] [--replicate <port>]");
+        System.exit(2);
+    }
+
+    private static void runBatch(Library library, String script) throws IOException {
+        long started = System.nanoTime();
+        Writer out = new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8);
+        try (Reader in = script.equals("-")
+                ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                : Files.newBufferedReader(Path.of(script), StandardCharsets.UTF_8)) {
+            long commands = new LibraryBatch(library).run(in, out);
+            long millis = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+            System.err.printf("%d commands in %d ms (%d commands/s)%n", commands, millis, commands * 1000 / millis);
+        }
     }
 
     public void run() {
@@ -42,6 +156,7 @@ public class LibraryConsole {
                 case 3: handleBorrowingOperations(); break;
                 case 4: showOverdueBooks(); break;
                 case 5: searchBooks(); break;
+                case 6: showStats(); break;
                 case 0:
                     System.out.println("Goodbye!");
                     return;
@@ -57,6 +172,7 @@ public class LibraryConsole {
         System.out.println("3. Borrowing Operations");
         System.out.println("4. View Overdue Books");
         System.out.println("5. Search Books");
+        System.out.println("6. Operation Statistics");
         System.out.println("0. Exit");
     }
 
@@ -66,6 +182,7 @@ public class LibraryConsole {
             System.out.println("1. Add Book");
             System.out.println("2. Remove Book");
             System.out.println("3. View All Books");
+            System.out.println("4. Import Books from File");
             System.out.println("0. Back to Main Menu");
 
             int choice = getIntInput("Enter choice: ");
@@ -74,6 +191,7 @@ public class LibraryConsole {
                 case 1: addBook(); break;
                 case 2: removeBook(); break;
                 case 3: viewAllBooks(); break;
+                case 4: importBooks(); break;
                 case 0: return;
                 default: System.out.println("Invalid choice.");
             }
@@ -99,7 +217,7 @@ public class LibraryConsole {
             return;
         }
 
-        library.addBook(title, author, isbn, genre);
+        operations.addBook(title, author, isbn, genre);
         System.out.println("Book added successfully!");
     }
 
@@ -108,7 +226,7 @@ public class LibraryConsole {
         System.out.print("Enter ISBN to remove: ");
         String isbn = scanner.nextLine().trim();
 
-        if (library.removeBook(isbn)) {
+        if (operations.removeBook(isbn)) {
             System.out.println("Book removed successfully!");
         } else {
             System.out.println("Book not found or could not be removed.");
@@ -117,23 +235,40 @@ public class LibraryConsole {
 
     private void viewAllBooks() {
         System.out.println("\n--- All Books ---");
-        List<Book> books = library.showAllBooks();
+        String cursor = null;
+        int shown = 0;
+
+        do {
+            Page<Book> page = library.pageBooks(cursor, PAGE_SIZE);
+            if (shown == 0 && page.items().isEmpty()) {
+                System.out.println("No books available.");
+                return;
+            }
 
-        if (books.isEmpty()) {
-            System.out.println("No books available.");
-            return;
-        }
+            for (Book book : page.items()) {
+                System.out.printf("%d. %s by %s (ISBN: %s, Genre: %s) - %s%n",
+                        ++shown,
+                        book.getTitle(),
+                        book.getAuthor(),
+                        book.getIsbn(),
+                        book.getGenre(),
+                        availability(book)
+                );
+            }
+            cursor = page.nextCursor();
+        } while (cursor != null && nextPage());
+    }
 
-        for (int i = 0; i < books.size(); i++) {
-            Book book = books.get(i);
-            System.out.printf("%d. %s by %s (ISBN: %s, Genre: %s) - %s%n",
-                    i + 1,
-                    book.getTitle(),
-                    book.getAuthor(),
-                    book.getIsbn(),
-                    book.getGenre(),
-                    book.isAvailable() ? "Available" : "Borrowed"
-            );
+    private void importBooks() {
+        System.out.println("\n--- Import Books ---");
+        System.out.print("Enter path to CSV/TSV file (title,author,isbn,genre): ");
+        String path = scanner.nextLine().trim();
+
+        try {
+            ImportReport report = new BulkImporter(library).importBooks(Path.of(path));
+            System.out.println("Import finished: " + report);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Import failed: " + e.getMessage());
         }
     }
 
@@ -143,6 +278,7 @@ public class LibraryConsole {
             System.out.println("1. Register User");
             System.out.println("2. View All Users");
             System.out.println("3. View User Details");
+            System.out.println("4. Import Users from File");
             System.out.println("0. Back to Main Menu");
 
             int choice = getIntInput("Enter choice: ");
@@ -151,6 +287,7 @@ public class LibraryConsole {
                 case 1: registerUser(); break;
                 case 2: viewAllUsers(); break;
                 case 3: viewUserDetails(); break;
+                case 4: importUsers(); break;
                 case 0: return;
                 default: System.out.println("Invalid choice.");
             }
@@ -189,30 +326,51 @@ public class LibraryConsole {
             return;
         }
 
-        library.registerUser(name, userId, email, userType);
+        operations.registerUser(name, userId, email, userType);
         System.out.println("User registered successfully!");
     }
 
+    private void importUsers() {
+        System.out.println("\n--- Import Users ---");
+        System.out.print("Enter path to CSV/TSV file (name,userId,email,type): ");
+        String path = scanner.nextLine().trim();
+
+        try {
+            ImportReport report = new BulkImporter(library).importUsers(Path.of(path));
+            System.out.println("Import finished: " + report);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Import failed: " + e.getMessage());
+        }
+    }
+
     private void viewAllUsers() {
         System.out.println("\n--- All Users ---");
-        List<User> users = library.showAllUsers();
-
+        String cursor = null;
+        int shown = 0;
+
+        do {
+            Page<User> page = library.pageUsers(cursor, PAGE_SIZE);
+            if (shown == 0 && page.items().isEmpty()) {
+                System.out.println("No Users.");
+                return;
+            }
 
-        if (users.isEmpty()) {
-            System.out.println("No Users.");
-            return;
-        }
+            for (User user : page.items()) {
+                System.out.printf("%d. %s %s %s %s%n",
+                        ++shown,
+                        user.getUserId(),
+                        user.getName(),
+                        user.getEmail(),
+                        user.getUserType()
+                );
+            }
+            cursor = page.nextCursor();
+        } while (cursor != null && nextPage());
+    }
 
-        for (int i = 0; i < users.size(); i++) {
-            User user = users.get(i);
-            System.out.printf("%d. %s %s %s %s%n",
-                    i + 1,
-                    user.getUserId(),
-                    user.getName(),
-                    user.getEmail(),
-                    user.getUserType()
-            );
-        }
+    private boolean nextPage() {
+        System.out.print("Press Enter for the next page or 0 to stop: ");
+        return !scanner.nextLine().trim().equals("0");
     }
 
     private void viewUserDetails() {
@@ -220,7 +378,7 @@ public class LibraryConsole {
         System.out.print("Enter user ID: ");
         String userId = scanner.nextLine().trim();
 
-        User user = library.findUser(userId);
+        User user = operations.findUser(userId);
         if (user == null) {
             System.out.println("User not found!");
             return;
@@ -233,6 +391,7 @@ public class LibraryConsole {
         System.out.printf("Max books allowed: %d%n", user.getMaxBooks());
         System.out.printf("Borrow days: %d%n", user.getBorrowDays());
         System.out.printf("Fine per day: $%.2f%n", user.getFinePerDay());
+        System.out.printf("Fines owed: $%.2f%n", library.getFines().getOwed(userId));
 
         System.out.println("\nBorrowed books:");
         if (user.getBorrowedBooks().isEmpty()) {
@@ -251,6 +410,8 @@ public class LibraryConsole {
             System.out.println("\n=== Borrowing Operations ===");
             System.out.println("1. Borrow Book");
             System.out.println("2. Return Book");
+            System.out.println("3. Close Day (accrue fines)");
+            System.out.println("4. Place Hold");
             System.out.println("0. Back to Main Menu");
 
             int choice = getIntInput("Enter choice: ");
@@ -258,6 +419,8 @@ public class LibraryConsole {
             switch (choice) {
                 case 1: borrowBook(); break;
                 case 2: returnBook(); break;
+                case 3: closeDay(); break;
+                case 4: placeHold(); break;
                 case 0: return;
                 default: System.out.println("Invalid choice.");
             }
@@ -272,7 +435,7 @@ public class LibraryConsole {
         System.out.print("Enter book ISBN: ");
         String isbn = scanner.nextLine().trim();
 
-        if (library.borrowBook(userId, isbn)) {
+        if (operations.borrowBook(userId, isbn)) {
             System.out.println("Book borrowed successfully!");
         } else {
             System.out.println("Failed to borrow book. Possible reasons:");
@@ -290,7 +453,7 @@ public class LibraryConsole {
         System.out.print("Enter book ISBN: ");
         String isbn = scanner.nextLine().trim();
 
-        if (library.returnBook(userId, isbn)) {
+        if (operations.returnBook(userId, isbn)) {
             System.out.println("Book returned successfully!");
         } else {
             System.out.println("Failed to return book. Possible reasons:");
@@ -300,9 +463,33 @@ public class LibraryConsole {
         }
     }
 
+    private void placeHold() {
+        System.out.println("\n--- Place Hold ---");
+        System.out.print("Enter user ID: ");
+        String userId = scanner.nextLine().trim();
+
+        System.out.print("Enter book ISBN: ");
+        String isbn = scanner.nextLine().trim();
+
+        switch (library.placeHold(userId, isbn)) {
+            case QUEUED -> System.out.printf("All copies are borrowed. Position in queue: %d%n",
+                    library.getHolds(isbn).size());
+            case OK -> System.out.println("A copy was available. Book borrowed successfully!");
+            case DUPLICATE -> System.out.println("User already has this book or is already in the queue.");
+            case LIMIT_REACHED -> System.out.println("User has reached maximum borrowing limit.");
+            default -> System.out.println("User or book not found.");
+        }
+    }
+
+    private void closeDay() {
+        LocalDate today = library.today();
+        long charged = library.getFines().settle(today);
+        System.out.printf("Day %s closed: fines accrued on %d loan(s).%n", today, charged);
+    }
+
     private void showOverdueBooks() {
         System.out.println("\n--- Overdue Books ---");
-        List<BorrowingRecord> overdueBooks = library.getOverdueBooks();
+        List<BorrowingRecord> overdueBooks = operations.getOverdueBooks();
 
         if (overdueBooks.isEmpty()) {
             System.out.println("No overdue books.");
@@ -326,10 +513,18 @@ public class LibraryConsole {
         System.out.print("Enter search query (title, author, or genre): ");
         String query = scanner.nextLine().trim();
 
-        List<Book> results = library.searchBooks(query);
+        List<Book> results = operations.searchBooks(query);
 
         if (results.isEmpty()) {
             System.out.println("No books found matching your search.");
+            List<Suggestion> suggestions = library.suggest(query, SUGGESTIONS);
+            if (!suggestions.isEmpty()) {
+                System.out.println("Did you mean:");
+                for (Suggestion suggestion : suggestions) {
+                    System.out.printf("- %s (%s)%n", suggestion.text(),
+                            suggestion.field() == Suggestion.Field.TITLE ? "title" : "author");
+                }
+            }
             return;
         }
 
@@ -340,11 +535,31 @@ public class LibraryConsole {
                     book.getAuthor(),
                     book.getIsbn(),
                     book.getGenre(),
-                    book.isAvailable() ? "Available" : "Borrowed"
+                    availability(book)
             );
         }
     }
 
+    private static String availability(Book book) {
+        if (book.getCopies() == 1) {
+            return book.isAvailable() ? "Available" : "Borrowed";
+        }
+        return book.isAvailable()
+                ? String.format("%d of %d copies available", book.getAvailableCopies(), book.getCopies())
+                : String.format("All %d copies borrowed", book.getCopies());
+    }
+
+    private void showStats() {
+        System.out.println("\n--- Operation Statistics ---");
+        for (OperationStats stats : operations.snapshot()) {
+            if (stats.calls() == 0) {
+                continue;
+            }
+            System.out.println(stats);
+            stats.failures().forEach((reason, count) -> System.out.printf("    %s: %d%n", reason, count));
+        }
+    }
+
     private int getIntInput(String prompt) {
         while (true) {
             try {
@@ -0,0 +1,504 @@
+package org.example;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.example.models.Book;
+import org.example.models.BorrowingRecord;
+import org.example.models.ConcurrentLibrary;
+import org.example.models.InstrumentedLibrary;
+import org.example.models.LibraryOperations;
+import org.example.models.LoanResult;
+import org.example.models.LoanStatus;
+import org.example.models.OperationStats;
+import org.example.models.ReplicaLibrary;
+import org.example.models.ReplicationLeader;
+import org.example.models.User;
+import org.example.models.UserType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * HTTP API библиотеки на встроенном сервере JDK.
+ * <p>
+ * Каждый запрос обрабатывается в своём виртуальном потоке, поэтому библиотека должна быть
+ * потокобезопасной, например {@link ConcurrentLibrary}. Число одновременно обрабатываемых
+ * запросов ограничено: сверх лимита сервер сразу отвечает 503, а не копит очередь, так что
+ * задержка принятых запросов не растёт вместе с нагрузкой.
+ * <p>
+ * Параметры передаются в строке запроса или в теле {@code application/x-www-form-urlencoded},
+ * ответы — JSON.
+ * <pre>
+ * GET    /books?q=query[&limit=k]           поиск; с limit — лучшие k по релевантности
+ * GET    /books/{isbn}                      книга или 404
+ * POST   /books  title author isbn [genre]  добавление (повторный ISBN — ещё экземпляр), 201
+ * DELETE /books/{isbn}                      удаление, 204 или 404
+ * POST   /users  name userId email type     регистрация, 201
+ * GET    /users/{userId}                    пользователь или 404
+ * POST   /loans   userId isbn [isbn...]     выдача; 404 или 409 с {@link LoanStatus} при отказе
+ * POST   /returns userId isbn [isbn...]     возврат; 404 или 409 при отказе
+ * GET    /overdue                           просроченные выдачи
+ * GET    /stats                             статистика операций
+ * GET    /replication                       номера и отставание реплики (только для {@link ReplicaLibrary})
+ * </pre>
+ * Реплика отвечает на изменяющие запросы 405 {@code READ_ONLY}.
+ */
+public class LibraryServer implements Closeable {
+
+    public static final int DEFAULT_PORT = 8080;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 10_000;
+
+    private final InstrumentedLibrary library;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Semaphore inFlight;
+
+    private LibraryServer(LibraryOperations library, HttpServer server, int maxInFlight) {
+        this.library = new InstrumentedLibrary(library);
+        this.server = server;
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.inFlight = new Semaphore(maxInFlight);
+
+        server.createContext("/books", guarded(this::books));
+        server.createContext("/users", guarded(this::users));
+        server.createContext("/loans", guarded(exchange -> loans(exchange, true)));
+        server.createContext("/returns", guarded(exchange -> loans(exchange, false)));
+        server.createContext("/overdue", guarded(this::overdue));
+        server.createContext("/stats", guarded(this::stats));
+        if (library instanceof ReplicaLibrary replica) {
+            server.createContext("/replication", guarded(exchange -> replication(exchange, replica)));
+        }
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Запуск сервера.
+     * @param library     Потокобезопасная библиотека.
+     * @param address     Адрес; порт 0 — любой свободный.
+     * @param maxInFlight Максимум одновременно обрабатываемых запросов.
+     * @return запущенный сервер.
+     * @throws IOException если адрес занят.
+     */
+    public static LibraryServer start(LibraryOperations library, InetSocketAddress address, int maxInFlight)
+            throws IOException {
+        // без TCP_NODELAY заголовки и тело ответа уходят разными пакетами и ждут отложенного ACK,
+        // что ограничивает keep-alive соединение десятками запросов в секунду; настройка читается
+        // при создании первого сервера в JVM
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        // очередь соединений ОС соразмерна лимиту запросов
+        HttpServer server = HttpServer.create(address, maxInFlight);
+        LibraryServer libraryServer = new LibraryServer(library, server, maxInFlight);
+        server.start();
+        return libraryServer;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public InstrumentedLibrary getLibrary() {
+        return library;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.close();
+    }
+
+    /**
+     * Запуск сервера с пустой {@link ConcurrentLibrary} или репликой ведущего.
+     * @param args Необязательный порт, по умолчанию {@value #DEFAULT_PORT}, и
+     *             {@code --follow host:port} — обслуживать чтение с реплики {@link ReplicationLeader}.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        InetSocketAddress leader = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--follow") && i + 1 < args.length) {
+                String address = args[++i];
+                int colon = address.lastIndexOf(':');
+                leader = new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+            } else {
+                port = Integer.parseInt(args[i]);
+            }
+        }
+        LibraryOperations library = leader == null ? new ConcurrentLibrary() : ReplicaLibrary.connect(leader);
+        LibraryServer server = start(library, new InetSocketAddress(port), DEFAULT_MAX_IN_FLIGHT);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        System.out.println("Library API listening on port " + server.getPort());
+    }
+
+    private void books(HttpExchange exchange) throws IOException {
+        String isbn = pathId(exchange, "/books");
+        String method = exchange.getRequestMethod();
+        if (isbn != null && method.equals("GET")) {
+            Book book = library.findBook(isbn);
+            if (book == null) {
+                error(exchange, 404, "NOT_FOUND");
+            } else {
+                send(exchange, 200, book(new StringBuilder(), book));
+            }
+        } else if (isbn != null && method.equals("DELETE")) {
+            if (library.removeBook(isbn)) {
+                send(exchange, 204, null);
+            } else {
+                error(exchange, 404, "NOT_FOUND");
+            }
+        } else if (isbn == null && method.equals("GET")) {
+            Map<String, List<String>> params = params(exchange);
+            if (params == null) {
+                return;
+            }
+            String query = first(params, "q");
+            int limit = positive(first(params, "limit"));
+            if (limit < 0) {
+                error(exchange, 400, "BAD_ARGUMENTS");
+                return;
+            }
+            List<Book> found = limit == 0
+                    ? library.searchBooks(query == null ? "" : query)
+                    : library.searchBooks(query == null ? "" : query, limit);
+            StringBuilder json = new StringBuilder("[");
+            for (Book book : found) {
+                book(json.length() > 1 ? json.append(',') : json, book);
+            }
+            send(exchange, 200, json.append(']'));
+        } else if (isbn == null && method.equals("POST")) {
+            Map<String, List<String>> params = params(exchange);
+            if (params == null) {
+                return;
+            }
+            String title = first(params, "title");
+            String author = first(params, "author");
+            String newIsbn = first(params, "isbn");
+            String genre = first(params, "genre");
+            if (isBlank(title) || isBlank(author) || isBlank(newIsbn)) {
+                error(exchange, 400, "BAD_ARGUMENTS");
+                return;
+            }
+            library.addBook(title, author, newIsbn, genre == null ? "" : genre);
+            Book added = library.findBook(newIsbn);
+            if (added == null) {
+                // книгу уже удалил параллельный DELETE: отвечаем тем, что было добавлено
+                added = new Book(title, author, newIsbn, genre == null ? "" : genre);
+            }
+            send(exchange, 201, book(new StringBuilder(), added));
+        } else {
+            error(exchange, 405, "METHOD_NOT_ALLOWED");
+        }
+    }
+
+    private void users(HttpExchange exchange) throws IOException {
+        String userId = pathId(exchange, "/users");
+        String method = exchange.getRequestMethod();
+        if (userId != null && method.equals("GET")) {
+            User user = library.findUser(userId);
+            if (user == null) {
+                error(exchange, 404, "NOT_FOUND");
+            } else {
+                send(exchange, 200, user(new StringBuilder(), user));
+            }
+        } else if (userId == null && method.equals("POST")) {
+            Map<String, List<String>> params = params(exchange);
+            if (params == null) {
+                return;
+            }
+            String name = first(params, "name");
+            String newId = first(params, "userId");
+            String email = first(params, "email");
+            UserType type = userType(first(params, "type"));
+            if (isBlank(name) || isBlank(newId) || type == null) {
+                error(exchange, 400, "BAD_ARGUMENTS");
+                return;
+            }
+            library.registerUser(name, newId, email == null ? "" : email, type);
+            send(exchange, 201, user(new StringBuilder(), library.findUser(newId)));
+        } else {
+            error(exchange, 405, "METHOD_NOT_ALLOWED");
+        }
+    }
+
+    private void loans(HttpExchange exchange, boolean borrow) throws IOException {
+        if (!exchange.getRequestMethod().equals("POST")) {
+            error(exchange, 405, "METHOD_NOT_ALLOWED");
+            return;
+        }
+        Map<String, List<String>> params = params(exchange);
+        if (params == null) {
+            return;
+        }
+        String userId = first(params, "userId");
+        List<String> isbns = params.getOrDefault("isbn", List.of());
+        if (isBlank(userId) || isbns.isEmpty()) {
+            error(exchange, 400, "BAD_ARGUMENTS");
+            return;
+        }
+
+        if (isbns.size() == 1) {
+            String isbn = isbns.get(0);
+            LoanStatus status = borrow ? library.tryBorrowBook(userId, isbn) : library.tryReturnBook(userId, isbn);
+            send(exchange, httpStatus(status), result(new StringBuilder(), new LoanResult(isbn, status)));
+            return;
+        }
+
+        List<LoanResult> results = borrow ? library.borrowBooks(userId, isbns) : library.returnBooks(userId, isbns);
+        LoanStatus failure = LoanStatus.OK;
+        StringBuilder json = new StringBuilder("[");
+        for (LoanResult result : results) {
+            result(json.length() > 1 ? json.append(',') : json, result);
+            if (failure == LoanStatus.OK && !result.isOk() && result.status() != LoanStatus.SKIPPED) {
+                failure = result.status();
+            }
+        }
+        send(exchange, httpStatus(failure), json.append(']'));
+    }
+
+    private void overdue(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            error(exchange, 405, "METHOD_NOT_ALLOWED");
+            return;
+        }
+        StringBuilder json = new StringBuilder("[");
+        for (BorrowingRecord record : library.getOverdueBooks()) {
+            (json.length() > 1 ? json.append(',') : json)
+                    .append("{\"userId\":").append(quote(record.getUser().getUserId()))
+                    .append(",\"isbn\":").append(quote(record.getBook().getIsbn()))
+                    .append(",\"borrowDate\":\"").append(record.getBorrowDate())
+                    .append("\",\"dueDate\":\"").append(record.getDueDate()).append("\"}");
+        }
+        send(exchange, 200, json.append(']'));
+    }
+
+    private void stats(HttpExchange exchange) throws IOException {
+        StringBuilder json = new StringBuilder("[");
+        for (OperationStats stats : library.snapshot()) {
+            (json.length() > 1 ? json.append(',') : json)
+                    .append("{\"operation\":").append(quote(stats.operation()))
+                    .append(",\"calls\":").append(stats.calls())
+                    .append(",\"failures\":{");
+            int reasons = 0;
+            for (Map.Entry<String, Long> failure : stats.failures().entrySet()) {
+                if (reasons++ > 0) {
+                    json.append(',');
+                }
+                json.append(quote(failure.getKey())).append(':').append(failure.getValue());
+            }
+            json.append("},\"p50Nanos\":").append(stats.p50Nanos())
+                    .append(",\"p99Nanos\":").append(stats.p99Nanos())
+                    .append(",\"p999Nanos\":").append(stats.p999Nanos())
+                    .append(",\"maxNanos\":").append(stats.maxNanos()).append('}');
+        }
+        send(exchange, 200, json.append(']'));
+    }
+
+    private void replication(HttpExchange exchange, ReplicaLibrary replica) throws IOException {
+        send(exchange, 200, new StringBuilder("{\"connected\":").append(replica.isConnected())
+                .append(",\"applied\":").append(replica.getAppliedSequence())
+                .append(",\"leader\":").append(replica.getLeaderSequence())
+                .append(",\"lag\":").append(replica.getLag())
+                .append(",\"applyDelayMillis\":").append(replica.getApplyDelayMillis()).append('}'));
+    }
+
+    /**
+     * Ограничение числа запросов в работе и перевод исключений в 500.
+     */
+    private HttpHandler guarded(HttpHandler handler) {
+        return exchange -> {
+            if (!inFlight.tryAcquire()) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                error(exchange, 503, "OVERLOADED");
+                return;
+            }
+            try {
+                handler.handle(exchange);
+            } catch (UnsupportedOperationException e) {
+                error(exchange, 405, "READ_ONLY");
+            } catch (RuntimeException e) {
+                error(exchange, 500, e.getClass().getSimpleName());
+            } finally {
+                inFlight.release();
+                exchange.close();
+            }
+        };
+    }
+
+    private static int httpStatus(LoanStatus status) {
+        return switch (status) {
+            case OK -> 200;
+            case USER_NOT_FOUND, BOOK_NOT_FOUND -> 404;
+            default -> 409;
+        };
+    }
+
+    private static StringBuilder book(StringBuilder json, Book book) {
+        return json.append("{\"isbn\":").append(quote(book.getIsbn()))
+                .append(",\"title\":").append(quote(book.getTitle()))
+                .append(",\"author\":").append(quote(book.getAuthor()))
+                .append(",\"genre\":").append(quote(book.getGenre()))
+                .append(",\"available\":").append(book.isAvailable())
+                .append(",\"copies\":").append(book.getCopies())
+                .append(",\"availableCopies\":").append(book.getAvailableCopies()).append('}');
+    }
+
+    private static StringBuilder user(StringBuilder json, User user) {
+        List<String> borrowed = new ArrayList<>();
+        // список книг на руках ConcurrentLibrary меняет под монитором пользователя
+        synchronized (user) {
+            for (Book book : user.getBorrowedBooks()) {
+                borrowed.add(book.getIsbn());
+            }
+        }
+        json.append("{\"userId\":").append(quote(user.getUserId()))
+                .append(",\"name\":").append(quote(user.getName()))
+                .append(",\"email\":").append(quote(user.getEmail()))
+                .append(",\"type\":\"").append(user.getUserType())
+                .append("\",\"maxBooks\":").append(user.getMaxBooks())
+                .append(",\"borrowed\":[");
+        for (int i = 0; i < borrowed.size(); i++) {
+            json.append(i > 0 ? "," : "").append(quote(borrowed.get(i)));
+        }
+        return json.append("]}");
+    }
+
+    private static StringBuilder result(StringBuilder json, LoanResult result) {
+        return json.append("{\"isbn\":").append(quote(result.isbn()))
+                .append(",\"status\":\"").append(result.status()).append("\"}");
+    }
+
+    private static void error(HttpExchange exchange, int code, String reason) throws IOException {
+        send(exchange, code, new StringBuilder("{\"error\":").append(quote(reason)).append('}'));
+    }
+
+    private static void send(HttpExchange exchange, int code, CharSequence json) throws IOException {
+        if (json == null) {
+            exchange.sendResponseHeaders(code, -1);
+            return;
+        }
+        byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(code, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                case '\n' -> quoted.append("\\n");
+                case '\r' -> quoted.append("\\r");
+                case '\t' -> quoted.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+                }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * Идентификатор после префикса ресурса: {@code /books/123} → {@code 123}.
+     * @return идентификатор или null для самого ресурса.
+     */
+    private static String pathId(HttpExchange exchange, String prefix) {
+        String path = exchange.getRequestURI().getPath();
+        if (path.length() <= prefix.length() + 1) {
+            return null;
+        }
+        return path.substring(prefix.length() + 1);
+    }
+
+    /**
+     * Параметры из строки запроса и тела формы.
+     * @return параметры или null, если они закодированы с ошибкой; ответ 400 уже отправлен.
+     */
+    private static Map<String, List<String>> params(HttpExchange exchange) throws IOException {
+        Map<String, List<String>> params = new LinkedHashMap<>();
+        try (InputStream body = exchange.getRequestBody()) {
+            parse(exchange.getRequestURI().getRawQuery(), params);
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            if (contentType != null && contentType.startsWith("application/x-www-form-urlencoded")) {
+                parse(new String(body.readAllBytes(), StandardCharsets.UTF_8), params);
+            }
+        } catch (IllegalArgumentException e) {
+            // URLDecoder отклоняет неполные %-последовательности
+            error(exchange, 400, "BAD_ARGUMENTS");
+            return null;
+        }
+        return params;
+    }
+
+    private static void parse(String encoded, Map<String, List<String>> params) {
+        if (encoded == null || encoded.isEmpty()) {
+            return;
+        }
+        for (String pair : encoded.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+        }
+    }
+
+    private static String first(Map<String, List<String>> params, String key) {
+        List<String> values = params.get(key);
+        return values == null ? null : values.get(0);
+    }
+
+    // 0 — параметр не задан, -1 — задан неверно
+    private static int positive(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            int parsed = Integer.parseInt(value);
+            return parsed > 0 ? parsed : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private static UserType userType(String value) {
+        if (value == null) {
+            return null;
+        }
+        return switch (value.toUpperCase(Locale.ROOT)) {
+            case "STUDENT" -> UserType.STUDENT;
+            case "FACULTY" -> UserType.FACULTY;
+            case "GUEST" -> UserType.GUEST;
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,358 @@
+package org.example.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Автодополнение названий и авторов с исправлением опечаток.
+ * <p>
+ * Названия и авторы (в нижнем регистре) хранятся в двух сжатых префиксных деревьях: у каждой
+ * дуги строка-метка, а у узла без книги не бывает одного потомка. Поиск идёт по дереву в
+ * глубину и ведёт строку матрицы Левенштейна между пройденным путём и набранным текстом;
+ * ветка отсекается, как только минимум строки превышает допустимое число опечаток. Узел, путь
+ * до которого отличается от набранного текста не больше чем на столько правок, даёт подсказками
+ * все строки своего поддерева. Подсказки выдаются по возрастанию числа правок, при равенстве —
+ * по алфавиту (названия и авторы вперемешку), и перебор останавливается на {@code limit}-й.
+ * <p>
+ * Индекс обновляется при каждом добавлении и удалении книги. Чтение и изменение разделены
+ * {@link ReadWriteLock}, поэтому индекс можно использовать из {@link ConcurrentLibrary}.
+ */
+public class AutocompleteIndex {
+
+    private final Trie titles = new Trie();
+    private final Trie authors = new Trie();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Добавление названия и автора книги.
+     * @param book Книга.
+     */
+    public void add(Book book) {
+        lock.writeLock().lock();
+        try {
+            titles.insert(book.getTitle());
+            authors.insert(book.getAuthor());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Удаление названия и автора книги.
+     * @param book Книга.
+     */
+    public void remove(Book book) {
+        lock.writeLock().lock();
+        try {
+            titles.delete(book.getTitle());
+            authors.delete(book.getAuthor());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Подсказки по началу названия или имени автора. Допустимое число опечаток зависит от
+     * длины набранного: до 3 символов — 0, до 6 — 1, дальше — 2.
+     * @param prefix Набранное начало.
+     * @param limit  Сколько подсказок вернуть.
+     * @return подсказки, лучшие первыми.
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String normalized = prefix == null ? "" : normalize(prefix);
+        int maxEdits = normalized.length() < 3 ? 0 : normalized.length() < 6 ? 1 : 2;
+        return suggest(prefix, maxEdits, limit);
+    }
+
+    /**
+     * Подсказки по началу названия или имени автора.
+     * @param prefix   Набранное начало.
+     * @param maxEdits Допустимое число опечаток (вставок, удалений и замен символа), от 0 до 2.
+     * @param limit    Сколько подсказок вернуть.
+     * @return подсказки, лучшие первыми.
+     */
+    public List<Suggestion> suggest(String prefix, int maxEdits, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive: " + limit);
+        }
+        if (maxEdits < 0 || maxEdits > 2) {
+            throw new IllegalArgumentException("Edits must be between 0 and 2: " + maxEdits);
+        }
+        String query = prefix == null ? "" : normalize(prefix);
+        if (query.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        lock.readLock().lock();
+        try {
+            List<Match> titleMatches = titles.match(query, maxEdits);
+            List<Match> authorMatches = authors.match(query, maxEdits);
+
+            List<Suggestion> result = new ArrayList<>();
+            Set<Node> emitted = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (int distance = 0; distance <= maxEdits && result.size() < limit; distance++) {
+                // каждое дерево отдаёт свои строки по алфавиту, остаётся слить два списка
+                int wanted = limit - result.size();
+                List<Suggestion> byTitle = new ArrayList<>();
+                List<Suggestion> byAuthor = new ArrayList<>();
+                collect(titleMatches, distance, Suggestion.Field.TITLE, emitted, byTitle, wanted);
+                collect(authorMatches, distance, Suggestion.Field.AUTHOR, emitted, byAuthor, wanted);
+                merge(byTitle, byAuthor, result, limit);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void collect(List<Match> matches, int distance, Suggestion.Field field,
+                                Set<Node> emitted, List<Suggestion> result, int limit) {
+        for (Match match : matches) {
+            if (match.distance() == distance) {
+                match.node().collect(field, distance, emitted, result, limit);
+                if (result.size() >= limit) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void merge(List<Suggestion> first, List<Suggestion> second, List<Suggestion> result, int limit) {
+        int i = 0;
+        int j = 0;
+        while (result.size() < limit && (i < first.size() || j < second.size())) {
+            if (j == second.size() || (i < first.size()
+                    && normalize(first.get(i).text()).compareTo(normalize(second.get(j).text())) <= 0)) {
+                result.add(first.get(i++));
+            } else {
+                result.add(second.get(j++));
+            }
+        }
+    }
+
+    private static String normalize(String text) {
+        return text.trim().toLowerCase();
+    }
+
+    /**
+     * Узел, все строки поддерева которого подходят с указанным числом правок.
+     */
+    private record Match(Node node, int distance) {
+    }
+
+    /**
+     * Сжатое префиксное дерево нормализованных строк.
+     */
+    private static final class Trie {
+        private final Node root = new Node("");
+
+        void insert(String text) {
+            if (text == null || normalize(text).isEmpty()) {
+                return;
+            }
+            String key = normalize(text);
+            Node node = root;
+            int i = 0;
+            while (i < key.length()) {
+                int index = node.indexOf(key.charAt(i));
+                if (index < 0) {
+                    Node leaf = new Node(key.substring(i));
+                    node.addChild(leaf);
+                    node = leaf;
+                    break;
+                }
+                Node child = node.children[index];
+                int common = commonPrefix(child.label, key, i);
+                if (common < child.label.length()) {
+                    // дуга расходится с ключом посередине — разрезаем её
+                    Node middle = new Node(child.label.substring(0, common));
+                    child.label = child.label.substring(common);
+                    middle.addChild(child);
+                    node.children[index] = middle;
+                    child = middle;
+                }
+                node = child;
+                i += common;
+            }
+            if (node.count++ == 0) {
+                node.text = text.trim();
+            }
+        }
+
+        void delete(String text) {
+            if (text == null || normalize(text).isEmpty()) {
+                return;
+            }
+            String key = normalize(text);
+            List<Node> path = new ArrayList<>();
+            Node node = root;
+            int i = 0;
+            while (i < key.length()) {
+                path.add(node);
+                int index = node.indexOf(key.charAt(i));
+                if (index < 0 || !key.startsWith(node.children[index].label, i)) {
+                    return;
+                }
+                node = node.children[index];
+                i += node.label.length();
+            }
+            if (node.count == 0 || --node.count > 0) {
+                return;
+            }
+            node.text = null;
+
+            // убираем пустой лист и склеиваем промежуточный узел с единственным потомком
+            Node parent = path.get(path.size() - 1);
+            if (node.children.length == 0) {
+                parent.removeChild(node);
+                if (parent != root && parent.count == 0 && parent.children.length == 1) {
+                    path.get(path.size() - 2).replaceChild(parent, parent.merged());
+                }
+            } else if (node.children.length == 1) {
+                parent.replaceChild(node, node.merged());
+            }
+        }
+
+        List<Match> match(String query, int maxEdits) {
+            int[] row = new int[query.length() + 1];
+            for (int j = 0; j < row.length; j++) {
+                row[j] = j;
+            }
+            List<Match> matches = new ArrayList<>();
+            if (row[query.length()] <= maxEdits) {
+                matches.add(new Match(root, row[query.length()]));
+            }
+            walk(root, row, row[query.length()], query, maxEdits, matches);
+            return matches;
+        }
+
+        private static void walk(Node node, int[] row, int best, String query, int maxEdits, List<Match> matches) {
+            int m = query.length();
+            for (Node child : node.children) {
+                int[] current = row;
+                int childBest = best;
+                boolean alive = true;
+                for (int k = 0; k < child.label.length() && alive; k++) {
+                    current = step(current, child.label.charAt(k), query);
+                    childBest = Math.min(childBest, current[m]);
+                    alive = min(current) <= maxEdits;
+                }
+                if (childBest < best && childBest <= maxEdits) {
+                    matches.add(new Match(child, childBest));
+                }
+                // при точном совпадении лучше уже не станет
+                if (alive && childBest > 0) {
+                    walk(child, current, childBest, query, maxEdits, matches);
+                }
+            }
+        }
+
+        private static int[] step(int[] previous, char c, String query) {
+            int[] next = new int[previous.length];
+            next[0] = previous[0] + 1;
+            for (int j = 1; j < next.length; j++) {
+                int substitution = previous[j - 1] + (query.charAt(j - 1) == c ? 0 : 1);
+                next[j] = Math.min(substitution, Math.min(previous[j] + 1, next[j - 1] + 1));
+            }
+            return next;
+        }
+
+        private static int min(int[] row) {
+            int min = row[0];
+            for (int value : row) {
+                min = Math.min(min, value);
+            }
+            return min;
+        }
+
+        private static int commonPrefix(String label, String key, int offset) {
+            int max = Math.min(label.length(), key.length() - offset);
+            int i = 0;
+            while (i < max && label.charAt(i) == key.charAt(offset + i)) {
+                i++;
+            }
+            return i;
+        }
+    }
+
+    /**
+     * Узел дерева. Потомки упорядочены по первому символу метки.
+     */
+    private static final class Node {
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        String label;
+        Node[] children = NO_CHILDREN;
+        int count;    // сколько книг с этой строкой
+        String text;  // строка в исходном написании, если count > 0
+
+        Node(String label) {
+            this.label = label;
+        }
+
+        int indexOf(char first) {
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                char c = children[middle].label.charAt(0);
+                if (c < first) {
+                    low = middle + 1;
+                } else if (c > first) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -(low + 1);
+        }
+
+        void addChild(Node child) {
+            int at = -(indexOf(child.label.charAt(0)) + 1);
+            Node[] grown = Arrays.copyOf(children, children.length + 1);
+            System.arraycopy(grown, at, grown, at + 1, children.length - at);
+            grown[at] = child;
+            children = grown;
+        }
+
+        void removeChild(Node child) {
+            int at = indexOf(child.label.charAt(0));
+            Node[] shrunk = new Node[children.length - 1];
+            System.arraycopy(children, 0, shrunk, 0, at);
+            System.arraycopy(children, at + 1, shrunk, at, children.length - at - 1);
+            children = shrunk;
+        }
+
+        void replaceChild(Node child, Node replacement) {
+            children[indexOf(child.label.charAt(0))] = replacement;
+        }
+
+        // узел без книги с единственным потомком заменяется потомком с удлинённой меткой
+        Node merged() {
+            Node only = children[0];
+            only.label = label + only.label;
+            return only;
+        }
+
+        void collect(Suggestion.Field field, int distance, Set<Node> emitted, List<Suggestion> result, int limit) {
+            if (count > 0 && emitted.add(this)) {
+                result.add(new Suggestion(text, field, distance));
+                if (result.size() >= limit) {
+                    return;
+                }
+            }
+            for (Node child : children) {
+                child.collect(field, distance, emitted, result, limit);
+                if (result.size() >= limit) {
+                    return;
+                }
+            }
+        }
+    }
+}
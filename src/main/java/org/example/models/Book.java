@@ -1,30 +1,110 @@
 package org.example.models;
 
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
 /**
- * Книга.
+ * Книга: издание с одним ISBN и несколькими взаимозаменяемыми экземплярами.
+ * <p>
+ * Общее число экземпляров и число экземпляров на полке хранятся в одном поле и меняются
+ * одним CAS, поэтому одновременные выдачи популярной книги не блокируют друг друга и
+ * не могут выдать больше экземпляров, чем есть.
  */
 public class Book {
 
+    private static final AtomicLongFieldUpdater<Book> COPIES =
+            AtomicLongFieldUpdater.newUpdater(Book.class, "copies");
+    private static final long ONE_COPY = 1L << 32 | 1;
+
     private String title;
     private String author;
     private String isbn;
-    private boolean available;
+    // всего экземпляров в старших 32 битах, на полке — в младших
+    private volatile long copies = ONE_COPY;
     private String genre;
 
     public Book(String title, String author, String isbn, String genre) {
         this.title = title;
         this.author = author;
         this.isbn = isbn;
-        this.available = true;
         this.genre = genre;
     }
 
+    /**
+     * Книга с заданным числом экземпляров, например прочитанная из хранилища.
+     * @param copies          Всего экземпляров.
+     * @param availableCopies Экземпляров на полке.
+     */
+    Book(String title, String author, String isbn, String genre, int copies, int availableCopies) {
+        this(title, author, isbn, genre);
+        this.copies = (long) copies << 32 | availableCopies;
+    }
+
+    /**
+     * Есть ли экземпляр на полке.
+     * @return признак доступности.
+     */
     public boolean isAvailable() {
-        return available;
+        return (int) copies > 0;
     }
 
+    /**
+     * Вернуть на полку все экземпляры или выдать все.
+     * @param available Признак доступности.
+     */
     public void setAvailable(boolean available) {
-        this.available = available;
+        while (true) {
+            long current = copies;
+            long total = current >>> 32;
+            if (COPIES.compareAndSet(this, current, total << 32 | (available ? total : 0))) {
+                return;
+            }
+        }
+    }
+
+    public int getCopies() {
+        return (int) (copies >>> 32);
+    }
+
+    public int getAvailableCopies() {
+        return (int) copies;
+    }
+
+    /**
+     * Добавление ещё одного экземпляра на полку.
+     */
+    void addCopy() {
+        COPIES.addAndGet(this, ONE_COPY);
+    }
+
+    /**
+     * Атомарно занять экземпляр.
+     * @return true, если экземпляр был на полке и теперь занят вызывающим.
+     */
+    boolean tryTake() {
+        while (true) {
+            long current = copies;
+            if ((int) current == 0) {
+                return false;
+            }
+            if (COPIES.compareAndSet(this, current, current - 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Вернуть экземпляр на полку.
+     */
+    void release() {
+        while (true) {
+            long current = copies;
+            if ((int) current >= (int) (current >>> 32)) {
+                return;  // все экземпляры уже на полке
+            }
+            if (COPIES.compareAndSet(this, current, current + 1)) {
+                return;
+            }
+        }
     }
 
     public String getTitle() {
@@ -0,0 +1,129 @@
+package org.example.models;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Кэш книг {@link DiskCatalog} ограниченного размера с вытеснением давно не использованных (LRU).
+ * <p>
+ * Изменения счётчиков экземпляров копятся в объекте книги и пишутся на диск только при
+ * вытеснении или {@link #flush()} (write-back), поэтому выдача и возврат популярной книги
+ * не обращаются к диску. Пока книга в кэше, её объект единственный и актуальнее записи на диске.
+ * Класс не потокобезопасен.
+ */
+public class BookCache {
+
+    private final DiskCatalog catalog;
+    private final int capacity;
+    private final LinkedHashMap<String, Entry> entries;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long writeBacks;
+
+    /**
+     * @param catalog  Каталог на диске.
+     * @param capacity Наибольшее число книг в памяти.
+     */
+    public BookCache(DiskCatalog catalog, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Cache capacity must be positive: " + capacity);
+        }
+        this.catalog = catalog;
+        this.capacity = capacity;
+        // порядок доступа: первой идёт книга, к которой дольше всего не обращались
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= BookCache.this.capacity) {
+                    return false;
+                }
+                writeBack(eldest.getValue());
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Книга по ISBN: из кэша или с диска.
+     * @param isbn Международный стандартный книжный номер.
+     * @return книга или null, если её нет в каталоге.
+     */
+    public Book get(String isbn) {
+        Entry entry = entries.get(isbn);
+        if (entry != null) {
+            hits++;
+            return entry.book;
+        }
+        misses++;
+        long offset = catalog.offsetOf(isbn);
+        if (offset < 0) {
+            return null;
+        }
+        entry = new Entry(catalog.read(offset), offset);
+        entries.put(isbn, entry);
+        return entry.book;
+    }
+
+    /**
+     * Отметка, что счётчики экземпляров книги, полученной из {@link #get}, изменены.
+     * @param isbn Международный стандартный книжный номер.
+     */
+    public void markDirty(String isbn) {
+        Entry entry = entries.get(isbn);
+        if (entry == null) {
+            throw new IllegalStateException("Book is not cached: " + isbn);
+        }
+        entry.dirty = true;
+    }
+
+    /**
+     * Удаление книги из кэша без записи на диск, например при удалении из каталога.
+     * @param isbn Международный стандартный книжный номер.
+     */
+    public void invalidate(String isbn) {
+        entries.remove(isbn);
+    }
+
+    /**
+     * Запись всех изменённых книг на диск. Книги остаются в кэше.
+     */
+    public void flush() {
+        for (Entry entry : entries.values()) {
+            writeBack(entry);
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public CacheStats getStats() {
+        return new CacheStats(hits, misses, evictions, writeBacks, entries.size(), capacity);
+    }
+
+    private void writeBack(Entry entry) {
+        if (entry.dirty) {
+            catalog.writeCopies(entry.offset, entry.book);
+            entry.dirty = false;
+            writeBacks++;
+        }
+    }
+
+    private static final class Entry {
+        final Book book;
+        final long offset;
+        boolean dirty;
+
+        Entry(Book book, long offset) {
+            this.book = book;
+            this.offset = offset;
+        }
+    }
+}
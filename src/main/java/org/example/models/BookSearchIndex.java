@@ -0,0 +1,136 @@
+package org.example.models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Инвертированный n-граммный индекс по названию, автору и жанру книги.
+ * <p>
+ * Для каждой книги индексируются все подстроки длиной от 1 до {@link #GRAM} символов
+ * нормализованных (приведённых к нижнему регистру) полей. Запрос длиной до {@link #GRAM}
+ * символов отвечается одним списком вхождений, более длинный — пересечением списков его
+ * триграмм с последующей проверкой кандидатов через {@code contains}, поэтому результат
+ * совпадает с полным перебором каталога.
+ * <p>
+ * Индекс строится по значениям полей на момент добавления книги, поэтому поля книги,
+ * находящейся в каталоге, менять не следует.
+ */
+public class BookSearchIndex {
+
+    static final int GRAM = 3;
+
+    // n-грамма -> книги, в одном из полей которых она встречается
+    private final Map<String, Set<Book>> postings = new ConcurrentHashMap<>();
+
+    /**
+     * Добавление книги в индекс.
+     * @param book Книга.
+     */
+    public void add(Book book) {
+        for (String gram : grams(book)) {
+            postings.compute(gram, (g, set) -> {
+                Set<Book> result = set == null ? ConcurrentHashMap.newKeySet() : set;
+                result.add(book);
+                return result;
+            });
+        }
+    }
+
+    /**
+     * Удаление книги из индекса.
+     * @param book Книга.
+     */
+    public void remove(Book book) {
+        for (String gram : grams(book)) {
+            postings.computeIfPresent(gram, (g, set) -> {
+                set.remove(book);
+                return set.isEmpty() ? null : set;
+            });
+        }
+    }
+
+    /**
+     * Поиск книг, у которых название, автор или жанр содержат запрос.
+     * @param query Параметры поиска.
+     * @return результат поиска.
+     */
+    public List<Book> search(String query) {
+        if (query == null || query.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        String searchTerm = query.trim().toLowerCase();
+
+        if (searchTerm.length() <= GRAM) {
+            Set<Book> exact = postings.get(searchTerm);
+            return exact == null ? Collections.emptyList() : new ArrayList<>(exact);
+        }
+
+        // начинаем с самого короткого списка, чтобы проверить как можно меньше кандидатов
+        Set<Book> smallest = null;
+        List<Set<Book>> others = new ArrayList<>();
+        for (int i = 0; i + GRAM <= searchTerm.length(); i++) {
+            Set<Book> set = postings.get(searchTerm.substring(i, i + GRAM));
+            if (set == null) {
+                return Collections.emptyList();
+            }
+            if (smallest == null || set.size() < smallest.size()) {
+                if (smallest != null) {
+                    others.add(smallest);
+                }
+                smallest = set;
+            } else {
+                others.add(set);
+            }
+        }
+
+        List<Book> result = new ArrayList<>();
+        for (Book book : smallest) {
+            if (containsAll(others, book) && matches(book, searchTerm)) {
+                result.add(book);
+            }
+        }
+        return result;
+    }
+
+    private static boolean containsAll(List<Set<Book>> sets, Book book) {
+        for (Set<Book> set : sets) {
+            if (!set.contains(book)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean matches(Book book, String searchTerm) {
+        return (book.getTitle() != null && book.getTitle().toLowerCase().contains(searchTerm)) ||
+                (book.getAuthor() != null && book.getAuthor().toLowerCase().contains(searchTerm)) ||
+                (book.getGenre() != null && book.getGenre().toLowerCase().contains(searchTerm));
+    }
+
+    private static Set<String> grams(Book book) {
+        Set<String> grams = new HashSet<>();
+        addGrams(grams, book.getTitle());
+        addGrams(grams, book.getAuthor());
+        addGrams(grams, book.getGenre());
+        return grams;
+    }
+
+    private static void addGrams(Set<String> grams, String field) {
+        if (field == null) {
+            return;
+        }
+        String normalized = field.toLowerCase();
+        for (int start = 0; start < normalized.length(); start++) {
+            int maxEnd = Math.min(normalized.length(), start + GRAM);
+            for (int end = start + 1; end <= maxEnd; end++) {
+                grams.add(normalized.substring(start, end));
+            }
+        }
+    }
+}
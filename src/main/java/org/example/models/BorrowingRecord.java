@@ -1,15 +1,22 @@
 package org.example.models;
 
 import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 /**
  * Запись о взятии книги.
  */
 public class BorrowingRecord {
 
+    private static final AtomicLongFieldUpdater<BorrowingRecord> FINED_THROUGH =
+            AtomicLongFieldUpdater.newUpdater(BorrowingRecord.class, "finedThrough");
+
     private Book book;
     private User user;
     private LocalDate borrowDate;
+    private LocalDate returnDate;
+    // последний день (epoch day), за который начислен штраф
+    private volatile long finedThrough = Long.MIN_VALUE;
 
     public BorrowingRecord(User user, Book book, LocalDate borrowDate) {
         this.book = book;
@@ -41,9 +48,70 @@ public class BorrowingRecord {
         this.borrowDate = borrowDate;
     }
 
+    /**
+     * Дата возврата книги.
+     * @return дата возврата или null, если книга ещё на руках.
+     */
+    public LocalDate getReturnDate() {
+        return returnDate;
+    }
+
+    public void setReturnDate(LocalDate returnDate) {
+        this.returnDate = returnDate;
+    }
+
+    /**
+     * Дата, к которой книгу нужно вернуть.
+     * @return дата возврата.
+     */
+    public LocalDate getDueDate() {
+        return borrowDate.plusDays(user.getBorrowDays());
+    }
+
+    /**
+     * Отметка начисления штрафа по указанный день включительно. Повторные и параллельные вызовы
+     * не начисляют один и тот же день дважды.
+     * @param day Последний день начисления.
+     * @return сколько дней просрочки добавилось.
+     */
+    long accrueThrough(LocalDate day) {
+        long until = day.toEpochDay();
+        long due = borrowDate.toEpochDay() + user.getBorrowDays();
+        while (true) {
+            long fined = finedThrough;
+            long from = Math.max(fined, due);
+            if (until <= from) {
+                return 0;
+            }
+            if (FINED_THROUGH.compareAndSet(this, fined, until)) {
+                return until - from;
+            }
+        }
+    }
+
+    /**
+     * Последний день (epoch day), за который начислен штраф.
+     * @return день или {@link Long#MIN_VALUE}, если штраф не начислялся.
+     */
+    long getFinedThrough() {
+        return finedThrough;
+    }
+
+    void setFinedThrough(long day) {
+        finedThrough = day;
+    }
+
     public boolean isOverdue() {
-        int days = user.getBorrowDays();
-        return borrowDate.plusDays(days).isAfter(LocalDate.now());
+        return isOverdue(LocalDate.now());
+    }
+
+    /**
+     * Просрочена ли книга на указанную дату.
+     * @param today Текущая дата.
+     * @return признак просрочки.
+     */
+    public boolean isOverdue(LocalDate today) {
+        return today.isAfter(getDueDate());
     }
 
 }
@@ -0,0 +1,262 @@
+package org.example.models;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Потоковая загрузка каталога книг и списка пользователей из CSV/TSV.
+ * <p>
+ * Файл читается пачками строк. Пачки разбираются параллельно, а в библиотеку добавляются
+ * по порядку, так что при повторяющихся ISBN или Id, как и в {@link Library#addBook}, остаётся
+ * первая запись. Одновременно в памяти не больше {@code 2 * parallelism} пачек.
+ * <p>
+ * Формат книг: {@code title,author,isbn,genre}; пользователей: {@code name,userId,email,type}.
+ * Файлы с расширением {@code .tsv} разделяются табуляцией, остальные — запятой; в CSV
+ * поддерживаются поля в двойных кавычках. Первая строка пропускается как заголовок, только если
+ * в ней перечислены имена столбцов формата, поэтому книга «Title» или пользователь «Name» не теряются.
+ */
+public class BulkImporter {
+
+    public static final int DEFAULT_BATCH_SIZE = 10_000;
+
+    private static final List<String> BOOK_HEADER = List.of("title", "author", "isbn", "genre");
+    private static final List<String> USER_HEADER = List.of("name", "userid", "email", "type");
+
+    private final Library library;
+    private final int parallelism;
+    private final int batchSize;
+
+    public BulkImporter(Library library) {
+        this(library, Runtime.getRuntime().availableProcessors(), DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param library     Библиотека.
+     * @param parallelism Количество потоков разбора.
+     * @param batchSize   Строк в пачке.
+     */
+    public BulkImporter(Library library, int parallelism, int batchSize) {
+        this.library = library;
+        this.parallelism = Math.max(1, parallelism);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Загрузка книг из файла.
+     * @param file Путь к файлу.
+     * @return итог загрузки.
+     * @throws IOException при ошибке чтения.
+     */
+    public ImportReport importBooks(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importBooks(reader, delimiterOf(file));
+        }
+    }
+
+    /**
+     * Загрузка книг.
+     * @param reader    Источник строк.
+     * @param delimiter Разделитель полей.
+     * @return итог загрузки.
+     * @throws IOException при ошибке чтения.
+     */
+    public ImportReport importBooks(Reader reader, char delimiter) throws IOException {
+        return run(reader, delimiter, BOOK_HEADER, 3, line -> parseBook(line, delimiter), library::importBooks);
+    }
+
+    /**
+     * Загрузка пользователей из файла.
+     * @param file Путь к файлу.
+     * @return итог загрузки.
+     * @throws IOException при ошибке чтения.
+     */
+    public ImportReport importUsers(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importUsers(reader, delimiterOf(file));
+        }
+    }
+
+    /**
+     * Загрузка пользователей.
+     * @param reader    Источник строк.
+     * @param delimiter Разделитель полей.
+     * @return итог загрузки.
+     * @throws IOException при ошибке чтения.
+     */
+    public ImportReport importUsers(Reader reader, char delimiter) throws IOException {
+        return run(reader, delimiter, USER_HEADER, 4, line -> parseUser(line, delimiter), library::importUsers);
+    }
+
+    private <T> ImportReport run(Reader source, char delimiter, List<String> header, int requiredColumns,
+                                 Function<String, T> parser, Function<List<T>, Integer> sink) throws IOException {
+        long started = System.nanoTime();
+        long rows = 0;
+        long imported = 0;
+        long malformed = 0;
+
+        BufferedReader reader = source instanceof BufferedReader buffered ? buffered : new BufferedReader(source);
+        ExecutorService parsers = Executors.newFixedThreadPool(parallelism);
+        Deque<Future<Parsed<T>>> inFlight = new ArrayDeque<>();
+        try {
+            String line = reader.readLine();
+            if (line != null && isHeader(split(line, delimiter), header, requiredColumns)) {
+                line = reader.readLine();
+            }
+
+            List<String> lines = new ArrayList<>(batchSize);
+            while (line != null) {
+                if (!line.isBlank()) {
+                    lines.add(line);
+                    rows++;
+                }
+                line = reader.readLine();
+                if (lines.size() == batchSize || (line == null && !lines.isEmpty())) {
+                    List<String> batch = lines;
+                    inFlight.add(parsers.submit(() -> parse(batch, parser)));
+                    lines = new ArrayList<>(batchSize);
+                }
+                // ограничение памяти: ждём самую старую пачку, пока в работе слишком много
+                while (inFlight.size() >= 2 * parallelism || (line == null && !inFlight.isEmpty())) {
+                    Parsed<T> parsed = await(inFlight.removeFirst());
+                    imported += sink.apply(parsed.records());
+                    malformed += parsed.malformed();
+                }
+            }
+        } finally {
+            parsers.shutdownNow();
+        }
+
+        long duplicates = rows - imported - malformed;
+        return new ImportReport(rows, imported, duplicates, malformed, Duration.ofNanos(System.nanoTime() - started));
+    }
+
+    /**
+     * Разобранная пачка.
+     * @param records   Корректные записи в порядке строк.
+     * @param malformed Количество некорректных строк.
+     */
+    private record Parsed<T>(List<T> records, int malformed) {
+    }
+
+    /**
+     * Заголовок — строка, целиком состоящая из имён столбцов формата в их порядке.
+     */
+    private static boolean isHeader(List<String> fields, List<String> header, int requiredColumns) {
+        if (fields.size() < requiredColumns || fields.size() > header.size()) {
+            return false;
+        }
+        for (int i = 0; i < fields.size(); i++) {
+            if (!fields.get(i).equalsIgnoreCase(header.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static <T> Parsed<T> parse(List<String> lines, Function<String, T> parser) {
+        List<T> records = new ArrayList<>(lines.size());
+        int malformed = 0;
+        for (String line : lines) {
+            T record = parser.apply(line);
+            if (record == null) {
+                malformed++;
+            } else {
+                records.add(record);
+            }
+        }
+        return new Parsed<>(records, malformed);
+    }
+
+    private static <T> Parsed<T> await(Future<Parsed<T>> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to parse batch", e.getCause());
+        }
+    }
+
+    private static Book parseBook(String line, char delimiter) {
+        List<String> fields = split(line, delimiter);
+        if (fields.size() < 3 || fields.size() > 4) {
+            return null;
+        }
+        String title = fields.get(0);
+        String author = fields.get(1);
+        String isbn = fields.get(2);
+        String genre = fields.size() == 4 ? fields.get(3) : "";
+        // те же обязательные поля, что и при добавлении книги из консоли
+        if (title.isEmpty() || author.isEmpty() || isbn.isEmpty()) {
+            return null;
+        }
+        return new Book(title, author, isbn, genre);
+    }
+
+    private static User parseUser(String line, char delimiter) {
+        List<String> fields = split(line, delimiter);
+        if (fields.size() != 4) {
+            return null;
+        }
+        String name = fields.get(0);
+        String userId = fields.get(1);
+        String email = fields.get(2);
+        if (name.isEmpty() || userId.isEmpty()) {
+            return null;
+        }
+        return switch (fields.get(3).toUpperCase(Locale.ROOT)) {
+            case "STUDENT" -> new Student(name, userId, email);
+            case "FACULTY" -> new Faculty(name, userId, email);
+            case "GUEST" -> new Guest(name, userId, email);
+            default -> null;
+        };
+    }
+
+    static List<String> split(String line, char delimiter) {
+        List<String> fields = new ArrayList<>(4);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"' && delimiter != '\t' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == delimiter) {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    private static char delimiterOf(Path file) {
+        return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".tsv") ? '\t' : ',';
+    }
+}
@@ -0,0 +1,28 @@
+package org.example.models;
+
+/**
+ * Снимок статистики кэша книг.
+ * @param hits       Обращений, найденных в кэше.
+ * @param misses     Обращений, прочитанных с диска (включая отсутствующие книги).
+ * @param evictions  Вытесненных книг.
+ * @param writeBacks Записей изменённых счётчиков на диск.
+ * @param size       Книг в кэше.
+ * @param capacity   Наибольшее число книг в кэше.
+ */
+public record CacheStats(long hits, long misses, long evictions, long writeBacks, int size, int capacity) {
+
+    /**
+     * Доля обращений, найденных в кэше.
+     * @return от 0 до 1; 0, если обращений не было.
+     */
+    public double hitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("cache %d/%d books  hit rate %5.1f%%  %d hits  %d misses  %d evictions  %d write-backs",
+                size, capacity, hitRate() * 100, hits, misses, evictions, writeBacks);
+    }
+}
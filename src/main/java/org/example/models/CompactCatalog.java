@@ -0,0 +1,452 @@
+package org.example.models;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Компактное хранилище каталога книг.
+ * <p>
+ * Вместо объекта {@link Book} с четырьмя строками на книгу хранится:
+ * <ul>
+ *     <li>ISBN и название в общем буфере UTF-8 (heap или off-heap) — смещение int на книгу;</li>
+ *     <li>автор и жанр как номера в словарях, каждая строка словаря хранится один раз;</li>
+ *     <li>доступность и признак удаления — по биту в {@link BitSet};</li>
+ *     <li>индекс ISBN — открытая адресация в массиве int.</li>
+ * </ul>
+ * Для книги с названием из 25 символов и ISBN из 13 это около 60 байт против примерно 310 байт
+ * в {@link Library} (объект книги с упакованным в {@code long} числом экземпляров — 40 байт, четыре
+ * строки — 232 и узел {@code HashMap} с ячейкой таблицы — около 37, без учёта поискового индекса),
+ * то есть больше чем в 5 раз меньше. Точная оценка —
+ * {@link #estimatedBytes()}; после массовой загрузки запас ёмкости убирается {@link #trimToSize()}.
+ * <p>
+ * Объекты {@link Book} создаются по запросу и не связаны с хранилищем: изменение их полей
+ * не меняет каталог. Место удалённых книг не переиспользуется. Класс не потокобезопасен.
+ */
+public class CompactCatalog {
+
+    private static final int NO_VALUE = -1;
+    private static final int EMPTY = 0;
+    private static final int DELETED = -1;
+
+    private final boolean offHeap;
+    private ByteBuffer data;          // [длина ISBN][ISBN][название] подряд для каждой книги
+    private int[] offsets = new int[1024];
+    private int[] authors = new int[1024];
+    private int[] genres = new int[1024];
+    private final BitSet available = new BitSet();
+    private final BitSet removed = new BitSet();
+    private int slots;                // занятых ячеек, включая удалённые книги
+    private int size;                 // книг в каталоге
+
+    private int[] table = new int[2048];  // номер ячейки + 1, EMPTY или DELETED
+    private int tableUsed;                // занятых и удалённых позиций таблицы
+
+    private final Dictionary authorDictionary = new Dictionary();
+    private final Dictionary genreDictionary = new Dictionary();
+
+    public CompactCatalog() {
+        this(false);
+    }
+
+    /**
+     * @param offHeap Хранить строки вне кучи Java.
+     */
+    public CompactCatalog(boolean offHeap) {
+        this.offHeap = offHeap;
+        this.data = allocate(64 * 1024);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Добавление книги.
+     * @return false, если книга с таким ISBN уже есть.
+     */
+    public boolean add(String title, String author, String isbn, String genre) {
+        byte[] isbnBytes = isbn.getBytes(StandardCharsets.UTF_8);
+        if (isbnBytes.length > 255) {
+            throw new IllegalArgumentException("ISBN is too long: " + isbn);
+        }
+        if (find(isbnBytes) != NO_VALUE) {
+            return false;
+        }
+        if ((tableUsed + 1) * 2 > table.length) {
+            // при большом числе живых записей таблица растёт, иначе только очищается от удалённых
+            rehash(size + 1 > table.length / 4 ? table.length * 2 : table.length);
+        }
+
+        // отсутствующее название хранится как пустая строка
+        byte[] titleBytes = title == null ? new byte[0] : title.getBytes(StandardCharsets.UTF_8);
+        ensureData(1 + isbnBytes.length + titleBytes.length);
+        ensureSlots(slots + 2);
+
+        int slot = slots++;
+        offsets[slot] = data.position();
+        data.put((byte) isbnBytes.length).put(isbnBytes).put(titleBytes);
+        offsets[slot + 1] = data.position();
+        authors[slot] = authorDictionary.id(author);
+        genres[slot] = genreDictionary.id(genre);
+        available.set(slot);
+
+        insert(hash(isbnBytes), slot);
+        size++;
+        return true;
+    }
+
+    /**
+     * Удаление книги.
+     * @return false, если книги нет.
+     */
+    public boolean remove(String isbn) {
+        byte[] isbnBytes = isbn.getBytes(StandardCharsets.UTF_8);
+        int position = position(isbnBytes);
+        if (position == NO_VALUE) {
+            return false;
+        }
+        int slot = table[position] - 1;
+        table[position] = DELETED;
+        removed.set(slot);
+        available.clear(slot);
+        size--;
+        return true;
+    }
+
+    /**
+     * Номер ячейки книги.
+     * @return номер или -1, если книги нет.
+     */
+    public int slotOf(String isbn) {
+        return find(isbn.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public boolean isAvailable(int slot) {
+        return available.get(slot);
+    }
+
+    public void setAvailable(int slot, boolean value) {
+        available.set(slot, value);
+    }
+
+    /**
+     * Материализация книги.
+     * @param slot Номер ячейки.
+     * @return новый объект книги.
+     */
+    public Book book(int slot) {
+        Book book = new Book(title(slot), authorDictionary.value(authors[slot]), isbn(slot),
+                genreDictionary.value(genres[slot]));
+        book.setAvailable(available.get(slot));
+        return book;
+    }
+
+    /**
+     * Все книги каталога в порядке добавления.
+     * @return материализованные книги.
+     */
+    public List<Book> books() {
+        List<Book> result = new ArrayList<>(size);
+        for (int slot = 0; slot < slots; slot++) {
+            if (!removed.get(slot)) {
+                result.add(book(slot));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Все книги каталога в порядке добавления без промежуточного списка.
+     * @return ленивый поток материализуемых книг.
+     */
+    public Stream<Book> stream() {
+        return IntStream.range(0, slots).filter(slot -> !removed.get(slot)).mapToObj(this::book);
+    }
+
+    /**
+     * Страница каталога в порядке добавления. Ячейки не переиспользуются, поэтому номер ячейки
+     * остаётся корректным курсором и после удаления книг.
+     * @param fromSlot Первая просматриваемая ячейка.
+     * @param pageSize Размер страницы.
+     * @return страница; курсор — номер следующей ячейки.
+     */
+    public Page<Book> page(int fromSlot, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+        List<Book> items = new ArrayList<>(pageSize);
+        int slot = Math.max(0, fromSlot);
+        for (; slot < slots && items.size() < pageSize; slot++) {
+            if (!removed.get(slot)) {
+                items.add(book(slot));
+            }
+        }
+        // пропускаем удалённые ячейки, чтобы не вернуть курсор на пустую страницу
+        while (slot < slots && removed.get(slot)) {
+            slot++;
+        }
+        return new Page<>(items, slot < slots ? String.valueOf(slot) : null);
+    }
+
+    /**
+     * Поиск по подстроке в названии, авторе или жанре без учёта регистра.
+     * Автор и жанр проверяются один раз на запись словаря, названия — последовательным просмотром
+     * байтов буфера без создания строк: символы декодируются и приводятся к нижнему регистру
+     * по одному ({@link Character#toLowerCase(int)}).
+     * @param searchTerm Запрос в нижнем регистре.
+     * @return материализованные книги.
+     */
+    public List<Book> search(String searchTerm) {
+        BitSet authorMatches = authorDictionary.matches(searchTerm);
+        BitSet genreMatches = genreDictionary.matches(searchTerm);
+        TitleMatcher titleMatcher = new TitleMatcher(searchTerm);
+
+        List<Book> result = new ArrayList<>();
+        for (int slot = 0; slot < slots; slot++) {
+            if (removed.get(slot)) {
+                continue;
+            }
+            if ((authors[slot] != NO_VALUE && authorMatches.get(authors[slot]))
+                    || (genres[slot] != NO_VALUE && genreMatches.get(genres[slot]))
+                    || titleMatcher.matches(slot)) {
+                result.add(book(slot));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Освобождение запаса ёмкости массивов и буфера строк, например после массовой загрузки.
+     */
+    public void trimToSize() {
+        offsets = Arrays.copyOf(offsets, slots + 1);
+        authors = Arrays.copyOf(authors, slots + 1);
+        genres = Arrays.copyOf(genres, slots + 1);
+
+        ByteBuffer trimmed = allocate(Math.max(1, data.position()));
+        data.flip();
+        trimmed.put(data);
+        data = trimmed;
+    }
+
+    /**
+     * Оценка занимаемой памяти: массивы, буфер строк, битовые множества и словари.
+     * @return байт.
+     */
+    public long estimatedBytes() {
+        long arrays = 4L * (offsets.length + authors.length + genres.length + table.length);
+        long bits = (available.size() + removed.size()) / 8;
+        return arrays + data.capacity() + bits + authorDictionary.estimatedBytes() + genreDictionary.estimatedBytes();
+    }
+
+    private String isbn(int slot) {
+        int offset = offsets[slot];
+        int length = data.get(offset) & 0xFF;
+        return string(offset + 1, length);
+    }
+
+    private String title(int slot) {
+        int offset = offsets[slot];
+        int start = offset + 1 + (data.get(offset) & 0xFF);
+        return string(start, offsets[slot + 1] - start);
+    }
+
+    /**
+     * Поиск подстроки в названиях прямо в буфере UTF-8. Буфер символов один на весь поиск,
+     * поэтому просмотр книги ничего не выделяет.
+     */
+    private final class TitleMatcher {
+        private final int[] term;
+        private int[] chars = new int[64];
+
+        TitleMatcher(String searchTerm) {
+            this.term = searchTerm.codePoints().toArray();
+        }
+
+        boolean matches(int slot) {
+            int offset = offsets[slot];
+            int start = offset + 1 + (data.get(offset) & 0xFF);
+            int end = offsets[slot + 1];
+            if (chars.length < end - start) {
+                chars = new int[Math.max(end - start, chars.length * 2)];
+            }
+            int length = 0;
+            for (int i = start; i < end; ) {
+                int b = data.get(i) & 0xFF;
+                int codePoint;
+                if (b < 0x80) {
+                    codePoint = b;
+                    i += 1;
+                } else if (b < 0xE0) {
+                    codePoint = (b & 0x1F) << 6 | (data.get(i + 1) & 0x3F);
+                    i += 2;
+                } else if (b < 0xF0) {
+                    codePoint = (b & 0x0F) << 12 | (data.get(i + 1) & 0x3F) << 6 | (data.get(i + 2) & 0x3F);
+                    i += 3;
+                } else {
+                    codePoint = (b & 0x07) << 18 | (data.get(i + 1) & 0x3F) << 12
+                            | (data.get(i + 2) & 0x3F) << 6 | (data.get(i + 3) & 0x3F);
+                    i += 4;
+                }
+                chars[length++] = Character.toLowerCase(codePoint);
+            }
+            for (int from = 0; from + term.length <= length; from++) {
+                int k = 0;
+                while (k < term.length && chars[from + k] == term[k]) {
+                    k++;
+                }
+                if (k == term.length) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private String string(int offset, int length) {
+        byte[] bytes = new byte[length];
+        data.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int find(byte[] isbnBytes) {
+        int position = position(isbnBytes);
+        return position == NO_VALUE ? NO_VALUE : table[position] - 1;
+    }
+
+    private int position(byte[] isbnBytes) {
+        int mask = table.length - 1;
+        for (int i = hash(isbnBytes) & mask; ; i = (i + 1) & mask) {
+            int entry = table[i];
+            if (entry == EMPTY) {
+                return NO_VALUE;
+            }
+            if (entry != DELETED && isbnEquals(entry - 1, isbnBytes)) {
+                return i;
+            }
+        }
+    }
+
+    private boolean isbnEquals(int slot, byte[] isbnBytes) {
+        int offset = offsets[slot];
+        if ((data.get(offset) & 0xFF) != isbnBytes.length) {
+            return false;
+        }
+        for (int i = 0; i < isbnBytes.length; i++) {
+            if (data.get(offset + 1 + i) != isbnBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void insert(int hash, int slot) {
+        int mask = table.length - 1;
+        int i = hash & mask;
+        while (table[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        table[i] = slot + 1;
+        tableUsed++;
+    }
+
+    private void rehash(int capacity) {
+        int[] old = table;
+        table = new int[capacity];
+        tableUsed = 0;
+        for (int entry : old) {
+            if (entry != EMPTY && entry != DELETED) {
+                int slot = entry - 1;
+                int offset = offsets[slot];
+                byte[] isbnBytes = new byte[data.get(offset) & 0xFF];
+                data.get(offset + 1, isbnBytes);
+                insert(hash(isbnBytes), slot);
+            }
+        }
+    }
+
+    private static int hash(byte[] bytes) {
+        int h = Arrays.hashCode(bytes);
+        return h ^ (h >>> 16);
+    }
+
+    private void ensureSlots(int required) {
+        if (required > offsets.length) {
+            int capacity = Math.max(required, offsets.length * 2);
+            offsets = Arrays.copyOf(offsets, capacity);
+            authors = Arrays.copyOf(authors, capacity);
+            genres = Arrays.copyOf(genres, capacity);
+        }
+    }
+
+    private void ensureData(int required) {
+        if (data.remaining() < required) {
+            long capacity = Math.max((long) data.capacity() * 2, (long) data.position() + required);
+            if (capacity > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Catalog string storage exceeds 2 GB");
+            }
+            ByteBuffer grown = allocate((int) capacity);
+            data.flip();
+            grown.put(data);
+            data = grown;
+        }
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return offHeap ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    /**
+     * Словарь повторяющихся строк: строка хранится один раз, в каталоге — её номер.
+     */
+    private static class Dictionary {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+        private final List<String> lowered = new ArrayList<>();  // values в нижнем регистре для поиска
+
+        int id(String value) {
+            if (value == null) {
+                return NO_VALUE;
+            }
+            return ids.computeIfAbsent(value, v -> {
+                values.add(v);
+                lowered.add(v.toLowerCase());
+                return values.size() - 1;
+            });
+        }
+
+        String value(int id) {
+            return id == NO_VALUE ? null : values.get(id);
+        }
+
+        BitSet matches(String searchTerm) {
+            BitSet result = new BitSet(values.size());
+            for (int id = 0; id < values.size(); id++) {
+                if (lowered.get(id).contains(searchTerm)) {
+                    result.set(id);
+                }
+            }
+            return result;
+        }
+
+        long estimatedBytes() {
+            long bytes = 0;
+            for (int id = 0; id < values.size(); id++) {
+                // строка, её массив байт и узел HashMap
+                bytes += 24 + 16 + values.get(id).length() + 32;
+                if (lowered.get(id) != values.get(id)) {
+                    bytes += 24 + 16 + lowered.get(id).length();
+                }
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package org.example.models;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Реализация операций с книгами поверх {@link CompactCatalog} для каталогов из миллионов книг.
+ * <p>
+ * {@link #findBook} и {@link #searchBooks} возвращают новые объекты {@link Book}: состояние
+ * книги хранится в каталоге, а изменения возвращённых объектов в него не попадают.
+ * Книга, выданная пользователю, остаётся в его списке тем же объектом до возврата.
+ * Поиск просматривает каталог последовательно вместо n-граммного индекса, который занял бы
+ * больше памяти, чем сами книги. В отличие от {@link Library}, каждый ISBN — один экземпляр:
+ * доступность хранится одним битом. Класс не потокобезопасен.
+ */
+public class CompactLibrary implements LibraryOperations {
+    private final CompactCatalog catalog;
+    private final Map<String, User> users;      // UserID -> User
+    private final LoanLedger loans;
+    private final Clock clock;
+
+    public CompactLibrary() {
+        this(new CompactCatalog(), Clock.systemDefaultZone());
+    }
+
+    /**
+     * @param catalog Хранилище каталога.
+     * @param clock   Часы, по которым определяются даты выдачи и просрочки.
+     */
+    public CompactLibrary(CompactCatalog catalog, Clock clock) {
+        this.catalog = catalog;
+        this.users = new HashMap<>();
+        this.loans = new LoanLedger();
+        this.clock = clock;
+    }
+
+    public CompactCatalog getCatalog() {
+        return catalog;
+    }
+
+    public List<Book> showAllBooks() {
+        return catalog.books();
+    }
+
+    public List<User> showAllUsers() {
+        return new ArrayList<>(users.values());
+    }
+
+    /**
+     * Штрафы за просрочку.
+     * @return начисление и долги пользователей.
+     */
+    public FineEngine getFines() {
+        return loans.getFines();
+    }
+
+    /**
+     * Страница каталога в порядке добавления.
+     * @param cursor   Курсор из предыдущей страницы или null для первой.
+     * @param pageSize Размер страницы.
+     * @return страница книг.
+     */
+    public Page<Book> pageBooks(String cursor, int pageSize) {
+        return catalog.page(cursor == null ? 0 : Integer.parseInt(cursor), pageSize);
+    }
+
+    /**
+     * Все книги без копирования каталога.
+     * @return ленивый поток книг в порядке добавления.
+     */
+    public Stream<Book> streamBooks() {
+        return catalog.stream();
+    }
+
+    public Stream<User> streamUsers() {
+        return users.values().stream();
+    }
+
+    /**
+     * Добавление книги в библиотеку.
+     * @param title  Название.
+     * @param author Автор.
+     * @param isbn   Международный стандартный книжный номер.
+     * @param genre  Жанр.
+     */
+    @Override
+    public void addBook(String title, String author, String isbn, String genre) {
+        // в каталоге один экземпляр на ISBN, повторы игнорируются
+        catalog.add(title, author, isbn, genre);
+    }
+
+    /**
+     * Удаление книги.
+     * @param isbn Международный стандартный книжный номер.
+     * @return удалось ли удалить книгу.
+     */
+    @Override
+    public boolean removeBook(String isbn) {
+        return catalog.remove(isbn);
+    }
+
+    /**
+     * Поиск книги.
+     * @param isbn Международный стандартный книжный номер
+     * @return удалось ли найти.
+     */
+    @Override
+    public Book findBook(String isbn) {
+        int slot = catalog.slotOf(isbn);
+        return slot < 0 ? null : catalog.book(slot);
+    }
+
+    /**
+     * Фильтрация по книгам.
+     * @param query Параметры поиска.
+     * @return результат поиска.
+     */
+    @Override
+    public List<Book> searchBooks(String query) {
+        if (query == null || query.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        return catalog.search(query.trim().toLowerCase());
+    }
+
+    /**
+     * Регистрация пользователя.
+     * @param name   Имя.
+     * @param userId Id.
+     * @param email  Почта.
+     * @param type   Тип пользователя
+     */
+    @Override
+    public void registerUser(String name, String userId, String email, UserType type) {
+        // будем игнорировать дубликаты
+        if (!users.containsKey(userId)) {
+            switch (type) {
+                case STUDENT -> users.put(userId, new Student(name, userId, email));
+                case GUEST -> users.put(userId, new Guest(name, userId, email));
+                case FACULTY -> users.put(userId, new Faculty(name, userId, email));
+            }
+        }
+    }
+
+    /**
+     * Поиск пользователя.
+     * @param userId Id пользователя.
+     * @return Найденный пользователь
+     */
+    @Override
+    public User findUser(String userId) {
+        return users.get(userId);
+    }
+
+    /**
+     * Взять книгу.
+     * @param userId Id пользователя.
+     * @param isbn Международный стандартный книжный номер.
+     * @return результат взятия книги.
+     */
+    @Override
+    public boolean borrowBook(String userId, String isbn) {
+        User user = users.get(userId);
+        int slot = catalog.slotOf(isbn);
+
+        if (user == null || slot < 0) return false;
+        if (!catalog.isAvailable(slot)) return false;
+        if (!user.canBorrow()) return false;
+
+        catalog.setAvailable(slot, false);
+        Book book = catalog.book(slot);
+        user.getBorrowedBooks().add(book);
+        loans.open(new BorrowingRecord(user, book, LocalDate.now(clock)));
+
+        return true;
+    }
+
+    /**
+     * Возврат книги.
+     * @param userId Id пользователя.
+     * @param isbn Международный стандартный книжный номер.
+     * @return результат возврата книги.
+     */
+    @Override
+    public boolean returnBook(String userId, String isbn) {
+        User user = users.get(userId);
+        int slot = catalog.slotOf(isbn);
+
+        if (user == null || slot < 0) return false;
+        BorrowingRecord loan = loans.find(userId, isbn);
+        if (loan == null) return false;
+
+        user.getBorrowedBooks().remove(loan.getBook());
+        loan.getBook().setAvailable(true);
+        catalog.setAvailable(slot, true);
+        loans.close(userId, isbn, LocalDate.now(clock));
+
+        return true;
+    }
+
+    /**
+     * Взять несколько книг сразу по принципу «всё или ничего».
+     * @param userId Id пользователя.
+     * @param isbns  Международные стандартные книжные номера.
+     * @return результат по каждой книге в порядке запроса.
+     */
+    @Override
+    public List<LoanResult> borrowBooks(String userId, List<String> isbns) {
+        User user = users.get(userId);
+        List<LoanResult> results = new ArrayList<>(isbns.size());
+        if (user == null) {
+            for (String isbn : isbns) {
+                results.add(new LoanResult(isbn, LoanStatus.USER_NOT_FOUND));
+            }
+            return results;
+        }
+
+        int[] batch = new int[isbns.size()];
+        int batchSize = 0;
+        Set<String> seen = new HashSet<>();
+        int remaining = user.getMaxBooks() - user.getBorrowedBooks().size();
+        boolean rejected = false;
+        for (String isbn : isbns) {
+            int slot = catalog.slotOf(isbn);
+            LoanStatus status;
+            if (slot < 0) {
+                status = LoanStatus.BOOK_NOT_FOUND;
+            } else if (!seen.add(isbn)) {
+                status = LoanStatus.DUPLICATE;
+            } else if (!catalog.isAvailable(slot)) {
+                status = LoanStatus.NOT_AVAILABLE;
+            } else if (batchSize >= remaining) {
+                status = LoanStatus.LIMIT_REACHED;
+            } else {
+                status = LoanStatus.OK;
+                batch[batchSize++] = slot;
+            }
+            rejected |= status != LoanStatus.OK;
+            results.add(new LoanResult(isbn, status));
+        }
+
+        if (rejected) {
+            results.replaceAll(result -> result.isOk() ? new LoanResult(result.isbn(), LoanStatus.SKIPPED) : result);
+            return results;
+        }
+
+        LocalDate today = LocalDate.now(clock);
+        for (int i = 0; i < batchSize; i++) {
+            catalog.setAvailable(batch[i], false);
+            Book book = catalog.book(batch[i]);
+            user.getBorrowedBooks().add(book);
+            loans.open(new BorrowingRecord(user, book, today));
+        }
+        return results;
+    }
+
+    /**
+     * Вернуть несколько книг сразу.
+     * @param userId Id пользователя.
+     * @param isbns  Международные стандартные книжные номера.
+     * @return результат по каждой книге в порядке запроса.
+     */
+    @Override
+    public List<LoanResult> returnBooks(String userId, List<String> isbns) {
+        List<LoanResult> results = new ArrayList<>(isbns.size());
+        for (String isbn : isbns) {
+            LoanStatus status;
+            if (users.get(userId) == null) {
+                status = LoanStatus.USER_NOT_FOUND;
+            } else if (catalog.slotOf(isbn) < 0) {
+                status = LoanStatus.BOOK_NOT_FOUND;
+            } else {
+                status = returnBook(userId, isbn) ? LoanStatus.OK : LoanStatus.NOT_BORROWED;
+            }
+            results.add(new LoanResult(isbn, status));
+        }
+        return results;
+    }
+
+    /**
+     * Какие книги просрочены.
+     *
+     * @return список просроченных книг.
+     */
+    @Override
+    public List<BorrowingRecord> getOverdueBooks() {
+        // тот же критерий, что и в BorrowingRecord.isOverdue
+        return loans.getDueDateIndex().dueBefore(LocalDate.now(clock));
+    }
+}
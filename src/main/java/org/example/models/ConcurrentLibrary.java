@@ -0,0 +1,473 @@
+package org.example.models;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Потокобезопасная реализация операций с книгами.
+ * <p>
+ * Экземпляр книги занимается атомарным CAS по счётчику экземпляров на полке, так что книгу с
+ * n экземплярами без блокировок получают не больше n читателей. Лимит {@link User#getMaxBooks()}
+ * проверяется и обновляется под монитором конкретного пользователя. Глобальных блокировок нет:
+ * выдачи разных книг разным пользователям не конкурируют между собой.
+ * <p>
+ * За занятой книгой можно встать в очередь ({@link #placeHold}); возвращённый экземпляр
+ * передаётся первому в очереди, кто может его взять, и на полку не попадает, так что ждущие
+ * не повторяют попытки выдачи.
+ */
+public class ConcurrentLibrary implements LibraryOperations {
+    private final Map<String, Book> books;      // ISBN -> Book
+    private final Map<String, User> users;      // UserID -> User
+    private final BookSearchIndex searchIndex;  // n-gram -> Books
+    private final RankedSearchIndex rankedIndex;  // word -> Books
+    private final AutocompleteIndex autocomplete;  // titles and authors
+
+    // активные выдачи и история возвратов
+    private final LoanLedger loans;
+    private final HoldQueue holds;
+
+    private final Clock clock;
+
+    public ConcurrentLibrary() {
+        this(Clock.systemDefaultZone());
+    }
+
+    /**
+     * @param clock Часы, по которым определяются даты выдачи и просрочки.
+     */
+    public ConcurrentLibrary(Clock clock) {
+        books = new ConcurrentHashMap<>();
+        users = new ConcurrentHashMap<>();
+        searchIndex = new BookSearchIndex();
+        rankedIndex = new RankedSearchIndex();
+        autocomplete = new AutocompleteIndex();
+        loans = new LoanLedger();
+        holds = new HoldQueue();
+        this.clock = clock;
+    }
+
+    public List<Book> showAllBooks() {
+        return new ArrayList<>(books.values());
+    }
+
+    public List<User> showAllUsers() {
+        return new ArrayList<>(users.values());
+    }
+
+    /**
+     * Все книги без копирования каталога. Поток слабо согласован: изменения во время обхода
+     * могут как попасть в него, так и нет.
+     * @return ленивый поток книг в произвольном порядке.
+     */
+    public Stream<Book> streamBooks() {
+        return books.values().stream();
+    }
+
+    /**
+     * Все пользователи без копирования, слабо согласованно.
+     * @return ленивый поток пользователей в произвольном порядке.
+     */
+    public Stream<User> streamUsers() {
+        return users.values().stream();
+    }
+
+    /**
+     * Книги, находящиеся сейчас на руках.
+     * @return активные выдачи.
+     */
+    public Collection<BorrowingRecord> getActiveLoans() {
+        return loans.getActiveLoans();
+    }
+
+    /**
+     * История возвращённых книг.
+     * @return завершённые выдачи в порядке возврата.
+     */
+    public Collection<BorrowingRecord> getBorrowingHistory() {
+        return loans.getHistory();
+    }
+
+    /**
+     * Штрафы за просрочку.
+     * @return начисление и долги пользователей.
+     */
+    public FineEngine getFines() {
+        return loans.getFines();
+    }
+
+    /**
+     * Добавление книги в библиотеку. Повторный ISBN добавляет ещё один экземпляр, как и в {@link Library}.
+     * @param title  Название.
+     * @param author Автор.
+     * @param isbn   Международный стандартный книжный номер.
+     * @param genre  Жанр.
+     */
+    @Override
+    public void addBook(String title, String author, String isbn, String genre) {
+        Book book = new Book(title, author, isbn, genre);
+        Book existing = books.putIfAbsent(isbn, book);
+        if (existing != null) {
+            existing.addCopy();
+        } else {
+            searchIndex.add(book);
+            rankedIndex.add(book);
+            autocomplete.add(book);
+        }
+    }
+
+    /**
+     * Удаление книги.
+     * @param isbn Международный стандартный книжный номер.
+     * @return удалось ли удалить книгу.
+     */
+    @Override
+    public boolean removeBook(String isbn) {
+        Book book = books.remove(isbn);
+        if (book == null) {
+            return false;
+        }
+        holds.clear(isbn);
+        searchIndex.remove(book);
+        rankedIndex.remove(book);
+        autocomplete.remove(book);
+        return true;
+    }
+
+    /**
+     * Поиск книги.
+     * @param isbn Международный стандартный книжный номер
+     * @return удалось ли найти.
+     */
+    @Override
+    public Book findBook(String isbn) {
+        return books.get(isbn);
+    }
+
+    /**
+     * Фильтрация по книгам.
+     * @param query Параметры поиска.
+     * @return результат поиска.
+     */
+    @Override
+    public List<Book> searchBooks(String query) {
+        return searchIndex.search(query);
+    }
+
+    /**
+     * Поиск по релевантности.
+     * @param query Слова запроса.
+     * @param limit Сколько книг вернуть.
+     * @return книги, содержащие все слова запроса, по убыванию релевантности.
+     */
+    @Override
+    public List<Book> searchBooks(String query, int limit) {
+        return rankedIndex.search(query, limit);
+    }
+
+    /**
+     * Автодополнение названия или автора с исправлением опечаток.
+     * @param prefix Набранное начало.
+     * @param limit  Сколько подсказок вернуть.
+     * @return подсказки, лучшие первыми.
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        return autocomplete.suggest(prefix, limit);
+    }
+
+    /**
+     * Регистрация пользователя.
+     * @param name   Имя.
+     * @param userId Id.
+     * @param email  Почта.
+     * @param type   Тип пользователя
+     */
+    @Override
+    public void registerUser(String name, String userId, String email, UserType type) {
+        users.computeIfAbsent(userId, id -> switch (type) {
+            case STUDENT -> new Student(name, id, email);
+            case GUEST -> new Guest(name, id, email);
+            case FACULTY -> new Faculty(name, id, email);
+        });
+    }
+
+    /**
+     * Поиск пользователя.
+     * @param userId Id пользователя.
+     * @return Найденный пользователь
+     */
+    @Override
+    public User findUser(String userId) {
+        return users.get(userId);
+    }
+
+    /**
+     * Взять книгу.
+     * @param userId Id пользователя.
+     * @param isbn Международный стандартный книжный номер.
+     * @return результат взятия книги.
+     */
+    @Override
+    public boolean borrowBook(String userId, String isbn) {
+        return tryBorrowBook(userId, isbn) == LoanStatus.OK;
+    }
+
+    @Override
+    public LoanStatus tryBorrowBook(String userId, String isbn) {
+        User user = users.get(userId);
+        Book book = books.get(isbn);
+
+        if (user == null) return LoanStatus.USER_NOT_FOUND;
+        if (book == null) return LoanStatus.BOOK_NOT_FOUND;
+        // та же очерёдность причин, что и в Library; окончательно книгу занимает CAS ниже
+        if (!book.isAvailable()) return LoanStatus.NOT_AVAILABLE;
+
+        synchronized (user) {
+            if (loans.find(userId, isbn) != null) return LoanStatus.DUPLICATE;
+            if (!user.canBorrow()) return LoanStatus.LIMIT_REACHED;
+            // экземпляр получает только тот, чей CAS уменьшил счётчик на полке
+            if (!book.tryTake()) return LoanStatus.NOT_AVAILABLE;
+
+            user.getBorrowedBooks().add(book);
+            loans.open(new BorrowingRecord(user, book, LocalDate.now(clock)));
+        }
+        holds.cancel(isbn, userId);
+        return LoanStatus.OK;
+    }
+
+    /**
+     * Возврат книги.
+     * @param userId Id пользователя.
+     * @param isbn Международный стандартный книжный номер.
+     * @return результат возврата книги.
+     */
+    @Override
+    public boolean returnBook(String userId, String isbn) {
+        return tryReturnBook(userId, isbn) == LoanStatus.OK;
+    }
+
+    @Override
+    public LoanStatus tryReturnBook(String userId, String isbn) {
+        User user = users.get(userId);
+        Book book = books.get(isbn);
+
+        if (user == null) return LoanStatus.USER_NOT_FOUND;
+        if (book == null) return LoanStatus.BOOK_NOT_FOUND;
+
+        synchronized (user) {
+            if (loans.find(userId, isbn) == null) return LoanStatus.NOT_BORROWED;
+
+            user.getBorrowedBooks().remove(book);
+            loans.close(userId, isbn, LocalDate.now(clock));
+        }
+        // передаём экземпляр уже без монитора возвращающего, чтобы не держать два монитора сразу
+        handOff(book);
+        return LoanStatus.OK;
+    }
+
+    /**
+     * Передача экземпляра первому подходящему из очереди или возврат на полку, если некому.
+     * Экземпляр освобождается последним, когда запись о прошлой выдаче уже снята.
+     */
+    private void handOff(Book book) {
+        LocalDate today = LocalDate.now(clock);
+        User next = holds.serve(book.getIsbn(), candidate -> {
+            synchronized (candidate) {
+                if (!candidate.canBorrow() || loans.find(candidate.getUserId(), book.getIsbn()) != null) {
+                    return false;
+                }
+                candidate.getBorrowedBooks().add(book);
+                loans.open(new BorrowingRecord(candidate, book, today));
+                return true;
+            }
+        });
+        if (next == null) {
+            book.release();
+        }
+    }
+
+    /**
+     * Постановка в очередь за книгой. Если свободный экземпляр есть, книга выдаётся сразу.
+     * @param userId Id пользователя.
+     * @param isbn   Международный стандартный книжный номер.
+     * @return {@link LoanStatus#QUEUED}, {@link LoanStatus#OK}, если книга выдана, или причина отказа.
+     */
+    public LoanStatus placeHold(String userId, String isbn) {
+        User user = users.get(userId);
+        Book book = books.get(isbn);
+
+        if (user == null) return LoanStatus.USER_NOT_FOUND;
+        if (book == null) return LoanStatus.BOOK_NOT_FOUND;
+        if (book.isAvailable()) {
+            LoanStatus status = tryBorrowBook(userId, isbn);
+            if (status != LoanStatus.NOT_AVAILABLE) {
+                return status;
+            }
+        }
+        if (loans.find(userId, isbn) != null || !holds.place(isbn, user)) return LoanStatus.DUPLICATE;
+
+        // экземпляр мог вернуться на полку между проверкой и постановкой в очередь:
+        // тогда забираем его и отдаём очереди по порядку
+        if (book.tryTake()) {
+            handOff(book);
+        }
+        return loans.find(userId, isbn) != null ? LoanStatus.OK : LoanStatus.QUEUED;
+    }
+
+    /**
+     * Отмена заявки в очереди.
+     * @param userId Id пользователя.
+     * @param isbn   Международный стандартный книжный номер.
+     * @return была ли заявка.
+     */
+    public boolean cancelHold(String userId, String isbn) {
+        return holds.cancel(isbn, userId);
+    }
+
+    /**
+     * Очередь за книгой.
+     * @param isbn Международный стандартный книжный номер.
+     * @return пользователи в порядке очереди.
+     */
+    public List<User> getHolds(String isbn) {
+        return holds.waiting(isbn);
+    }
+
+    /**
+     * Взять несколько книг сразу по принципу «всё или ничего».
+     * Пакет проверяется и выдаётся за одно взятие монитора пользователя; если книгу из пакета
+     * успел занять другой поток, уже занятые книги пакета освобождаются.
+     * @param userId Id пользователя.
+     * @param isbns  Международные стандартные книжные номера.
+     * @return результат по каждой книге в порядке запроса.
+     */
+    @Override
+    public List<LoanResult> borrowBooks(String userId, List<String> isbns) {
+        User user = users.get(userId);
+        List<LoanResult> results = new ArrayList<>(isbns.size());
+        if (user == null) {
+            for (String isbn : isbns) {
+                results.add(new LoanResult(isbn, LoanStatus.USER_NOT_FOUND));
+            }
+            return results;
+        }
+
+        List<Book> batch = new ArrayList<>(isbns.size());
+        Set<String> seen = new HashSet<>();
+        synchronized (user) {
+            int remaining = user.getMaxBooks() - user.getBorrowedBooks().size();
+            boolean rejected = false;
+            for (String isbn : isbns) {
+                Book book = books.get(isbn);
+                LoanStatus status;
+                if (book == null) {
+                    status = LoanStatus.BOOK_NOT_FOUND;
+                } else if (!seen.add(isbn)) {
+                    status = LoanStatus.DUPLICATE;
+                } else if (!book.isAvailable()) {
+                    status = LoanStatus.NOT_AVAILABLE;
+                } else if (loans.find(userId, isbn) != null) {
+                    status = LoanStatus.DUPLICATE;
+                } else if (batch.size() >= remaining) {
+                    status = LoanStatus.LIMIT_REACHED;
+                } else if (!book.tryTake()) {
+                    // последний экземпляр только что занял другой поток
+                    status = LoanStatus.NOT_AVAILABLE;
+                } else {
+                    status = LoanStatus.OK;
+                    batch.add(book);
+                }
+                rejected |= status != LoanStatus.OK;
+                results.add(new LoanResult(isbn, status));
+            }
+
+            if (rejected) {
+                for (Book book : batch) {
+                    book.release();
+                }
+                results.replaceAll(result -> result.isOk() ? new LoanResult(result.isbn(), LoanStatus.SKIPPED) : result);
+                return results;
+            }
+
+            LocalDate today = LocalDate.now(clock);
+            for (Book book : batch) {
+                user.getBorrowedBooks().add(book);
+                loans.open(new BorrowingRecord(user, book, today));
+            }
+        }
+        for (Book book : batch) {
+            holds.cancel(book.getIsbn(), userId);
+        }
+        return results;
+    }
+
+    /**
+     * Вернуть несколько книг сразу за одно взятие монитора пользователя.
+     * @param userId Id пользователя.
+     * @param isbns  Международные стандартные книжные номера.
+     * @return результат по каждой книге в порядке запроса.
+     */
+    @Override
+    public List<LoanResult> returnBooks(String userId, List<String> isbns) {
+        User user = users.get(userId);
+        List<LoanResult> results = new ArrayList<>(isbns.size());
+        if (user == null) {
+            for (String isbn : isbns) {
+                results.add(new LoanResult(isbn, LoanStatus.USER_NOT_FOUND));
+            }
+            return results;
+        }
+
+        LocalDate today = LocalDate.now(clock);
+        List<Book> returned = new ArrayList<>(isbns.size());
+        synchronized (user) {
+            for (String isbn : isbns) {
+                Book book = books.get(isbn);
+                LoanStatus status;
+                if (book == null) {
+                    status = LoanStatus.BOOK_NOT_FOUND;
+                } else if (loans.find(userId, isbn) == null) {
+                    status = LoanStatus.NOT_BORROWED;
+                } else {
+                    user.getBorrowedBooks().remove(book);
+                    loans.close(userId, isbn, today);
+                    returned.add(book);
+                    status = LoanStatus.OK;
+                }
+                results.add(new LoanResult(isbn, status));
+            }
+        }
+        for (Book book : returned) {
+            handOff(book);
+        }
+        return results;
+    }
+
+    /**
+     * Какие книги просрочены.
+     *
+     * @return список просроченных книг.
+     */
+    @Override
+    public List<BorrowingRecord> getOverdueBooks() {
+        // тот же критерий, что и в BorrowingRecord.isOverdue: затрагиваются только корзины до сегодняшнего дня
+        return loans.getDueDateIndex().dueBefore(LocalDate.now(clock));
+    }
+
+    /**
+     * Книги, которые нужно вернуть в ближайшие дни.
+     * @param days Количество дней, начиная с сегодняшнего.
+     * @return список выдач со сроком возврата от сегодня до сегодня + days включительно.
+     */
+    public List<BorrowingRecord> getBooksDueWithin(int days) {
+        LocalDate today = LocalDate.now(clock);
+        return loans.getDueDateIndex().dueBetween(today, today.plusDays(days));
+    }
+}
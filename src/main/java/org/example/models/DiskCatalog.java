@@ -0,0 +1,557 @@
+package org.example.models;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Каталог книг на диске: в памяти не держится ни книг, ни их ключей.
+ * <p>
+ * {@code books.dat} — записи книг, которые только дописываются в конец:
+ * <pre>
+ * [длина записи: 4][удалена: 1][всего экземпляров: 4][на полке: 4][ISBN][название][автор][жанр]
+ * </pre>
+ * строки — длина в байтах (4 байта, -1 для null) и UTF-8. Меняются на месте только признак удаления
+ * и счётчики экземпляров, поэтому смещение записи постоянно и служит её адресом.
+ * <p>
+ * {@code books.idx} — отображённая в память хеш-таблица с открытой адресацией: ячейка из смещения
+ * записи (0 — пусто, -1 — удалено) и хеша ISBN. Совпадение хеша проверяется чтением ISBN из записи.
+ * Таблица растёт вдвое при заполнении наполовину; при росте хеши берутся из ячеек, без чтения записей.
+ * Индекс помечается чистым только при {@link #close()}; если файл закрыт не был или индекса нет,
+ * он перестраивается проходом по {@code books.dat}.
+ * <p>
+ * Повторная книга с удалённым ранее ISBN дописывается новой записью. Класс не потокобезопасен.
+ */
+public class DiskCatalog implements Closeable {
+
+    static final String DATA_FILE = "books.dat";
+    static final String INDEX_FILE = "books.idx";
+
+    private static final int DATA_MAGIC = 0x4C494244;   // "LIBD"
+    private static final int INDEX_MAGIC = 0x4C494249;  // "LIBI"
+    private static final int DATA_HEADER = 8;           // магия + версия
+    private static final int INDEX_HEADER = 32;         // магия, ёмкость, занято, книг, конец данных, чистый
+    private static final int SLOT = 12;                 // смещение + хеш
+    private static final int RECORD_HEADER = 13;
+    private static final int COPIES_OFFSET = 5;
+    private static final long EMPTY = 0;
+    private static final long DELETED = -1;
+    private static final int MIN_CAPACITY = 1024;
+    private static final int READ_AHEAD = 256;
+
+    private final Path directory;
+    private final FileChannel data;
+    private long dataEnd;
+
+    private FileChannel indexChannel;
+    private MappedByteBuffer index;
+    private int capacity;
+    private int used;   // занятых и удалённых ячеек
+    private int size;   // книг в каталоге
+
+    private DiskCatalog(Path directory, FileChannel data) {
+        this.directory = directory;
+        this.data = data;
+    }
+
+    /**
+     * Открытие каталога; файлы создаются, если их нет.
+     * @param directory Каталог с файлами данных и индекса.
+     * @return открытый каталог.
+     * @throws IOException при ошибке ввода-вывода или повреждённом файле данных.
+     */
+    public static DiskCatalog open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        FileChannel data = FileChannel.open(directory.resolve(DATA_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        DiskCatalog catalog = new DiskCatalog(directory, data);
+        try {
+            catalog.init();
+        } catch (IOException | RuntimeException e) {
+            catalog.close();
+            throw e;
+        }
+        return catalog;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Размер файла данных.
+     * @return байт.
+     */
+    public long dataBytes() {
+        return dataEnd;
+    }
+
+    /**
+     * Добавление книги с одним экземпляром.
+     * @return смещение записи или -1, если книга с таким ISBN уже есть.
+     */
+    public long add(String title, String author, String isbn, String genre) {
+        byte[] isbnBytes = isbn.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(isbnBytes);
+        if (position(isbnBytes, hash) >= 0) {
+            return -1;
+        }
+        if ((used + 1) * 2 > capacity) {
+            // при большом числе живых записей таблица растёт, иначе только очищается от удалённых
+            rehash(size + 1 > capacity / 4 ? capacity * 2 : capacity);
+        }
+
+        byte[][] strings = {isbnBytes, bytes(title), bytes(author), bytes(genre)};
+        int length = RECORD_HEADER;
+        for (byte[] value : strings) {
+            length += 4 + (value == null ? 0 : value.length);
+        }
+        ByteBuffer record = ByteBuffer.allocate(length);
+        record.putInt(length).put((byte) 0).putInt(1).putInt(1);
+        for (byte[] value : strings) {
+            if (value == null) {
+                record.putInt(-1);
+            } else {
+                record.putInt(value.length).put(value);
+            }
+        }
+        long offset = dataEnd;
+        write(record.flip(), offset);
+        dataEnd += length;
+
+        insert(hash, offset);
+        size++;
+        return offset;
+    }
+
+    /**
+     * Удаление книги.
+     * @return смещение удалённой записи или -1, если книги нет.
+     */
+    public long remove(String isbn) {
+        byte[] isbnBytes = isbn.getBytes(StandardCharsets.UTF_8);
+        int position = position(isbnBytes, hash(isbnBytes));
+        if (position < 0) {
+            return -1;
+        }
+        long offset = slotOffset(position);
+        index.putLong(slotAddress(position), DELETED);
+        write(ByteBuffer.wrap(new byte[]{1}), offset + 4);
+        size--;
+        return offset;
+    }
+
+    /**
+     * Смещение записи книги.
+     * @return смещение или -1, если книги нет.
+     */
+    public long offsetOf(String isbn) {
+        byte[] isbnBytes = isbn.getBytes(StandardCharsets.UTF_8);
+        int position = position(isbnBytes, hash(isbnBytes));
+        return position < 0 ? -1 : slotOffset(position);
+    }
+
+    /**
+     * Чтение книги.
+     * @param offset Смещение записи.
+     * @return новый объект книги со счётчиками экземпляров из записи.
+     */
+    public Book read(long offset) {
+        ByteBuffer record = readRecord(offset);
+        record.position(COPIES_OFFSET);
+        int copies = record.getInt();
+        int available = record.getInt();
+        String isbn = string(record);
+        String title = string(record);
+        String author = string(record);
+        String genre = string(record);
+        return new Book(title, author, isbn, genre, copies, available);
+    }
+
+    /**
+     * Запись счётчиков экземпляров книги на место.
+     * @param offset Смещение записи.
+     * @param book   Книга, прочитанная из этой записи.
+     */
+    public void writeCopies(long offset, Book book) {
+        ByteBuffer counters = ByteBuffer.allocate(8).putInt(book.getCopies()).putInt(book.getAvailableCopies());
+        write(counters.flip(), offset + COPIES_OFFSET);
+    }
+
+    /**
+     * Все книги каталога в порядке добавления последовательным чтением файла данных.
+     * Поток нужно закрыть; каталог нельзя изменять, пока поток не обработан.
+     * @return ленивый поток книг со счётчиками из записей.
+     */
+    public Stream<Book> stream() {
+        try {
+            RecordIterator records = records(dataEnd);
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(records, Spliterator.ORDERED), false)
+                    .onClose(records::close);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Сброс данных и индекса на диск.
+     * @throws IOException при ошибке ввода-вывода.
+     */
+    public void force() throws IOException {
+        data.force(false);
+        index.force();
+    }
+
+    /**
+     * Закрытие каталога с пометкой индекса как согласованного с файлом данных.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (index != null) {
+                writeCounts();
+                index.putLong(16, dataEnd).putInt(24, 1);
+                force();
+            }
+        } finally {
+            data.close();
+            if (indexChannel != null) {
+                indexChannel.close();
+            }
+        }
+    }
+
+    private void init() throws IOException {
+        dataEnd = data.size();
+        if (dataEnd == 0) {
+            write(ByteBuffer.allocate(DATA_HEADER).putInt(DATA_MAGIC).putInt(1).flip(), 0);
+            dataEnd = DATA_HEADER;
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(DATA_HEADER);
+            data.read(header, 0);
+            if (dataEnd < DATA_HEADER || header.getInt(0) != DATA_MAGIC) {
+                throw new IOException("Not a catalog data file: " + directory.resolve(DATA_FILE));
+            }
+        }
+
+        Path indexPath = directory.resolve(INDEX_FILE);
+        if (Files.exists(indexPath)) {
+            mapIndex(indexPath);
+            if (index.getInt(0) == INDEX_MAGIC && index.getInt(24) == 1 && index.getLong(16) == dataEnd) {
+                capacity = index.getInt(4);
+                used = index.getInt(8);
+                size = index.getInt(12);
+                markDirty();
+                index.force();
+                return;
+            }
+            indexChannel.close();
+        }
+        rebuild();
+    }
+
+    /**
+     * Построение индекса заново по файлу данных.
+     */
+    private void rebuild() throws IOException {
+        Path temp = directory.resolve(INDEX_FILE + ".tmp");
+        createIndex(temp, MIN_CAPACITY);
+        size = 0;
+        publishIndex(temp);
+        RecordIterator records = records(dataEnd);
+        try {
+            Iterator<long[]> offsets = records.offsets();
+            while (offsets.hasNext()) {
+                long[] record = offsets.next();
+                if ((used + 1) * 2 > capacity) {
+                    rehash(capacity * 2);
+                }
+                insert((int) record[1], record[0]);
+                size++;
+            }
+        } finally {
+            records.close();
+        }
+        // незавершённая последняя запись отбрасывается, следующая запишется на её место
+        dataEnd = records.position;
+        data.truncate(dataEnd);
+        writeCounts();
+        index.force();
+    }
+
+    private RecordIterator records(long end) throws IOException {
+        FileChannel channel = FileChannel.open(directory.resolve(DATA_FILE), StandardOpenOption.READ);
+        return new RecordIterator(Channels.newInputStream(channel.position(DATA_HEADER)), end);
+    }
+
+    private void rehash(int newCapacity) {
+        try {
+            MappedByteBuffer old = index;
+            int oldCapacity = capacity;
+            FileChannel oldChannel = indexChannel;
+            Path temp = directory.resolve(INDEX_FILE + ".tmp");
+            createIndex(temp, newCapacity);
+            for (int i = 0; i < oldCapacity; i++) {
+                long offset = old.getLong(INDEX_HEADER + i * SLOT);
+                if (offset != EMPTY && offset != DELETED) {
+                    insert(old.getInt(INDEX_HEADER + i * SLOT + 8), offset);
+                }
+            }
+            oldChannel.close();
+            publishIndex(temp);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void createIndex(Path path, int newCapacity) throws IOException {
+        Files.deleteIfExists(path);
+        indexChannel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long bytes = INDEX_HEADER + (long) newCapacity * SLOT;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Catalog index exceeds 2 GB");
+        }
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        index.putInt(0, INDEX_MAGIC).putInt(4, newCapacity);
+        capacity = newCapacity;
+        used = 0;
+    }
+
+    private void publishIndex(Path temp) throws IOException {
+        writeCounts();
+        markDirty();
+        index.force();
+        // отображение остаётся действительным и после переименования файла
+        Files.move(temp, directory.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void writeCounts() {
+        index.putInt(8, used).putInt(12, size);
+    }
+
+    private void markDirty() {
+        index.putInt(24, 0);
+    }
+
+    private void mapIndex(Path path) throws IOException {
+        indexChannel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long bytes = indexChannel.size();
+        if (bytes < INDEX_HEADER || bytes > Integer.MAX_VALUE) {
+            bytes = INDEX_HEADER;  // заголовок не совпадёт, индекс будет перестроен
+        }
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        if (bytes != INDEX_HEADER + (long) index.getInt(4) * SLOT) {
+            index.putInt(24, 0);
+        }
+    }
+
+    private int position(byte[] isbnBytes, int hash) {
+        int mask = capacity - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            long offset = slotOffset(i);
+            if (offset == EMPTY) {
+                return -1;
+            }
+            if (offset != DELETED && index.getInt(slotAddress(i) + 8) == hash && isbnEquals(offset, isbnBytes)) {
+                return i;
+            }
+        }
+    }
+
+    private void insert(int hash, long offset) {
+        int mask = capacity - 1;
+        int i = hash & mask;
+        while (slotOffset(i) != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        index.putLong(slotAddress(i), offset).putInt(slotAddress(i) + 8, hash);
+        used++;
+    }
+
+    private long slotOffset(int position) {
+        return index.getLong(slotAddress(position));
+    }
+
+    private static int slotAddress(int position) {
+        return INDEX_HEADER + position * SLOT;
+    }
+
+    private boolean isbnEquals(long offset, byte[] isbnBytes) {
+        ByteBuffer head = ByteBuffer.allocate(RECORD_HEADER + 4 + isbnBytes.length);
+        read(head, offset);
+        head.position(RECORD_HEADER);
+        if (head.getInt() != isbnBytes.length) {
+            return false;
+        }
+        return Arrays.equals(head.array(), RECORD_HEADER + 4, head.capacity(), isbnBytes, 0, isbnBytes.length);
+    }
+
+    private ByteBuffer readRecord(long offset) {
+        ByteBuffer record = ByteBuffer.allocate(READ_AHEAD);
+        read(record.limit((int) Math.min(READ_AHEAD, dataEnd - offset)), offset);
+        int length = record.getInt(0);
+        if (length > record.limit()) {
+            ByteBuffer whole = ByteBuffer.allocate(length);
+            whole.put(record.flip());
+            read(whole, offset);
+            record = whole;
+        }
+        return record.clear().limit(length);
+    }
+
+    private void read(ByteBuffer buffer, long offset) {
+        try {
+            while (buffer.hasRemaining()) {
+                if (data.read(buffer, offset + buffer.position()) < 0) {
+                    throw new IOException("Truncated catalog record at " + offset);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(ByteBuffer buffer, long offset) {
+        try {
+            while (buffer.hasRemaining()) {
+                data.write(buffer, offset + buffer.position());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String string(ByteBuffer record) {
+        int length = record.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(record.array(), record.position(), length, StandardCharsets.UTF_8);
+        record.position(record.position() + length);
+        return value;
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int hash(byte[] bytes) {
+        int h = Arrays.hashCode(bytes);
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Последовательное чтение живых записей файла данных.
+     */
+    private static final class RecordIterator implements Iterator<Book> {
+        private final DataInputStream in;
+        private final long end;
+        private long position = DATA_HEADER;
+        private long offset;
+        private byte[] record = new byte[READ_AHEAD];
+        private int length;
+
+        RecordIterator(InputStream in, long end) {
+            this.in = new DataInputStream(new BufferedInputStream(in, 1 << 20));
+            this.end = end;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (length == 0 && position < end) {
+                    int recordLength = in.readInt();
+                    if (recordLength < RECORD_HEADER || recordLength > end - position) {
+                        // хвост незавершённой записи после сбоя
+                        return false;
+                    }
+                    if (record.length < recordLength) {
+                        record = new byte[Math.max(recordLength, record.length * 2)];
+                    }
+                    in.readFully(record, 4, recordLength - 4);
+                    offset = position;
+                    position += recordLength;
+                    if (record[4] == 0) {
+                        length = recordLength;
+                    }
+                }
+                return length > 0;
+            } catch (EOFException e) {
+                return false;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public Book next() {
+            ByteBuffer buffer = current();
+            int copies = buffer.getInt();
+            int available = buffer.getInt();
+            String isbn = string(buffer);
+            String title = string(buffer);
+            String author = string(buffer);
+            String genre = string(buffer);
+            return new Book(title, author, isbn, genre, copies, available);
+        }
+
+        /**
+         * Вместо книг — пары [смещение, хеш ISBN].
+         */
+        Iterator<long[]> offsets() {
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return RecordIterator.this.hasNext();
+                }
+
+                @Override
+                public long[] next() {
+                    ByteBuffer buffer = current();
+                    int isbnLength = buffer.position(RECORD_HEADER).getInt();
+                    byte[] isbn = Arrays.copyOfRange(record, RECORD_HEADER + 4, RECORD_HEADER + 4 + isbnLength);
+                    return new long[]{offset, hash(isbn)};
+                }
+            };
+        }
+
+        void close() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private ByteBuffer current() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(record, 0, length).position(COPIES_OFFSET);
+            length = 0;
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package org.example.models;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Реализация операций с книгами, в которой каталог хранится на диске ({@link DiskCatalog}),
+ * а в памяти — только ограниченный {@link BookCache}. Объём кучи под книги задаётся размером кэша
+ * и не зависит от размера каталога.
+ * <p>
+ * {@link #findBook}, {@link #borrowBook} и {@link #returnBook} работают через кэш; изменения
+ * числа экземпляров на полке пишутся на диск при вытеснении из кэша, {@link #flush()} и {@link #close()}.
+ * Книга, выданная пользователю, остаётся в его списке тем же объектом до возврата, даже если
+ * вытеснена из кэша; актуальные счётчики экземпляров — у объекта из {@link #findBook}.
+ * Поиск и полный просмотр читают файл данных последовательно, предварительно сбросив кэш.
+ * <p>
+ * Пользователи и выдачи хранятся в памяти и между запусками не сохраняются. Класс не потокобезопасен.
+ */
+public class DiskLibrary implements LibraryOperations, Closeable {
+    private final DiskCatalog catalog;
+    private final BookCache cache;
+    private final Map<String, User> users;      // UserID -> User
+    private final LoanLedger loans;
+    private final Clock clock;
+
+    /**
+     * @param catalog       Каталог на диске.
+     * @param cacheCapacity Наибольшее число книг в памяти.
+     */
+    public DiskLibrary(DiskCatalog catalog, int cacheCapacity) {
+        this(catalog, cacheCapacity, Clock.systemDefaultZone());
+    }
+
+    /**
+     * @param catalog       Каталог на диске.
+     * @param cacheCapacity Наибольшее число книг в памяти.
+     * @param clock         Часы, по которым определяются даты выдачи и просрочки.
+     */
+    public DiskLibrary(DiskCatalog catalog, int cacheCapacity, Clock clock) {
+        this.catalog = catalog;
+        this.cache = new BookCache(catalog, cacheCapacity);
+        this.users = new HashMap<>();
+        this.loans = new LoanLedger();
+        this.clock = clock;
+    }
+
+    public DiskCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Статистика кэша книг.
+     * @return попадания, промахи, вытеснения и записи на диск.
+     */
+    public CacheStats getCacheStats() {
+        return cache.getStats();
+    }
+
+    public List<Book> showAllBooks() {
+        try (Stream<Book> books = streamBooks()) {
+            return books.collect(Collectors.toList());
+        }
+    }
+
+    public List<User> showAllUsers() {
+        return new ArrayList<>(users.values());
+    }
+
+    /**
+     * Все книги последовательным чтением каталога. Поток нужно закрыть.
+     * @return ленивый поток книг в порядке добавления.
+     */
+    public Stream<Book> streamBooks() {
+        cache.flush();
+        return catalog.stream();
+    }
+
+    public Stream<User> streamUsers() {
+        return users.values().stream();
+    }
+
+    /**
+     * Штрафы за просрочку.
+     * @return начисление и долги пользователей.
+     */
+    public FineEngine getFines() {
+        return loans.getFines();
+    }
+
+    /**
+     * Добавление книги в библиотеку. Повторный ISBN добавляет ещё один экземпляр, а название,
+     * автор и жанр остаются от первого.
+     * @param title  Название.
+     * @param author Автор.
+     * @param isbn   Международный стандартный книжный номер.
+     * @param genre  Жанр.
+     */
+    @Override
+    public void addBook(String title, String author, String isbn, String genre) {
+        if (catalog.add(title, author, isbn, genre) < 0) {
+            cache.get(isbn).addCopy();
+            cache.markDirty(isbn);
+        }
+    }
+
+    /**
+     * Удаление книги.
+     * @param isbn Международный стандартный книжный номер.
+     * @return удалось ли удалить книгу.
+     */
+    @Override
+    public boolean removeBook(String isbn) {
+        if (catalog.remove(isbn) < 0) {
+            return false;
+        }
+        cache.invalidate(isbn);
+        return true;
+    }
+
+    /**
+     * Поиск книги.
+     * @param isbn Международный стандартный книжный номер
+     * @return удалось ли найти.
+     */
+    @Override
+    public Book findBook(String isbn) {
+        return cache.get(isbn);
+    }
+
+    /**
+     * Фильтрация по книгам.
+     * @param query Параметры поиска.
+     * @return результат поиска.
+     */
+    @Override
+    public List<Book> searchBooks(String query) {
+        if (query == null || query.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        String searchTerm = query.trim().toLowerCase();
+        try (Stream<Book> books = streamBooks()) {
+            return books.filter(book -> contains(book.getTitle(), searchTerm)
+                            || contains(book.getAuthor(), searchTerm)
+                            || contains(book.getGenre(), searchTerm))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static boolean contains(String value, String searchTerm) {
+        return value != null && value.toLowerCase().contains(searchTerm);
+    }
+
+    /**
+     * Регистрация пользователя.
+     * @param name   Имя.
+     * @param userId Id.
+     * @param email  Почта.
+     * @param type   Тип пользователя
+     */
+    @Override
+    public void registerUser(String name, String userId, String email, UserType type) {
+        // будем игнорировать дубликаты
+        if (!users.containsKey(userId)) {
+            switch (type) {
+                case STUDENT -> users.put(userId, new Student(name, userId, email));
+                case GUEST -> users.put(userId, new Guest(name, userId, email));
+                case FACULTY -> users.put(userId, new Faculty(name, userId, email));
+            }
+        }
+    }
+
+    /**
+     * Поиск пользователя.
+     * @param userId Id пользователя.
+     * @return Найденный пользователь
+     */
+    @Override
+    public User findUser(String userId) {
+        return users.get(userId);
+    }
+
+    /**
+     * Взять книгу.
+     * @param userId Id пользователя.
+     * @param isbn Международный стандартный книжный номер.
+     * @return результат взятия книги.
+     */
+    @Override
+    public boolean borrowBook(String userId, String isbn) {
+        return tryBorrowBook(userId, isbn) == LoanStatus.OK;
+    }
+
+    @Override
+    public LoanStatus tryBorrowBook(String userId, String isbn) {
+        User user = users.get(userId);
+        if (user == null) return LoanStatus.USER_NOT_FOUND;
+        Book book = cache.get(isbn);
+
+        if (book == null) return LoanStatus.BOOK_NOT_FOUND;
+        if (!book.isAvailable()) return LoanStatus.NOT_AVAILABLE;
+        if (loans.find(userId, isbn) != null) return LoanStatus.DUPLICATE;
+        if (!user.canBorrow()) return LoanStatus.LIMIT_REACHED;
+
+        lend(user, book, LocalDate.now(clock));
+
+        return LoanStatus.OK;
+    }
+
+    private void lend(User user, Book book, LocalDate borrowDate) {
+        book.tryTake();
+        cache.markDirty(book.getIsbn());
+        user.getBorrowedBooks().add(book);
+        loans.open(new BorrowingRecord(user, book, borrowDate));
+    }
+
+    /**
+     * Возврат книги.
+     * @param userId Id пользователя.
+     * @param isbn Международный стандартный книжный номер.
+     * @return результат возврата книги.
+     */
+    @Override
+    public boolean returnBook(String userId, String isbn) {
+        return tryReturnBook(userId, isbn) == LoanStatus.OK;
+    }
+
+    @Override
+    public LoanStatus tryReturnBook(String userId, String isbn) {
+        User user = users.get(userId);
+        if (user == null) return LoanStatus.USER_NOT_FOUND;
+        Book book = cache.get(isbn);
+
+        if (book == null) return LoanStatus.BOOK_NOT_FOUND;
+        BorrowingRecord loan = loans.find(userId, isbn);
+        if (loan == null) return LoanStatus.NOT_BORROWED;
+
+        // в списке пользователя может быть объект, уже вытесненный из кэша
+        user.getBorrowedBooks().remove(loan.getBook());
+        book.release();
+        cache.markDirty(isbn);
+        loans.close(userId, isbn, LocalDate.now(clock));
+
+        return LoanStatus.OK;
+    }
+
+    /**
+     * Взять несколько книг сразу по принципу «всё или ничего».
+     * @param userId Id пользователя.
+     * @param isbns  Международные стандартные книжные номера.
+     * @return результат по каждой книге в порядке запроса.
+     */
+    @Override
+    public List<LoanResult> borrowBooks(String userId, List<String> isbns) {
+        User user = users.get(userId);
+        List<LoanResult> results = new ArrayList<>(isbns.size());
+        if (user == null) {
+            for (String isbn : isbns) {
+                results.add(new LoanResult(isbn, LoanStatus.USER_NOT_FOUND));
+            }
+            return results;
+        }
+
+        // выдаём по ISBN, а не по объектам: пакет может быть больше кэша
+        List<String> batch = new ArrayList<>(isbns.size());
+        Set<String> seen = new HashSet<>();
+        int remaining = user.getMaxBooks() - user.getBorrowedBooks().size();
+        boolean rejected = false;
+        for (String isbn : isbns) {
+            Book book = cache.get(isbn);
+            LoanStatus status;
+            if (book == null) {
+                status = LoanStatus.BOOK_NOT_FOUND;
+            } else if (!seen.add(isbn)) {
+                status = LoanStatus.DUPLICATE;
+            } else if (!book.isAvailable()) {
+                status = LoanStatus.NOT_AVAILABLE;
+            } else if (loans.find(userId, isbn) != null) {
+                status = LoanStatus.DUPLICATE;
+            } else if (batch.size() >= remaining) {
+                status = LoanStatus.LIMIT_REACHED;
+            } else {
+                status = LoanStatus.OK;
+                batch.add(isbn);
+            }
+            rejected |= status != LoanStatus.OK;
+            results.add(new LoanResult(isbn, status));
+        }
+
+        if (rejected) {
+            results.replaceAll(result -> result.isOk() ? new LoanResult(result.isbn(), LoanStatus.SKIPPED) : result);
+            return results;
+        }
+
+        LocalDate today = LocalDate.now(clock);
+        for (String isbn : batch) {
+            lend(user, cache.get(isbn), today);
+        }
+        return results;
+    }
+
+    /**
+     * Вернуть несколько книг сразу.
+     * @param userId Id пользователя.
+     * @param isbns  Международные стандартные книжные номера.
+     * @return результат по каждой книге в порядке запроса.
+     */
+    @Override
+    public List<LoanResult> returnBooks(String userId, List<String> isbns) {
+        List<LoanResult> results = new ArrayList<>(isbns.size());
+        for (String isbn : isbns) {
+            results.add(new LoanResult(isbn, tryReturnBook(userId, isbn)));
+        }
+        return results;
+    }
+
+    /**
+     * Какие книги просрочены.
+     *
+     * @return список просроченных книг.
+     */
+    @Override
+    public List<BorrowingRecord> getOverdueBooks() {
+        // тот же критерий, что и в BorrowingRecord.isOverdue
+        return loans.getDueDateIndex().dueBefore(LocalDate.now(clock));
+    }
+
+    /**
+     * Запись изменённых книг из кэша и сброс каталога на диск.
+     * @throws IOException при ошибке ввода-вывода.
+     */
+    public void flush() throws IOException {
+        cache.flush();
+        catalog.force();
+    }
+
+    /**
+     * Запись изменённых книг из кэша и закрытие каталога.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            cache.flush();
+        } finally {
+            catalog.close();
+        }
+    }
+}
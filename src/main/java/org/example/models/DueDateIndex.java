@@ -0,0 +1,82 @@
+package org.example.models;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Индекс активных выдач по дате возврата.
+ * <p>
+ * Выдачи раскладываются по корзинам, ключ корзины — день возврата (epoch-day), поэтому
+ * запрос по диапазону дат затрагивает только попавшие в него выдачи. Опустевшие корзины
+ * не удаляются: их не больше одной на календарный день, а удаление без глобальной
+ * блокировки привело бы к гонке с одновременным добавлением.
+ */
+public class DueDateIndex {
+
+    private final NavigableMap<Long, Set<BorrowingRecord>> byDueDay = new ConcurrentSkipListMap<>();
+
+    /**
+     * Добавление выдачи.
+     * @param record Запись о взятии книги.
+     */
+    public void add(BorrowingRecord record) {
+        byDueDay.computeIfAbsent(record.getDueDate().toEpochDay(), day -> ConcurrentHashMap.newKeySet())
+                .add(record);
+    }
+
+    /**
+     * Удаление выдачи.
+     * @param record Запись о взятии книги.
+     */
+    public void remove(BorrowingRecord record) {
+        Set<BorrowingRecord> bucket = byDueDay.get(record.getDueDate().toEpochDay());
+        if (bucket != null) {
+            bucket.remove(record);
+        }
+    }
+
+    /**
+     * Выдачи со сроком возврата строго позже указанной даты.
+     * @param day Дата.
+     * @return список выдач.
+     */
+    public List<BorrowingRecord> dueAfter(LocalDate day) {
+        return collect(byDueDay.tailMap(day.toEpochDay(), false).values());
+    }
+
+    /**
+     * Выдачи со сроком возврата строго раньше указанной даты.
+     * @param day Дата.
+     * @return список выдач.
+     */
+    public List<BorrowingRecord> dueBefore(LocalDate day) {
+        return collect(byDueDay.headMap(day.toEpochDay(), false).values());
+    }
+
+    /**
+     * Выдачи со сроком возврата в диапазоне дат включительно.
+     * @param from Начало диапазона.
+     * @param to   Конец диапазона.
+     * @return список выдач.
+     */
+    public List<BorrowingRecord> dueBetween(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            return new ArrayList<>();
+        }
+        return collect(byDueDay.subMap(from.toEpochDay(), true, to.toEpochDay(), true).values());
+    }
+
+    private static List<BorrowingRecord> collect(Collection<Set<BorrowingRecord>> buckets) {
+        List<BorrowingRecord> result = new ArrayList<>();
+        for (Set<BorrowingRecord> bucket : buckets) {
+            result.addAll(bucket);
+        }
+        return result;
+    }
+}
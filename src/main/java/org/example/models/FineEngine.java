@@ -0,0 +1,163 @@
+package org.example.models;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Начисление штрафов за просрочку по {@link User#getFinePerDay()}.
+ * <p>
+ * Штраф начисляется за каждый день после даты возврата, пока книга на руках. Долг
+ * пользователя хранится готовой суммой и обновляется двумя путями: при возврате книги
+ * дописываются дни с последнего закрытия дня, а закрытие дня {@link #settle} параллельно
+ * проходит по открытым выдачам и дописывает новые дни. Каждая выдача помнит, по какой день
+ * она оплачена, поэтому оба пути не начисляют один и тот же день дважды, а повторное закрытие
+ * того же дня ничего не меняет.
+ */
+public class FineEngine {
+
+    // выдач в одной задаче fork/join
+    private static final int SETTLE_THRESHOLD = 4096;
+
+    private final Supplier<Collection<BorrowingRecord>> openLoans;
+    private final Map<String, LongAdder> balances = new ConcurrentHashMap<>();  // UserID -> долг в центах
+    private final ForkJoinPool pool;
+
+    /**
+     * @param openLoans Открытые выдачи.
+     */
+    public FineEngine(Supplier<Collection<BorrowingRecord>> openLoans) {
+        this(openLoans, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param openLoans Открытые выдачи.
+     * @param pool      Пул для закрытия дня.
+     */
+    public FineEngine(Supplier<Collection<BorrowingRecord>> openLoans, ForkJoinPool pool) {
+        this.openLoans = openLoans;
+        this.pool = pool;
+    }
+
+    /**
+     * Долг пользователя по состоянию на последнее закрытие дня и возвраты после него.
+     * @param userId Id пользователя.
+     * @return сумма в центах.
+     */
+    public long getOwedCents(String userId) {
+        LongAdder balance = balances.get(userId);
+        return balance == null ? 0 : balance.sum();
+    }
+
+    /**
+     * Долг пользователя.
+     * @param userId Id пользователя.
+     * @return сумма.
+     */
+    public double getOwed(String userId) {
+        return getOwedCents(userId) / 100.0;
+    }
+
+    /**
+     * Ненулевые долги всех пользователей.
+     * @return UserID -> сумма в центах.
+     */
+    Map<String, Long> getBalances() {
+        Map<String, Long> result = new HashMap<>();
+        balances.forEach((userId, balance) -> {
+            long cents = balance.sum();
+            if (cents != 0) {
+                result.put(userId, cents);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Восстановление долга, например из снимка.
+     * @param userId Id пользователя.
+     * @param cents  Сумма в центах.
+     */
+    void restoreBalance(String userId, long cents) {
+        balances.computeIfAbsent(userId, id -> new LongAdder()).add(cents);
+    }
+
+    /**
+     * Начисление штрафа за возвращённую книгу по день возврата.
+     * @param record     Закрытая выдача.
+     * @param returnDate Дата возврата.
+     */
+    void onReturn(BorrowingRecord record, LocalDate returnDate) {
+        long days = record.accrueThrough(returnDate);
+        if (days > 0) {
+            charge(record.getUser(), days * centsPerDay(record.getUser()));
+        }
+    }
+
+    /**
+     * Закрытие дня: начисление штрафов по всем открытым выдачам по указанный день включительно.
+     * @param day Закрываемый день.
+     * @return сколько выдач получили новое начисление.
+     */
+    public long settle(LocalDate day) {
+        BorrowingRecord[] loans = openLoans.get().toArray(new BorrowingRecord[0]);
+        Settlement settlement = new Settlement(loans, 0, loans.length, day);
+        pool.invoke(settlement);
+        return settlement.charged;
+    }
+
+    private void charge(User user, long cents) {
+        balances.computeIfAbsent(user.getUserId(), id -> new LongAdder()).add(cents);
+    }
+
+    private static long centsPerDay(User user) {
+        return Math.round(user.getFinePerDay() * 100);
+    }
+
+    /**
+     * Закрытие дня для части выдач. Суммы сначала складываются по пользователям локально,
+     * чтобы общая таблица долгов обновлялась один раз на пользователя в каждой части.
+     */
+    private class Settlement extends RecursiveAction {
+        private final BorrowingRecord[] loans;
+        private final int from;
+        private final int to;
+        private final LocalDate day;
+        private long charged;
+
+        Settlement(BorrowingRecord[] loans, int from, int to, LocalDate day) {
+            this.loans = loans;
+            this.from = from;
+            this.to = to;
+            this.day = day;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SETTLE_THRESHOLD) {
+                Map<User, Long> owed = new HashMap<>();
+                for (int i = from; i < to; i++) {
+                    BorrowingRecord loan = loans[i];
+                    long days = loan.accrueThrough(day);
+                    if (days > 0) {
+                        owed.merge(loan.getUser(), days * centsPerDay(loan.getUser()), Long::sum);
+                        charged++;
+                    }
+                }
+                owed.forEach(FineEngine.this::charge);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            Settlement left = new Settlement(loans, from, middle, day);
+            Settlement right = new Settlement(loans, middle, to, day);
+            invokeAll(left, right);
+            charged = left.charged + right.charged;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package org.example.models;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Очереди ожидания книг: у каждого ISBN своя очередь пользователей в порядке постановки.
+ * <p>
+ * Очередь — неблокирующая {@link ConcurrentLinkedQueue}, рядом с ней таблица активных
+ * заявок по пользователю для проверки повторов за O(1). Заявку обслуживает тот, кто первым
+ * перевёл её из ожидания в обслуживание, поэтому два одновременных возврата не выдадут по ней
+ * два экземпляра. Отменённая заявка сразу убирается из очереди, а очередь без активных заявок —
+ * из таблицы, так что память не растёт с числом книг, за которыми когда-либо стояли.
+ * <p>
+ * Очереди хранятся только в памяти и в журнал не попадают.
+ */
+public class HoldQueue {
+
+    private final Map<String, Waitlist> byIsbn = new ConcurrentHashMap<>();
+
+    /**
+     * Постановка в очередь.
+     * @param isbn Международный стандартный книжный номер.
+     * @param user Пользователь.
+     * @return false, если пользователь уже в очереди за этой книгой.
+     */
+    public boolean place(String isbn, User user) {
+        Hold hold = new Hold(user);
+        boolean[] placed = new boolean[1];
+        // внутри compute: опустевшую очередь не удалят между её поиском и добавлением заявки
+        byIsbn.compute(isbn, (i, waitlist) -> {
+            Waitlist target = waitlist == null ? new Waitlist() : waitlist;
+            if (target.byUser.putIfAbsent(user.getUserId(), hold) == null) {
+                target.queue.add(hold);
+                placed[0] = true;
+            }
+            return target;
+        });
+        return placed[0];
+    }
+
+    /**
+     * Отмена заявки.
+     * @param isbn   Международный стандартный книжный номер.
+     * @param userId Id пользователя.
+     * @return была ли заявка.
+     */
+    public boolean cancel(String isbn, String userId) {
+        Waitlist waitlist = byIsbn.get(isbn);
+        Hold hold = waitlist == null ? null : waitlist.byUser.get(userId);
+        if (hold == null || !hold.finish()) {
+            return false;
+        }
+        waitlist.byUser.remove(userId, hold);
+        waitlist.queue.remove(hold);
+        dropIfEmpty(isbn, waitlist);
+        return true;
+    }
+
+    /**
+     * Передача экземпляра первому в очереди, кто может его получить. Тот, кому выдать нельзя,
+     * например из-за лимита, остаётся в очереди на своём месте.
+     * @param isbn    Международный стандартный книжный номер.
+     * @param handOff Выдача пользователю; false, если выдать ему сейчас нельзя.
+     * @return получивший книгу пользователь или null, если некому.
+     */
+    public User serve(String isbn, Predicate<User> handOff) {
+        Waitlist waitlist = byIsbn.get(isbn);
+        if (waitlist == null) {
+            return null;
+        }
+        for (Iterator<Hold> it = waitlist.queue.iterator(); it.hasNext(); ) {
+            Hold hold = it.next();
+            if (!hold.claim()) {
+                if (hold.isDone()) {
+                    it.remove();  // отменена или уже обслужена
+                }
+                continue;
+            }
+            if (handOff.test(hold.user)) {
+                hold.done();
+                it.remove();
+                waitlist.byUser.remove(hold.user.getUserId(), hold);
+                dropIfEmpty(isbn, waitlist);
+                return hold.user;
+            }
+            hold.release();
+        }
+        return null;
+    }
+
+    // активные заявки добавляются только внутри compute, поэтому проверка пустоты здесь не теряет новую
+    private void dropIfEmpty(String isbn, Waitlist waitlist) {
+        byIsbn.computeIfPresent(isbn, (i, current) -> current == waitlist && current.byUser.isEmpty() ? null : current);
+    }
+
+    /**
+     * Пользователи в очереди за книгой.
+     * @param isbn Международный стандартный книжный номер.
+     * @return пользователи в порядке очереди.
+     */
+    public List<User> waiting(String isbn) {
+        Waitlist waitlist = byIsbn.get(isbn);
+        List<User> result = new ArrayList<>();
+        if (waitlist != null) {
+            for (Hold hold : waitlist.queue) {
+                if (hold.isActive()) {
+                    result.add(hold.user);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Удаление очереди вместе с книгой.
+     * @param isbn Международный стандартный книжный номер.
+     */
+    public void clear(String isbn) {
+        byIsbn.remove(isbn);
+    }
+
+    /**
+     * Очередь одной книги.
+     */
+    private static final class Waitlist {
+        final Queue<Hold> queue = new ConcurrentLinkedQueue<>();
+        final Map<String, Hold> byUser = new ConcurrentHashMap<>();  // UserID -> активная заявка
+    }
+
+    /**
+     * Заявка: ждёт, обслуживается одним из возвратов или завершена (выдана либо отменена).
+     */
+    private static final class Hold {
+        private static final int WAITING = 0;
+        private static final int SERVING = 1;
+        private static final int DONE = 2;
+
+        final User user;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+
+        Hold(User user) {
+            this.user = user;
+        }
+
+        boolean claim() {
+            return state.compareAndSet(WAITING, SERVING);
+        }
+
+        void release() {
+            state.set(WAITING);
+        }
+
+        void done() {
+            state.set(DONE);
+        }
+
+        boolean finish() {
+            return state.compareAndSet(WAITING, DONE);
+        }
+
+        boolean isActive() {
+            return state.get() != DONE;
+        }
+
+        boolean isDone() {
+            return state.get() == DONE;
+        }
+    }
+}
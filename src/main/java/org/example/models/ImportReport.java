@@ -0,0 +1,29 @@
+package org.example.models;
+
+import java.time.Duration;
+
+/**
+ * Итог пакетной загрузки.
+ * @param rows       Прочитано строк с данными.
+ * @param imported   Добавлено записей.
+ * @param duplicates Отклонено как дубликаты (ISBN или Id пользователя уже есть).
+ * @param malformed  Отклонено как некорректные строки.
+ * @param elapsed    Время загрузки.
+ */
+public record ImportReport(long rows, long imported, long duplicates, long malformed, Duration elapsed) {
+
+    /**
+     * Скорость загрузки.
+     * @return строк в секунду.
+     */
+    public double rowsPerSecond() {
+        long nanos = Math.max(1, elapsed.toNanos());
+        return rows * 1_000_000_000.0 / nanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d rows, %d imported, %d duplicates, %d malformed in %d ms (%.0f rows/s)",
+                rows, imported, duplicates, malformed, elapsed.toMillis(), rowsPerSecond());
+    }
+}
@@ -0,0 +1,206 @@
+package org.example.models;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Обёртка над {@link LibraryOperations}, которая измеряет задержку каждой операции и считает
+ * вызовы и причины неудач.
+ * <p>
+ * Неудачей считается отказ в выдаче или возврате (причина — {@link LoanStatus}), ненайденная
+ * книга или пользователь и исключение (причина — имя его класса). Счётчики и гистограммы не
+ * используют блокировок, поэтому обёртка потокобезопасна, если потокобезопасна сама библиотека.
+ */
+public class InstrumentedLibrary implements LibraryOperations {
+
+    private static final String NOT_FOUND = "NOT_FOUND";
+
+    private final LibraryOperations delegate;
+    private final Map<String, Metrics> metrics = new LinkedHashMap<>();
+
+    private final Metrics addBook = metrics("addBook");
+    private final Metrics removeBook = metrics("removeBook");
+    private final Metrics findBook = metrics("findBook");
+    private final Metrics searchBooks = metrics("searchBooks");
+    private final Metrics searchBooksRanked = metrics("searchBooksRanked");
+    private final Metrics registerUser = metrics("registerUser");
+    private final Metrics findUser = metrics("findUser");
+    private final Metrics borrowBook = metrics("borrowBook");
+    private final Metrics returnBook = metrics("returnBook");
+    private final Metrics borrowBooks = metrics("borrowBooks");
+    private final Metrics returnBooks = metrics("returnBooks");
+    private final Metrics getOverdueBooks = metrics("getOverdueBooks");
+
+    /**
+     * @param delegate Библиотека, вызовы которой измеряются.
+     */
+    public InstrumentedLibrary(LibraryOperations delegate) {
+        this.delegate = delegate;
+    }
+
+    public LibraryOperations getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Снимок статистики.
+     * @return статистика по каждой операции в порядке объявления в {@link LibraryOperations}.
+     */
+    public List<OperationStats> snapshot() {
+        List<OperationStats> result = new ArrayList<>(metrics.size());
+        for (Map.Entry<String, Metrics> entry : metrics.entrySet()) {
+            result.add(entry.getValue().snapshot(entry.getKey()));
+        }
+        return result;
+    }
+
+    /**
+     * Снимок статистики одной операции.
+     * @param operation Название метода, например {@code borrowBook}.
+     * @return статистика или null, если такой операции нет.
+     */
+    public OperationStats snapshot(String operation) {
+        Metrics m = metrics.get(operation);
+        return m == null ? null : m.snapshot(operation);
+    }
+
+    @Override
+    public void addBook(String title, String author, String isbn, String genre) {
+        measure(addBook, () -> {
+            delegate.addBook(title, author, isbn, genre);
+            return null;
+        }, result -> null);
+    }
+
+    @Override
+    public boolean removeBook(String isbn) {
+        return measure(removeBook, () -> delegate.removeBook(isbn), removed -> removed ? null : NOT_FOUND);
+    }
+
+    @Override
+    public Book findBook(String isbn) {
+        return measure(findBook, () -> delegate.findBook(isbn), book -> book != null ? null : NOT_FOUND);
+    }
+
+    @Override
+    public List<Book> searchBooks(String query) {
+        return measure(searchBooks, () -> delegate.searchBooks(query), result -> null);
+    }
+
+    @Override
+    public List<Book> searchBooks(String query, int limit) {
+        return measure(searchBooksRanked, () -> delegate.searchBooks(query, limit), result -> null);
+    }
+
+    @Override
+    public void registerUser(String name, String userId, String email, UserType type) {
+        measure(registerUser, () -> {
+            delegate.registerUser(name, userId, email, type);
+            return null;
+        }, result -> null);
+    }
+
+    @Override
+    public User findUser(String userId) {
+        return measure(findUser, () -> delegate.findUser(userId), user -> user != null ? null : NOT_FOUND);
+    }
+
+    @Override
+    public boolean borrowBook(String userId, String isbn) {
+        return tryBorrowBook(userId, isbn) == LoanStatus.OK;
+    }
+
+    @Override
+    public boolean returnBook(String userId, String isbn) {
+        return tryReturnBook(userId, isbn) == LoanStatus.OK;
+    }
+
+    @Override
+    public LoanStatus tryBorrowBook(String userId, String isbn) {
+        return measure(borrowBook, () -> delegate.tryBorrowBook(userId, isbn), InstrumentedLibrary::reason);
+    }
+
+    @Override
+    public LoanStatus tryReturnBook(String userId, String isbn) {
+        return measure(returnBook, () -> delegate.tryReturnBook(userId, isbn), InstrumentedLibrary::reason);
+    }
+
+    @Override
+    public List<LoanResult> borrowBooks(String userId, List<String> isbns) {
+        return measure(borrowBooks, () -> delegate.borrowBooks(userId, isbns), InstrumentedLibrary::reason);
+    }
+
+    @Override
+    public List<LoanResult> returnBooks(String userId, List<String> isbns) {
+        return measure(returnBooks, () -> delegate.returnBooks(userId, isbns), InstrumentedLibrary::reason);
+    }
+
+    @Override
+    public List<BorrowingRecord> getOverdueBooks() {
+        return measure(getOverdueBooks, delegate::getOverdueBooks, result -> null);
+    }
+
+    private Metrics metrics(String operation) {
+        Metrics m = new Metrics();
+        metrics.put(operation, m);
+        return m;
+    }
+
+    private static <T> T measure(Metrics metrics, Supplier<T> call, Function<T, String> failure) {
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = call.get();
+        } catch (RuntimeException | Error e) {
+            metrics.record(System.nanoTime() - start, e.getClass().getSimpleName());
+            throw e;
+        }
+        metrics.record(System.nanoTime() - start, failure.apply(result));
+        return result;
+    }
+
+    private static String reason(LoanStatus status) {
+        return status == LoanStatus.OK ? null : status.name();
+    }
+
+    private static String reason(List<LoanResult> results) {
+        // пакет описывается первой отклонённой книгой; SKIPPED — только следствие отказа
+        for (LoanResult result : results) {
+            if (!result.isOk() && result.status() != LoanStatus.SKIPPED) {
+                return result.status().name();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Гистограмма и счётчики одной операции.
+     */
+    private static class Metrics {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder calls = new LongAdder();
+        private final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+
+        void record(long nanos, String failure) {
+            latency.record(nanos);
+            calls.increment();
+            if (failure != null) {
+                failures.computeIfAbsent(failure, f -> new LongAdder()).increment();
+            }
+        }
+
+        OperationStats snapshot(String operation) {
+            Map<String, Long> failed = new TreeMap<>();
+            failures.forEach((reason, count) -> failed.put(reason, count.sum()));
+            long[] p = latency.percentiles(0.5, 0.99, 0.999);
+            return new OperationStats(operation, calls.sum(), failed, p[0], p[1], p[2], latency.getMax());
+        }
+    }
+}
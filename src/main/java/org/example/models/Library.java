@@ -1,12 +1,18 @@
 package org.example.models;
 
+import java.time.Clock;
 import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
 
 /**
  * Реализация операций с книгами.
@@ -15,14 +21,39 @@ public class Library implements LibraryOperations {
     // Use HashMap for fast lookup by key
     private final Map<String, Book> books;      // ISBN -> Book
     private final Map<String, User> users;      // UserID -> User
+    private final BookSearchIndex searchIndex;  // n-gram -> Books
+    private final RankedSearchIndex rankedIndex;  // word -> Books
+    private final AutocompleteIndex autocomplete;  // titles and authors
 
-    // Видимо список, для взятых книг
-    private final List<BorrowingRecord> borrowingHistory;
+    // упорядоченные ключи для постраничного просмотра
+    private final NavigableSet<String> bookOrder;
+    private final NavigableSet<String> userOrder;
+
+    // активные выдачи и история возвратов
+    private final LoanLedger loans;
+    private final HoldQueue holds;
+
+    private final Clock clock;
+    private final List<MutationListener> listeners = new CopyOnWriteArrayList<>();
 
     public Library() {
+        this(Clock.systemDefaultZone());
+    }
+
+    /**
+     * @param clock Часы, по которым определяются даты выдачи и просрочки.
+     */
+    public Library(Clock clock) {
         books = new HashMap<>();           // O(1) book lookup
         users = new HashMap<>();           // O(1) user lookup
-        borrowingHistory = new ArrayList<>(); // Chronological order
+        loans = new LoanLedger();          // O(1) borrow/return
+        holds = new HoldQueue();
+        searchIndex = new BookSearchIndex();
+        rankedIndex = new RankedSearchIndex();
+        autocomplete = new AutocompleteIndex();
+        bookOrder = new TreeSet<>();
+        userOrder = new TreeSet<>();
+        this.clock = clock;
     }
 
     public List<Book> showAllBooks() {
@@ -34,7 +65,135 @@ public class Library implements LibraryOperations {
     }
 
     /**
-     * Добавление книги в библиотеку.
+     * Страница каталога в порядке ISBN.
+     * @param cursor   Курсор из предыдущей страницы или null для первой.
+     * @param pageSize Размер страницы.
+     * @return страница книг.
+     */
+    public Page<Book> pageBooks(String cursor, int pageSize) {
+        return Page.of(bookOrder, books::get, cursor, pageSize);
+    }
+
+    /**
+     * Страница пользователей в порядке Id.
+     * @param cursor   Курсор из предыдущей страницы или null для первой.
+     * @param pageSize Размер страницы.
+     * @return страница пользователей.
+     */
+    public Page<User> pageUsers(String cursor, int pageSize) {
+        return Page.of(userOrder, users::get, cursor, pageSize);
+    }
+
+    /**
+     * Все книги без копирования каталога. Библиотеку нельзя изменять, пока поток не обработан.
+     * @return ленивый поток книг в произвольном порядке.
+     */
+    public Stream<Book> streamBooks() {
+        return books.values().stream();
+    }
+
+    /**
+     * Все пользователи без копирования. Библиотеку нельзя изменять, пока поток не обработан.
+     * @return ленивый поток пользователей в произвольном порядке.
+     */
+    public Stream<User> streamUsers() {
+        return users.values().stream();
+    }
+
+    /**
+     * Подписка на изменения состояния.
+     * @param listener Получатель изменений.
+     */
+    public void addMutationListener(MutationListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Отписка от изменений состояния.
+     * @param listener Получатель изменений.
+     */
+    public void removeMutationListener(MutationListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Применение изменения, например при восстановлении из журнала.
+     * Даты выдачи и возврата берутся из изменения, а не из часов библиотеки.
+     * @param mutation Изменение.
+     */
+    public void apply(Mutation mutation) {
+        switch (mutation) {
+            case Mutation.BookAdded m -> addBook(m.title(), m.author(), m.isbn(), m.genre());
+            case Mutation.BookRemoved m -> removeBook(m.isbn());
+            case Mutation.UserRegistered m -> registerUser(m.name(), m.userId(), m.email(), m.type());
+            case Mutation.BookBorrowed m -> borrowBook(m.userId(), m.isbn(), m.date());
+            case Mutation.BookReturned m -> returnBook(m.userId(), m.isbn(), m.date());
+        }
+    }
+
+    /**
+     * Выгрузка текущего состояния в виде минимальной последовательности изменений:
+     * книги, пользователи и активные выдачи. История возвратов не выгружается.
+     * @param sink Получатель изменений.
+     */
+    public void exportState(MutationListener sink) {
+        for (Book book : books.values()) {
+            Mutation.BookAdded copy = new Mutation.BookAdded(book.getTitle(), book.getAuthor(), book.getIsbn(), book.getGenre());
+            for (int i = book.getCopies(); i > 0; i--) {
+                sink.onMutation(copy);
+            }
+        }
+        for (User user : users.values()) {
+            sink.onMutation(new Mutation.UserRegistered(user.getName(), user.getUserId(), user.getEmail(), user.getUserType()));
+        }
+        for (BorrowingRecord loan : loans.getActiveLoans()) {
+            sink.onMutation(new Mutation.BookBorrowed(loan.getUser().getUserId(), loan.getBook().getIsbn(), loan.getBorrowDate()));
+        }
+    }
+
+    /**
+     * Книги, находящиеся сейчас на руках.
+     * @return активные выдачи.
+     */
+    public Collection<BorrowingRecord> getActiveLoans() {
+        return loans.getActiveLoans();
+    }
+
+    /**
+     * Активная выдача книги пользователю.
+     * @return выдача или null.
+     */
+    BorrowingRecord findLoan(String userId, String isbn) {
+        return loans.find(userId, isbn);
+    }
+
+    /**
+     * История возвращённых книг.
+     * @return завершённые выдачи в порядке возврата.
+     */
+    public Collection<BorrowingRecord> getBorrowingHistory() {
+        return loans.getHistory();
+    }
+
+    /**
+     * Штрафы за просрочку.
+     * @return начисление и долги пользователей.
+     */
+    public FineEngine getFines() {
+        return loans.getFines();
+    }
+
+    /**
+     * Сегодняшняя дата по часам библиотеки — тем же, по которым датируются выдачи и возвраты.
+     * @return текущая дата.
+     */
+    public LocalDate today() {
+        return LocalDate.now(clock);
+    }
+
+    /**
+     * Добавление книги в библиотеку. Повторный ISBN добавляет ещё один экземпляр, а название,
+     * автор и жанр остаются от первого.
      * @param title  Название.
      * @param author Автор.
      * @param isbn   Международный стандартный книжный номер.
@@ -42,12 +201,39 @@ public class Library implements LibraryOperations {
      */
     @Override
     public void addBook(String title, String author, String isbn, String genre) {
-
-        // как я понимаю, не предусмотрена возможность наличия 2 одинаковых книг, так что будем игнорировать дубликаты
-        if (!books.containsKey(isbn)) {
+        Book existing = books.get(isbn);
+        if (existing != null) {
+            existing.addCopy();
+        } else {
             Book book = new Book(title, author, isbn, genre);
             books.put(isbn, book);
+            bookOrder.add(isbn);
+            searchIndex.add(book);
+            rankedIndex.add(book);
+            autocomplete.add(book);
+        }
+        publish(new Mutation.BookAdded(title, author, isbn, genre));
+    }
+
+    /**
+     * Пакетное добавление книг. Импорт загружает записи каталога, а не экземпляры, поэтому
+     * повторные ISBN, в отличие от {@link #addBook}, отклоняются.
+     * @param batch Книги.
+     * @return сколько книг добавлено.
+     */
+    public int importBooks(Collection<Book> batch) {
+        int added = 0;
+        for (Book book : batch) {
+            if (books.putIfAbsent(book.getIsbn(), book) == null) {
+                bookOrder.add(book.getIsbn());
+                searchIndex.add(book);
+                rankedIndex.add(book);
+                autocomplete.add(book);
+                publish(new Mutation.BookAdded(book.getTitle(), book.getAuthor(), book.getIsbn(), book.getGenre()));
+                added++;
+            }
         }
+        return added;
     }
 
     /**
@@ -57,7 +243,17 @@ public class Library implements LibraryOperations {
      */
     @Override
     public boolean removeBook(String isbn) {
-        return books.remove(isbn) != null;
+        Book book = books.remove(isbn);
+        if (book == null) {
+            return false;
+        }
+        bookOrder.remove(isbn);
+        holds.clear(isbn);
+        searchIndex.remove(book);
+        rankedIndex.remove(book);
+        autocomplete.remove(book);
+        publish(new Mutation.BookRemoved(isbn));
+        return true;
     }
 
     /**
@@ -77,19 +273,28 @@ public class Library implements LibraryOperations {
      */
     @Override
     public List<Book> searchBooks(String query) {
-        if (query == null || query.trim().isEmpty()) {
-            return Collections.emptyList();
-        }
+        return searchIndex.search(query);
+    }
 
-        String searchTerm = query.trim().toLowerCase();
+    /**
+     * Поиск по релевантности.
+     * @param query Слова запроса.
+     * @param limit Сколько книг вернуть.
+     * @return книги, содержащие все слова запроса, по убыванию релевантности.
+     */
+    @Override
+    public List<Book> searchBooks(String query, int limit) {
+        return rankedIndex.search(query, limit);
+    }
 
-        return books.values().stream()
-                .filter(book ->
-                        (book.getTitle() != null && book.getTitle().toLowerCase().contains(searchTerm)) ||
-                                (book.getAuthor() != null && book.getAuthor().toLowerCase().contains(searchTerm)) ||
-                                (book.getGenre() != null && book.getGenre().toLowerCase().contains(searchTerm))
-                )
-                .collect(Collectors.toList());
+    /**
+     * Автодополнение названия или автора с исправлением опечаток.
+     * @param prefix Набранное начало.
+     * @param limit  Сколько подсказок вернуть.
+     * @return подсказки, лучшие первыми.
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        return autocomplete.suggest(prefix, limit);
     }
 
     /**
@@ -108,9 +313,28 @@ public class Library implements LibraryOperations {
                 case GUEST -> users.put(userId, new Guest(name, userId, email));
                 case FACULTY -> users.put(userId, new Faculty(name, userId, email));
             }
+            userOrder.add(userId);
+            publish(new Mutation.UserRegistered(name, userId, email, type));
         }
     }
 
+    /**
+     * Пакетная регистрация пользователей. Дубликаты Id игнорируются так же, как в {@link #registerUser}.
+     * @param batch Пользователи.
+     * @return сколько пользователей зарегистрировано.
+     */
+    public int importUsers(Collection<User> batch) {
+        int added = 0;
+        for (User user : batch) {
+            if (users.putIfAbsent(user.getUserId(), user) == null) {
+                userOrder.add(user.getUserId());
+                publish(new Mutation.UserRegistered(user.getName(), user.getUserId(), user.getEmail(), user.getUserType()));
+                added++;
+            }
+        }
+        return added;
+    }
+
     /**
      * Поиск пользователя.
      * @param userId Id пользователя.
@@ -129,20 +353,79 @@ public class Library implements LibraryOperations {
      */
     @Override
     public boolean borrowBook(String userId, String isbn) {
+        return borrowBook(userId, isbn, LocalDate.now(clock)) == LoanStatus.OK;
+    }
+
+    @Override
+    public LoanStatus tryBorrowBook(String userId, String isbn) {
+        return borrowBook(userId, isbn, LocalDate.now(clock));
+    }
+
+    private LoanStatus borrowBook(String userId, String isbn, LocalDate borrowDate) {
         User user = users.get(userId);     // Fast lookup
         Book book = books.get(isbn);       // Fast lookup
 
         // Validation logic
-        if (user == null || book == null) return false;
-        if (!book.isAvailable()) return false;
-        if (!user.canBorrow()) return false;
+        if (user == null) return LoanStatus.USER_NOT_FOUND;
+        if (book == null) return LoanStatus.BOOK_NOT_FOUND;
+        if (!book.isAvailable()) return LoanStatus.NOT_AVAILABLE;
+        if (loans.find(userId, isbn) != null) return LoanStatus.DUPLICATE;
+        if (!user.canBorrow()) return LoanStatus.LIMIT_REACHED;
 
         // Process borrowing
-        book.setAvailable(false);
+        lend(user, book, borrowDate);
+
+        return LoanStatus.OK;
+    }
+
+    private void lend(User user, Book book, LocalDate borrowDate) {
+        book.tryTake();
+        open(user, book, borrowDate);
+        // взял сам — заявка в очереди больше не нужна
+        holds.cancel(book.getIsbn(), user.getUserId());
+    }
+
+    private void open(User user, Book book, LocalDate borrowDate) {
         user.getBorrowedBooks().add(book);
-        borrowingHistory.add(new BorrowingRecord(user, book, LocalDate.now()));
+        loans.open(new BorrowingRecord(user, book, borrowDate));
+        publish(new Mutation.BookBorrowed(user.getUserId(), book.getIsbn(), borrowDate));
+    }
 
-        return true;
+    /**
+     * Постановка в очередь за книгой. Если свободный экземпляр есть, книга выдаётся сразу.
+     * @param userId Id пользователя.
+     * @param isbn   Международный стандартный книжный номер.
+     * @return {@link LoanStatus#QUEUED}, {@link LoanStatus#OK}, если книга выдана, или причина отказа.
+     */
+    public LoanStatus placeHold(String userId, String isbn) {
+        User user = users.get(userId);
+        Book book = books.get(isbn);
+
+        if (user == null) return LoanStatus.USER_NOT_FOUND;
+        if (book == null) return LoanStatus.BOOK_NOT_FOUND;
+        if (loans.find(userId, isbn) != null) return LoanStatus.DUPLICATE;
+        if (book.isAvailable()) return borrowBook(userId, isbn, LocalDate.now(clock));
+
+        return holds.place(isbn, user) ? LoanStatus.QUEUED : LoanStatus.DUPLICATE;
+    }
+
+    /**
+     * Отмена заявки в очереди.
+     * @param userId Id пользователя.
+     * @param isbn   Международный стандартный книжный номер.
+     * @return была ли заявка.
+     */
+    public boolean cancelHold(String userId, String isbn) {
+        return holds.cancel(isbn, userId);
+    }
+
+    /**
+     * Очередь за книгой.
+     * @param isbn Международный стандартный книжный номер.
+     * @return пользователи в порядке очереди.
+     */
+    public List<User> getHolds(String isbn) {
+        return holds.waiting(isbn);
     }
 
     /**
@@ -153,19 +436,129 @@ public class Library implements LibraryOperations {
      */
     @Override
     public boolean returnBook(String userId, String isbn) {
+        return returnBook(userId, isbn, LocalDate.now(clock)) == LoanStatus.OK;
+    }
+
+    @Override
+    public LoanStatus tryReturnBook(String userId, String isbn) {
+        return returnBook(userId, isbn, LocalDate.now(clock));
+    }
+
+    private LoanStatus returnBook(String userId, String isbn, LocalDate returnDate) {
         User user = users.get(userId);
         Book book = books.get(isbn);
 
         // Validation logic
-        if (user == null || book == null) return false;
-        if (book.isAvailable()) return false;
-        if (!user.getBorrowedBooks().contains(book)) return false;
+        if (user == null) return LoanStatus.USER_NOT_FOUND;
+        if (book == null) return LoanStatus.BOOK_NOT_FOUND;
+        if (loans.find(userId, isbn) == null) return LoanStatus.NOT_BORROWED;
+
+        takeBack(user, book, returnDate);
+
+        return LoanStatus.OK;
+    }
 
+    private void takeBack(User user, Book book, LocalDate returnDate) {
+        // список на руках ограничен getMaxBooks(), поэтому удаление из него не зависит от объёма выдач
         user.getBorrowedBooks().remove(book);
-        book.setAvailable(true);
-        borrowingHistory.removeIf(record -> record.getBook().getIsbn().equals(isbn));
+        loans.close(user.getUserId(), book.getIsbn(), returnDate);
+        publish(new Mutation.BookReturned(user.getUserId(), book.getIsbn(), returnDate));
 
-        return true;
+        // экземпляр сразу уходит первому подходящему из очереди, а не на полку
+        User next = holds.serve(book.getIsbn(), candidate -> {
+            if (!candidate.canBorrow() || loans.find(candidate.getUserId(), book.getIsbn()) != null) {
+                return false;
+            }
+            open(candidate, book, returnDate);
+            return true;
+        });
+        if (next == null) {
+            book.release();
+        }
+    }
+
+    /**
+     * Взять несколько книг сразу по принципу «всё или ничего».
+     * @param userId Id пользователя.
+     * @param isbns  Международные стандартные книжные номера.
+     * @return результат по каждой книге в порядке запроса.
+     */
+    @Override
+    public List<LoanResult> borrowBooks(String userId, List<String> isbns) {
+        User user = users.get(userId);
+        List<LoanResult> results = new ArrayList<>(isbns.size());
+        if (user == null) {
+            for (String isbn : isbns) {
+                results.add(new LoanResult(isbn, LoanStatus.USER_NOT_FOUND));
+            }
+            return results;
+        }
+
+        // один проход проверки: сначала выясняем, можно ли выдать весь пакет
+        List<Book> batch = new ArrayList<>(isbns.size());
+        Set<String> seen = new HashSet<>();
+        int remaining = user.getMaxBooks() - user.getBorrowedBooks().size();
+        boolean rejected = false;
+        for (String isbn : isbns) {
+            Book book = books.get(isbn);
+            LoanStatus status;
+            if (book == null) {
+                status = LoanStatus.BOOK_NOT_FOUND;
+            } else if (!seen.add(isbn)) {
+                status = LoanStatus.DUPLICATE;
+            } else if (!book.isAvailable()) {
+                status = LoanStatus.NOT_AVAILABLE;
+            } else if (loans.find(userId, isbn) != null) {
+                status = LoanStatus.DUPLICATE;
+            } else if (batch.size() >= remaining) {
+                status = LoanStatus.LIMIT_REACHED;
+            } else {
+                status = LoanStatus.OK;
+                batch.add(book);
+            }
+            rejected |= status != LoanStatus.OK;
+            results.add(new LoanResult(isbn, status));
+        }
+
+        if (rejected) {
+            results.replaceAll(result -> result.isOk() ? new LoanResult(result.isbn(), LoanStatus.SKIPPED) : result);
+            return results;
+        }
+
+        LocalDate today = LocalDate.now(clock);
+        for (Book book : batch) {
+            lend(user, book, today);
+        }
+        return results;
+    }
+
+    /**
+     * Вернуть несколько книг сразу.
+     * @param userId Id пользователя.
+     * @param isbns  Международные стандартные книжные номера.
+     * @return результат по каждой книге в порядке запроса.
+     */
+    @Override
+    public List<LoanResult> returnBooks(String userId, List<String> isbns) {
+        User user = users.get(userId);
+        LocalDate today = LocalDate.now(clock);
+        List<LoanResult> results = new ArrayList<>(isbns.size());
+        for (String isbn : isbns) {
+            Book book = books.get(isbn);
+            LoanStatus status;
+            if (user == null) {
+                status = LoanStatus.USER_NOT_FOUND;
+            } else if (book == null) {
+                status = LoanStatus.BOOK_NOT_FOUND;
+            } else if (loans.find(userId, isbn) == null) {
+                status = LoanStatus.NOT_BORROWED;
+            } else {
+                takeBack(user, book, today);
+                status = LoanStatus.OK;
+            }
+            results.add(new LoanResult(isbn, status));
+        }
+        return results;
     }
 
     /**
@@ -175,8 +568,23 @@ public class Library implements LibraryOperations {
      */
     @Override
     public List<BorrowingRecord> getOverdueBooks() {
-        return borrowingHistory.stream()
-                .filter(BorrowingRecord::isOverdue)
-                .collect(Collectors.toList());
+        // тот же критерий, что и в BorrowingRecord.isOverdue: затрагиваются только корзины до сегодняшнего дня
+        return loans.getDueDateIndex().dueBefore(LocalDate.now(clock));
+    }
+
+    /**
+     * Книги, которые нужно вернуть в ближайшие дни.
+     * @param days Количество дней, начиная с сегодняшнего.
+     * @return список выдач со сроком возврата от сегодня до сегодня + days включительно.
+     */
+    public List<BorrowingRecord> getBooksDueWithin(int days) {
+        LocalDate today = LocalDate.now(clock);
+        return loans.getDueDateIndex().dueBetween(today, today.plusDays(days));
+    }
+
+    private void publish(Mutation mutation) {
+        for (MutationListener listener : listeners) {
+            listener.onMutation(mutation);
+        }
     }
 }
@@ -0,0 +1,685 @@
+package org.example.models;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Журнал предзаписи состояния библиотеки.
+ * <p>
+ * Каждое изменение {@link Library} дописывается в отображённый в память сегмент фиксированного
+ * размера в виде кадра {@code [длина][CRC32C][изменение]}. Длина записывается последней и служит
+ * признаком завершённой записи: при восстановлении чтение останавливается на первом кадре с нулевой
+ * длиной или неверной контрольной суммой. Запись идёт в страничный кеш ОС и переживает падение
+ * процесса; сброс на диск выполняется {@link #sync()} и, при заданном интервале, фоновым потоком.
+ * <p>
+ * Изменение только копирует кадр в память. Следующий сегмент создаётся заранее фоновым потоком,
+ * он же сбрасывает на диск и закрывает заполненные, поэтому переход на новый сегмент сводится
+ * к замене ссылки.
+ * <p>
+ * Сегменты нумеруются сквозным образом. Когда объём журнала превышает порог, он уплотняется в
+ * отдельном потоке: заполненные сегменты воспроизводятся в отдельную библиотеку, её состояние
+ * записывается в базовые файлы нового поколения, а файл-маркер поколения фиксирует их вместе с
+ * номером первого сегмента, который к ним применяется. После этого старое поколение и покрытые
+ * им сегменты удаляются. Поэтому время восстановления ограничено размером состояния,
+ * а не всей историей изменений, и запись на время уплотнения не останавливается.
+ */
+public class LibraryJournal implements MutationListener, Closeable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 16 << 20;
+    public static final long DEFAULT_COMPACTION_THRESHOLD = 256L << 20;
+
+    private static final int HEADER = 8;  // длина + контрольная сумма
+    private static final Pattern SEGMENT = Pattern.compile("journal-(\\d+)\\.log");
+    private static final Pattern BASE = Pattern.compile("base-(\\d+)-(\\d+)\\.log");
+    private static final Pattern MARKER = Pattern.compile("generation-(\\d+)\\.ok");
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long compactionThreshold;
+    private final Library library;
+    private final FrameCodec codec = new FrameCodec();
+
+    // подготовка, сброс и закрытие сегментов; журнальную блокировку не берёт
+    private final ScheduledExecutorService io = Executors.newSingleThreadScheduledExecutor(daemon("library-journal-io"));
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(daemon("library-journal-compactor"));
+
+    private long generation;
+    private int tailStart;         // первый сегмент, применяемый поверх базовых файлов поколения
+    private int segmentIndex;
+    private FileChannel channel;
+    private volatile MappedByteBuffer segment;
+    private Future<Mapped> nextSegment;
+    private Future<?> compaction;
+    private long generationBytes;  // объём текущего поколения
+    private long compactedBytes;   // объём состояния после последнего уплотнения
+    private boolean closed;
+
+    private LibraryJournal(Path directory, Library library, int segmentSize, long compactionThreshold) {
+        this.directory = directory;
+        this.library = library;
+        this.segmentSize = segmentSize;
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * Открытие журнала с настройками по умолчанию.
+     * @see #open(Path, Library, int, long, long)
+     */
+    public static LibraryJournal open(Path directory, Library library) throws IOException {
+        return open(directory, library, DEFAULT_SEGMENT_SIZE, DEFAULT_COMPACTION_THRESHOLD, 0);
+    }
+
+    /**
+     * Открытие журнала: восстановление состояния в библиотеку и подписка на её изменения.
+     * Данные, которые были в библиотеке до открытия, сразу фиксируются в журнале.
+     * @param directory           Каталог журнала.
+     * @param library             Библиотека.
+     * @param segmentSize         Размер сегмента в байтах.
+     * @param compactionThreshold Объём поколения, после которого журнал уплотняется.
+     * @param syncIntervalMillis  Интервал фонового сброса на диск, 0 — только по {@link #sync()}.
+     * @return открытый журнал.
+     * @throws IOException при ошибке ввода-вывода.
+     */
+    public static LibraryJournal open(Path directory, Library library, int segmentSize,
+                                      long compactionThreshold, long syncIntervalMillis) throws IOException {
+        Files.createDirectories(directory);
+        LibraryJournal journal = new LibraryJournal(directory, library, segmentSize, compactionThreshold);
+        boolean loaded = library.streamBooks().findAny().isPresent() || library.streamUsers().findAny().isPresent();
+        try {
+            journal.recover();
+            if (loaded) {
+                // уплотнение собирает состояние из самих сегментов, поэтому данных вне журнала быть не должно
+                journal.seed();
+            }
+        } catch (IOException | RuntimeException e) {
+            journal.io.shutdownNow();
+            journal.compactor.shutdownNow();
+            throw e;
+        }
+        library.addMutationListener(journal);
+
+        if (syncIntervalMillis > 0) {
+            journal.io.scheduleWithFixedDelay(journal::syncQuietly, syncIntervalMillis, syncIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+        return journal;
+    }
+
+    /**
+     * Было ли что-то восстановлено при открытии.
+     * @return true, если журнал не пуст.
+     */
+    public synchronized boolean isEmpty() {
+        return generationBytes == 0;
+    }
+
+    @Override
+    public synchronized void onMutation(Mutation mutation) {
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+        try {
+            append(mutation);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (compaction == null && needsCompaction()) {
+            compaction = scheduleCompaction();
+        }
+    }
+
+    /**
+     * Сброс записанных изменений на диск, включая уже заполненные сегменты.
+     */
+    public void sync() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+        }
+        try {
+            // задачи фонового потока выполняются по порядку: заполненные сегменты сброшены раньше
+            await(io.submit(this::forceSegment));
+        } catch (RejectedExecutionException e) {
+            // журнал закрыт, при закрытии всё уже сброшено
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Уплотнение всего записанного к моменту вызова; ждёт его завершения.
+     * Если уплотнение уже идёт, ждёт его.
+     * @throws IOException при ошибке ввода-вывода.
+     */
+    public void compact() throws IOException {
+        Future<?> done;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Journal is closed");
+            }
+            if (compaction == null) {
+                compaction = compactAll();
+            }
+            done = compaction;
+        }
+        if (done != null) {
+            await(done);
+        }
+    }
+
+    @Override
+    public void close() {
+        Future<?> pending;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            library.removeMutationListener(this);
+            pending = compaction;
+        }
+        awaitQuietly(pending);
+        synchronized (this) {
+            // уплотнение идёт в фоне и могло отстать от записи: догоняем, чтобы журнал на диске был ограничен
+            try {
+                pending = needsCompaction() ? compactAll() : null;
+            } catch (IOException e) {
+                pending = null;
+            }
+        }
+        awaitQuietly(pending);
+        compactor.shutdown();
+
+        synchronized (this) {
+            retire(channel, segment);
+            discardNextSegment();
+            channel = null;
+            segment = null;
+        }
+        io.shutdown();
+        try {
+            io.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean needsCompaction() {
+        return generationBytes > compactionThreshold && generationBytes > 2 * compactedBytes;
+    }
+
+    /**
+     * Уплотнение вместе с текущим сегментом; вызывается под блокировкой журнала.
+     */
+    private Future<?> compactAll() throws IOException {
+        if (segment.position() > 0) {
+            roll();
+        }
+        return scheduleCompaction();
+    }
+
+    private static void awaitQuietly(Future<?> pending) {
+        if (pending == null) {
+            return;
+        }
+        try {
+            await(pending);
+        } catch (IOException | RuntimeException ignored) {
+            // незавершённое уплотнение не меняет действующее поколение
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            forceSegment();
+        } catch (RuntimeException ignored) {
+            // следующая попытка будет через интервал
+        }
+    }
+
+    private void forceSegment() {
+        MappedByteBuffer current = segment;
+        if (current != null) {
+            current.force();
+        }
+    }
+
+    private void recover() throws IOException {
+        generation = currentGeneration();
+        if (Files.exists(marker(generation))) {
+            String first = Files.readString(marker(generation)).trim();
+            tailStart = first.isEmpty() ? 0 : Integer.parseInt(first);
+        } else {
+            writeMarker(generation, 0);
+        }
+        deleteOtherGenerations(generation, tailStart);
+
+        for (int index : indexes(BASE, generation)) {
+            Path base = basePath(generation, index);
+            int end = replaySegment(base, library, codec);
+            if (end < 0) {
+                // базовые файлы сбрасываются на диск до записи маркера
+                throw new IOException("Corrupted compacted journal file " + base);
+            }
+            generationBytes += end;
+        }
+        compactedBytes = generationBytes;
+
+        List<Integer> indexes = segmentIndexes(tailStart);
+        segmentIndex = tailStart;
+        int writePosition = 0;
+        for (int i = 0; i < indexes.size(); i++) {
+            segmentIndex = indexes.get(i);
+            int end = replaySegment(segmentPath(segmentIndex), library, codec);
+            if (end < 0) {
+                // повреждённый кадр: всё, что записано после него, недостижимо
+                writePosition = -end - 1;
+                generationBytes += writePosition;
+                for (int later : indexes.subList(i + 1, indexes.size())) {
+                    Files.deleteIfExists(segmentPath(later));
+                }
+                break;
+            }
+            writePosition = end;
+            generationBytes += end;
+        }
+        Mapped mapped = map(segmentPath(segmentIndex), writePosition);
+        channel = mapped.channel();
+        segment = mapped.buffer();
+        nextSegment = prepare(segmentIndex + 1);
+    }
+
+    /**
+     * @return позиция конца корректных данных или {@code -(позиция + 1)}, если найден повреждённый кадр.
+     */
+    private static int replaySegment(Path path, Library target, FrameCodec codec) throws IOException {
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+            int position = 0;
+            while (buffer.limit() - position >= HEADER) {
+                int length = buffer.getInt(position);
+                if (length == 0) {
+                    return position;
+                }
+                int checksum = buffer.getInt(position + 4);
+                if (length < 0 || length > buffer.limit() - position - HEADER
+                        || checksum != codec.checksum(buffer, position + HEADER, length)) {
+                    return -position - 1;
+                }
+                ByteBuffer payload = buffer.slice(position + HEADER, length);
+                target.apply(MutationCodec.decode(payload));
+                position += HEADER + length;
+            }
+            return position;
+        }
+    }
+
+    private void append(Mutation mutation) throws IOException {
+        int length = codec.encode(mutation);
+        if (HEADER + length > segmentSize) {
+            throw new IOException("Mutation of " + length + " bytes does not fit into a journal segment");
+        }
+        if (segment.remaining() < HEADER + length) {
+            roll();
+        }
+
+        int position = segment.position();
+        segment.put(position + HEADER, codec.scratch.array(), 0, length);
+        segment.putInt(position + 4, codec.checksum(codec.scratch, 0, length));
+        // длина пишется последней: до этого момента кадр не считается записанным
+        segment.putInt(position, length);
+        segment.position(position + HEADER + length);
+        generationBytes += HEADER + length;
+    }
+
+    /**
+     * Переход на заранее подготовленный сегмент. Заполненный сбрасывается и закрывается в фоне.
+     */
+    private void roll() throws IOException {
+        Mapped next = await(nextSegment);
+        retire(channel, segment);
+        segmentIndex++;
+        channel = next.channel();
+        segment = next.buffer();
+        nextSegment = prepare(segmentIndex + 1);
+    }
+
+    private Future<Mapped> prepare(int index) {
+        Path path = segmentPath(index);
+        return io.submit(() -> map(path, 0));
+    }
+
+    private void retire(FileChannel oldChannel, MappedByteBuffer oldSegment) {
+        if (oldChannel == null) {
+            return;
+        }
+        io.execute(() -> {
+            oldSegment.force();
+            try {
+                oldChannel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private void discardNextSegment() {
+        try {
+            Mapped unused = await(nextSegment);
+            unused.channel().close();
+            Files.deleteIfExists(segmentPath(segmentIndex + 1));
+        } catch (IOException ignored) {
+            // пустой сегмент при восстановлении просто пропускается
+        }
+    }
+
+    /**
+     * Отображение сегмента для записи с указанной позиции. Файл обрезается до неё, и при отображении
+     * хвост снова заполняется нулями, поэтому остатки оборванного кадра не примутся за данные.
+     */
+    private Mapped map(Path path, int position) throws IOException {
+        FileChannel file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            file.truncate(position);
+            MappedByteBuffer buffer = file.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            buffer.position(position);
+            return new Mapped(file, buffer);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Запуск уплотнения заполненных сегментов; вызывается под блокировкой журнала.
+     * @return задача уплотнения или null, если уплотнять нечего.
+     */
+    private Future<?> scheduleCompaction() {
+        int cut = segmentIndex;  // сегменты до текущего уже не меняются
+        if (cut == tailStart) {
+            return null;
+        }
+        long from = generation;
+        int first = tailStart;
+        long obsoleteBytes = generationBytes - segment.position();
+        return compactor.submit(() -> {
+            try {
+                compactSegments(from, first, cut, obsoleteBytes);
+            } finally {
+                synchronized (this) {
+                    compaction = null;
+                }
+            }
+            return null;
+        });
+    }
+
+    private void compactSegments(long from, int first, int cut, long obsoleteBytes) throws IOException {
+        // состояние на момент среза собирается из самих сегментов: библиотека тем временем
+        // продолжает меняться и не потокобезопасна
+        Library state = new Library();
+        FrameCodec stateCodec = new FrameCodec();
+        List<Path> sealed = new ArrayList<>();
+        for (int index : indexes(BASE, from)) {
+            sealed.add(basePath(from, index));
+        }
+        for (int index = first; index < cut; index++) {
+            sealed.add(segmentPath(index));
+        }
+        for (Path path : sealed) {
+            if (replaySegment(path, state, stateCodec) < 0) {
+                throw new IOException("Corrupted journal file " + path);
+            }
+        }
+
+        rebase(state, stateCodec, from, cut, obsoleteBytes);
+    }
+
+    private void seed() throws IOException {
+        if (segment.position() > 0) {
+            roll();
+        }
+        rebase(library, new FrameCodec(), generation, segmentIndex, generationBytes);
+    }
+
+    /**
+     * Запись состояния в базовые файлы нового поколения, поверх которых применяются сегменты с {@code cut}.
+     * @param obsoleteBytes Объём поколения до {@code cut}, который заменяет новая база.
+     */
+    private void rebase(Library state, FrameCodec stateCodec, long from, int cut, long obsoleteBytes)
+            throws IOException {
+        long to = from + 1;
+        long baseBytes;
+        try (BaseWriter writer = new BaseWriter(to, stateCodec)) {
+            state.exportState(writer);
+            baseBytes = writer.bytes;
+        } catch (IOException | RuntimeException e) {
+            for (int index : indexes(BASE, to)) {
+                Files.deleteIfExists(basePath(to, index));
+            }
+            throw e;
+        }
+        writeMarker(to, cut);
+
+        synchronized (this) {
+            generation = to;
+            tailStart = cut;
+            generationBytes += baseBytes - obsoleteBytes;
+            compactedBytes = baseBytes;
+        }
+        deleteOtherGenerations(to, cut);
+    }
+
+    private long currentGeneration() throws IOException {
+        long result = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher matcher = MARKER.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    result = Math.max(result, Long.parseLong(matcher.group(1)));
+                }
+            }
+        }
+        return result;
+    }
+
+    private List<Integer> segmentIndexes(int from) throws IOException {
+        List<Integer> result = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher matcher = SEGMENT.matcher(file.getFileName().toString());
+                if (matcher.matches() && Integer.parseInt(matcher.group(1)) >= from) {
+                    result.add(Integer.parseInt(matcher.group(1)));
+                }
+            }
+        }
+        result.sort(null);
+        return result;
+    }
+
+    private List<Integer> indexes(Pattern pattern, long gen) throws IOException {
+        List<Integer> result = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher matcher = pattern.matcher(file.getFileName().toString());
+                if (matcher.matches() && Long.parseLong(matcher.group(1)) == gen) {
+                    result.add(Integer.parseInt(matcher.group(2)));
+                }
+            }
+        }
+        result.sort(null);
+        return result;
+    }
+
+    private void deleteOtherGenerations(long keep, int firstSegment) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                Matcher segmentMatcher = SEGMENT.matcher(name);
+                Matcher baseMatcher = BASE.matcher(name);
+                Matcher markerMatcher = MARKER.matcher(name);
+                if ((segmentMatcher.matches() && Integer.parseInt(segmentMatcher.group(1)) < firstSegment)
+                        || (baseMatcher.matches() && Long.parseLong(baseMatcher.group(1)) != keep)
+                        || (markerMatcher.matches() && Long.parseLong(markerMatcher.group(1)) != keep)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private void writeMarker(long gen, int firstSegment) throws IOException {
+        Path temp = directory.resolve("generation-" + gen + ".tmp");
+        Files.writeString(temp, Integer.toString(firstSegment));
+        Files.move(temp, marker(gen), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path marker(long gen) {
+        return directory.resolve("generation-" + gen + ".ok");
+    }
+
+    private Path segmentPath(int index) {
+        return directory.resolve(String.format("journal-%06d.log", index));
+    }
+
+    private Path basePath(long gen, int index) {
+        return directory.resolve(String.format("base-%d-%06d.log", gen, index));
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the journal");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof UncheckedIOException unchecked) {
+                throw unchecked.getCause();
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private record Mapped(FileChannel channel, MappedByteBuffer buffer) {
+    }
+
+    /**
+     * Кодирование кадров; у каждого потока свой экземпляр.
+     */
+    private static final class FrameCodec {
+        private final CRC32C crc = new CRC32C();
+        private ByteBuffer scratch = ByteBuffer.allocate(4096);
+
+        int encode(Mutation mutation) {
+            while (true) {
+                scratch.clear();
+                try {
+                    MutationCodec.encode(mutation, scratch);
+                    return scratch.position();
+                } catch (BufferOverflowException e) {
+                    scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+                }
+            }
+        }
+
+        int checksum(ByteBuffer buffer, int offset, int length) {
+            crc.reset();
+            crc.update(buffer.slice(offset, length));
+            return (int) crc.getValue();
+        }
+    }
+
+    /**
+     * Запись уплотнённого состояния в базовые файлы поколения обычной записью в канал.
+     * Файлы не больше сегмента и сбрасываются на диск до записи маркера поколения.
+     */
+    private final class BaseWriter implements MutationListener, Closeable {
+        private final long gen;
+        private final FrameCodec frames;
+        private final ByteBuffer header = ByteBuffer.allocate(HEADER);
+        private FileChannel file;
+        private int files;
+        private long fileBytes;
+        long bytes;
+
+        BaseWriter(long gen, FrameCodec frames) {
+            this.gen = gen;
+            this.frames = frames;
+        }
+
+        @Override
+        public void onMutation(Mutation mutation) {
+            try {
+                int length = frames.encode(mutation);
+                if (file == null || fileBytes + HEADER + length > segmentSize) {
+                    finish();
+                    file = FileChannel.open(basePath(gen, files++), StandardOpenOption.CREATE,
+                            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                    fileBytes = 0;
+                }
+                header.clear().putInt(length).putInt(frames.checksum(frames.scratch, 0, length)).flip();
+                ByteBuffer[] frame = {header, frames.scratch.slice(0, length)};
+                while (frame[1].hasRemaining()) {
+                    file.write(frame);
+                }
+                fileBytes += HEADER + length;
+                bytes += HEADER + length;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+        }
+
+        private void finish() throws IOException {
+            if (file != null) {
+                file.force(false);
+                file.close();
+                file = null;
+            }
+        }
+    }
+}
@@ -38,6 +38,22 @@ public interface LibraryOperations {
      */
     List<Book> searchBooks(String query);
 
+    /**
+     * Поиск с ограничением количества результатов. Реализации с индексом ранжируют книги по
+     * релевантности, по умолчанию возвращаются первые {@code limit} результатов
+     * {@link #searchBooks(String)}.
+     * @param query Параметры поиска.
+     * @param limit Сколько книг вернуть.
+     * @return не более {@code limit} книг, лучшие первыми.
+     */
+    default List<Book> searchBooks(String query, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive: " + limit);
+        }
+        List<Book> found = searchBooks(query);
+        return found.size() <= limit ? found : List.copyOf(found.subList(0, limit));
+    }
+
     // User management
 
     /**
@@ -74,6 +90,45 @@ public interface LibraryOperations {
      */
     boolean returnBook(String userId, String isbn);
 
+    /**
+     * Взять книгу с указанием причины отказа.
+     * @param userId Id пользователя.
+     * @param isbn Международный стандартный книжный номер.
+     * @return результат взятия книги.
+     */
+    default LoanStatus tryBorrowBook(String userId, String isbn) {
+        return borrowBooks(userId, List.of(isbn)).get(0).status();
+    }
+
+    /**
+     * Возврат книги с указанием причины отказа.
+     * @param userId Id пользователя.
+     * @param isbn Международный стандартный книжный номер.
+     * @return результат возврата книги.
+     */
+    default LoanStatus tryReturnBook(String userId, String isbn) {
+        return returnBooks(userId, List.of(isbn)).get(0).status();
+    }
+
+    /**
+     * Взять несколько книг сразу.
+     * Выдача происходит по принципу «всё или ничего»: если хотя бы одну книгу выдать нельзя,
+     * в том числе из-за лимита {@link User#getMaxBooks()}, не выдаётся ни одна, а остальные
+     * книги получают статус {@link LoanStatus#SKIPPED}.
+     * @param userId Id пользователя.
+     * @param isbns  Международные стандартные книжные номера.
+     * @return результат по каждой книге в порядке запроса.
+     */
+    List<LoanResult> borrowBooks(String userId, List<String> isbns);
+
+    /**
+     * Вернуть несколько книг сразу. Каждая книга возвращается независимо от остальных.
+     * @param userId Id пользователя.
+     * @param isbns  Международные стандартные книжные номера.
+     * @return результат по каждой книге в порядке запроса.
+     */
+    List<LoanResult> returnBooks(String userId, List<String> isbns);
+
     /**
      * Какие книги просрочены.
      *
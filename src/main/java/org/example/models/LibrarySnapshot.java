@@ -0,0 +1,502 @@
+package org.example.models;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Двоичный снимок состояния библиотеки: книги с числом экземпляров, пользователи, активные выдачи и штрафы.
+ * <p>
+ * Файл начинается с заголовка {@code "LIBS"}, старшей и младшей версии формата (по два байта),
+ * затем идут секции {@code [тип: 1 байт][длина: 8 байт][CRC32C: 4 байта][данные]} и завершающий
+ * нулевой тип. Числа внутри секций — varint (по 7 бит в байте, младшие первыми), строки — длина + 1
+ * в varint (0 для null) и байты UTF-8. Секции текущей версии:
+ * <pre>
+ * STRINGS  количество {строка}...                          авторы и жанры без повторов
+ * BOOKS    количество {isbn название автор# жанр# экземпляры}...   автор# и жанр# — номер в STRINGS, 0 — null
+ * USERS    количество {id имя почта тип}...
+ * LOANS    количество {пользователь# книга# день-выдачи}...  номера — порядковые в USERS и BOOKS, день — epoch-day
+ * FINES    количество {id долг}... количество {выдача# дни}...  долг в центах; выдача# — порядковый в LOANS,
+ *          дни — по какой день после срока возврата выдача оплачена (с версии 1.1)
+ * </pre>
+ * Младшая версия растёт при добавлении секций: читатель пропускает секции неизвестного типа, поэтому
+ * снимок более новой младшей версии загружается без них. Снимок другой старшей версии не читается.
+ * <p>
+ * Запись идёт через {@link FileChannel} во временный файл, который затем атомарно переименовывается.
+ * При загрузке каждая секция отображается в память и проверяется по контрольной сумме, после чего
+ * книги и пользователи добавляются пакетно. История возвратов и очереди в снимок не входят, как и
+ * выдачи книг, уже удалённых из каталога: такую книгу нельзя ни вернуть, ни восстановить при загрузке.
+ */
+public final class LibrarySnapshot {
+
+    public static final int MAJOR_VERSION = 1;
+    public static final int MINOR_VERSION = 1;
+
+    static final int MAGIC = 0x4C494253;  // "LIBS"
+    static final byte END = 0;
+    static final byte STRINGS = 1;
+    static final byte BOOKS = 2;
+    static final byte USERS = 3;
+    static final byte LOANS = 4;
+    static final byte FINES = 5;
+
+    private static final int HEADER = 8;           // магия + версии
+    private static final int SECTION_HEADER = 13;  // тип + длина + контрольная сумма
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private LibrarySnapshot() {
+    }
+
+    /**
+     * Сохранение состояния библиотеки.
+     * @param library Библиотека; во время записи её нельзя изменять.
+     * @param file    Файл снимка; заменяется целиком.
+     * @throws IOException при ошибке ввода-вывода.
+     */
+    public static void save(Library library, Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel);
+            out.buffer.putInt(MAGIC).putShort((short) MAJOR_VERSION).putShort((short) MINOR_VERSION);
+            out.flush();
+            writeSections(library, out);
+            out.buffer.put(END);
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Загрузка снимка в новую библиотеку.
+     * @param file Файл снимка.
+     * @return библиотека с состоянием снимка.
+     * @throws IOException при ошибке чтения, повреждённом файле или неподдерживаемой версии.
+     */
+    public static Library load(Path file) throws IOException {
+        Library library = new Library();
+        load(file, library);
+        return library;
+    }
+
+    /**
+     * Загрузка снимка.
+     * @param file    Файл снимка.
+     * @param library Пустая библиотека.
+     * @throws IOException при ошибке чтения, повреждённом файле или неподдерживаемой версии.
+     */
+    public static void load(Path file, Library library) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            readFully(channel, header, 0);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("Not a library snapshot: " + file);
+            }
+            int major = header.getShort(4);
+            int minor = header.getShort(6);
+            if (major != MAJOR_VERSION) {
+                throw new IOException("Unsupported snapshot version " + major + "." + minor);
+            }
+
+            Loader loader = new Loader(library);
+            long position = HEADER;
+            ByteBuffer sectionHeader = ByteBuffer.allocate(SECTION_HEADER);
+            CRC32C crc = new CRC32C();
+            while (true) {
+                // завершающий тип занимает один байт, поэтому заголовок читается в два приёма
+                sectionHeader.clear().limit(1);
+                readFully(channel, sectionHeader, position);
+                byte type = sectionHeader.get(0);
+                if (type == END) {
+                    break;
+                }
+                sectionHeader.limit(SECTION_HEADER);
+                readFully(channel, sectionHeader, position);
+                long length = sectionHeader.getLong(1);
+                int checksum = sectionHeader.getInt(9);
+                position += SECTION_HEADER;
+                if (length < 0 || length > channel.size() - position) {
+                    throw new IOException("Truncated snapshot section " + type);
+                }
+                MappedByteBuffer payload = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                crc.reset();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    throw new IOException("Corrupted snapshot section " + type);
+                }
+                loader.read(type, new Input(payload));
+                position += length;
+            }
+            loader.finish();
+        }
+    }
+
+    private static void writeSections(Library library, Output out) throws IOException {
+        // у выдач порядковые номера только тех книг и пользователей, которые на руках
+        List<BorrowingRecord> loans = new ArrayList<>(library.getActiveLoans());
+        Map<Book, Integer> loanedBooks = new IdentityHashMap<>();
+        Map<User, Integer> borrowers = new IdentityHashMap<>();
+        for (BorrowingRecord loan : loans) {
+            loanedBooks.put(loan.getBook(), -1);
+            borrowers.put(loan.getUser(), -1);
+        }
+
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        library.streamBooks().forEach(book -> {
+            intern(strings, book.getAuthor());
+            intern(strings, book.getGenre());
+        });
+        out.begin(STRINGS);
+        out.putVarLong(strings.size());
+        for (String value : strings.keySet()) {
+            out.putString(value);
+        }
+        out.end();
+
+        out.begin(BOOKS);
+        List<Book> books = library.showAllBooks();
+        out.putVarLong(books.size());
+        for (int i = 0; i < books.size(); i++) {
+            Book book = books.get(i);
+            out.putString(book.getIsbn());
+            out.putString(book.getTitle());
+            out.putVarLong(reference(strings, book.getAuthor()));
+            out.putVarLong(reference(strings, book.getGenre()));
+            out.putVarLong(book.getCopies());
+            loanedBooks.replace(book, i);
+        }
+        out.end();
+
+        out.begin(USERS);
+        List<User> users = library.showAllUsers();
+        out.putVarLong(users.size());
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            out.putString(user.getUserId());
+            out.putString(user.getName());
+            out.putString(user.getEmail());
+            out.buffer().put((byte) user.getUserType().ordinal());
+            borrowers.replace(user, i);
+        }
+        out.end();
+
+        // выдачи книг, удалённых из каталога, не записываются (см. описание класса)
+        loans.removeIf(loan -> loanedBooks.get(loan.getBook()) < 0);
+        out.begin(LOANS);
+        out.putVarLong(loans.size());
+        for (BorrowingRecord loan : loans) {
+            out.putVarLong(index(borrowers.get(loan.getUser()), loan));
+            out.putVarLong(index(loanedBooks.get(loan.getBook()), loan));
+            out.putVarLong(loan.getBorrowDate().toEpochDay());
+        }
+        out.end();
+
+        // без отметок оплаченных дней штраф после загрузки начислялся бы заново со срока возврата
+        out.begin(FINES);
+        Map<String, Long> balances = library.getFines().getBalances();
+        out.putVarLong(balances.size());
+        for (Map.Entry<String, Long> balance : balances.entrySet()) {
+            out.putString(balance.getKey());
+            out.putVarLong(balance.getValue());
+        }
+        List<Integer> fined = new ArrayList<>();
+        for (int i = 0; i < loans.size(); i++) {
+            if (loans.get(i).getFinedThrough() != Long.MIN_VALUE) {
+                fined.add(i);
+            }
+        }
+        out.putVarLong(fined.size());
+        for (int i : fined) {
+            BorrowingRecord loan = loans.get(i);
+            out.putVarLong(i);
+            out.putVarLong(loan.getFinedThrough() - loan.getDueDate().toEpochDay());
+        }
+        out.end();
+    }
+
+    // ссылка, которую нельзя загрузить, должна ломать запись, а не чтение
+    private static int index(int reference, BorrowingRecord loan) throws IOException {
+        if (reference < 0) {
+            throw new IOException("Loan of " + loan.getBook().getIsbn() + " by " + loan.getUser().getUserId()
+                    + " refers to an entry missing from the snapshot");
+        }
+        return reference;
+    }
+
+    private static void intern(Map<String, Integer> strings, String value) {
+        if (value != null) {
+            strings.putIfAbsent(value, strings.size() + 1);
+        }
+    }
+
+    private static int reference(Map<String, Integer> strings, String value) {
+        return value == null ? 0 : strings.get(value);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Truncated snapshot");
+            }
+        }
+    }
+
+    /**
+     * Сборка библиотеки из секций снимка.
+     */
+    private static final class Loader {
+        private final Library library;
+        private String[] strings = new String[1];  // [0] — null
+        private Book[] books = new Book[0];
+        private User[] users = new User[0];
+        private BorrowingRecord[] loans = new BorrowingRecord[0];
+
+        Loader(Library library) {
+            this.library = library;
+        }
+
+        void read(byte type, Input in) throws IOException {
+            switch (type) {
+                case STRINGS -> {
+                    strings = new String[in.count() + 1];
+                    for (int i = 1; i < strings.length; i++) {
+                        strings[i] = in.getString();
+                    }
+                }
+                case BOOKS -> {
+                    books = new Book[in.count()];
+                    for (int i = 0; i < books.length; i++) {
+                        String isbn = in.getString();
+                        String title = in.getString();
+                        Book book = new Book(title, string(in.getVarInt()), isbn, string(in.getVarInt()));
+                        for (long copies = in.getVarLong(); copies > 1; copies--) {
+                            book.addCopy();
+                        }
+                        books[i] = book;
+                    }
+                    library.importBooks(Arrays.asList(books));
+                }
+                case USERS -> {
+                    users = new User[in.count()];
+                    UserType[] types = UserType.values();
+                    for (int i = 0; i < users.length; i++) {
+                        String userId = in.getString();
+                        String name = in.getString();
+                        String email = in.getString();
+                        users[i] = switch (types[in.getByte()]) {
+                            case STUDENT -> new Student(name, userId, email);
+                            case GUEST -> new Guest(name, userId, email);
+                            case FACULTY -> new Faculty(name, userId, email);
+                        };
+                    }
+                    library.importUsers(Arrays.asList(users));
+                }
+                case LOANS -> {
+                    loans = new BorrowingRecord[in.count()];
+                    for (int i = 0; i < loans.length; i++) {
+                        User user = element(users, in.getVarInt());
+                        Book book = element(books, in.getVarInt());
+                        library.apply(new Mutation.BookBorrowed(user.getUserId(), book.getIsbn(),
+                                LocalDate.ofEpochDay(in.getVarLong())));
+                        loans[i] = library.findLoan(user.getUserId(), book.getIsbn());
+                    }
+                }
+                case FINES -> {
+                    for (int i = in.count(); i > 0; i--) {
+                        String userId = in.getString();
+                        library.getFines().restoreBalance(userId, in.getVarLong());
+                    }
+                    for (int i = in.count(); i > 0; i--) {
+                        BorrowingRecord loan = element(loans, in.getVarInt());
+                        long days = in.getVarLong();
+                        if (loan != null) {
+                            loan.setFinedThrough(loan.getDueDate().toEpochDay() + days);
+                        }
+                    }
+                }
+                default -> {
+                    // секция более новой младшей версии
+                }
+            }
+        }
+
+        void finish() {
+            strings = null;
+            books = null;
+            users = null;
+            loans = null;
+        }
+
+        private String string(int reference) throws IOException {
+            return element(strings, reference);
+        }
+
+        private static <T> T element(T[] array, int index) throws IOException {
+            if (index < 0 || index >= array.length) {
+                throw new IOException("Dangling reference " + index + " in snapshot");
+            }
+            return array[index];
+        }
+    }
+
+    /**
+     * Запись секций в канал через буфер. Контрольная сумма считается по мере сброса буфера,
+     * а длина и сумма секции дописываются в её заголовок по завершении.
+     */
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.BIG_ENDIAN);
+        private final CRC32C crc = new CRC32C();
+        private long sectionStart = -1;
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        ByteBuffer buffer() throws IOException {
+            ensure(1);
+            return buffer;
+        }
+
+        void begin(byte type) throws IOException {
+            flush();
+            ByteBuffer header = ByteBuffer.allocate(SECTION_HEADER);
+            header.put(0, type);
+            channel.write(header);
+            sectionStart = channel.position();
+            crc.reset();
+        }
+
+        void end() throws IOException {
+            flush();
+            long end = channel.position();
+            ByteBuffer header = ByteBuffer.allocate(SECTION_HEADER - 1);
+            header.putLong(end - sectionStart).putInt((int) crc.getValue()).flip();
+            channel.write(header, sectionStart - SECTION_HEADER + 1);
+            sectionStart = -1;
+        }
+
+        void putVarLong(long value) throws IOException {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        void putString(String value) throws IOException {
+            if (value == null) {
+                putVarLong(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putVarLong(bytes.length + 1L);
+            int offset = 0;
+            while (offset < bytes.length) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int chunk = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, chunk);
+                offset += chunk;
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            if (sectionStart >= 0) {
+                crc.update(buffer.duplicate());
+            }
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Чтение varint и строк из отображённой секции.
+     */
+    private static final class Input {
+        private final ByteBuffer buffer;
+        private byte[] scratch = new byte[256];
+
+        Input(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        byte getByte() throws IOException {
+            if (!buffer.hasRemaining()) {
+                throw new IOException("Truncated snapshot section");
+            }
+            return buffer.get();
+        }
+
+        long getVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = getByte();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint in snapshot");
+        }
+
+        int getVarInt() throws IOException {
+            long value = getVarLong();
+            if (value > Integer.MAX_VALUE) {
+                throw new IOException("Value out of range in snapshot: " + value);
+            }
+            return (int) value;
+        }
+
+        int count() throws IOException {
+            int count = getVarInt();
+            // каждый элемент занимает хотя бы байт: защищает от огромных массивов при порче
+            if (count > buffer.remaining()) {
+                throw new IOException("Truncated snapshot section");
+            }
+            return count;
+        }
+
+        String getString() throws IOException {
+            int length = getVarInt() - 1;
+            if (length < 0) {
+                return null;
+            }
+            if (length > buffer.remaining()) {
+                throw new IOException("Truncated snapshot section");
+            }
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buffer.get(scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package org.example.models;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Состояние {@link VersionedLibrary} на момент одной версии: книги с числом экземпляров на полке,
+ * пользователи и активные выдачи.
+ * <p>
+ * Вид неизменяем и не берёт блокировок: все методы видят одно и то же согласованное состояние,
+ * сколько бы выдач и возвратов ни прошло после его получения. Объекты {@link Book} в виде
+ * тоже не меняются — изменение экземпляров публикуется новым объектом в следующей версии.
+ * Объекты {@link User} общие для всех версий; их список книг на руках отражает текущее состояние,
+ * а согласованный с видом — {@link #getActiveLoans()}.
+ */
+public final class LibraryView {
+
+    private final long version;
+    private final PersistentHashMap<String, Book> books;   // ISBN -> Book
+    private final PersistentHashMap<String, User> users;   // UserID -> User
+    // день возврата (epoch-day) -> выдачи с этим сроком
+    private final PersistentHashMap<Long, PersistentHashMap<BorrowingRecord, BorrowingRecord>> loansByDueDay;
+    private final long[] dueDays;  // ключи loansByDueDay по возрастанию
+    private final int loanCount;
+    private final BookSearchIndex searchIndex;
+
+    LibraryView(long version, PersistentHashMap<String, Book> books, PersistentHashMap<String, User> users,
+                PersistentHashMap<Long, PersistentHashMap<BorrowingRecord, BorrowingRecord>> loansByDueDay,
+                long[] dueDays, int loanCount, BookSearchIndex searchIndex) {
+        this.version = version;
+        this.books = books;
+        this.users = users;
+        this.loansByDueDay = loansByDueDay;
+        this.dueDays = dueDays;
+        this.loanCount = loanCount;
+        this.searchIndex = searchIndex;
+    }
+
+    /**
+     * Номер версии; растёт с каждым опубликованным изменением.
+     * @return номер версии.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int bookCount() {
+        return books.size();
+    }
+
+    public int userCount() {
+        return users.size();
+    }
+
+    public int loanCount() {
+        return loanCount;
+    }
+
+    public Book findBook(String isbn) {
+        return books.get(isbn);
+    }
+
+    public User findUser(String userId) {
+        return users.get(userId);
+    }
+
+    public List<Book> showAllBooks() {
+        return books.values().collect(Collectors.toList());
+    }
+
+    public List<User> showAllUsers() {
+        return users.values().collect(Collectors.toList());
+    }
+
+    /**
+     * Все книги версии без копирования.
+     * @return ленивый поток книг в произвольном порядке.
+     */
+    public Stream<Book> streamBooks() {
+        return books.values();
+    }
+
+    /**
+     * Поиск по подстроке в названии, авторе или жанре, как в {@link BookSearchIndex}.
+     * Кандидаты берутся из общего для всех версий индекса и сверяются с книгами этой версии,
+     * поэтому книга, удалённая после получения вида, в поиске по нему уже не находится.
+     * @param query Параметры поиска.
+     * @return книги этой версии.
+     */
+    public List<Book> searchBooks(String query) {
+        List<Book> candidates = searchIndex.search(query);
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+        String searchTerm = query.trim().toLowerCase();
+        List<Book> result = new ArrayList<>(candidates.size());
+        for (Book candidate : candidates) {
+            Book book = books.get(candidate.getIsbn());
+            // ISBN мог быть удалён и добавлен заново с другими полями
+            if (book != null && BookSearchIndex.matches(book, searchTerm)) {
+                result.add(book);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Активные выдачи этой версии.
+     * @return выдачи в произвольном порядке.
+     */
+    public List<BorrowingRecord> getActiveLoans() {
+        List<BorrowingRecord> result = new ArrayList<>(loanCount);
+        loansByDueDay.forEach((day, loans) -> loans.forEach((loan, same) -> result.add(loan)));
+        return result;
+    }
+
+    /**
+     * Просроченные книги по тому же критерию, что и {@link Library#getOverdueBooks()}.
+     * @param today Текущая дата.
+     * @return список просроченных книг.
+     */
+    public List<BorrowingRecord> getOverdueBooks(LocalDate today) {
+        // дни упорядочены, поэтому затрагиваются только корзины со сроком до сегодняшнего дня
+        int end = Arrays.binarySearch(dueDays, today.toEpochDay());
+        end = end < 0 ? -end - 1 : end;
+        if (end == 0) {
+            return Collections.emptyList();
+        }
+        List<BorrowingRecord> result = new ArrayList<>();
+        for (int i = 0; i < end; i++) {
+            loansByDueDay.get(dueDays[i]).forEach((loan, same) -> result.add(loan));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,115 @@
+package org.example.models;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Журнал выдач.
+ * <p>
+ * Активные выдачи хранятся отдельно от истории и проиндексированы по пользователю и по дате
+ * возврата, поэтому выдача и возврат выполняются за O(1) независимо от объёма истории.
+ * Завершённые выдачи дописываются в конец истории и больше не просматриваются.
+ * <p>
+ * Каждая выдача — отдельный экземпляр книги: у одного ISBN может быть сколько угодно активных
+ * выдач, но у одного пользователя — не больше одной.
+ */
+public class LoanLedger {
+
+    private final Set<BorrowingRecord> active = ConcurrentHashMap.newKeySet();
+    private final Map<String, Map<String, BorrowingRecord>> byUser = new ConcurrentHashMap<>();  // UserID -> ISBN -> выдача
+    private final DueDateIndex dueDateIndex = new DueDateIndex();
+    private final Queue<BorrowingRecord> history = new ConcurrentLinkedQueue<>();
+    private final FineEngine fines = new FineEngine(() -> active);
+
+    /**
+     * Регистрация новой выдачи.
+     * @param record Запись о взятии книги.
+     */
+    public void open(BorrowingRecord record) {
+        String isbn = record.getBook().getIsbn();
+        active.add(record);
+        byUser.compute(record.getUser().getUserId(), (id, loans) -> {
+            Map<String, BorrowingRecord> result = loans == null ? new ConcurrentHashMap<>() : loans;
+            result.put(isbn, record);
+            return result;
+        });
+        dueDateIndex.add(record);
+    }
+
+    /**
+     * Закрытие выдачи и перенос её в историю.
+     * @param userId     Id пользователя.
+     * @param isbn       Международный стандартный книжный номер.
+     * @param returnDate Дата возврата.
+     * @return закрытая выдача или null, если у пользователя нет этой книги.
+     */
+    public BorrowingRecord close(String userId, String isbn, LocalDate returnDate) {
+        BorrowingRecord[] closed = new BorrowingRecord[1];
+        byUser.computeIfPresent(userId, (id, loans) -> {
+            closed[0] = loans.remove(isbn);
+            return loans.isEmpty() ? null : loans;
+        });
+        BorrowingRecord record = closed[0];
+        if (record == null) {
+            return null;
+        }
+        active.remove(record);
+        dueDateIndex.remove(record);
+
+        record.setReturnDate(returnDate);
+        fines.onReturn(record, returnDate);
+        history.add(record);
+        return record;
+    }
+
+    /**
+     * Активная выдача книги пользователю.
+     * @param userId Id пользователя.
+     * @param isbn   Международный стандартный книжный номер.
+     * @return выдача или null, если у пользователя нет этой книги.
+     */
+    public BorrowingRecord find(String userId, String isbn) {
+        Map<String, BorrowingRecord> loans = byUser.get(userId);
+        return loans == null ? null : loans.get(isbn);
+    }
+
+    /**
+     * Активные выдачи пользователя.
+     * @param userId Id пользователя.
+     * @return выдачи пользователя.
+     */
+    public Collection<BorrowingRecord> findByUser(String userId) {
+        Map<String, BorrowingRecord> loans = byUser.get(userId);
+        return loans == null ? Collections.emptyList() : Collections.unmodifiableCollection(loans.values());
+    }
+
+    /**
+     * Все активные выдачи.
+     * @return выдачи.
+     */
+    public Collection<BorrowingRecord> getActiveLoans() {
+        return Collections.unmodifiableCollection(active);
+    }
+
+    /**
+     * Завершённые выдачи в порядке возврата.
+     * @return история выдач.
+     */
+    public Collection<BorrowingRecord> getHistory() {
+        return Collections.unmodifiableCollection(history);
+    }
+
+    public DueDateIndex getDueDateIndex() {
+        return dueDateIndex;
+    }
+
+    public FineEngine getFines() {
+        return fines;
+    }
+}
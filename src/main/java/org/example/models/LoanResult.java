@@ -0,0 +1,13 @@
+package org.example.models;
+
+/**
+ * Результат обработки одной книги в пакетной выдаче или возврате.
+ * @param isbn   Международный стандартный книжный номер.
+ * @param status Результат.
+ */
+public record LoanResult(String isbn, LoanStatus status) {
+
+    public boolean isOk() {
+        return status == LoanStatus.OK;
+    }
+}
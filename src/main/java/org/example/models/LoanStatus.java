@@ -0,0 +1,19 @@
+package org.example.models;
+
+/**
+ * Результат выдачи или возврата одной книги.
+ */
+public enum LoanStatus {
+    OK,
+    USER_NOT_FOUND,
+    BOOK_NOT_FOUND,
+    NOT_AVAILABLE,
+    LIMIT_REACHED,
+    NOT_BORROWED,
+    // ISBN повторяется в пакете или экземпляр этой книги уже у пользователя
+    DUPLICATE,
+    // свободных экземпляров нет, пользователь поставлен в очередь
+    QUEUED,
+    // книга не обработана, потому что пакет отклонён из-за другой книги
+    SKIPPED
+}
@@ -0,0 +1,42 @@
+package org.example.models;
+
+import java.time.LocalDate;
+
+/**
+ * Изменение состояния библиотеки.
+ * <p>
+ * Применение одной и той же последовательности изменений к пустой {@link Library}
+ * восстанавливает её состояние, поэтому они используются для журнала и восстановления.
+ */
+public sealed interface Mutation {
+
+    /**
+     * Книга добавлена.
+     */
+    record BookAdded(String title, String author, String isbn, String genre) implements Mutation {
+    }
+
+    /**
+     * Книга удалена.
+     */
+    record BookRemoved(String isbn) implements Mutation {
+    }
+
+    /**
+     * Пользователь зарегистрирован.
+     */
+    record UserRegistered(String name, String userId, String email, UserType type) implements Mutation {
+    }
+
+    /**
+     * Книга выдана.
+     */
+    record BookBorrowed(String userId, String isbn, LocalDate date) implements Mutation {
+    }
+
+    /**
+     * Книга возвращена.
+     */
+    record BookReturned(String userId, String isbn, LocalDate date) implements Mutation {
+    }
+}
@@ -0,0 +1,124 @@
+package org.example.models;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Двоичное представление изменений.
+ * <p>
+ * Первый байт — тип изменения, далее поля по порядку: строки как длина (int, -1 для null)
+ * и байты UTF-8, даты как epoch-day (long), тип пользователя как его порядковый номер.
+ */
+public final class MutationCodec {
+
+    private static final byte BOOK_ADDED = 1;
+    private static final byte BOOK_REMOVED = 2;
+    private static final byte USER_REGISTERED = 3;
+    private static final byte BOOK_BORROWED = 4;
+    private static final byte BOOK_RETURNED = 5;
+
+    private MutationCodec() {
+    }
+
+    /**
+     * Запись изменения в буфер.
+     * @param mutation Изменение.
+     * @param buffer   Буфер.
+     * @throws java.nio.BufferOverflowException если изменение не помещается в буфер.
+     */
+    public static void encode(Mutation mutation, ByteBuffer buffer) {
+        switch (mutation) {
+            case Mutation.BookAdded m -> {
+                buffer.put(BOOK_ADDED);
+                putString(buffer, m.title());
+                putString(buffer, m.author());
+                putString(buffer, m.isbn());
+                putString(buffer, m.genre());
+            }
+            case Mutation.BookRemoved m -> {
+                buffer.put(BOOK_REMOVED);
+                putString(buffer, m.isbn());
+            }
+            case Mutation.UserRegistered m -> {
+                buffer.put(USER_REGISTERED);
+                putString(buffer, m.name());
+                putString(buffer, m.userId());
+                putString(buffer, m.email());
+                buffer.put((byte) m.type().ordinal());
+            }
+            case Mutation.BookBorrowed m -> {
+                buffer.put(BOOK_BORROWED);
+                putString(buffer, m.userId());
+                putString(buffer, m.isbn());
+                buffer.putLong(m.date().toEpochDay());
+            }
+            case Mutation.BookReturned m -> {
+                buffer.put(BOOK_RETURNED);
+                putString(buffer, m.userId());
+                putString(buffer, m.isbn());
+                buffer.putLong(m.date().toEpochDay());
+            }
+        }
+    }
+
+    /**
+     * Запись изменения в отдельный массив.
+     * @param mutation Изменение.
+     * @return байты изменения.
+     */
+    public static byte[] toBytes(Mutation mutation) {
+        for (int capacity = 256; ; capacity *= 2) {
+            ByteBuffer buffer = ByteBuffer.allocate(capacity);
+            try {
+                encode(mutation, buffer);
+                return Arrays.copyOf(buffer.array(), buffer.position());
+            } catch (BufferOverflowException e) {
+                // длинные строки: пробуем буфер вдвое больше
+            }
+        }
+    }
+
+    /**
+     * Чтение изменения из буфера.
+     * @param buffer Буфер, позиция которого указывает на начало изменения.
+     * @return изменение.
+     * @throws IllegalArgumentException если тип изменения неизвестен.
+     */
+    public static Mutation decode(ByteBuffer buffer) {
+        byte type = buffer.get();
+        return switch (type) {
+            case BOOK_ADDED -> new Mutation.BookAdded(getString(buffer), getString(buffer), getString(buffer), getString(buffer));
+            case BOOK_REMOVED -> new Mutation.BookRemoved(getString(buffer));
+            case USER_REGISTERED -> new Mutation.UserRegistered(getString(buffer), getString(buffer), getString(buffer),
+                    UserType.values()[buffer.get()]);
+            case BOOK_BORROWED -> new Mutation.BookBorrowed(getString(buffer), getString(buffer),
+                    LocalDate.ofEpochDay(buffer.getLong()));
+            case BOOK_RETURNED -> new Mutation.BookReturned(getString(buffer), getString(buffer),
+                    LocalDate.ofEpochDay(buffer.getLong()));
+            default -> throw new IllegalArgumentException("Unknown mutation type: " + type);
+        };
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,18 @@
+package org.example.models;
+
+/**
+ * Асинхронный получатель изменений из {@link MutationRingBuffer}.
+ */
+@FunctionalInterface
+public interface MutationHandler {
+
+    /**
+     * Вызывается в потоке получателя для каждого изменения по порядку.
+     * @param mutation   Изменение.
+     * @param sequence   Порядковый номер изменения в буфере, начиная с 0.
+     * @param endOfBatch Последнее изменение из уже опубликованных: удобный момент сбросить
+     *                   накопленную работу, например записать пакет на диск.
+     * @throws Exception ошибка обработки; она учитывается и не останавливает получателя.
+     */
+    void onEvent(Mutation mutation, long sequence, boolean endOfBatch) throws Exception;
+}
@@ -0,0 +1,14 @@
+package org.example.models;
+
+/**
+ * Получатель изменений состояния библиотеки.
+ */
+@FunctionalInterface
+public interface MutationListener {
+
+    /**
+     * Вызывается после каждого успешно применённого изменения.
+     * @param mutation Изменение.
+     */
+    void onMutation(Mutation mutation);
+}
@@ -0,0 +1,287 @@
+package org.example.models;
+
+import java.io.Closeable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Кольцевой буфер изменений с асинхронной раздачей нескольким получателям.
+ * <p>
+ * Подписывается на {@link Library} как обычный {@link MutationListener}, но вместо работы в
+ * потоке библиотеки лишь кладёт изменение в заранее выделенную ячейку и сдвигает курсор. Писатель
+ * один — поток, изменяющий библиотеку, поэтому номер следующей ячейки не требует атомарных
+ * операций: достаточно записать изменение и опубликовать курсор с семантикой release. У каждого
+ * получателя свой поток и своя последовательность — номер последнего обработанного изменения.
+ * Получатель забирает сразу всё опубликованное после неё и вызывает {@link MutationHandler} для
+ * каждого изменения, отмечая последнее в пакете.
+ * <p>
+ * Писатель не обгоняет самого медленного получателя больше чем на размер буфера: при заполнении
+ * {@link #onMutation(Mutation)} ждёт освобождения ячейки, а {@link #tryPublish(Mutation)}
+ * возвращает false. Ожидание и писателя, и получателей начинается с активного опроса, затем
+ * уступает процессор и в конце засыпает на короткое время.
+ * <p>
+ * Курсор и последовательности отделены от соседних полей заполнителями, чтобы писатель и
+ * получатели не делили строку кеша.
+ */
+public class MutationRingBuffer implements MutationListener, Closeable {
+
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+
+    private static final int SPINS = 100;
+    private static final int YIELDS = 200;
+    private static final long PARK_NANOS = 50_000;
+
+    private final Mutation[] slots;
+    private final int mask;
+    private final Sequence cursor = new Sequence();
+    private final Consumer[] consumers;
+    private final AtomicLong stalls = new AtomicLong();
+
+    private long next;             // следующая ячейка писателя
+    private long gatingCache = -1; // последний известный минимум последовательностей получателей
+    private volatile boolean running = true;
+
+    /**
+     * Буфер размера по умолчанию.
+     * @see #MutationRingBuffer(int, List)
+     */
+    public MutationRingBuffer(List<MutationHandler> handlers) {
+        this(DEFAULT_CAPACITY, handlers);
+    }
+
+    /**
+     * Создание буфера и запуск потоков получателей.
+     * @param capacity Количество ячеек, степень двойки.
+     * @param handlers Получатели; каждый получает все изменения по порядку.
+     */
+    public MutationRingBuffer(int capacity, List<MutationHandler> handlers) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        if (handlers.isEmpty()) {
+            throw new IllegalArgumentException("At least one handler is required");
+        }
+        slots = new Mutation[capacity];
+        mask = capacity - 1;
+        consumers = new Consumer[handlers.size()];
+        for (int i = 0; i < consumers.length; i++) {
+            consumers[i] = new Consumer(handlers.get(i), i);
+        }
+        for (Consumer consumer : consumers) {
+            consumer.thread.start();
+        }
+    }
+
+    /**
+     * Публикация изменения; при заполненном буфере ждёт самого медленного получателя.
+     * Вызывается только из одного потока.
+     * @param mutation Изменение.
+     * @throws IllegalStateException буфер закрыт.
+     */
+    @Override
+    public void onMutation(Mutation mutation) {
+        ensureRunning();
+        if (!hasCapacity()) {
+            stalls.incrementAndGet();
+            int idle = 0;
+            do {
+                idle = backOff(idle);
+                ensureRunning();
+            } while (!hasCapacity());
+        }
+        put(mutation);
+    }
+
+    /**
+     * Публикация изменения без ожидания. Вызывается только из одного потока.
+     * @param mutation Изменение.
+     * @return false, если буфер заполнен и изменение не опубликовано.
+     * @throws IllegalStateException буфер закрыт.
+     */
+    public boolean tryPublish(Mutation mutation) {
+        ensureRunning();
+        if (!hasCapacity()) {
+            return false;
+        }
+        put(mutation);
+        return true;
+    }
+
+    /**
+     * @return количество опубликованных изменений.
+     */
+    public long getPublished() {
+        return cursor.get() + 1;
+    }
+
+    /**
+     * @return количество свободных ячеек.
+     */
+    public int remainingCapacity() {
+        return (int) (slots.length - (cursor.get() - minimumSequence()));
+    }
+
+    /**
+     * @return сколько раз писатель ждал освобождения ячейки.
+     */
+    public long getStalls() {
+        return stalls.get();
+    }
+
+    /**
+     * Отставание получателя.
+     * @param handler Номер получателя в порядке передачи в конструктор.
+     * @return количество опубликованных, но ещё не обработанных им изменений.
+     */
+    public long getLag(int handler) {
+        return cursor.get() - consumers[handler].sequence.get();
+    }
+
+    /**
+     * Ошибки получателя.
+     * @param handler Номер получателя в порядке передачи в конструктор.
+     * @return сколько вызовов получателя завершились исключением.
+     */
+    public long getErrors(int handler) {
+        return consumers[handler].errors.get();
+    }
+
+    /**
+     * Остановка: получатели обрабатывают всё опубликованное, после чего их потоки завершаются.
+     * Вызывается после последней публикации: от библиотеки буфер нужно сначала отписать.
+     */
+    @Override
+    public void close() {
+        running = false;
+        for (Consumer consumer : consumers) {
+            try {
+                consumer.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private boolean hasCapacity() {
+        long wrapPoint = next - slots.length;
+        if (wrapPoint <= gatingCache) {
+            return true;
+        }
+        gatingCache = minimumSequence();
+        return wrapPoint <= gatingCache;
+    }
+
+    private void put(Mutation mutation) {
+        slots[(int) next & mask] = mutation;
+        cursor.setRelease(next++);
+    }
+
+    private long minimumSequence() {
+        long minimum = Long.MAX_VALUE;
+        for (Consumer consumer : consumers) {
+            minimum = Math.min(minimum, consumer.sequence.get());
+        }
+        return minimum;
+    }
+
+    private void ensureRunning() {
+        if (!running) {
+            throw new IllegalStateException("Ring buffer is closed");
+        }
+    }
+
+    private static int backOff(int idle) {
+        if (idle < SPINS) {
+            Thread.onSpinWait();
+        } else if (idle < YIELDS) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        return idle + 1;
+    }
+
+    /**
+     * Получатель со своим потоком и последовательностью.
+     */
+    private final class Consumer implements Runnable {
+        final MutationHandler handler;
+        final Sequence sequence = new Sequence();
+        final AtomicLong errors = new AtomicLong();
+        final Thread thread;
+
+        Consumer(MutationHandler handler, int index) {
+            this.handler = handler;
+            this.thread = new Thread(this, "mutation-consumer-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            long processed = -1;
+            int idle = 0;
+            while (true) {
+                long available = cursor.getAcquire();
+                if (available <= processed) {
+                    if (!running && cursor.getAcquire() <= processed) {
+                        return;
+                    }
+                    idle = backOff(idle);
+                    continue;
+                }
+                for (long s = processed + 1; s <= available; s++) {
+                    try {
+                        handler.onEvent(slots[(int) s & mask], s, s == available);
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                }
+                processed = available;
+                sequence.setRelease(processed);
+                idle = 0;
+            }
+        }
+    }
+
+    /**
+     * Номер ячейки, отделённый заполнителями от соседних объектов. Порядок полей при
+     * наследовании сохраняется, поэтому значение оказывается между двумя блоками по 56 байт.
+     */
+    private static class LeftPadding {
+        long p1, p2, p3, p4, p5, p6, p7;
+    }
+
+    private static class Value extends LeftPadding {
+        volatile long value = -1;
+    }
+
+    private static final class Sequence extends Value {
+        private static final VarHandle VALUE;
+
+        static {
+            try {
+                VALUE = MethodHandles.lookup().findVarHandle(Value.class, "value", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        long p9, p10, p11, p12, p13, p14, p15;
+
+        long get() {
+            return value;
+        }
+
+        long getAcquire() {
+            return (long) VALUE.getAcquire(this);
+        }
+
+        void setRelease(long sequence) {
+            VALUE.setRelease(this, sequence);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package org.example.models;
+
+import java.util.Map;
+
+/**
+ * Снимок статистики одной операции.
+ * @param operation Название операции.
+ * @param calls     Количество вызовов.
+ * @param failures  Количество неудачных вызовов по причинам.
+ * @param p50Nanos  Медиана задержки.
+ * @param p99Nanos  99-й перцентиль задержки.
+ * @param p999Nanos 99.9-й перцентиль задержки.
+ * @param maxNanos  Максимальная задержка.
+ */
+public record OperationStats(String operation, long calls, Map<String, Long> failures,
+                             long p50Nanos, long p99Nanos, long p999Nanos, long maxNanos) {
+
+    public long failureCount() {
+        return failures.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-16s %10d calls %8d failed  p50 %9.1f us  p99 %9.1f us  p999 %9.1f us  max %9.1f us",
+                operation, calls, failureCount(),
+                p50Nanos / 1000.0, p99Nanos / 1000.0, p999Nanos / 1000.0, maxNanos / 1000.0);
+    }
+}
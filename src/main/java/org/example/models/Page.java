@@ -0,0 +1,46 @@
+package org.example.models;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.function.Function;
+
+/**
+ * Страница списка.
+ * @param items      Элементы страницы.
+ * @param nextCursor Курсор следующей страницы или null, если страница последняя.
+ */
+public record Page<T>(List<T> items, String nextCursor) {
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    /**
+     * Страница по упорядоченному множеству ключей. Курсор — последний ключ предыдущей страницы,
+     * поэтому порядок не сбивается, если между запросами страниц ключи добавляются или удаляются.
+     * @param keys     Ключи в порядке выдачи.
+     * @param lookup   Поиск элемента по ключу; null пропускается.
+     * @param cursor   Курсор из предыдущей страницы или null для первой.
+     * @param pageSize Размер страницы.
+     * @return страница.
+     */
+    static <T> Page<T> of(NavigableSet<String> keys, Function<String, T> lookup, String cursor, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+        List<T> items = new ArrayList<>(pageSize);
+        String last = null;
+        for (String key : cursor == null ? keys : keys.tailSet(cursor, false)) {
+            if (items.size() == pageSize) {
+                return new Page<>(items, last);
+            }
+            T item = lookup.apply(key);
+            if (item != null) {
+                items.add(item);
+                last = key;
+            }
+        }
+        return new Page<>(items, null);
+    }
+}
@@ -0,0 +1,305 @@
+package org.example.models;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Неизменяемая хеш-таблица (hash array mapped trie).
+ * <p>
+ * Дерево с ветвлением 32 по пять бит хеша на уровень; в узле хранятся только занятые ветви
+ * и битовая маска занятости. {@link #put} и {@link #remove} копируют путь от корня до листа —
+ * не больше семи узлов — и возвращают новую таблицу, а остальные узлы остаются общими с прежней.
+ * Поэтому старая версия остаётся действительной без блокировок и копирования, пока на неё
+ * кто-то ссылается. Ключи с одинаковым хешем хранятся в общем списке.
+ */
+final class PersistentHashMap<K, V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(null, 0);
+
+    private final Object root;  // null, Leaf, Branch или Collision
+    private final int size;
+
+    private PersistentHashMap(Object root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(Object key) {
+        int hash = hash(key);
+        Object node = root;
+        for (int shift = 0; ; shift += BITS) {
+            if (node instanceof Leaf<?, ?> leaf) {
+                return leaf.hash == hash && Objects.equals(leaf.key, key) ? (V) leaf.value : null;
+            } else if (node instanceof Branch branch) {
+                int bit = 1 << ((hash >>> shift) & MASK);
+                if ((branch.bitmap & bit) == 0) {
+                    return null;
+                }
+                node = branch.children[branch.index(bit)];
+            } else if (node instanceof Collision collision) {
+                int i = collision.indexOf(hash, key);
+                return i < 0 ? null : (V) collision.leaves[i].value;
+            } else {
+                return null;
+            }
+        }
+    }
+
+    boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Таблица с добавленной или заменённой парой.
+     * @return новая таблица; эта же, если значение не изменилось.
+     */
+    PersistentHashMap<K, V> put(K key, V value) {
+        Objects.requireNonNull(value, "value");
+        Leaf<K, V> leaf = new Leaf<>(hash(key), key, value);
+        boolean[] added = new boolean[1];
+        Object newRoot = put(root, leaf, 0, added);
+        return newRoot == root ? this : new PersistentHashMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * Таблица без ключа.
+     * @return новая таблица; эта же, если ключа не было.
+     */
+    PersistentHashMap<K, V> remove(Object key) {
+        Object newRoot = remove(root, hash(key), key, 0);
+        return newRoot == root ? this : new PersistentHashMap<>(newRoot, size - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    void forEach(BiConsumer<? super K, ? super V> action) {
+        Iterator<Leaf<?, ?>> leaves = new LeafIterator(root);
+        while (leaves.hasNext()) {
+            Leaf<?, ?> leaf = leaves.next();
+            action.accept((K) leaf.key, (V) leaf.value);
+        }
+    }
+
+    /**
+     * Значения в порядке хешей ключей.
+     * @return ленивый поток; таблица неизменяема, поэтому обход безопасен при любых изменениях.
+     */
+    @SuppressWarnings("unchecked")
+    Stream<V> values() {
+        Iterator<Leaf<?, ?>> leaves = new LeafIterator(root);
+        Iterator<V> values = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return leaves.hasNext();
+            }
+
+            @Override
+            public V next() {
+                return (V) leaves.next().value;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliterator(values, size,
+                Spliterator.SIZED | Spliterator.IMMUTABLE | Spliterator.NONNULL), false);
+    }
+
+    private static Object put(Object node, Leaf<?, ?> leaf, int shift, boolean[] added) {
+        if (node == null) {
+            added[0] = true;
+            return leaf;
+        }
+        if (node instanceof Leaf<?, ?> existing) {
+            if (existing.hash == leaf.hash && Objects.equals(existing.key, leaf.key)) {
+                return existing.value.equals(leaf.value) ? existing : leaf;
+            }
+            added[0] = true;
+            return merge(existing, leaf, shift);
+        }
+        if (node instanceof Collision collision) {
+            if (collision.hash != leaf.hash) {
+                // другой хеш на этом уровне: коллизия уходит ниже вместе с новым листом
+                Branch branch = new Branch(1 << ((collision.hash >>> shift) & MASK), new Object[]{collision});
+                return put(branch, leaf, shift, added);
+            }
+            int i = collision.indexOf(leaf.hash, leaf.key);
+            if (i >= 0) {
+                if (collision.leaves[i].value.equals(leaf.value)) {
+                    return collision;
+                }
+                Leaf<?, ?>[] leaves = collision.leaves.clone();
+                leaves[i] = leaf;
+                return new Collision(collision.hash, leaves);
+            }
+            added[0] = true;
+            Leaf<?, ?>[] leaves = Arrays.copyOf(collision.leaves, collision.leaves.length + 1);
+            leaves[leaves.length - 1] = leaf;
+            return new Collision(collision.hash, leaves);
+        }
+
+        Branch branch = (Branch) node;
+        int bit = 1 << ((leaf.hash >>> shift) & MASK);
+        int index = branch.index(bit);
+        if ((branch.bitmap & bit) == 0) {
+            added[0] = true;
+            Object[] children = new Object[branch.children.length + 1];
+            System.arraycopy(branch.children, 0, children, 0, index);
+            children[index] = leaf;
+            System.arraycopy(branch.children, index, children, index + 1, branch.children.length - index);
+            return new Branch(branch.bitmap | bit, children);
+        }
+        Object child = branch.children[index];
+        Object newChild = put(child, leaf, shift + BITS, added);
+        return newChild == child ? branch : branch.with(index, newChild);
+    }
+
+    private static Object merge(Leaf<?, ?> a, Leaf<?, ?> b, int shift) {
+        if (a.hash == b.hash) {
+            return new Collision(a.hash, new Leaf<?, ?>[]{a, b});
+        }
+        // хеши различаются, поэтому развилка найдётся не глубже седьмого уровня
+        int fa = (a.hash >>> shift) & MASK;
+        int fb = (b.hash >>> shift) & MASK;
+        if (fa == fb) {
+            return new Branch(1 << fa, new Object[]{merge(a, b, shift + BITS)});
+        }
+        return new Branch(1 << fa | 1 << fb, fa < fb ? new Object[]{a, b} : new Object[]{b, a});
+    }
+
+    private static Object remove(Object node, int hash, Object key, int shift) {
+        if (node == null) {
+            return null;
+        }
+        if (node instanceof Leaf<?, ?> leaf) {
+            return leaf.hash == hash && Objects.equals(leaf.key, key) ? null : leaf;
+        }
+        if (node instanceof Collision collision) {
+            int i = collision.indexOf(hash, key);
+            if (i < 0) {
+                return collision;
+            }
+            if (collision.leaves.length == 2) {
+                return collision.leaves[1 - i];
+            }
+            Leaf<?, ?>[] leaves = new Leaf<?, ?>[collision.leaves.length - 1];
+            System.arraycopy(collision.leaves, 0, leaves, 0, i);
+            System.arraycopy(collision.leaves, i + 1, leaves, i, leaves.length - i);
+            return new Collision(collision.hash, leaves);
+        }
+
+        Branch branch = (Branch) node;
+        int bit = 1 << ((hash >>> shift) & MASK);
+        if ((branch.bitmap & bit) == 0) {
+            return branch;
+        }
+        int index = branch.index(bit);
+        Object child = branch.children[index];
+        Object newChild = remove(child, hash, key, shift + BITS);
+        if (newChild == child) {
+            return branch;
+        }
+        if (newChild != null) {
+            return branch.with(index, newChild);
+        }
+        if (branch.children.length == 1) {
+            return null;
+        }
+        Object[] children = new Object[branch.children.length - 1];
+        System.arraycopy(branch.children, 0, children, 0, index);
+        System.arraycopy(branch.children, index + 1, children, index, children.length - index);
+        return new Branch(branch.bitmap & ~bit, children);
+    }
+
+    private static int hash(Object key) {
+        int h = Objects.hashCode(key);
+        return h ^ (h >>> 16);
+    }
+
+    private record Leaf<K, V>(int hash, K key, V value) {
+    }
+
+    private record Branch(int bitmap, Object[] children) {
+
+        int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        Branch with(int index, Object child) {
+            Object[] copy = children.clone();
+            copy[index] = child;
+            return new Branch(bitmap, copy);
+        }
+    }
+
+    private record Collision(int hash, Leaf<?, ?>[] leaves) {
+
+        int indexOf(int hash, Object key) {
+            if (hash != this.hash) {
+                return -1;
+            }
+            for (int i = 0; i < leaves.length; i++) {
+                if (Objects.equals(leaves[i].key, key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Обход листьев в глубину со стеком узлов вместо рекурсии.
+     */
+    private static final class LeafIterator implements Iterator<Leaf<?, ?>> {
+        private final Deque<Object> stack = new ArrayDeque<>();
+
+        LeafIterator(Object root) {
+            if (root != null) {
+                stack.push(root);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public Leaf<?, ?> next() {
+            while (true) {
+                if (stack.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Object node = stack.pop();
+                if (node instanceof Leaf<?, ?> leaf) {
+                    return leaf;
+                }
+                Object[] children = node instanceof Branch branch ? branch.children() : ((Collision) node).leaves();
+                for (int i = children.length - 1; i >= 0; i--) {
+                    stack.push(children[i]);
+                }
+            }
+        }
+    }
+}
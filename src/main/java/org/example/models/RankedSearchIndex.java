@@ -0,0 +1,215 @@
+package org.example.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Индекс для поиска по релевантности (BM25F) по словам названия, автора и жанра.
+ * <p>
+ * Для каждого слова хранится, сколько раз оно встречается в каждом поле книги. Вхождение в
+ * название весит {@link #TITLE_BOOST} вхождений в автора или жанр, так же взвешивается длина
+ * книги в словах. Запрос из нескольких слов находит книги, содержащие все слова: проверяются
+ * только книги самого короткого списка вхождений, а лучшие {@code limit} из них держатся в куче
+ * ограниченного размера, поэтому полный список совпадений не собирается и не сортируется.
+ * <p>
+ * Как и в {@link BookSearchIndex}, поля книги в каталоге менять не следует.
+ */
+public class RankedSearchIndex {
+
+    static final double K1 = 1.2;
+    static final double B = 0.75;
+    static final double TITLE_BOOST = 2.0;
+
+    // счётчики вхождений слова в поле, упакованные в одно число
+    private static final int FIELD_BITS = 10;
+    private static final int FIELD_MASK = (1 << FIELD_BITS) - 1;
+
+    static final Comparator<Scored> WORST_FIRST =
+            Comparator.comparingDouble(Scored::score).thenComparing(s -> s.book().getIsbn(), Comparator.reverseOrder());
+
+    // слово -> книга -> вхождения в название, автора и жанр
+    private final Map<String, Map<Book, Integer>> postings = new ConcurrentHashMap<>();
+    private final Map<Book, Double> lengths = new ConcurrentHashMap<>();  // Book -> взвешенная длина
+    private final DoubleAdder totalLength = new DoubleAdder();
+
+    /**
+     * Добавление книги в индекс.
+     * @param book Книга.
+     */
+    public void add(Book book) {
+        Map<String, Integer> counts = counts(book);
+        double length = length(counts);
+        if (lengths.putIfAbsent(book, length) != null) {
+            return;
+        }
+        totalLength.add(length);
+        counts.forEach((term, packed) -> postings
+                .computeIfAbsent(term, t -> new ConcurrentHashMap<>())
+                .put(book, packed));
+    }
+
+    /**
+     * Удаление книги из индекса.
+     * @param book Книга.
+     */
+    public void remove(Book book) {
+        Double length = lengths.remove(book);
+        if (length == null) {
+            return;
+        }
+        totalLength.add(-length);
+        for (String term : counts(book).keySet()) {
+            postings.computeIfPresent(term, (t, books) -> {
+                books.remove(book);
+                return books.isEmpty() ? null : books;
+            });
+        }
+    }
+
+    /**
+     * Лучшие по релевантности книги, содержащие все слова запроса.
+     * @param query Параметры поиска.
+     * @param limit Сколько книг вернуть.
+     * @return книги по убыванию релевантности.
+     */
+    public List<Book> search(String query, int limit) {
+        List<Scored> best = searchScored(query, limit);
+        List<Book> result = new ArrayList<>(best.size());
+        for (Scored scored : best) {
+            result.add(scored.book());
+        }
+        return result;
+    }
+
+    /**
+     * То же, что {@link #search(String, int)}, но вместе с оценками, чтобы результаты
+     * нескольких индексов можно было слить.
+     * @param query Параметры поиска.
+     * @param limit Сколько книг вернуть.
+     * @return книги с оценками по убыванию релевантности.
+     */
+    List<Scored> searchScored(String query, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive: " + limit);
+        }
+        Set<String> terms = query == null ? Set.of() : new LinkedHashSet<>(tokenize(query));
+        if (terms.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        int documents = lengths.size();
+        double averageLength = documents == 0 ? 1 : Math.max(1, totalLength.sum() / documents);
+
+        List<Map<Book, Integer>> lists = new ArrayList<>(terms.size());
+        double[] idf = new double[terms.size()];
+        for (String term : terms) {
+            Map<Book, Integer> books = postings.get(term);
+            if (books == null) {
+                return Collections.emptyList();
+            }
+            lists.add(books);
+        }
+        // начинаем с самого короткого списка, чтобы проверить как можно меньше кандидатов
+        lists.sort(Comparator.comparingInt(Map::size));
+        int n = lists.size();
+        for (int i = 0; i < n; i++) {
+            double df = lists.get(i).size();
+            idf[i] = Math.log(1 + (documents - df + 0.5) / (df + 0.5));
+        }
+
+        PriorityQueue<Scored> top = new PriorityQueue<>(Math.min(limit, lists.get(0).size()) + 1, WORST_FIRST);
+        for (Map.Entry<Book, Integer> candidate : lists.get(0).entrySet()) {
+            Book book = candidate.getKey();
+            Double length = lengths.get(book);
+            if (length == null) {
+                continue;  // удалена во время поиска
+            }
+            double norm = K1 * (1 - B + B * length / averageLength);
+            double score = idf[0] * saturate(weight(candidate.getValue()), norm);
+            for (int i = 1; i < n && score >= 0; i++) {
+                Integer packed = lists.get(i).get(book);
+                score = packed == null ? -1 : score + idf[i] * saturate(weight(packed), norm);
+            }
+            if (score < 0) {
+                continue;
+            }
+            Scored scored = new Scored(book, score);
+            if (top.size() < limit) {
+                top.add(scored);
+            } else if (WORST_FIRST.compare(scored, top.peek()) > 0) {
+                top.poll();
+                top.add(scored);
+            }
+        }
+
+        Scored[] best = top.toArray(new Scored[0]);
+        Arrays.sort(best, WORST_FIRST.reversed());
+        return Arrays.asList(best);
+    }
+
+    private static double saturate(double tf, double norm) {
+        return tf * (K1 + 1) / (tf + norm);
+    }
+
+    private static double weight(int packed) {
+        return TITLE_BOOST * (packed >>> 2 * FIELD_BITS) + ((packed >>> FIELD_BITS) & FIELD_MASK) + (packed & FIELD_MASK);
+    }
+
+    private static double length(Map<String, Integer> counts) {
+        double length = 0;
+        for (int packed : counts.values()) {
+            length += weight(packed);
+        }
+        return length;
+    }
+
+    private static Map<String, Integer> counts(Book book) {
+        Map<String, Integer> counts = new HashMap<>();
+        count(counts, book.getTitle(), 2 * FIELD_BITS);
+        count(counts, book.getAuthor(), FIELD_BITS);
+        count(counts, book.getGenre(), 0);
+        return counts;
+    }
+
+    private static void count(Map<String, Integer> counts, String field, int shift) {
+        if (field == null) {
+            return;
+        }
+        for (String term : tokenize(field)) {
+            counts.merge(term, 1 << shift, (a, b) -> ((a >>> shift) & FIELD_MASK) == FIELD_MASK ? a : a + b);
+        }
+    }
+
+    /**
+     * Разбиение текста на слова: последовательности букв и цифр в нижнем регистре.
+     * @param text Текст.
+     * @return слова в порядке появления.
+     */
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean word = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                terms.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    record Scored(Book book, double score) {
+    }
+}
@@ -0,0 +1,316 @@
+package org.example.models;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Реплика только для чтения, которая применяет поток изменений {@link ReplicationLeader}.
+ * <p>
+ * Состояние хранится в обычной {@link Library}: изменения применяются под блокировкой записи,
+ * а поиск и чтение идут под блокировкой чтения, поэтому реплику можно отдать
+ * {@code LibraryServer}. Снимок собирается в новой библиотеке без блокировки и подменяет
+ * старую целиком. Изменяющие операции бросают {@link UnsupportedOperationException}.
+ * <p>
+ * При разрыве соединения реплика переподключается и продолжает со своего номера. Отставание
+ * видно по {@link #getLag()} — сколько изменений ведущего ещё не применено — и по
+ * {@link #getApplyDelayMillis()} — сколько прошло от публикации до применения последнего.
+ */
+public class ReplicaLibrary implements LibraryOperations, Closeable {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 1_000;
+    private static final int RECONNECT_MILLIS = 200;
+
+    private final InetSocketAddress leader;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Thread follower;
+
+    private Library library = new Library();  // защищена lock
+    private volatile long epoch;
+    private volatile long applied;
+    private volatile long leaderSequence;
+    private volatile long applyDelayMillis;
+    private volatile boolean connected;
+    private volatile Socket socket;
+    private volatile boolean closed;
+
+    private ReplicaLibrary(InetSocketAddress leader) {
+        this.leader = leader;
+        this.follower = new Thread(this::follow, "replica-" + leader.getPort());
+        this.follower.setDaemon(true);
+    }
+
+    /**
+     * Запуск реплики. Подключение и переподключения идут в фоне.
+     * @param leader Адрес ведущего.
+     * @return реплика; до первого снимка пустая.
+     */
+    public static ReplicaLibrary connect(InetSocketAddress leader) {
+        ReplicaLibrary replica = new ReplicaLibrary(leader);
+        replica.follower.start();
+        return replica;
+    }
+
+    /**
+     * @return номер последнего применённого изменения.
+     */
+    public long getAppliedSequence() {
+        return applied;
+    }
+
+    /**
+     * @return номер последнего известного изменения ведущего.
+     */
+    public long getLeaderSequence() {
+        return leaderSequence;
+    }
+
+    /**
+     * @return сколько известных изменений ведущего ещё не применено.
+     */
+    public long getLag() {
+        return Math.max(0, leaderSequence - applied);
+    }
+
+    /**
+     * @return сколько миллисекунд прошло между публикацией и применением последнего изменения.
+     */
+    public long getApplyDelayMillis() {
+        return applyDelayMillis;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Ожидание, пока реплика применит изменение с указанным номером.
+     * @param sequence      Номер изменения ведущего.
+     * @param timeoutMillis Сколько ждать.
+     * @return применено ли изменение за это время.
+     */
+    public synchronized boolean awaitSequence(long sequence, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (applied < sequence) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+
+    public List<Book> showAllBooks() {
+        return read(Library::showAllBooks);
+    }
+
+    public List<User> showAllUsers() {
+        return read(Library::showAllUsers);
+    }
+
+    @Override
+    public Book findBook(String isbn) {
+        return read(current -> current.findBook(isbn));
+    }
+
+    @Override
+    public List<Book> searchBooks(String query) {
+        return read(current -> current.searchBooks(query));
+    }
+
+    @Override
+    public List<Book> searchBooks(String query, int limit) {
+        return read(current -> current.searchBooks(query, limit));
+    }
+
+    /**
+     * Автодополнение названия или автора с исправлением опечаток.
+     * @param prefix Набранное начало.
+     * @param limit  Сколько подсказок вернуть.
+     * @return подсказки, лучшие первыми.
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        return read(current -> current.suggest(prefix, limit));
+    }
+
+    @Override
+    public User findUser(String userId) {
+        return read(current -> current.findUser(userId));
+    }
+
+    @Override
+    public List<BorrowingRecord> getOverdueBooks() {
+        return read(Library::getOverdueBooks);
+    }
+
+    @Override
+    public void addBook(String title, String author, String isbn, String genre) {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean removeBook(String isbn) {
+        throw readOnly();
+    }
+
+    @Override
+    public void registerUser(String name, String userId, String email, UserType type) {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean borrowBook(String userId, String isbn) {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean returnBook(String userId, String isbn) {
+        throw readOnly();
+    }
+
+    @Override
+    public List<LoanResult> borrowBooks(String userId, List<String> isbns) {
+        throw readOnly();
+    }
+
+    @Override
+    public List<LoanResult> returnBooks(String userId, List<String> isbns) {
+        throw readOnly();
+    }
+
+    /**
+     * Отключение от ведущего.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException ignored) {
+                // уже закрыт
+            }
+        }
+        follower.interrupt();
+    }
+
+    private <T> T read(Function<Library, T> query) {
+        lock.readLock().lock();
+        try {
+            return query.apply(library);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("Replica is read-only");
+    }
+
+    private void follow() {
+        while (!closed) {
+            try (Socket connection = new Socket()) {
+                connection.connect(leader, CONNECT_TIMEOUT_MILLIS);
+                if (connection.getLocalPort() == leader.getPort()
+                        && connection.getLocalAddress().equals(connection.getInetAddress())) {
+                    // система выдала исходящему сокету порт ведущего, и он соединился сам с собой
+                    throw new IOException("Self-connected to " + leader);
+                }
+                connection.setTcpNoDelay(true);
+                socket = connection;
+                if (closed) {
+                    return;
+                }
+                DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(connection.getInputStream(), ReplicationLeader.BUFFER_SIZE));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+                out.writeLong(epoch);
+                out.writeLong(applied);
+                out.flush();
+                connected = true;
+                receive(in, out);
+            } catch (IOException e) {
+                // ведущий недоступен или соединение разорвано: повторяем ниже
+            } finally {
+                connected = false;
+            }
+            try {
+                Thread.sleep(RECONNECT_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void receive(DataInputStream in, DataOutputStream out) throws IOException {
+        while (true) {
+            byte type = in.readByte();
+            switch (type) {
+                case ReplicationLeader.SNAPSHOT -> {
+                    long snapshotEpoch = in.readLong();
+                    long sequence = in.readLong();
+                    Library fresh = new Library();
+                    for (int count = in.readInt(); count > 0; count--) {
+                        fresh.apply(readMutation(in));
+                    }
+                    lock.writeLock().lock();
+                    try {
+                        library = fresh;
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                    epoch = snapshotEpoch;
+                    leaderSequence = sequence;
+                    advance(sequence);
+                }
+                case ReplicationLeader.MUTATION -> {
+                    long sequence = in.readLong();
+                    long millis = in.readLong();
+                    Mutation mutation = readMutation(in);
+                    if (sequence != applied + 1) {
+                        throw new IOException("Expected mutation " + (applied + 1) + " but got " + sequence);
+                    }
+                    lock.writeLock().lock();
+                    try {
+                        library.apply(mutation);
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                    applyDelayMillis = Math.max(0, System.currentTimeMillis() - millis);
+                    advance(sequence);
+                }
+                case ReplicationLeader.HEARTBEAT -> leaderSequence = in.readLong();
+                default -> throw new IOException("Unknown replication frame: " + type);
+            }
+            // подтверждаем один раз на пачку уже полученных кадров
+            if (in.available() == 0) {
+                out.writeLong(applied);
+                out.flush();
+            }
+        }
+    }
+
+    private synchronized void advance(long sequence) {
+        applied = sequence;
+        leaderSequence = Math.max(leaderSequence, sequence);
+        notifyAll();
+    }
+
+    private static Mutation readMutation(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return MutationCodec.decode(ByteBuffer.wrap(bytes));
+    }
+}
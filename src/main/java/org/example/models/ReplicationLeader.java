@@ -0,0 +1,327 @@
+package org.example.models;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.BindException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Ведущий репликации: раздаёт упорядоченный поток изменений {@link Library} по TCP
+ * репликам {@link ReplicaLibrary}.
+ * <p>
+ * Каждое изменение получает номер и хранится в памяти в закодированном виде, начиная с последнего
+ * снимка состояния. Реплика при подключении сообщает, до какого номера она уже применила поток;
+ * если эти изменения ещё хранятся, она получает только недостающие, иначе — снимок и всё после
+ * него. Снимок ({@link Library#exportState}) делается при запуске и затем каждый раз, когда
+ * хранимые изменения становятся больше порога и больше самого снимка, поэтому память ограничена
+ * размером состояния, а стоимость снимков делится между изменениями.
+ * <p>
+ * У каждого запуска ведущего своя эпоха — случайное число. Реплика с чужой эпохой, например
+ * после перезапуска ведущего, всегда получает снимок, а не продолжение с совпавшего номера.
+ * <p>
+ * Протокол: реплика пишет {@code эпоха, номер} (два long), затем подтверждает применённые номера
+ * (long). Ведущий пишет кадры:
+ * <pre>
+ * SNAPSHOT   эпоха номер количество {длина байты}...
+ * MUTATION   номер время-мс длина байты
+ * HEARTBEAT  номер последнего изменения           (если новых изменений нет)
+ * </pre>
+ * Изменения публикует поток, изменяющий библиотеку; {@link #start} вызывается из него же.
+ */
+public class ReplicationLeader implements MutationListener, Closeable {
+
+    public static final long DEFAULT_SNAPSHOT_THRESHOLD = 16L << 20;
+
+    static final byte SNAPSHOT = 1;
+    static final byte MUTATION = 2;
+    static final byte HEARTBEAT = 3;
+    static final int HEARTBEAT_MILLIS = 200;
+    static final int BUFFER_SIZE = 1 << 16;
+    static final int BIND_ATTEMPTS = 50;
+    static final int BIND_RETRY_MILLIS = 100;
+
+    private final Library library;
+    private final long snapshotThreshold;
+    private final long epoch = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+    private final ServerSocket server;
+    private final Thread acceptor;
+    private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+
+    // изменения после снимка; защищены монитором ведущего
+    private List<byte[]> snapshot;
+    private long snapshotSequence;
+    private long snapshotBytes;
+    private final List<Entry> backlog = new ArrayList<>();
+    private long backlogBytes;
+    private long sequence;
+    private boolean closed;
+
+    private ReplicationLeader(Library library, ServerSocket server, long snapshotThreshold) {
+        this.library = library;
+        this.server = server;
+        this.snapshotThreshold = snapshotThreshold;
+        this.acceptor = new Thread(this::accept, "replication-accept");
+        this.acceptor.setDaemon(true);
+    }
+
+    /**
+     * Запуск с порогом снимка по умолчанию.
+     * @see #start(Library, InetSocketAddress, long)
+     */
+    public static ReplicationLeader start(Library library, InetSocketAddress address) throws IOException {
+        return start(library, address, DEFAULT_SNAPSHOT_THRESHOLD);
+    }
+
+    /**
+     * Снимок текущего состояния, подписка на изменения и приём реплик.
+     * @param library           Библиотека.
+     * @param address           Адрес; порт 0 — любой свободный.
+     * @param snapshotThreshold Объём хранимых изменений в байтах, после которого делается новый снимок.
+     * @return запущенный ведущий.
+     * @throws IOException если адрес занят и не освободился за {@code BIND_ATTEMPTS} попыток.
+     */
+    public static ReplicationLeader start(Library library, InetSocketAddress address, long snapshotThreshold)
+            throws IOException {
+        ServerSocket server = bind(address);
+        ReplicationLeader leader = new ReplicationLeader(library, server, snapshotThreshold);
+        leader.takeSnapshot();
+        library.addMutationListener(leader);
+        leader.acceptor.start();
+        return leader;
+    }
+
+    /**
+     * Порт только что остановленного ведущего может быть ещё занят: SO_REUSEADDR позволяет обойти
+     * лишь соединения в TIME_WAIT, но не живые сокеты, например исходящее подключение реплики,
+     * которому система выдала этот же порт. Поэтому фиксированный порт занимаем с повторами.
+     */
+    private static ServerSocket bind(InetSocketAddress address) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            ServerSocket server = new ServerSocket();
+            try {
+                server.setReuseAddress(true);
+                server.bind(address);
+                return server;
+            } catch (BindException e) {
+                server.close();
+                if (address.getPort() == 0 || attempt == BIND_ATTEMPTS) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(BIND_RETRY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * @return номер последнего опубликованного изменения.
+     */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Отставание подключённых реплик.
+     * @return адрес реплики → сколько изменений она ещё не подтвердила.
+     */
+    public Map<String, Long> getFollowerLag() {
+        long current = getSequence();
+        Map<String, Long> lag = new LinkedHashMap<>();
+        for (Session session : sessions) {
+            lag.put(session.name, Math.max(0, current - session.acknowledged));
+        }
+        return lag;
+    }
+
+    @Override
+    public synchronized void onMutation(Mutation mutation) {
+        if (closed) {
+            return;
+        }
+        byte[] bytes = MutationCodec.toBytes(mutation);
+        sequence++;
+        backlog.add(new Entry(System.currentTimeMillis(), bytes));
+        backlogBytes += bytes.length;
+        if (backlogBytes > snapshotThreshold && backlogBytes > snapshotBytes) {
+            takeSnapshot();
+        }
+        notifyAll();
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        library.removeMutationListener(this);
+        closeQuietly(server);
+        for (Session session : sessions) {
+            closeQuietly(session.socket);
+        }
+    }
+
+    // вызывается из потока библиотеки: состояние соответствует всем изменениям до текущего номера
+    private synchronized void takeSnapshot() {
+        List<byte[]> frames = new ArrayList<>();
+        long[] bytes = new long[1];
+        library.exportState(mutation -> {
+            byte[] frame = MutationCodec.toBytes(mutation);
+            frames.add(frame);
+            bytes[0] += frame.length;
+        });
+        snapshot = List.copyOf(frames);
+        snapshotSequence = sequence;
+        snapshotBytes = bytes[0];
+        backlog.clear();
+        backlogBytes = 0;
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                Session session = new Session(socket);
+                sessions.add(session);
+                Thread.ofVirtual().name("replication-" + session.name).start(session);
+            } catch (IOException e) {
+                if (server.isClosed()) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Что отправить реплике, которая применила поток до номера {@code sent}.
+     * @return кадры или null, если ведущий закрыт.
+     */
+    private synchronized Batch next(long followerEpoch, long sent) throws InterruptedException {
+        if (sent == sequence && followerEpoch == epoch && !closed) {
+            wait(HEARTBEAT_MILLIS);
+        }
+        if (closed) {
+            return null;
+        }
+        boolean resync = followerEpoch != epoch || sent < snapshotSequence || sent > sequence;
+        long from = resync ? snapshotSequence : sent;
+        List<Entry> entries = new ArrayList<>(backlog.subList((int) (from - snapshotSequence), backlog.size()));
+        return new Batch(resync ? snapshot : null, snapshotSequence, entries, from, sequence);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+            // соединение уже разорвано
+        }
+    }
+
+    /**
+     * Закодированное изменение и время его публикации.
+     */
+    private record Entry(long millis, byte[] bytes) {
+    }
+
+    /**
+     * Порция потока для одной реплики: снимок (если нужен) и изменения с номера {@code from + 1}.
+     */
+    private record Batch(List<byte[]> snapshot, long snapshotSequence, List<Entry> entries, long from, long sequence) {
+    }
+
+    /**
+     * Соединение с одной репликой: поток отправки и приём подтверждений.
+     */
+    private final class Session implements Runnable {
+        final Socket socket;
+        final String name;
+        volatile long acknowledged;
+
+        Session(Socket socket) {
+            this.socket = socket;
+            this.name = socket.getInetAddress().getHostAddress() + ":" + socket.getPort();
+        }
+
+        @Override
+        public void run() {
+            try (socket) {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+                long followerEpoch = in.readLong();
+                long sent = in.readLong();
+                acknowledged = followerEpoch == epoch ? sent : 0;
+                Thread.ofVirtual().name("replication-ack-" + name).start(() -> readAcks(in));
+
+                Batch batch;
+                while ((batch = next(followerEpoch, sent)) != null) {
+                    if (batch.snapshot() != null) {
+                        out.writeByte(SNAPSHOT);
+                        out.writeLong(epoch);
+                        out.writeLong(batch.snapshotSequence());
+                        out.writeInt(batch.snapshot().size());
+                        for (byte[] frame : batch.snapshot()) {
+                            out.writeInt(frame.length);
+                            out.write(frame);
+                        }
+                        followerEpoch = epoch;
+                    }
+                    long number = batch.from();
+                    for (Entry entry : batch.entries()) {
+                        out.writeByte(MUTATION);
+                        out.writeLong(++number);
+                        out.writeLong(entry.millis());
+                        out.writeInt(entry.bytes().length);
+                        out.write(entry.bytes());
+                    }
+                    if (batch.entries().isEmpty() && batch.snapshot() == null) {
+                        out.writeByte(HEARTBEAT);
+                        out.writeLong(batch.sequence());
+                    }
+                    out.flush();
+                    sent = number;
+                }
+            } catch (IOException e) {
+                // реплика отключилась; при переподключении она продолжит со своего номера
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                sessions.remove(this);
+            }
+        }
+
+        private void readAcks(DataInputStream in) {
+            try {
+                while (true) {
+                    acknowledged = in.readLong();
+                }
+            } catch (IOException e) {
+                closeQuietly(socket);
+            }
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package org.example.models;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+/**
+ * Потокобезопасная библиотека, разбитая на независимые части по хешу ключа.
+ * <p>
+ * Книга живёт в части, выбранной по хешу ISBN, вместе со своими выдачами и поисковыми
+ * индексами; пользователь — в части по хешу Id. Операции с одной книгой или одним пользователем
+ * обращаются только к своей части, поэтому части не делят ни таблиц, ни индексов. Выдача
+ * связывает пользователя и книгу из разных частей так же, как {@link ConcurrentLibrary}: лимит
+ * проверяется под монитором пользователя, экземпляр занимается CAS по счётчику книги, а запись
+ * о выдаче попадает в журнал части книги.
+ * <p>
+ * Поиск и просрочки рассылаются по всем частям параллельно задачами fork/join, результаты
+ * сливаются. Поиск по релевантности берёт лучшие {@code limit} книг из каждой части и сливает
+ * их по оценке; статистика слов при этом своя у каждой части, что при равномерном разбиении
+ * по хешу почти не влияет на порядок.
+ * <p>
+ * Очередей ожидания нет: возвращённый экземпляр сразу попадает на полку.
+ */
+public class ShardedLibrary implements LibraryOperations {
+
+    private final Shard[] shards;
+    private final ForkJoinPool pool;
+    private final Clock clock;
+
+    /**
+     * Библиотека с частью на каждое ядро.
+     */
+    public ShardedLibrary() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param shardCount Количество частей.
+     */
+    public ShardedLibrary(int shardCount) {
+        this(shardCount, Clock.systemDefaultZone(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param shardCount Количество частей.
+     * @param clock      Часы, по которым определяются даты выдачи и просрочки.
+     * @param pool       Пул для рассылки запросов по частям.
+     */
+    public ShardedLibrary(int shardCount, Clock clock, ForkJoinPool pool) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+        }
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard();
+        }
+        this.clock = clock;
+        this.pool = pool;
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Номер части для ключа.
+     * @param key ISBN или Id пользователя.
+     * @return номер части от 0 до {@link #getShardCount()} - 1.
+     */
+    public int shardOf(String key) {
+        int h = key.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), shards.length);
+    }
+
+    /**
+     * Добавление книги. Повторный ISBN добавляет ещё один экземпляр, как и в {@link Library}.
+     * @param title  Название.
+     * @param author Автор.
+     * @param isbn   Международный стандартный книжный номер.
+     * @param genre  Жанр.
+     */
+    @Override
+    public void addBook(String title, String author, String isbn, String genre) {
+        Shard shard = shard(isbn);
+        Book book = new Book(title, author, isbn, genre);
+        Book existing = shard.books.putIfAbsent(isbn, book);
+        if (existing != null) {
+            existing.addCopy();
+        } else {
+            shard.searchIndex.add(book);
+            shard.rankedIndex.add(book);
+        }
+    }
+
+    /**
+     * Удаление книги.
+     * @param isbn Международный стандартный книжный номер.
+     * @return удалось ли удалить книгу.
+     */
+    @Override
+    public boolean removeBook(String isbn) {
+        Shard shard = shard(isbn);
+        Book book = shard.books.remove(isbn);
+        if (book == null) {
+            return false;
+        }
+        shard.searchIndex.remove(book);
+        shard.rankedIndex.remove(book);
+        return true;
+    }
+
+    /**
+     * Поиск книги.
+     * @param isbn Международный стандартный книжный номер
+     * @return удалось ли найти.
+     */
+    @Override
+    public Book findBook(String isbn) {
+        return shard(isbn).books.get(isbn);
+    }
+
+    /**
+     * Фильтрация по книгам во всех частях.
+     * @param query Параметры поиска.
+     * @return результат поиска.
+     */
+    @Override
+    public List<Book> searchBooks(String query) {
+        return gather(shard -> shard.searchIndex.search(query));
+    }
+
+    /**
+     * Поиск по релевантности во всех частях.
+     * @param query Слова запроса.
+     * @param limit Сколько книг вернуть.
+     * @return книги, содержащие все слова запроса, по убыванию релевантности.
+     */
+    @Override
+    public List<Book> searchBooks(String query, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive: " + limit);
+        }
+        List<RankedSearchIndex.Scored> hits = gather(shard -> shard.rankedIndex.searchScored(query, limit));
+        hits.sort(RankedSearchIndex.WORST_FIRST.reversed());
+        List<Book> result = new ArrayList<>(Math.min(limit, hits.size()));
+        for (int i = 0; i < hits.size() && i < limit; i++) {
+            result.add(hits.get(i).book());
+        }
+        return result;
+    }
+
+    /**
+     * Регистрация пользователя.
+     * @param name   Имя.
+     * @param userId Id.
+     * @param email  Почта.
+     * @param type   Тип пользователя
+     */
+    @Override
+    public void registerUser(String name, String userId, String email, UserType type) {
+        shard(userId).users.computeIfAbsent(userId, id -> switch (type) {
+            case STUDENT -> new Student(name, id, email);
+            case GUEST -> new Guest(name, id, email);
+            case FACULTY -> new Faculty(name, id, email);
+        });
+    }
+
+    /**
+     * Поиск пользователя.
+     * @param userId Id пользователя.
+     * @return Найденный пользователь
+     */
+    @Override
+    public User findUser(String userId) {
+        return shard(userId).users.get(userId);
+    }
+
+    /**
+     * Взять книгу.
+     * @param userId Id пользователя.
+     * @param isbn Международный стандартный книжный номер.
+     * @return результат взятия книги.
+     */
+    @Override
+    public boolean borrowBook(String userId, String isbn) {
+        return tryBorrowBook(userId, isbn) == LoanStatus.OK;
+    }
+
+    @Override
+    public LoanStatus tryBorrowBook(String userId, String isbn) {
+        User user = findUser(userId);
+        Shard shard = shard(isbn);
+        Book book = shard.books.get(isbn);
+
+        if (user == null) return LoanStatus.USER_NOT_FOUND;
+        if (book == null) return LoanStatus.BOOK_NOT_FOUND;
+        if (!book.isAvailable()) return LoanStatus.NOT_AVAILABLE;
+
+        synchronized (user) {
+            if (shard.loans.find(userId, isbn) != null) return LoanStatus.DUPLICATE;
+            if (!user.canBorrow()) return LoanStatus.LIMIT_REACHED;
+            if (!book.tryTake()) return LoanStatus.NOT_AVAILABLE;
+
+            user.getBorrowedBooks().add(book);
+            shard.loans.open(new BorrowingRecord(user, book, LocalDate.now(clock)));
+        }
+        return LoanStatus.OK;
+    }
+
+    /**
+     * Возврат книги.
+     * @param userId Id пользователя.
+     * @param isbn Международный стандартный книжный номер.
+     * @return результат возврата книги.
+     */
+    @Override
+    public boolean returnBook(String userId, String isbn) {
+        return tryReturnBook(userId, isbn) == LoanStatus.OK;
+    }
+
+    @Override
+    public LoanStatus tryReturnBook(String userId, String isbn) {
+        User user = findUser(userId);
+        Shard shard = shard(isbn);
+        Book book = shard.books.get(isbn);
+
+        if (user == null) return LoanStatus.USER_NOT_FOUND;
+        if (book == null) return LoanStatus.BOOK_NOT_FOUND;
+
+        synchronized (user) {
+            if (shard.loans.find(userId, isbn) == null) return LoanStatus.NOT_BORROWED;
+
+            user.getBorrowedBooks().remove(book);
+            shard.loans.close(userId, isbn, LocalDate.now(clock));
+            book.release();
+        }
+        return LoanStatus.OK;
+    }
+
+    /**
+     * Взять несколько книг сразу по принципу «всё или ничего» за одно взятие монитора
+     * пользователя; книги пакета могут лежать в разных частях.
+     * @param userId Id пользователя.
+     * @param isbns  Международные стандартные книжные номера.
+     * @return результат по каждой книге в порядке запроса.
+     */
+    @Override
+    public List<LoanResult> borrowBooks(String userId, List<String> isbns) {
+        User user = findUser(userId);
+        List<LoanResult> results = new ArrayList<>(isbns.size());
+        if (user == null) {
+            for (String isbn : isbns) {
+                results.add(new LoanResult(isbn, LoanStatus.USER_NOT_FOUND));
+            }
+            return results;
+        }
+
+        List<Book> batch = new ArrayList<>(isbns.size());
+        Set<String> seen = new HashSet<>();
+        synchronized (user) {
+            int remaining = user.getMaxBooks() - user.getBorrowedBooks().size();
+            boolean rejected = false;
+            for (String isbn : isbns) {
+                Shard shard = shard(isbn);
+                Book book = shard.books.get(isbn);
+                LoanStatus status;
+                if (book == null) {
+                    status = LoanStatus.BOOK_NOT_FOUND;
+                } else if (!seen.add(isbn)) {
+                    status = LoanStatus.DUPLICATE;
+                } else if (!book.isAvailable()) {
+                    status = LoanStatus.NOT_AVAILABLE;
+                } else if (shard.loans.find(userId, isbn) != null) {
+                    status = LoanStatus.DUPLICATE;
+                } else if (batch.size() >= remaining) {
+                    status = LoanStatus.LIMIT_REACHED;
+                } else if (!book.tryTake()) {
+                    status = LoanStatus.NOT_AVAILABLE;
+                } else {
+                    status = LoanStatus.OK;
+                    batch.add(book);
+                }
+                rejected |= status != LoanStatus.OK;
+                results.add(new LoanResult(isbn, status));
+            }
+
+            if (rejected) {
+                for (Book book : batch) {
+                    book.release();
+                }
+                results.replaceAll(result -> result.isOk() ? new LoanResult(result.isbn(), LoanStatus.SKIPPED) : result);
+                return results;
+            }
+
+            LocalDate today = LocalDate.now(clock);
+            for (Book book : batch) {
+                user.getBorrowedBooks().add(book);
+                shard(book.getIsbn()).loans.open(new BorrowingRecord(user, book, today));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Вернуть несколько книг сразу за одно взятие монитора пользователя.
+     * @param userId Id пользователя.
+     * @param isbns  Международные стандартные книжные номера.
+     * @return результат по каждой книге в порядке запроса.
+     */
+    @Override
+    public List<LoanResult> returnBooks(String userId, List<String> isbns) {
+        User user = findUser(userId);
+        List<LoanResult> results = new ArrayList<>(isbns.size());
+        if (user == null) {
+            for (String isbn : isbns) {
+                results.add(new LoanResult(isbn, LoanStatus.USER_NOT_FOUND));
+            }
+            return results;
+        }
+
+        LocalDate today = LocalDate.now(clock);
+        synchronized (user) {
+            for (String isbn : isbns) {
+                Shard shard = shard(isbn);
+                Book book = shard.books.get(isbn);
+                LoanStatus status;
+                if (book == null) {
+                    status = LoanStatus.BOOK_NOT_FOUND;
+                } else if (shard.loans.find(userId, isbn) == null) {
+                    status = LoanStatus.NOT_BORROWED;
+                } else {
+                    user.getBorrowedBooks().remove(book);
+                    shard.loans.close(userId, isbn, today);
+                    book.release();
+                    status = LoanStatus.OK;
+                }
+                results.add(new LoanResult(isbn, status));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Какие книги просрочены, по всем частям.
+     *
+     * @return список просроченных книг.
+     */
+    @Override
+    public List<BorrowingRecord> getOverdueBooks() {
+        LocalDate today = LocalDate.now(clock);
+        // тот же критерий, что и в BorrowingRecord.isOverdue
+        return gather(shard -> shard.loans.getDueDateIndex().dueBefore(today));
+    }
+
+    private Shard shard(String key) {
+        return shards[shardOf(key)];
+    }
+
+    private <T> List<T> gather(Function<Shard, List<T>> query) {
+        return pool.invoke(new Gather<>(query, 0, shards.length));
+    }
+
+    /**
+     * Часть библиотеки: книги и пользователи со своими ключами, выдачи своих книг.
+     */
+    private static final class Shard {
+        final Map<String, Book> books = new ConcurrentHashMap<>();      // ISBN -> Book
+        final Map<String, User> users = new ConcurrentHashMap<>();      // UserID -> User
+        final BookSearchIndex searchIndex = new BookSearchIndex();      // n-gram -> Books
+        final RankedSearchIndex rankedIndex = new RankedSearchIndex();  // word -> Books
+        final LoanLedger loans = new LoanLedger();
+    }
+
+    /**
+     * Запрос к диапазону частей: половины выполняются параллельно, результаты склеиваются.
+     */
+    private class Gather<T> extends RecursiveTask<List<T>> {
+        private final Function<Shard, List<T>> query;
+        private final int from;
+        private final int to;
+
+        Gather(Function<Shard, List<T>> query, int from, int to) {
+            this.query = query;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<T> compute() {
+            if (to - from == 1) {
+                return new ArrayList<>(query.apply(shards[from]));
+            }
+            int middle = (from + to) >>> 1;
+            Gather<T> left = new Gather<>(query, from, middle);
+            left.fork();
+            List<T> result = new Gather<>(query, middle, to).compute();
+            List<T> other = left.join();
+            other.addAll(result);
+            return other;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package org.example.models;
+
+/**
+ * Подсказка автодополнения.
+ * @param text     Название или автор так, как они записаны в книге.
+ * @param field    Где найдено.
+ * @param distance Сколько опечаток в набранном начале исправлено.
+ */
+public record Suggestion(String text, Field field, int distance) {
+
+    /**
+     * Поле книги, по которому дана подсказка.
+     */
+    public enum Field {
+        TITLE,
+        AUTHOR
+    }
+}
@@ -0,0 +1,441 @@
+package org.example.models;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Потокобезопасная реализация операций с книгами, в которой чтение не ждёт записи (MVCC).
+ * <p>
+ * Состояние хранится в неизменяемых {@link PersistentHashMap}: изменение копирует только путь от
+ * корня до изменённого элемента и публикуется одной записью volatile-ссылки на новый
+ * {@link LibraryView}. Чтение ({@link #findBook}, {@link #searchBooks}, {@link #getOverdueBooks},
+ * {@link #snapshot()}) берёт текущую версию без блокировок, поэтому его задержка не зависит от
+ * потока выдач, а длинный просмотр видит каталог и выдачи на один момент времени.
+ * <p>
+ * Изменения выполняются по одному под общей блокировкой, но критическая секция короткая:
+ * проверка, копирование пути и публикация. Пакетная выдача или возврат публикуется одной версией.
+ * В отличие от {@link ConcurrentLibrary}, очередей за книгами нет.
+ */
+public class VersionedLibrary implements LibraryOperations {
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final BookSearchIndex searchIndex;  // n-gram -> Books, общий для всех версий
+    private final LoanLedger loans;             // проверки выдач, история и штрафы
+    private final Clock clock;
+
+    // состояние, из которого собирается следующая версия; меняется только под writeLock
+    private final Map<String, Book> indexed = new HashMap<>();  // ISBN -> книга в searchIndex
+    private PersistentHashMap<String, Book> books = PersistentHashMap.empty();
+    private PersistentHashMap<String, User> users = PersistentHashMap.empty();
+    private PersistentHashMap<Long, PersistentHashMap<BorrowingRecord, BorrowingRecord>> loansByDueDay =
+            PersistentHashMap.empty();
+    private long[] dueDays = new long[0];  // ключи loansByDueDay по возрастанию; массив не меняется после публикации
+    private int loanCount;
+    private long version;
+
+    private volatile LibraryView current;
+
+    public VersionedLibrary() {
+        this(Clock.systemDefaultZone());
+    }
+
+    /**
+     * @param clock Часы, по которым определяются даты выдачи и просрочки.
+     */
+    public VersionedLibrary(Clock clock) {
+        this.searchIndex = new BookSearchIndex();
+        this.loans = new LoanLedger();
+        this.clock = clock;
+        this.current = new LibraryView(0, books, users, loansByDueDay, dueDays, 0, searchIndex);
+    }
+
+    /**
+     * Текущая версия для согласованного чтения без блокировок.
+     * @return неизменяемый вид состояния.
+     */
+    public LibraryView snapshot() {
+        return current;
+    }
+
+    public List<Book> showAllBooks() {
+        return current.showAllBooks();
+    }
+
+    public List<User> showAllUsers() {
+        return current.showAllUsers();
+    }
+
+    /**
+     * Все книги текущей версии без копирования.
+     * @return ленивый поток книг в произвольном порядке.
+     */
+    public Stream<Book> streamBooks() {
+        return current.streamBooks();
+    }
+
+    /**
+     * Штрафы за просрочку.
+     * @return начисление и долги пользователей.
+     */
+    public FineEngine getFines() {
+        return loans.getFines();
+    }
+
+    /**
+     * Добавление книги в библиотеку. Повторный ISBN добавляет ещё один экземпляр, как и в {@link Library}.
+     * @param title  Название.
+     * @param author Автор.
+     * @param isbn   Международный стандартный книжный номер.
+     * @param genre  Жанр.
+     */
+    @Override
+    public void addBook(String title, String author, String isbn, String genre) {
+        writeLock.lock();
+        try {
+            Book existing = books.get(isbn);
+            if (existing != null) {
+                books = books.put(isbn, revise(existing, 1, 1));
+            } else {
+                Book book = new Book(title, author, isbn, genre);
+                books = books.put(isbn, book);
+                indexed.put(isbn, book);
+                searchIndex.add(book);
+            }
+            publish();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Удаление книги.
+     * @param isbn Международный стандартный книжный номер.
+     * @return удалось ли удалить книгу.
+     */
+    @Override
+    public boolean removeBook(String isbn) {
+        writeLock.lock();
+        try {
+            if (!books.containsKey(isbn)) {
+                return false;
+            }
+            books = books.remove(isbn);
+            searchIndex.remove(indexed.remove(isbn));
+            publish();
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Поиск книги.
+     * @param isbn Международный стандартный книжный номер
+     * @return удалось ли найти.
+     */
+    @Override
+    public Book findBook(String isbn) {
+        return current.findBook(isbn);
+    }
+
+    /**
+     * Фильтрация по книгам.
+     * @param query Параметры поиска.
+     * @return результат поиска.
+     */
+    @Override
+    public List<Book> searchBooks(String query) {
+        return current.searchBooks(query);
+    }
+
+    /**
+     * Регистрация пользователя.
+     * @param name   Имя.
+     * @param userId Id.
+     * @param email  Почта.
+     * @param type   Тип пользователя
+     */
+    @Override
+    public void registerUser(String name, String userId, String email, UserType type) {
+        writeLock.lock();
+        try {
+            // будем игнорировать дубликаты
+            if (!users.containsKey(userId)) {
+                users = users.put(userId, switch (type) {
+                    case STUDENT -> new Student(name, userId, email);
+                    case GUEST -> new Guest(name, userId, email);
+                    case FACULTY -> new Faculty(name, userId, email);
+                });
+                publish();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Поиск пользователя.
+     * @param userId Id пользователя.
+     * @return Найденный пользователь
+     */
+    @Override
+    public User findUser(String userId) {
+        return current.findUser(userId);
+    }
+
+    /**
+     * Взять книгу.
+     * @param userId Id пользователя.
+     * @param isbn Международный стандартный книжный номер.
+     * @return результат взятия книги.
+     */
+    @Override
+    public boolean borrowBook(String userId, String isbn) {
+        return tryBorrowBook(userId, isbn) == LoanStatus.OK;
+    }
+
+    @Override
+    public LoanStatus tryBorrowBook(String userId, String isbn) {
+        // отказ по отсутствующим пользователю или книге не требует блокировки
+        LibraryView view = current;
+        if (view.findUser(userId) == null) return LoanStatus.USER_NOT_FOUND;
+        if (view.findBook(isbn) == null) return LoanStatus.BOOK_NOT_FOUND;
+
+        writeLock.lock();
+        try {
+            LoanStatus status = checkBorrow(userId, isbn);
+            if (status == LoanStatus.OK) {
+                lend(users.get(userId), isbn, LocalDate.now(clock));
+                publish();
+            }
+            return status;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private LoanStatus checkBorrow(String userId, String isbn) {
+        User user = users.get(userId);
+        Book book = books.get(isbn);
+
+        if (user == null) return LoanStatus.USER_NOT_FOUND;
+        if (book == null) return LoanStatus.BOOK_NOT_FOUND;
+        if (!book.isAvailable()) return LoanStatus.NOT_AVAILABLE;
+        if (loans.find(userId, isbn) != null) return LoanStatus.DUPLICATE;
+        if (!user.canBorrow()) return LoanStatus.LIMIT_REACHED;
+        return LoanStatus.OK;
+    }
+
+    private void lend(User user, String isbn, LocalDate borrowDate) {
+        Book book = revise(books.get(isbn), 0, -1);
+        books = books.put(isbn, book);
+        BorrowingRecord record = new BorrowingRecord(user, book, borrowDate);
+        user.getBorrowedBooks().add(book);
+        loans.open(record);
+
+        long day = record.getDueDate().toEpochDay();
+        PersistentHashMap<BorrowingRecord, BorrowingRecord> due = loansByDueDay.get(day);
+        if (due == null) {
+            due = PersistentHashMap.empty();
+            dueDays = withDay(dueDays, day);
+        }
+        loansByDueDay = loansByDueDay.put(day, due.put(record, record));
+        loanCount++;
+    }
+
+    /**
+     * Возврат книги.
+     * @param userId Id пользователя.
+     * @param isbn Международный стандартный книжный номер.
+     * @return результат возврата книги.
+     */
+    @Override
+    public boolean returnBook(String userId, String isbn) {
+        return tryReturnBook(userId, isbn) == LoanStatus.OK;
+    }
+
+    @Override
+    public LoanStatus tryReturnBook(String userId, String isbn) {
+        writeLock.lock();
+        try {
+            LoanStatus status = checkReturn(userId, isbn);
+            if (status == LoanStatus.OK) {
+                takeBack(users.get(userId), isbn, LocalDate.now(clock));
+                publish();
+            }
+            return status;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private LoanStatus checkReturn(String userId, String isbn) {
+        if (!users.containsKey(userId)) return LoanStatus.USER_NOT_FOUND;
+        if (!books.containsKey(isbn)) return LoanStatus.BOOK_NOT_FOUND;
+        if (loans.find(userId, isbn) == null) return LoanStatus.NOT_BORROWED;
+        return LoanStatus.OK;
+    }
+
+    private void takeBack(User user, String isbn, LocalDate returnDate) {
+        BorrowingRecord record = loans.close(user.getUserId(), isbn, returnDate);
+        // в списке пользователя лежит версия книги на момент выдачи
+        user.getBorrowedBooks().remove(record.getBook());
+
+        long day = record.getDueDate().toEpochDay();
+        PersistentHashMap<BorrowingRecord, BorrowingRecord> due = loansByDueDay.get(day).remove(record);
+        if (due.isEmpty()) {
+            loansByDueDay = loansByDueDay.remove(day);
+            dueDays = withoutDay(dueDays, day);
+        } else {
+            loansByDueDay = loansByDueDay.put(day, due);
+        }
+        loanCount--;
+
+        books = books.put(isbn, revise(books.get(isbn), 0, 1));
+    }
+
+    /**
+     * Взять несколько книг сразу по принципу «всё или ничего». Весь пакет публикуется одной версией.
+     * @param userId Id пользователя.
+     * @param isbns  Международные стандартные книжные номера.
+     * @return результат по каждой книге в порядке запроса.
+     */
+    @Override
+    public List<LoanResult> borrowBooks(String userId, List<String> isbns) {
+        List<LoanResult> results = new ArrayList<>(isbns.size());
+        writeLock.lock();
+        try {
+            User user = users.get(userId);
+            if (user == null) {
+                for (String isbn : isbns) {
+                    results.add(new LoanResult(isbn, LoanStatus.USER_NOT_FOUND));
+                }
+                return results;
+            }
+
+            List<String> batch = new ArrayList<>(isbns.size());
+            Set<String> seen = new HashSet<>();
+            int remaining = user.getMaxBooks() - user.getBorrowedBooks().size();
+            boolean rejected = false;
+            for (String isbn : isbns) {
+                Book book = books.get(isbn);
+                LoanStatus status;
+                if (book == null) {
+                    status = LoanStatus.BOOK_NOT_FOUND;
+                } else if (!seen.add(isbn)) {
+                    status = LoanStatus.DUPLICATE;
+                } else if (!book.isAvailable()) {
+                    status = LoanStatus.NOT_AVAILABLE;
+                } else if (loans.find(userId, isbn) != null) {
+                    status = LoanStatus.DUPLICATE;
+                } else if (batch.size() >= remaining) {
+                    status = LoanStatus.LIMIT_REACHED;
+                } else {
+                    status = LoanStatus.OK;
+                    batch.add(isbn);
+                }
+                rejected |= status != LoanStatus.OK;
+                results.add(new LoanResult(isbn, status));
+            }
+
+            if (rejected) {
+                results.replaceAll(result -> result.isOk() ? new LoanResult(result.isbn(), LoanStatus.SKIPPED) : result);
+                return results;
+            }
+
+            LocalDate today = LocalDate.now(clock);
+            for (String isbn : batch) {
+                lend(user, isbn, today);
+            }
+            if (!batch.isEmpty()) {
+                publish();
+            }
+            return results;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Вернуть несколько книг сразу. Все возвраты пакета публикуются одной версией.
+     * @param userId Id пользователя.
+     * @param isbns  Международные стандартные книжные номера.
+     * @return результат по каждой книге в порядке запроса.
+     */
+    @Override
+    public List<LoanResult> returnBooks(String userId, List<String> isbns) {
+        List<LoanResult> results = new ArrayList<>(isbns.size());
+        writeLock.lock();
+        try {
+            LocalDate today = LocalDate.now(clock);
+            boolean changed = false;
+            for (String isbn : isbns) {
+                LoanStatus status = checkReturn(userId, isbn);
+                if (status == LoanStatus.OK) {
+                    takeBack(users.get(userId), isbn, today);
+                    changed = true;
+                }
+                results.add(new LoanResult(isbn, status));
+            }
+            if (changed) {
+                publish();
+            }
+            return results;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Какие книги просрочены.
+     *
+     * @return список просроченных книг.
+     */
+    @Override
+    public List<BorrowingRecord> getOverdueBooks() {
+        return current.getOverdueBooks(LocalDate.now(clock));
+    }
+
+    /**
+     * Новая версия книги с изменёнными счётчиками экземпляров; прежняя остаётся в старых версиях.
+     * Число экземпляров на полке не выходит за пределы от нуля до общего числа.
+     */
+    private static Book revise(Book book, int copiesDelta, int availableDelta) {
+        int copies = book.getCopies() + copiesDelta;
+        int available = Math.max(0, Math.min(copies, book.getAvailableCopies() + availableDelta));
+        return new Book(book.getTitle(), book.getAuthor(), book.getIsbn(), book.getGenre(), copies, available);
+    }
+
+    /**
+     * Копия упорядоченного массива дней с добавленным днём. Дней с выдачами немного — не больше
+     * одного на календарный день, — поэтому копирование дешевле сбалансированного дерева.
+     */
+    private static long[] withDay(long[] days, long day) {
+        int at = -Arrays.binarySearch(days, day) - 1;
+        long[] copy = new long[days.length + 1];
+        System.arraycopy(days, 0, copy, 0, at);
+        copy[at] = day;
+        System.arraycopy(days, at, copy, at + 1, days.length - at);
+        return copy;
+    }
+
+    private static long[] withoutDay(long[] days, long day) {
+        int at = Arrays.binarySearch(days, day);
+        long[] copy = new long[days.length - 1];
+        System.arraycopy(days, 0, copy, 0, at);
+        System.arraycopy(days, at + 1, copy, at, copy.length - at);
+        return copy;
+    }
+
+    private void publish() {
+        current = new LibraryView(++version, books, users, loansByDueDay, dueDays, loanCount, searchIndex);
+    }
+}
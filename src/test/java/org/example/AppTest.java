@@ -6,8 +6,12 @@ package org.example;
 import org.example.models.Book;
 import org.example.models.BorrowingRecord;
 import org.example.models.Faculty;
+import org.example.models.FineEngine;
 import org.example.models.Guest;
 import org.example.models.Library;
+import org.example.models.LoanResult;
+import org.example.models.LoanStatus;
+import org.example.models.Page;
 import org.example.models.Student;
 import org.example.models.User;
 import org.example.models.UserType;
@@ -18,6 +22,11 @@ import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.NullAndEmptySource;
 import org.junit.jupiter.params.provider.ValueSource;
 
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -56,6 +65,35 @@ class AppTest {
         assertEquals("Book 1", foundBook.getTitle()); // Should keep first book
     }
 
+    @Test
+    void testCopiesOfTheSameIsbn() {
+        library.addBook("Book 1", "Author 1", "123", "Genre 1");
+        library.addBook("Book 1", "Author 1", "123", "Genre 1");
+        library.registerUser("User 1", "user1", "user1@example.com", UserType.STUDENT);
+        library.registerUser("User 2", "user2", "user2@example.com", UserType.STUDENT);
+        library.registerUser("User 3", "user3", "user3@example.com", UserType.STUDENT);
+        Book book = library.findBook("123");
+        assertEquals(2, book.getCopies());
+
+        assertEquals(LoanStatus.OK, library.tryBorrowBook("user1", "123"));
+        assertEquals(LoanStatus.DUPLICATE, library.tryBorrowBook("user1", "123"));  // один экземпляр в руки
+        assertEquals(LoanStatus.OK, library.tryBorrowBook("user2", "123"));
+        assertEquals(LoanStatus.NOT_AVAILABLE, library.tryBorrowBook("user3", "123"));
+        assertEquals(0, book.getAvailableCopies());
+        assertEquals(2, library.getActiveLoans().size());
+
+        assertEquals(LoanStatus.NOT_BORROWED, library.tryReturnBook("user3", "123"));
+        assertTrue(library.returnBook("user1", "123"));
+        assertEquals(1, book.getAvailableCopies());
+        assertEquals(List.of(new LoanResult("123", LoanStatus.DUPLICATE)), library.borrowBooks("user2", List.of("123")));
+        assertTrue(library.borrowBook("user3", "123"));
+
+        Library restored = new Library();
+        library.exportState(restored::apply);
+        assertEquals(2, restored.findBook("123").getCopies());
+        assertEquals(0, restored.findBook("123").getAvailableCopies());
+    }
+
     @Test
     void testRemoveBookExisting() {
         library.addBook("Test Book", "Test Author", "123", "Fiction");
@@ -233,6 +271,138 @@ class AppTest {
         assertTrue(user.getBorrowedBooks().isEmpty());
     }
 
+    @Test
+    void testReturnBookKeepsHistory() {
+        library.registerUser("Test User", "user123", "test@example.com", UserType.STUDENT);
+        library.addBook("Test Book", "Test Author", "123", "Fiction");
+
+        library.borrowBook("user123", "123");
+        assertEquals(1, library.getActiveLoans().size());
+        assertTrue(library.getBorrowingHistory().isEmpty());
+
+        library.returnBook("user123", "123");
+        library.borrowBook("user123", "123");
+        library.returnBook("user123", "123");
+
+        assertTrue(library.getActiveLoans().isEmpty());
+        assertEquals(2, library.getBorrowingHistory().size());
+        for (BorrowingRecord record : library.getBorrowingHistory()) {
+            assertNotNull(record.getReturnDate());
+        }
+    }
+
+    @Test
+    void testBorrowBooksIsAllOrNothing() {
+        library.registerUser("Test User", "user123", "test@example.com", UserType.STUDENT);
+        for (int i = 1; i <= 4; i++) {
+            library.addBook("Book " + i, "Author " + i, String.valueOf(i), "Fiction");
+        }
+        library.borrowBook("user123", "1");
+
+        // у студента лимит 3 книги, одна уже на руках
+        List<LoanResult> results = library.borrowBooks("user123", List.of("2", "3", "4"));
+        assertEquals(List.of(LoanStatus.SKIPPED, LoanStatus.SKIPPED, LoanStatus.LIMIT_REACHED),
+                results.stream().map(LoanResult::status).toList());
+        assertTrue(library.findBook("2").isAvailable());
+        assertEquals(1, library.findUser("user123").getBorrowedBooks().size());
+
+        results = library.borrowBooks("user123", List.of("2", "2", "missing"));
+        assertEquals(List.of(LoanStatus.SKIPPED, LoanStatus.DUPLICATE, LoanStatus.BOOK_NOT_FOUND),
+                results.stream().map(LoanResult::status).toList());
+
+        results = library.borrowBooks("user123", List.of("2", "3"));
+        assertTrue(results.stream().allMatch(LoanResult::isOk));
+        assertFalse(library.findBook("3").isAvailable());
+        assertEquals(3, library.getActiveLoans().size());
+    }
+
+    @Test
+    void testReturnBooksPerItem() {
+        library.registerUser("Test User", "user123", "test@example.com", UserType.FACULTY);
+        library.addBook("Book 1", "Author 1", "1", "Fiction");
+        library.addBook("Book 2", "Author 2", "2", "Fiction");
+        library.borrowBook("user123", "1");
+
+        List<LoanResult> results = library.returnBooks("user123", List.of("1", "2", "missing"));
+        assertEquals(List.of(LoanStatus.OK, LoanStatus.NOT_BORROWED, LoanStatus.BOOK_NOT_FOUND),
+                results.stream().map(LoanResult::status).toList());
+        assertTrue(library.findBook("1").isAvailable());
+        assertEquals(LoanStatus.USER_NOT_FOUND, library.returnBooks("other", List.of("1")).get(0).status());
+    }
+
+    @Test
+    void testReturnHandsBookToNextEligibleHolder() {
+        library.addBook("Hot Book", "Author", "1", "Fiction");
+        library.addBook("Other Book", "Author", "2", "Fiction");
+        library.registerUser("Owner", "owner", "owner@example.com", UserType.STUDENT);
+        library.registerUser("Guest", "guest", "guest@example.com", UserType.GUEST);
+        library.registerUser("First", "first", "first@example.com", UserType.STUDENT);
+        library.registerUser("Second", "second", "second@example.com", UserType.STUDENT);
+        assertTrue(library.borrowBook("owner", "1"));
+
+        assertEquals(LoanStatus.QUEUED, library.placeHold("guest", "1"));
+        assertEquals(LoanStatus.QUEUED, library.placeHold("first", "1"));
+        assertEquals(LoanStatus.DUPLICATE, library.placeHold("first", "1"));
+        assertEquals(LoanStatus.DUPLICATE, library.placeHold("owner", "1"));
+        assertEquals(LoanStatus.QUEUED, library.placeHold("second", "1"));
+        assertEquals(LoanStatus.OK, library.placeHold("second", "2"));  // свободна — выдаётся сразу
+        library.addBook("Third Book", "Author", "3", "Fiction");
+        assertTrue(library.borrowBook("guest", "3"));
+
+        // гость упёрся в лимит и остаётся в очереди, книга уходит следующему
+        assertTrue(library.returnBook("owner", "1"));
+        assertFalse(library.findBook("1").isAvailable());
+        assertNotNull(library.getActiveLoans().stream()
+                .filter(loan -> loan.getUser().getUserId().equals("first")).findAny().orElse(null));
+        assertEquals(List.of("guest", "second"),
+                library.getHolds("1").stream().map(User::getUserId).toList());
+
+        assertTrue(library.cancelHold("second", "1"));
+        assertFalse(library.cancelHold("second", "1"));
+        assertTrue(library.returnBook("first", "1"));
+        assertTrue(library.findBook("1").isAvailable());  // гость всё ещё на лимите
+        assertEquals(1, library.getHolds("1").size());
+
+        // после отмены последней заявки очередь удаляется, а новая заводится заново
+        assertTrue(library.cancelHold("guest", "1"));
+        assertTrue(library.getHolds("1").isEmpty());
+        assertTrue(library.borrowBook("owner", "1"));
+        assertEquals(LoanStatus.QUEUED, library.placeHold("second", "1"));
+        assertEquals(List.of("second"), library.getHolds("1").stream().map(User::getUserId).toList());
+    }
+
+    @Test
+    void testPageBooksFollowsCursor() {
+        for (int i = 5; i >= 1; i--) {
+            library.addBook("Book " + i, "Author", String.valueOf(i), "Fiction");
+        }
+
+        Page<Book> first = library.pageBooks(null, 2);
+        assertEquals(List.of("1", "2"), first.items().stream().map(Book::getIsbn).toList());
+        assertTrue(first.hasNext());
+
+        // удаление уже показанной книги не сдвигает следующую страницу
+        library.removeBook("1");
+        Page<Book> second = library.pageBooks(first.nextCursor(), 2);
+        assertEquals(List.of("3", "4"), second.items().stream().map(Book::getIsbn).toList());
+
+        Page<Book> last = library.pageBooks(second.nextCursor(), 2);
+        assertEquals(List.of("5"), last.items().stream().map(Book::getIsbn).toList());
+        assertFalse(last.hasNext());
+        assertEquals(4, library.streamBooks().count());
+    }
+
+    @Test
+    void testPageUsersExactlyFilled() {
+        library.registerUser("User B", "b", "b@example.com", UserType.GUEST);
+        library.registerUser("User A", "a", "a@example.com", UserType.STUDENT);
+
+        Page<User> page = library.pageUsers(null, 2);
+        assertEquals(List.of("a", "b"), page.items().stream().map(User::getUserId).toList());
+        assertFalse(page.hasNext());
+        assertThrows(IllegalArgumentException.class, () -> library.pageUsers(null, 0));
+    }
+
     @Test
     void testReturnBookNonExistingUser() {
         library.addBook("Test Book", "Test Author", "123", "Fiction");
@@ -265,15 +435,103 @@ class AppTest {
 
     @Test
     void testGetOverdueBooks() {
+        MutableClock clock = new MutableClock(Instant.parse("2025-01-01T10:00:00Z"));
+        Library library = new Library(clock);
         library.registerUser("Test User", "user123", "test@example.com", UserType.STUDENT);
         library.addBook("Test Book", "Test Author", "123", "Fiction");
 
-        library.borrowBook("user123", "123");
+        library.borrowBook("user123", "123"); // due 2025-01-15
 
+        assertTrue(library.getOverdueBooks().isEmpty());
 
+        clock.instant = Instant.parse("2025-01-20T10:00:00Z");
         List<BorrowingRecord> overdueBooks = library.getOverdueBooks();
 
-        assertTrue(overdueBooks.size() == 1);
+        assertEquals(1, overdueBooks.size());
+        assertEquals(LocalDate.of(2025, 1, 20), library.today());
+        assertTrue(overdueBooks.get(0).isOverdue(library.today()));
+        assertFalse(overdueBooks.get(0).isOverdue(LocalDate.of(2025, 1, 15)));
+    }
+
+    @Test
+    void testGetBooksDueWithin() {
+        MutableClock clock = new MutableClock(Instant.parse("2025-01-01T10:00:00Z"));
+        Library library = new Library(clock);
+        library.registerUser("Student", "student1", "student@example.com", UserType.STUDENT);
+        library.registerUser("Guest", "guest1", "guest@example.com", UserType.GUEST);
+        library.addBook("Book 1", "Author 1", "1", "Fiction");
+        library.addBook("Book 2", "Author 2", "2", "Fiction");
+
+        library.borrowBook("student1", "1"); // due in 14 days
+        library.borrowBook("guest1", "2");   // due in 7 days
+
+        assertTrue(library.getBooksDueWithin(6).isEmpty());
+        assertEquals(1, library.getBooksDueWithin(7).size());
+        assertEquals(2, library.getBooksDueWithin(14).size());
+
+        library.returnBook("guest1", "2");
+        assertEquals(1, library.getBooksDueWithin(14).size());
+
+        clock.instant = Instant.parse("2025-01-10T10:00:00Z");
+        assertEquals(1, library.getBooksDueWithin(5).size());
+        assertTrue(library.getOverdueBooks().isEmpty());
+
+        clock.instant = Instant.parse("2025-01-15T10:00:00Z");
+        assertTrue(library.getOverdueBooks().isEmpty()); // день возврата ещё не просрочка
+        clock.instant = Instant.parse("2025-01-16T10:00:00Z");
+        assertEquals(1, library.getOverdueBooks().size());
+    }
+
+    @Test
+    void testFinesAccrueOncePerOverdueDay() {
+        MutableClock clock = new MutableClock(Instant.parse("2025-01-01T10:00:00Z"));
+        Library library = new Library(clock);
+        library.registerUser("Student", "student1", "student@example.com", UserType.STUDENT);
+        library.registerUser("Guest", "guest1", "guest@example.com", UserType.GUEST);
+        library.addBook("Book 1", "Author 1", "1", "Fiction");
+        library.addBook("Book 2", "Author 2", "2", "Fiction");
+        library.borrowBook("student1", "1"); // due 2025-01-15, $0.50 per day
+        library.borrowBook("guest1", "2");   // due 2025-01-08
+
+        FineEngine fines = library.getFines();
+        assertEquals(1, fines.settle(LocalDate.parse("2025-01-15")));   // only the guest is late
+        assertEquals(0.0, fines.getOwed("student1"));
+        assertEquals(0.0, fines.getOwed("guest1"));                       // guests pay no fines
+
+        assertEquals(2, fines.settle(LocalDate.parse("2025-01-18")));
+        assertEquals(0, fines.settle(LocalDate.parse("2025-01-18")));       // closing the same day again
+        assertEquals(150, fines.getOwedCents("student1"));
+
+        // возврат дописывает дни после последнего закрытия
+        clock.instant = Instant.parse("2025-01-20T10:00:00Z");
+        library.returnBook("student1", "1");
+        assertEquals(250, fines.getOwedCents("student1"));
+        fines.settle(LocalDate.parse("2025-01-25"));
+        assertEquals(250, fines.getOwedCents("student1"));
+        assertEquals(0, fines.getOwedCents("nobody"));
+    }
+
+    @Test
+    void testParallelSettlementMatchesPerLoanFines() {
+        MutableClock clock = new MutableClock(Instant.parse("2025-01-01T10:00:00Z"));
+        Library library = new Library(clock);
+        int users = 5_000;
+        for (int i = 0; i < users; i++) {
+            library.registerUser("Student " + i, "s" + i, "s" + i + "@example.com", UserType.STUDENT);
+            for (int b = 0; b < 3; b++) {
+                String isbn = i + "-" + b;
+                library.addBook("Book " + isbn, "Author", isbn, "Fiction");
+                library.borrowBook("s" + i, isbn);
+            }
+        }
+
+        // выдачи больше порога одной задачи, так что закрытие дня делится между потоками
+        assertEquals(users * 3L, library.getFines().settle(LocalDate.parse("2025-01-25")));
+
+        for (int i = 0; i < users; i++) {
+            // 10 дней после 2025-01-15 по $0.50 за каждую из трёх книг
+            assertEquals(1500, library.getFines().getOwedCents("s" + i));
+        }
     }
 
     @Test
@@ -317,4 +575,27 @@ class AppTest {
         student.getBorrowedBooks().add(book3);
         assertFalse(student.canBorrow()); // Max reached
     }
+
+    private static class MutableClock extends Clock {
+        private Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
 }
@@ -0,0 +1,163 @@
+package org.example;
+
+import org.example.models.AutocompleteIndex;
+import org.example.models.Book;
+import org.example.models.Library;
+import org.example.models.Suggestion;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AutocompleteIndexTest {
+    private AutocompleteIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new AutocompleteIndex();
+        index.add(new Book("The Hobbit", "J.R.R. Tolkien", "1", "Fantasy"));
+        index.add(new Book("The Lord of the Rings", "J.R.R. Tolkien", "2", "Fantasy"));
+        index.add(new Book("Dune", "Frank Herbert", "3", "Science Fiction"));
+        index.add(new Book("Dune Messiah", "Frank Herbert", "4", "Science Fiction"));
+        index.add(new Book("Frankenstein", "Mary Shelley", "5", "Classic"));
+    }
+
+    @Test
+    void testExactPrefixComesFirst() {
+        List<Suggestion> suggestions = index.suggest("the ", 10);
+
+        assertEquals(List.of("The Hobbit", "The Lord of the Rings"), texts(suggestions));
+        assertEquals(new Suggestion("Frank Herbert", Suggestion.Field.AUTHOR, 0), index.suggest("FRANK h", 1).get(0));
+        // при равном числе правок названия и авторы идут вместе по алфавиту
+        assertEquals(List.of("Frank Herbert", "Frankenstein"), texts(index.suggest("frank", 10)));
+        assertEquals(List.of("Frank Herbert"), texts(index.suggest("frank", 1)));
+    }
+
+    @Test
+    void testTyposAreCorrected() {
+        assertEquals(List.of("The Hobbit"), texts(index.suggest("the hobit", 10)));
+        assertEquals(List.of("The Lord of the Rings"), texts(index.suggest("teh lord", 10)));
+        assertEquals(List.of("Dune", "Dune Messiah"), texts(index.suggest("dunr", 10)));
+        assertEquals(1, index.suggest("dunr", 10).get(0).distance());
+        assertEquals(List.of("J.R.R. Tolkien"), texts(index.suggest("j.r.r. tolkein", 10)));
+        assertTrue(index.suggest("du", 10).stream().noneMatch(s -> s.distance() > 0));  // коротко — без опечаток
+        assertTrue(index.suggest("zzzzzz", 10).isEmpty());
+        assertTrue(index.suggest("  ", 10).isEmpty());
+    }
+
+    @Test
+    void testLimitAndDuplicates() {
+        index.add(new Book("Dune", "Frank Herbert", "6", "Science Fiction"));
+
+        assertEquals(List.of("Dune"), texts(index.suggest("dune", 1)));
+        assertEquals(List.of("Dune", "Dune Messiah"), texts(index.suggest("dune", 10)));
+        assertThrows(IllegalArgumentException.class, () -> index.suggest("dune", 0));
+        assertThrows(IllegalArgumentException.class, () -> index.suggest("dune", 3, 10));
+    }
+
+    @Test
+    void testRemovalKeepsOtherEntries() {
+        Book dune = new Book("Dune", "Frank Herbert", "3", "Science Fiction");
+        index.remove(dune);
+        assertEquals(List.of("Dune Messiah"), texts(index.suggest("dune", 10)));
+        assertEquals(List.of("Frank Herbert"), texts(index.suggest("frank h", 0, 10)));  // ещё одна книга автора
+
+        index.remove(new Book("Dune Messiah", "Frank Herbert", "4", "Science Fiction"));
+        index.remove(new Book("Not Indexed", "Nobody", "7", null));
+        assertTrue(index.suggest("dune", 10).isEmpty());
+        assertTrue(index.suggest("frank h", 0, 10).isEmpty());
+        assertEquals(List.of("Frankenstein"), texts(index.suggest("frank", 10)));
+    }
+
+    @Test
+    void testMatchesBruteForce() {
+        Random random = new Random(7);
+        AutocompleteIndex fuzzy = new AutocompleteIndex();
+        Map<String, Integer> titles = new HashMap<>();
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            Book book = new Book(randomWord(random, 1 + random.nextInt(7)), "", Integer.toString(i), null);
+            books.add(book);
+            fuzzy.add(book);
+            titles.merge(book.getTitle(), 1, Integer::sum);
+        }
+        for (int i = 0; i < 500; i++) {
+            Book book = books.remove(random.nextInt(books.size()));
+            fuzzy.remove(book);
+            titles.computeIfPresent(book.getTitle(), (t, n) -> n == 1 ? null : n - 1);
+        }
+
+        for (int q = 0; q < 200; q++) {
+            String query = randomWord(random, 1 + random.nextInt(5));
+            int edits = random.nextInt(3);
+            Map<String, Integer> expected = new HashMap<>();
+            for (String title : titles.keySet()) {
+                int distance = prefixDistance(title, query);
+                if (distance <= edits) {
+                    expected.put(title, distance);
+                }
+            }
+
+            List<Suggestion> actual = fuzzy.suggest(query, edits, Integer.MAX_VALUE);
+            Map<String, Integer> found = new HashMap<>();
+            int previous = 0;
+            String last = "";
+            for (Suggestion suggestion : actual) {
+                assertTrue(suggestion.distance() >= previous, "sorted by distance");
+                assertTrue(suggestion.distance() > previous || suggestion.text().compareTo(last) > 0, "sorted by text");
+                previous = suggestion.distance();
+                last = suggestion.text();
+                assertNull(found.put(suggestion.text(), suggestion.distance()), "no duplicates");
+            }
+            assertEquals(expected, found, "query " + query + " with " + edits + " edits");
+        }
+    }
+
+    @Test
+    void testLibrarySuggest() {
+        Library library = new Library();
+        library.addBook("Java Programming", "James Gosling", "1", "Programming");
+
+        assertEquals(List.of("Java Programming"), texts(library.suggest("jaav prog", 5)));
+        library.removeBook("1");
+        assertTrue(library.suggest("jaav prog", 5).isEmpty());
+    }
+
+    private static String randomWord(Random random, int length) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + random.nextInt(4)));
+        }
+        return word.toString();
+    }
+
+    // наименьшее расстояние Левенштейна между запросом и каким-либо началом строки
+    private static int prefixDistance(String text, String query) {
+        int[] row = new int[query.length() + 1];
+        for (int j = 0; j < row.length; j++) {
+            row[j] = j;
+        }
+        int best = row[query.length()];
+        for (int i = 0; i < text.length(); i++) {
+            int[] next = new int[row.length];
+            next[0] = i + 1;
+            for (int j = 1; j < row.length; j++) {
+                int cost = text.charAt(i) == query.charAt(j - 1) ? 0 : 1;
+                next[j] = Math.min(row[j - 1] + cost, Math.min(row[j] + 1, next[j - 1] + 1));
+            }
+            row = next;
+            best = Math.min(best, row[query.length()]);
+        }
+        return best;
+    }
+
+    private static List<String> texts(List<Suggestion> suggestions) {
+        return suggestions.stream().map(Suggestion::text).toList();
+    }
+}
@@ -0,0 +1,60 @@
+package org.example;
+
+import org.example.models.Book;
+import org.example.models.BookSearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookSearchIndexTest {
+    private BookSearchIndex index;
+    private List<Book> books;
+
+    @BeforeEach
+    void setUp() {
+        index = new BookSearchIndex();
+        books = new ArrayList<>();
+        books.add(new Book("Java Programming", "James Gosling", "1", "Programming"));
+        books.add(new Book("Python Basics", "Guido van Rossum", "2", "Programming"));
+        books.add(new Book("The Hobbit", "J.R.R. Tolkien", "3", "Fantasy"));
+        books.add(new Book("Dune", "Frank Herbert", "4", "Science Fiction"));
+        books.add(new Book("1984", "George Orwell", "5", null));
+        books.forEach(index::add);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"a", "J", "ja", "pro", "PROGRAMMING", "van ross", " hobbit ", "r.r.", "fiction",
+            "19", "1984", "xyz", "gramming basics"})
+    void testSearchMatchesFullScan(String query) {
+        String term = query.trim().toLowerCase();
+        Set<Book> expected = new HashSet<>();
+        for (Book book : books) {
+            if ((book.getTitle() != null && book.getTitle().toLowerCase().contains(term)) ||
+                    (book.getAuthor() != null && book.getAuthor().toLowerCase().contains(term)) ||
+                    (book.getGenre() != null && book.getGenre().toLowerCase().contains(term))) {
+                expected.add(book);
+            }
+        }
+
+        assertEquals(expected, new HashSet<>(index.search(query)));
+    }
+
+    @Test
+    void testRemovedBookIsNotFound() {
+        Book hobbit = books.get(2);
+        index.remove(hobbit);
+
+        assertTrue(index.search("hobbit").isEmpty());
+        assertTrue(index.search("tol").isEmpty());
+        assertTrue(index.search("fantasy").isEmpty());
+        assertEquals(1, index.search("dune").size());
+    }
+}
@@ -0,0 +1,88 @@
+package org.example;
+
+import org.example.models.BulkImporter;
+import org.example.models.ImportReport;
+import org.example.models.Library;
+import org.example.models.UserType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkImporterTest {
+    private Library library;
+    private BulkImporter importer;
+
+    @BeforeEach
+    void setUp() {
+        library = new Library();
+        // маленькие пачки, чтобы задействовать несколько потоков разбора
+        importer = new BulkImporter(library, 4, 2);
+    }
+
+    @Test
+    void testImportBooksKeepsFirstDuplicate() throws IOException {
+        library.addBook("Existing", "Author", "100", "Fiction");
+        String csv = """
+                title,author,isbn,genre
+                Java Programming,Author 1,1,Programming
+                "Dune, Part One",Frank Herbert,2,Science Fiction
+                Duplicate,Author 3,1,Fiction
+                Existing Copy,Author 4,100,Fiction
+                broken line
+                ,No Title,3,Fiction
+                Python Basics,Author 5,4
+                """;
+
+        ImportReport report = importer.importBooks(new StringReader(csv), ',');
+
+        assertEquals(7, report.rows());
+        assertEquals(3, report.imported());
+        assertEquals(2, report.duplicates());
+        assertEquals(2, report.malformed());
+        assertEquals("Java Programming", library.findBook("1").getTitle());
+        assertEquals("Dune, Part One", library.findBook("2").getTitle());
+        assertEquals("Existing", library.findBook("100").getTitle());
+        assertEquals(1, library.searchBooks("herbert").size());
+    }
+
+    @Test
+    void testImportUsersFromTsv() throws IOException {
+        String tsv = "Alice\talice\talice@example.com\tstudent\n"
+                + "Bob\tbob\tbob@example.com\tFACULTY\n"
+                + "Alice Again\talice\tother@example.com\tguest\n"
+                + "Carol\tcarol\tcarol@example.com\tadmin\n";
+
+        ImportReport report = importer.importUsers(new StringReader(tsv), '\t');
+
+        assertEquals(4, report.rows());
+        assertEquals(2, report.imported());
+        assertEquals(1, report.duplicates());
+        assertEquals(1, report.malformed());
+        assertEquals(UserType.STUDENT, library.findUser("alice").getUserType());
+        assertEquals(UserType.FACULTY, library.findUser("bob").getUserType());
+        assertNull(library.findUser("carol"));
+    }
+
+    @Test
+    void testSkipsOnlyFullHeaderRow() throws IOException {
+        ImportReport books = importer.importBooks(new StringReader("""
+                Title,Some Author,1,Fiction
+                Title,author,isbn
+                """), ',');
+        assertEquals(2, books.rows());
+        assertEquals(2, books.imported());
+        assertEquals("Title", library.findBook("1").getTitle());
+        assertEquals("author", library.findBook("isbn").getAuthor());
+
+        ImportReport users = importer.importUsers(new StringReader("""
+                name,userId,email,type
+                Name,name,name@example.com,guest
+                """), ',');
+        assertEquals(1, users.rows());
+        assertEquals("Name", library.findUser("name").getName());
+    }
+}
@@ -0,0 +1,144 @@
+package org.example;
+
+import org.example.models.Book;
+import org.example.models.CompactCatalog;
+import org.example.models.CompactLibrary;
+import org.example.models.Library;
+import org.example.models.LoanResult;
+import org.example.models.LoanStatus;
+import org.example.models.Page;
+import org.example.models.UserType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Clock;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactLibraryTest {
+    private CompactLibrary library;
+
+    @BeforeEach
+    void setUp() {
+        library = new CompactLibrary();
+    }
+
+    @Test
+    void testAddFindAndRemove() {
+        library.addBook("Война и мир", "Лев Толстой", "1", "Classic");
+        library.addBook("Duplicate", "Author", "1", "Fiction");
+        library.addBook("Dune", "Frank Herbert", "2", null);
+
+        Book book = library.findBook("1");
+        assertEquals("Война и мир", book.getTitle());
+        assertEquals("Лев Толстой", book.getAuthor());
+        assertEquals("Classic", book.getGenre());
+        assertTrue(book.isAvailable());
+        assertNull(library.findBook("2").getGenre());
+
+        assertTrue(library.removeBook("1"));
+        assertFalse(library.removeBook("1"));
+        assertNull(library.findBook("1"));
+        assertEquals(1, library.showAllBooks().size());
+
+        library.addBook("Война и мир", "Лев Толстой", "1", "Classic");
+        assertNotNull(library.findBook("1"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"java", "smith", "fiction", "PROG", "no match", "МИР", "толст", "ng p"})
+    void testSearchMatchesLibrary(String query) {
+        Library reference = new Library();
+        String[][] books = {
+                {"Java Programming", "John Smith", "1", "Programming"},
+                {"Python Basics", "Jane Doe", "2", "Programming"},
+                {"Dune", "Frank Herbert", "3", "Science Fiction"},
+                {"Smithsonian", "Anonymous", "4", "History"},
+                {"Война и Мир", "Лев Толстой", "5", "Классика"},
+        };
+        for (String[] b : books) {
+            library.addBook(b[0], b[1], b[2], b[3]);
+            reference.addBook(b[0], b[1], b[2], b[3]);
+        }
+
+        assertEquals(isbns(reference.searchBooks(query)), isbns(library.searchBooks(query)));
+    }
+
+    @Test
+    void testBorrowAndReturn() {
+        library.registerUser("Test User", "user123", "test@example.com", UserType.GUEST);
+        library.addBook("Book 1", "Author 1", "1", "Fiction");
+        library.addBook("Book 2", "Author 2", "2", "Fiction");
+
+        assertTrue(library.borrowBook("user123", "1"));
+        assertFalse(library.borrowBook("user123", "2")); // guest limit is 1
+        assertFalse(library.findBook("1").isAvailable());
+        assertTrue(library.getOverdueBooks().isEmpty()); // срок ещё не наступил
+
+        assertTrue(library.returnBook("user123", "1"));
+        assertFalse(library.returnBook("user123", "1"));
+        assertTrue(library.findBook("1").isAvailable());
+        assertTrue(library.findUser("user123").getBorrowedBooks().isEmpty());
+    }
+
+    @Test
+    void testBatchBorrowAndReturn() {
+        library.registerUser("Test User", "user123", "test@example.com", UserType.GUEST);
+        library.addBook("Book 1", "Author 1", "1", "Fiction");
+        library.addBook("Book 2", "Author 2", "2", "Fiction");
+
+        List<LoanResult> results = library.borrowBooks("user123", List.of("1", "2"));
+        assertEquals(List.of(LoanStatus.SKIPPED, LoanStatus.LIMIT_REACHED),
+                results.stream().map(LoanResult::status).toList());
+        assertTrue(library.findBook("1").isAvailable());
+
+        assertTrue(library.borrowBooks("user123", List.of("1")).get(0).isOk());
+        assertFalse(library.findBook("1").isAvailable());
+        results = library.returnBooks("user123", List.of("1", "2"));
+        assertEquals(List.of(LoanStatus.OK, LoanStatus.NOT_BORROWED), results.stream().map(LoanResult::status).toList());
+    }
+
+    @Test
+    void testPageBooksSkipsRemoved() {
+        for (int i = 1; i <= 5; i++) {
+            library.addBook("Book " + i, "Author", String.valueOf(i), "Fiction");
+        }
+        library.removeBook("3");
+        library.removeBook("5");
+
+        Page<Book> first = library.pageBooks(null, 2);
+        assertEquals(List.of("1", "2"), first.items().stream().map(Book::getIsbn).toList());
+        Page<Book> second = library.pageBooks(first.nextCursor(), 2);
+        assertEquals(List.of("4"), second.items().stream().map(Book::getIsbn).toList());
+        assertFalse(second.hasNext());
+        assertEquals(List.of("1", "2", "4"), library.streamBooks().map(Book::getIsbn).toList());
+    }
+
+    @Test
+    void testBytesPerBookIsAtLeastFourTimesLower() {
+        CompactCatalog catalog = new CompactCatalog();
+        CompactLibrary compact = new CompactLibrary(catalog, Clock.systemDefaultZone());
+        String[] authors = {"Leo Tolstoy", "Jane Austen", "George Orwell", "Harper Lee"};
+        String[] genres = {"Fiction", "Classic", "Romance"};
+        int count = 100_000;
+        for (int i = 0; i < count; i++) {
+            compact.addBook(String.format("A title of 25 chars %05d", i), authors[i % authors.length],
+                    String.format("978%010d", i), genres[i % genres.length]);
+        }
+        catalog.trimToSize();
+
+        double bytesPerBook = (double) catalog.estimatedBytes() / count;
+        // Library тратит около 310 байт на такую книгу без учёта поискового индекса:
+        // объект Book 40, четыре строки 232, узел HashMap с ячейкой таблицы около 37
+        assertTrue(bytesPerBook < 310 / 4.0, "bytes per book: " + bytesPerBook);
+        assertEquals(count, catalog.size());
+        assertEquals("A title of 25 chars 04242", compact.findBook("9780000004242").getTitle());
+    }
+
+    private static List<String> isbns(List<Book> books) {
+        return books.stream().map(Book::getIsbn).sorted().toList();
+    }
+}
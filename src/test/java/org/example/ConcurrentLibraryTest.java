@@ -0,0 +1,229 @@
+package org.example;
+
+import org.example.models.ConcurrentLibrary;
+import org.example.models.LoanResult;
+import org.example.models.LoanStatus;
+import org.example.models.User;
+import org.example.models.UserType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentLibraryTest {
+    private static final int THREADS = 16;
+
+    private ConcurrentLibrary library;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        library = new ConcurrentLibrary();
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @Test
+    void testOnlyOneBorrowerWinsTheSameBook() throws Exception {
+        library.addBook("Test Book", "Test Author", "123", "Fiction");
+        for (int i = 0; i < THREADS; i++) {
+            library.registerUser("User " + i, "user" + i, "user" + i + "@example.com", UserType.STUDENT);
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            String userId = "user" + i;
+            results.add(executor.submit(() -> {
+                start.await();
+                return library.borrowBook(userId, "123");
+            }));
+        }
+        start.countDown();
+
+        int winners = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get()) winners++;
+        }
+        shutdown();
+
+        assertEquals(1, winners);
+        assertFalse(library.findBook("123").isAvailable());
+        assertTrue(library.getOverdueBooks().isEmpty()); // срок ещё не наступил
+    }
+
+    @Test
+    void testUserNeverExceedsMaxBooks() throws Exception {
+        library.registerUser("Test User", "user123", "test@example.com", UserType.STUDENT);
+        for (int i = 0; i < THREADS; i++) {
+            library.addBook("Book " + i, "Author " + i, String.valueOf(i), "Fiction");
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            String isbn = String.valueOf(i);
+            results.add(executor.submit(() -> {
+                start.await();
+                return library.borrowBook("user123", isbn);
+            }));
+        }
+        start.countDown();
+
+        int borrowed = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get()) borrowed++;
+        }
+        shutdown();
+
+        User user = library.findUser("user123");
+        assertEquals(user.getMaxBooks(), borrowed);
+        assertEquals(user.getMaxBooks(), user.getBorrowedBooks().size());
+    }
+
+    @Test
+    void testCopiesAreNeverOversold() throws Exception {
+        int copies = THREADS / 2;
+        for (int i = 0; i < copies; i++) {
+            library.addBook("Textbook", "Author", "123", "Programming");
+        }
+        for (int i = 0; i < THREADS; i++) {
+            library.registerUser("User " + i, "user" + i, "user" + i + "@example.com", UserType.STUDENT);
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            String userId = "user" + i;
+            results.add(executor.submit(() -> {
+                start.await();
+                return library.borrowBook(userId, "123");
+            }));
+        }
+        start.countDown();
+
+        int winners = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get()) winners++;
+        }
+        shutdown();
+
+        assertEquals(copies, winners);
+        assertEquals(copies, library.getActiveLoans().size());
+        assertEquals(0, library.findBook("123").getAvailableCopies());
+        for (int i = 0; i < THREADS; i++) {
+            library.returnBook("user" + i, "123");
+        }
+        assertEquals(copies, library.findBook("123").getAvailableCopies());
+    }
+
+    @Test
+    void testHoldQueueServesEveryWaiter() throws Exception {
+        library.addBook("Hot Book", "Author", "123", "Fiction");
+        for (int i = 0; i < THREADS; i++) {
+            library.registerUser("User " + i, "user" + i, "user" + i + "@example.com", UserType.STUDENT);
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            String userId = "user" + i;
+            results.add(executor.submit(() -> {
+                start.await();
+                LoanStatus status = library.placeHold(userId, "123");
+                if (status != LoanStatus.OK && status != LoanStatus.QUEUED) {
+                    return false;
+                }
+                // без повторных попыток: ждём, пока книгу передадут из очереди
+                User user = library.findUser(userId);
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+                while (!holdsBook(user)) {
+                    if (System.nanoTime() > deadline) {
+                        return false;
+                    }
+                    Thread.onSpinWait();
+                }
+                return library.returnBook(userId, "123");
+            }));
+        }
+        start.countDown();
+
+        for (Future<Boolean> result : results) {
+            assertTrue(result.get());
+        }
+        shutdown();
+
+        assertTrue(library.findBook("123").isAvailable());
+        assertTrue(library.getActiveLoans().isEmpty());
+        assertEquals(THREADS, library.getBorrowingHistory().size());
+        assertTrue(library.getHolds("123").isEmpty());
+    }
+
+    private static boolean holdsBook(User user) {
+        synchronized (user) {
+            return !user.getBorrowedBooks().isEmpty();
+        }
+    }
+
+    @Test
+    void testConcurrentBatchesNeverSplitABook() throws Exception {
+        library.addBook("Book A", "Author", "a", "Fiction");
+        library.addBook("Book B", "Author", "b", "Fiction");
+        for (int i = 0; i < THREADS; i++) {
+            library.registerUser("User " + i, "user" + i, "user" + i + "@example.com", UserType.FACULTY);
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<LoanResult>>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            String userId = "user" + i;
+            // половина потоков берёт книги в обратном порядке
+            List<String> isbns = i % 2 == 0 ? List.of("a", "b") : List.of("b", "a");
+            results.add(executor.submit(() -> {
+                start.await();
+                return library.borrowBooks(userId, isbns);
+            }));
+        }
+        start.countDown();
+
+        int winners = 0;
+        for (Future<List<LoanResult>> result : results) {
+            if (result.get().stream().allMatch(LoanResult::isOk)) winners++;
+        }
+        shutdown();
+
+        assertTrue(winners <= 1);
+        assertEquals(2 * winners, library.getActiveLoans().size());
+        if (winners == 0) {
+            assertTrue(library.findBook("a").isAvailable());
+            assertTrue(library.findBook("b").isAvailable());
+        }
+    }
+
+    @Test
+    void testBorrowAndReturnRoundTrip() {
+        library.registerUser("Test User", "user123", "test@example.com", UserType.FACULTY);
+        library.addBook("Test Book", "Test Author", "123", "Fiction");
+
+        assertTrue(library.borrowBook("user123", "123"));
+        assertFalse(library.returnBook("other", "123"));
+        assertTrue(library.returnBook("user123", "123"));
+        assertFalse(library.returnBook("user123", "123"));
+
+        assertTrue(library.findBook("123").isAvailable());
+        assertTrue(library.findUser("user123").getBorrowedBooks().isEmpty());
+        assertTrue(library.getOverdueBooks().isEmpty());
+    }
+
+    private void shutdown() throws InterruptedException {
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,168 @@
+package org.example;
+
+import org.example.models.Book;
+import org.example.models.CacheStats;
+import org.example.models.DiskCatalog;
+import org.example.models.DiskLibrary;
+import org.example.models.Library;
+import org.example.models.LoanResult;
+import org.example.models.LoanStatus;
+import org.example.models.UserType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiskLibraryTest {
+
+    @TempDir
+    Path dir;
+
+    private DiskLibrary library;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        library = new DiskLibrary(DiskCatalog.open(dir), 2);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        library.close();
+    }
+
+    @Test
+    void testAddFindAndRemove() {
+        library.addBook("Война и мир", "Лев Толстой", "1", "Classic");
+        library.addBook("Duplicate", "Author", "1", "Fiction");
+        library.addBook("Dune", "Frank Herbert", "2", null);
+
+        Book book = library.findBook("1");
+        assertEquals("Война и мир", book.getTitle());
+        assertEquals("Лев Толстой", book.getAuthor());
+        assertEquals(2, book.getCopies());
+        assertNull(library.findBook("2").getGenre());
+        assertNull(library.findBook("3"));
+
+        assertTrue(library.removeBook("1"));
+        assertFalse(library.removeBook("1"));
+        assertNull(library.findBook("1"));
+        assertEquals(1, library.showAllBooks().size());
+
+        library.addBook("Война и мир", "Лев Толстой", "1", "Classic");
+        assertEquals(1, library.findBook("1").getCopies());
+    }
+
+    @Test
+    void testSearchMatchesLibrary() {
+        Library reference = new Library();
+        String[][] books = {
+                {"Java Programming", "John Smith", "1", "Programming"},
+                {"Python Basics", "Jane Doe", "2", "Programming"},
+                {"Dune", "Frank Herbert", "3", "Science Fiction"},
+                {"Smithsonian", "Anonymous", "4", "History"},
+        };
+        for (String[] b : books) {
+            library.addBook(b[0], b[1], b[2], b[3]);
+            reference.addBook(b[0], b[1], b[2], b[3]);
+        }
+
+        for (String query : List.of("java", "smith", "fiction", "PROG", "no match")) {
+            assertEquals(isbns(reference.searchBooks(query)),
+                    isbns(library.searchBooks(query)), query);
+        }
+    }
+
+    @Test
+    void testEvictedChangesAreWrittenBack() throws IOException {
+        library.registerUser("Test User", "user123", "test@example.com", UserType.FACULTY);
+        for (int i = 1; i <= 5; i++) {
+            library.addBook("Book " + i, "Author", String.valueOf(i), "Fiction");
+        }
+        library.addBook("Book 1", "Author", "1", "Fiction");
+
+        assertTrue(library.borrowBook("user123", "1"));
+        assertTrue(library.borrowBook("user123", "2"));
+        assertTrue(library.borrowBook("user123", "3"));  // вытесняет книгу 1
+        assertEquals(1, library.findBook("1").getAvailableCopies());
+        assertFalse(library.findBook("2").isAvailable());
+        assertEquals(0, library.searchBooks("book 3").get(0).getAvailableCopies());
+
+        CacheStats stats = library.getCacheStats();
+        assertEquals(2, stats.size());
+        assertTrue(stats.evictions() > 0);
+        assertTrue(stats.writeBacks() > 0);
+        assertTrue(stats.hitRate() > 0 && stats.hitRate() < 1);
+
+        assertTrue(library.returnBook("user123", "1"));
+        assertTrue(library.returnBook("user123", "2"));
+        assertEquals(1, library.findUser("user123").getBorrowedBooks().size());
+        assertEquals(LoanStatus.NOT_BORROWED, library.tryReturnBook("user123", "2"));
+        library.close();
+
+        library = new DiskLibrary(DiskCatalog.open(dir), 2);
+        assertEquals(5, library.getCatalog().size());
+        assertEquals(2, library.findBook("1").getAvailableCopies());
+        assertTrue(library.findBook("2").isAvailable());
+        assertFalse(library.findBook("3").isAvailable());
+    }
+
+    @Test
+    void testBatchLargerThanCache() {
+        library.registerUser("Test User", "user123", "test@example.com", UserType.FACULTY);
+        for (int i = 1; i <= 5; i++) {
+            library.addBook("Book " + i, "Author", String.valueOf(i), "Fiction");
+        }
+
+        List<LoanResult> results = library.borrowBooks("user123", List.of("1", "2", "3", "4"));
+        assertTrue(results.stream().allMatch(LoanResult::isOk));
+        for (String isbn : List.of("1", "2", "3", "4")) {
+            assertFalse(library.findBook(isbn).isAvailable(), isbn);
+        }
+        assertEquals(4, library.findUser("user123").getBorrowedBooks().size());
+
+        assertEquals(List.of(LoanStatus.NOT_AVAILABLE, LoanStatus.SKIPPED),
+                library.borrowBooks("user123", List.of("1", "5")).stream().map(LoanResult::status).toList());
+        assertTrue(library.returnBooks("user123", List.of("1", "2", "3", "4")).stream().allMatch(LoanResult::isOk));
+        assertTrue(library.findBook("1").isAvailable());
+    }
+
+    @Test
+    void testIndexGrowsAndIsRebuiltAfterCrash() throws IOException {
+        for (int i = 0; i < 5000; i++) {
+            library.addBook("Book " + i, "Author " + i % 10, "isbn-" + i, "Fiction");
+        }
+        for (int i = 0; i < 5000; i += 2) {
+            assertTrue(library.removeBook("isbn-" + i));
+        }
+        library.close();
+
+        // закрытый каталог открывается с сохранённым индексом
+        library = new DiskLibrary(DiskCatalog.open(dir), 100);
+        assertEquals(2500, library.getCatalog().size());
+        assertNull(library.findBook("isbn-0"));
+        assertEquals("Book 4999", library.findBook("isbn-4999").getTitle());
+        library.close();
+
+        // без индекса и с недописанной последней записью каталог восстанавливается по файлу данных
+        Files.delete(dir.resolve("books.idx"));
+        Files.write(dir.resolve("books.dat"), new byte[]{0, 0, 1, 0, 0}, StandardOpenOption.APPEND);
+        library = new DiskLibrary(DiskCatalog.open(dir), 100);
+        assertEquals(2500, library.getCatalog().size());
+        assertNull(library.findBook("isbn-10"));
+        assertEquals("Book 11", library.findBook("isbn-11").getTitle());
+        library.addBook("New", "Author", "new", "Fiction");
+        assertEquals(2501, library.showAllBooks().size());
+    }
+
+    private static List<String> isbns(List<Book> books) {
+        return books.stream().map(Book::getIsbn).sorted().toList();
+    }
+}
@@ -0,0 +1,85 @@
+package org.example;
+
+import org.example.models.InstrumentedLibrary;
+import org.example.models.LatencyHistogram;
+import org.example.models.Library;
+import org.example.models.OperationStats;
+import org.example.models.UserType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InstrumentedLibraryTest {
+    private InstrumentedLibrary library;
+
+    @BeforeEach
+    void setUp() {
+        library = new InstrumentedLibrary(new Library());
+    }
+
+    @Test
+    void testCountsCallsAndFailureReasons() {
+        library.registerUser("Test User", "user123", "test@example.com", UserType.GUEST);
+        library.addBook("Book 1", "Author 1", "1", "Fiction");
+        library.addBook("Book 2", "Author 2", "2", "Fiction");
+
+        assertTrue(library.borrowBook("user123", "1"));
+        assertFalse(library.borrowBook("user123", "1"));
+        assertFalse(library.borrowBook("user123", "2"));   // guest limit is 1
+        assertFalse(library.borrowBook("nobody", "2"));
+        assertFalse(library.borrowBook("user123", "missing"));
+
+        OperationStats stats = library.snapshot("borrowBook");
+        assertEquals(5, stats.calls());
+        assertEquals(Map.of("NOT_AVAILABLE", 1L, "LIMIT_REACHED", 1L, "USER_NOT_FOUND", 1L, "BOOK_NOT_FOUND", 1L),
+                stats.failures());
+        assertEquals(4, stats.failureCount());
+        assertTrue(stats.maxNanos() >= stats.p50Nanos());
+
+        assertNull(library.findBook("missing"));
+        assertEquals(Map.of("NOT_FOUND", 1L), library.snapshot("findBook").failures());
+        assertEquals(0, library.snapshot("searchBooks").calls());
+    }
+
+    @Test
+    void testBatchFailureIsTheRejectedBook() {
+        library.registerUser("Test User", "user123", "test@example.com", UserType.STUDENT);
+        library.addBook("Book 1", "Author 1", "1", "Fiction");
+
+        library.borrowBooks("user123", List.of("1", "missing"));
+
+        assertEquals(Map.of("BOOK_NOT_FOUND", 1L), library.snapshot("borrowBooks").failures());
+        assertTrue(library.getDelegate().findBook("1").isAvailable());
+    }
+
+    @Test
+    void testSnapshotListsEveryOperation() {
+        List<String> operations = library.snapshot().stream().map(OperationStats::operation).toList();
+        assertEquals(List.of("addBook", "removeBook", "findBook", "searchBooks", "searchBooksRanked", "registerUser", "findUser",
+                "borrowBook", "returnBook", "borrowBooks", "returnBooks", "getOverdueBooks"), operations);
+        assertNull(library.snapshot("unknown"));
+    }
+
+    @Test
+    void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 10_000; i++) {
+            histogram.record(i * 1_000);
+        }
+
+        long[] p = histogram.percentiles(0.5, 0.99, 0.999, 1.0);
+        assertEquals(5_000_000, p[0], 5_000_000 * 0.04);
+        assertEquals(9_900_000, p[1], 9_900_000 * 0.04);
+        assertEquals(9_990_000, p[2], 9_990_000 * 0.04);
+        assertEquals(10_000_000, p[3]);
+        assertEquals(10_000_000, histogram.getMax());
+
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, histogram.percentiles(1.0)[0]);
+        assertArrayEquals(new long[]{0}, new LatencyHistogram().percentiles(0.5));
+    }
+}
@@ -0,0 +1,86 @@
+package org.example;
+
+import org.example.models.Library;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LibraryBatchTest {
+    private Library library;
+    private LibraryBatch batch;
+
+    @BeforeEach
+    void setUp() {
+        library = new Library();
+        batch = new LibraryBatch(library);
+    }
+
+    @Test
+    void testOneResultLinePerCommand() throws IOException {
+        String script = """
+                # каталог
+                add\tJava Programming\tJohn Smith\t1\tProgramming
+                add\tDune\tFrank Herbert\t2
+                register\tAlice\talice\talice@example.com\tguest
+
+                borrow\talice\t1
+                borrow\talice\t2
+                find\t1
+                search\tjava
+                user\talice
+                return\talice\t2
+                return\talice\t1
+                remove\t3
+                overdue
+                add\tbroken
+                fly\taway
+                """;
+
+        assertEquals("""
+                ok
+                ok
+                ok
+                ok
+                err\tLIMIT_REACHED\t2
+                ok\t1\tJava Programming\tJohn Smith\tProgramming\tborrowed
+                ok\t1\t1
+                ok\talice\tAlice\talice@example.com\tGUEST\t1
+                err\tNOT_BORROWED\t2
+                ok
+                err\tNOT_FOUND
+                ok\t0
+                err\tBAD_ARGUMENTS
+                err\tUNKNOWN_COMMAND
+                """, run(script));
+        assertTrue(library.findBook("1").isAvailable());
+    }
+
+    @Test
+    void testBatchBorrowReportsRejectedBook() throws IOException {
+        String script = """
+                add\tBook 1\tAuthor\t1\tFiction
+                register\tAlice\talice\talice@example.com\tstudent
+                borrow\talice\t1\tmissing
+                borrow\talice\t1\t1
+                stats
+                """;
+
+        String[] lines = run(script).split("\n");
+        assertEquals("err\tBOOK_NOT_FOUND\tmissing", lines[2]);
+        assertEquals("err\tDUPLICATE\t1", lines[3]);
+        assertTrue(lines[4].startsWith("stat\taddBook\t1\t0\t"));
+        assertEquals("ok", lines[lines.length - 1]);
+        assertEquals(2, batch.getOperations().snapshot("borrowBooks").failureCount());
+    }
+
+    private String run(String script) throws IOException {
+        StringWriter out = new StringWriter();
+        batch.run(new StringReader(script), out);
+        return out.toString();
+    }
+}
@@ -0,0 +1,142 @@
+package org.example;
+
+import org.example.models.Library;
+import org.example.models.LibraryJournal;
+import org.example.models.UserType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LibraryJournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testStateSurvivesRestart() throws IOException {
+        Library library = new Library();
+        try (LibraryJournal journal = LibraryJournal.open(dir, library)) {
+            assertTrue(journal.isEmpty());
+            library.addBook("Book 1", "Author 1", "1", "Fiction");
+            library.addBook("Book 2", "Author 2", "2", "Fiction");
+            library.addBook("Book 3", "Author 3", "3", "Fiction");
+            library.registerUser("Test User", "user123", "test@example.com", UserType.STUDENT);
+            library.borrowBook("user123", "1");
+            library.borrowBook("user123", "2");
+            library.returnBook("user123", "2");
+            library.removeBook("3");
+        }
+
+        Library restored = new Library();
+        try (LibraryJournal journal = LibraryJournal.open(dir, restored)) {
+            assertFalse(journal.isEmpty());
+        }
+
+        assertEquals(2, restored.showAllBooks().size());
+        assertNull(restored.findBook("3"));
+        assertFalse(restored.findBook("1").isAvailable());
+        assertTrue(restored.findBook("2").isAvailable());
+        assertEquals(UserType.STUDENT, restored.findUser("user123").getUserType());
+        assertEquals(1, restored.findUser("user123").getBorrowedBooks().size());
+        assertEquals(1, restored.getActiveLoans().size());
+    }
+
+    @Test
+    void testTornTailIsIgnored() throws IOException {
+        Library library = new Library();
+        try (LibraryJournal journal = LibraryJournal.open(dir, library)) {
+            assertTrue(journal.isEmpty());
+            library.addBook("Book 1", "Author 1", "1", "Fiction");
+            library.addBook("Book 2", "Author 2", "2", "Fiction");
+        }
+
+        // портим контрольную сумму второго кадра
+        Path segment = segments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            channel.read(header, 0);
+            int second = 8 + header.flip().getInt();
+            channel.write(ByteBuffer.allocate(4).putInt(0xBAD).flip(), second + 4);
+        }
+
+        Library restored = new Library();
+        try (LibraryJournal journal = LibraryJournal.open(dir, restored)) {
+            assertFalse(journal.isEmpty());
+            restored.addBook("Book 3", "Author 3", "3", "Fiction");
+        }
+        assertNotNull(restored.findBook("1"));
+        assertNull(restored.findBook("2"));
+
+        Library again = new Library();
+        LibraryJournal.open(dir, again).close();
+        assertNotNull(again.findBook("1"));
+        assertNull(again.findBook("2"));
+        assertNotNull(again.findBook("3"));
+    }
+
+    @Test
+    void testCompactionBoundsJournal() throws IOException {
+        Library library = new Library();
+        library.registerUser("Test User", "user123", "test@example.com", UserType.FACULTY);
+        try (LibraryJournal journal = LibraryJournal.open(dir, library, 4096, 8192, 0)) {
+            assertFalse(journal.isEmpty());  // пользователь, зарегистрированный до открытия, уже записан
+            library.addBook("Book", "Author", "1", "Fiction");
+            for (int i = 0; i < 1000; i++) {
+                library.borrowBook("user123", "1");
+                library.returnBook("user123", "1");
+            }
+            library.borrowBook("user123", "1");
+        }
+
+        long journalBytes = 0;
+        for (Path segment : segments()) {
+            journalBytes += Files.size(segment);
+        }
+        assertTrue(journalBytes <= 4 * 4096, "journal was not compacted: " + journalBytes);
+
+        Library restored = new Library();
+        LibraryJournal.open(dir, restored, 4096, 8192, 0).close();
+        assertFalse(restored.findBook("1").isAvailable());
+        assertEquals(1, restored.findUser("user123").getBorrowedBooks().size());
+    }
+
+    @Test
+    void testWritesContinueAfterCompaction() throws IOException {
+        Library library = new Library();
+        try (LibraryJournal journal = LibraryJournal.open(dir, library, 4096, Long.MAX_VALUE, 0)) {
+            library.registerUser("Test User", "user123", "test@example.com", UserType.FACULTY);
+            for (int i = 0; i < 200; i++) {
+                library.addBook("Book " + i, "Author", String.valueOf(i), "Fiction");
+            }
+            library.borrowBook("user123", "0");
+            journal.compact();
+            library.returnBook("user123", "0");
+            library.borrowBook("user123", "1");
+            library.removeBook("2");
+            journal.sync();
+        }
+
+        Library restored = new Library();
+        LibraryJournal.open(dir, restored, 4096, Long.MAX_VALUE, 0).close();
+        assertEquals(199, restored.showAllBooks().size());
+        assertTrue(restored.findBook("0").isAvailable());
+        assertFalse(restored.findBook("1").isAvailable());
+        assertEquals(1, restored.getActiveLoans().size());
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".log")).sorted().toList();
+        }
+    }
+}
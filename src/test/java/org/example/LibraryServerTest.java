@@ -0,0 +1,127 @@
+package org.example;
+
+import org.example.models.ConcurrentLibrary;
+import org.example.models.UserType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LibraryServerTest {
+    private ConcurrentLibrary library;
+    private LibraryServer server;
+    private HttpClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        library = new ConcurrentLibrary();
+        server = LibraryServer.start(library, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 100);
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+        client.close();
+    }
+
+    @Test
+    void testBookAndUserResources() throws Exception {
+        HttpResponse<String> created = post("/books", "title=Dune%2C+Part+One&author=Frank+Herbert&isbn=1&genre=SF");
+        assertEquals(201, created.statusCode());
+        assertEquals("{\"isbn\":\"1\",\"title\":\"Dune, Part One\",\"author\":\"Frank Herbert\",\"genre\":\"SF\","
+                + "\"available\":true,\"copies\":1,\"availableCopies\":1}", created.body());
+
+        assertEquals(200, get("/books/1").statusCode());
+        assertEquals(404, get("/books/2").statusCode());
+        assertTrue(get("/books?q=herbert").body().contains("\"isbn\":\"1\""));
+        assertEquals(400, post("/books", "title=No+Author").statusCode());
+        assertEquals(400, post("/books", "title=100%&author=A&isbn=2").statusCode());
+        assertEquals(400, post("/loans", "userId=alice&isbn=%E").statusCode());
+
+        assertEquals(201, post("/users", "name=Alice&userId=alice&email=a%40example.com&type=guest").statusCode());
+        assertEquals(400, post("/users", "name=Bob&userId=bob&type=admin").statusCode());
+        assertEquals(404, get("/users/bob").statusCode());
+
+        assertEquals(200, post("/loans", "userId=alice&isbn=1").statusCode());
+        assertEquals("{\"userId\":\"alice\",\"name\":\"Alice\",\"email\":\"a@example.com\",\"type\":\"GUEST\","
+                + "\"maxBooks\":1,\"borrowed\":[\"1\"]}", get("/users/alice").body());
+        assertEquals("[]", get("/overdue").body());
+
+        HttpResponse<String> denied = post("/loans", "userId=alice&isbn=1");
+        assertEquals(409, denied.statusCode());
+        assertEquals("{\"isbn\":\"1\",\"status\":\"NOT_AVAILABLE\"}", denied.body());
+        assertEquals(404, post("/returns", "userId=nobody&isbn=1").statusCode());
+        assertEquals(200, post("/returns", "userId=alice&isbn=1").statusCode());
+
+        HttpRequest delete = HttpRequest.newBuilder(uri("/books/1")).DELETE().build();
+        assertEquals(204, client.send(delete, HttpResponse.BodyHandlers.ofString()).statusCode());
+        assertTrue(get("/stats").body().contains("\"operation\":\"borrowBook\",\"calls\":2,\"failures\":{\"NOT_AVAILABLE\":1}"));
+    }
+
+    @Test
+    void testBatchLoanIsAllOrNothing() throws Exception {
+        library.registerUser("Alice", "alice", "a@example.com", UserType.STUDENT);
+        library.addBook("Book 1", "Author", "1", "Fiction");
+
+        HttpResponse<String> response = post("/loans", "userId=alice&isbn=1&isbn=missing");
+
+        assertEquals(404, response.statusCode());
+        assertEquals("[{\"isbn\":\"1\",\"status\":\"SKIPPED\"},{\"isbn\":\"missing\",\"status\":\"BOOK_NOT_FOUND\"}]",
+                response.body());
+        assertTrue(library.findBook("1").isAvailable());
+    }
+
+    @Test
+    void testConcurrentBorrowersGetOneCopy() throws Exception {
+        library.addBook("Book", "Author", "1", "Fiction");
+        int clients = 50;
+        for (int i = 0; i < clients; i++) {
+            library.registerUser("User " + i, "user" + i, "u@example.com", UserType.FACULTY);
+        }
+
+        List<Future<Integer>> codes = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                String form = "userId=user" + i + "&isbn=1";
+                codes.add(executor.submit(() -> post("/loans", form).statusCode()));
+            }
+        }
+
+        int granted = 0;
+        for (Future<Integer> code : codes) {
+            if (code.get() == 200) granted++;
+        }
+        assertEquals(1, granted);
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        return client.send(HttpRequest.newBuilder(uri(path)).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> post(String path, String form) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri(path))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + server.getPort() + path);
+    }
+}
@@ -0,0 +1,234 @@
+package org.example;
+
+import org.example.models.Book;
+import org.example.models.BorrowingRecord;
+import org.example.models.Library;
+import org.example.models.LibrarySnapshot;
+import org.example.models.UserType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LibrarySnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testRoundTrip() throws IOException {
+        LocalDate today = LocalDate.of(2024, 3, 1);
+        Library library = new Library(Clock.fixed(today.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+        library.addBook("Война и мир", "Лев Толстой", "1", "Классика");
+        library.addBook("Война и мир", "Лев Толстой", "1", "Классика");
+        library.addBook("Анна Каренина", "Лев Толстой", "2", "Классика");
+        library.addBook("Untitled", null, "3", null);
+        library.addBook("Removed", "Nobody", "4", "Fiction");
+        library.removeBook("4");
+        library.registerUser("Alice", "alice", "a@example.com", UserType.STUDENT);
+        library.registerUser("Bob", "bob", null, UserType.FACULTY);
+        library.registerUser("Guest", "guest", "g@example.com", UserType.GUEST);
+        library.borrowBook("alice", "1");
+        library.borrowBook("bob", "1");
+        library.borrowBook("bob", "3");
+
+        Path file = dir.resolve("library.snap");
+        LibrarySnapshot.save(library, file);
+        Library restored = LibrarySnapshot.load(file);
+
+        assertEquals(3, restored.showAllBooks().size());
+        assertNull(restored.findBook("4"));
+        Book war = restored.findBook("1");
+        assertEquals("Лев Толстой", war.getAuthor());
+        assertEquals(2, war.getCopies());
+        assertEquals(0, war.getAvailableCopies());
+        assertNull(restored.findBook("3").getAuthor());
+        assertNull(restored.findBook("3").getGenre());
+        assertEquals(2, restored.searchBooks("толстой").size());
+
+        assertEquals(UserType.FACULTY, restored.findUser("bob").getUserType());
+        assertNull(restored.findUser("bob").getEmail());
+        assertEquals(2, restored.findUser("bob").getBorrowedBooks().size());
+        assertEquals(3, restored.getActiveLoans().size());
+        for (BorrowingRecord loan : restored.getActiveLoans()) {
+            assertEquals(today, loan.getBorrowDate());
+        }
+
+        // повторное сохранение заменяет файл
+        restored.returnBook("alice", "1");
+        LibrarySnapshot.save(restored, file);
+        assertEquals(2, LibrarySnapshot.load(file).getActiveLoans().size());
+        assertFalse(Files.exists(dir.resolve("library.snap.tmp")));
+    }
+
+    @Test
+    void testKeepsFinesAndSettledDays() throws IOException {
+        LocalDate today = LocalDate.of(2024, 3, 1);
+        Library library = new Library(Clock.fixed(today.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+        library.addBook("Война и мир", "Лев Толстой", "1", "Классика");
+        library.addBook("Анна Каренина", "Лев Толстой", "2", "Классика");
+        library.registerUser("Alice", "alice", "a@example.com", UserType.STUDENT);
+        library.borrowBook("alice", "1");
+        library.borrowBook("alice", "2");
+        LocalDate due = library.getActiveLoans().iterator().next().getDueDate();
+        assertEquals(2, library.getFines().settle(due.plusDays(3)));
+        long owed = library.getFines().getOwedCents("alice");
+        assertTrue(owed > 0);
+
+        Path file = dir.resolve("fines.snap");
+        LibrarySnapshot.save(library, file);
+        Library restored = LibrarySnapshot.load(file);
+
+        assertEquals(owed, restored.getFines().getOwedCents("alice"));
+        // оплаченные дни не начисляются повторно
+        assertEquals(0, restored.getFines().settle(due.plusDays(3)));
+        assertEquals(owed, restored.getFines().getOwedCents("alice"));
+        assertEquals(2, restored.getFines().settle(due.plusDays(4)));
+        assertEquals(owed + owed / 3, restored.getFines().getOwedCents("alice"));
+    }
+
+    @Test
+    void testSkipsLoansOfRemovedBooks() throws IOException {
+        Library library = new Library();
+        library.addBook("Война и мир", "Лев Толстой", "1", "Классика");
+        library.addBook("Анна Каренина", "Лев Толстой", "2", "Классика");
+        library.registerUser("Alice", "alice", "a@example.com", UserType.STUDENT);
+        library.borrowBook("alice", "1");
+        library.borrowBook("alice", "2");
+        library.removeBook("1");
+
+        Path file = dir.resolve("orphan.snap");
+        LibrarySnapshot.save(library, file);
+        Library restored = LibrarySnapshot.load(file);
+
+        assertNull(restored.findBook("1"));
+        assertEquals(1, restored.getActiveLoans().size());
+        assertEquals("2", restored.getActiveLoans().iterator().next().getBook().getIsbn());
+        assertEquals(1, restored.findUser("alice").getBorrowedBooks().size());
+    }
+
+    @Test
+    void testReadsVersion1File() throws IOException {
+        Path file = dir.resolve("v1.snap");
+        Files.write(file, version1(1, 0, false));
+
+        Library library = LibrarySnapshot.load(file);
+        assertEquals("Dune", library.findBook("42").getTitle());
+        assertEquals("Frank Herbert", library.findBook("42").getAuthor());
+        assertEquals(3, library.findBook("42").getCopies());
+        assertEquals(2, library.findBook("42").getAvailableCopies());
+        assertEquals(UserType.GUEST, library.findUser("u1").getUserType());
+        assertEquals(LocalDate.ofEpochDay(19_000), library.getActiveLoans().iterator().next().getBorrowDate());
+    }
+
+    @Test
+    void testNewerMinorVersionSkipsUnknownSections() throws IOException {
+        Path file = dir.resolve("v1_7.snap");
+        Files.write(file, version1(1, 7, true));
+
+        Library library = LibrarySnapshot.load(file);
+        assertEquals(1, library.showAllBooks().size());
+        assertEquals(1, library.getActiveLoans().size());
+    }
+
+    @Test
+    void testRejectsOtherMajorVersionAndCorruption() throws IOException {
+        Path file = dir.resolve("bad.snap");
+        Files.write(file, version1(2, 0, false));
+        IOException error = assertThrows(IOException.class, () -> LibrarySnapshot.load(file));
+        assertTrue(error.getMessage().contains("2.0"), error.getMessage());
+
+        byte[] bytes = version1(1, 0, false);
+        bytes[bytes.length - 2] ^= 1;  // последний байт данных секции LOANS
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> LibrarySnapshot.load(file));
+
+        Files.write(file, "not a snapshot".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IOException.class, () -> LibrarySnapshot.load(file));
+    }
+
+    /**
+     * Снимок, собранный вручную по описанию формата 1.x: не зависит от кода записи.
+     */
+    private static byte[] version1(int major, int minor, boolean unknownSection) {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        file.writeBytes(ByteBuffer.allocate(8).putInt(0x4C494253).putShort((short) major).putShort((short) minor).array());
+
+        ByteArrayOutputStream strings = new ByteArrayOutputStream();
+        varint(strings, 2);
+        string(strings, "Frank Herbert");
+        string(strings, "Science Fiction");
+        section(file, 1, strings);
+
+        if (unknownSection) {
+            ByteArrayOutputStream future = new ByteArrayOutputStream();
+            future.writeBytes(new byte[]{1, 2, 3, 4, 5});
+            section(file, 100, future);
+        }
+
+        ByteArrayOutputStream books = new ByteArrayOutputStream();
+        varint(books, 1);
+        string(books, "42");
+        string(books, "Dune");
+        varint(books, 1);
+        varint(books, 2);
+        varint(books, 3);
+        section(file, 2, books);
+
+        ByteArrayOutputStream users = new ByteArrayOutputStream();
+        varint(users, 1);
+        string(users, "u1");
+        string(users, "Paul");
+        string(users, null);
+        users.write(UserType.GUEST.ordinal());
+        section(file, 3, users);
+
+        ByteArrayOutputStream loans = new ByteArrayOutputStream();
+        varint(loans, 1);
+        varint(loans, 0);
+        varint(loans, 0);
+        varint(loans, 19_000);
+        section(file, 4, loans);
+
+        file.write(0);
+        return file.toByteArray();
+    }
+
+    private static void section(ByteArrayOutputStream file, int type, ByteArrayOutputStream payload) {
+        byte[] bytes = payload.toByteArray();
+        CRC32C crc = new CRC32C();
+        crc.update(bytes);
+        file.write(type);
+        file.writeBytes(ByteBuffer.allocate(12).putLong(bytes.length).putInt((int) crc.getValue()).array());
+        file.writeBytes(bytes);
+    }
+
+    private static void string(ByteArrayOutputStream out, String value) {
+        if (value == null) {
+            varint(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        varint(out, bytes.length + 1);
+        out.writeBytes(bytes);
+    }
+
+    private static void varint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
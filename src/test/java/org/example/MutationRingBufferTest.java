@@ -0,0 +1,128 @@
+package org.example;
+
+import org.example.models.Library;
+import org.example.models.Mutation;
+import org.example.models.MutationHandler;
+import org.example.models.MutationRingBuffer;
+import org.example.models.UserType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MutationRingBufferTest {
+
+    @Test
+    void testEveryConsumerSeesEveryMutationInOrder() {
+        Library library = new Library();
+        List<Mutation> first = Collections.synchronizedList(new ArrayList<>());
+        List<Mutation> second = Collections.synchronizedList(new ArrayList<>());
+        List<Mutation> expected = new ArrayList<>();
+        library.addMutationListener(expected::add);
+
+        MutationRingBuffer ring = new MutationRingBuffer(8, List.of(
+                (m, seq, end) -> first.add(m),
+                (m, seq, end) -> second.add(m)));
+        library.addMutationListener(ring);
+        library.registerUser("Test User", "user123", "test@example.com", UserType.STUDENT);
+        for (int i = 0; i < 1_000; i++) {
+            String isbn = Integer.toString(i);
+            library.addBook("Book " + i, "Author", isbn, "Fiction");
+            library.borrowBook("user123", isbn);
+            library.returnBook("user123", isbn);
+        }
+        library.removeMutationListener(ring);
+        ring.close();
+
+        assertEquals(3_001, ring.getPublished());
+        assertEquals(expected, first);
+        assertEquals(expected, second);
+        assertEquals(0, ring.getLag(0));
+        assertEquals(8, ring.remainingCapacity());
+        assertThrows(IllegalStateException.class, () -> ring.onMutation(new Mutation.BookRemoved("1")));
+    }
+
+    @Test
+    void testBatchesEndOnLastPublishedSequence() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        List<Long> sequences = Collections.synchronizedList(new ArrayList<>());
+        List<Long> batchEnds = Collections.synchronizedList(new ArrayList<>());
+        MutationHandler handler = (m, seq, end) -> {
+            if (seq == 0) {
+                started.countDown();
+                resume.await();
+            }
+            sequences.add(seq);
+            if (end) {
+                batchEnds.add(seq);
+            }
+        };
+
+        MutationRingBuffer ring = new MutationRingBuffer(16, List.of(handler));
+        ring.onMutation(new Mutation.BookRemoved("0"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i <= 10; i++) {
+            ring.onMutation(new Mutation.BookRemoved(Integer.toString(i)));
+        }
+        resume.countDown();
+        ring.close();
+
+        assertEquals(11, sequences.size());
+        assertEquals(List.of(0L, 10L), batchEnds);  // пока ждали первое, остальные накопились в один пакет
+    }
+
+    @Test
+    void testSlowConsumerAppliesBackpressure() throws InterruptedException {
+        CountDownLatch resume = new CountDownLatch(1);
+        MutationRingBuffer ring = new MutationRingBuffer(4, List.of(
+                (m, seq, end) -> resume.await(),
+                (m, seq, end) -> { }));
+
+        int published = 0;
+        while (ring.tryPublish(new Mutation.BookRemoved(Integer.toString(published)))) {
+            published++;
+        }
+        // медленный получатель застрял на первом изменении и не освободил ни одной ячейки
+        assertEquals(4, published);
+        assertEquals(4, ring.getLag(0));
+        assertEquals(0, ring.remainingCapacity());
+
+        Thread writer = new Thread(() -> ring.onMutation(new Mutation.BookRemoved("last")));
+        writer.start();
+        writer.join(200);
+        assertTrue(writer.isAlive(), "writer waits for the slow consumer");
+
+        resume.countDown();
+        writer.join(5_000);
+        assertFalse(writer.isAlive());
+        assertEquals(1, ring.getStalls());
+        ring.close();
+        assertEquals(0, ring.getLag(0));
+        assertEquals(0, ring.getLag(1));
+    }
+
+    @Test
+    void testHandlerErrorsAreCountedAndSkipped() {
+        List<Long> seen = Collections.synchronizedList(new ArrayList<>());
+        MutationRingBuffer ring = new MutationRingBuffer(4, List.of((m, seq, end) -> {
+            if (seq % 2 == 0) {
+                throw new IllegalStateException("boom");
+            }
+            seen.add(seq);
+        }));
+        for (int i = 0; i < 10; i++) {
+            ring.onMutation(new Mutation.BookRemoved(Integer.toString(i)));
+        }
+        ring.close();
+
+        assertEquals(5, ring.getErrors(0));
+        assertEquals(List.of(1L, 3L, 5L, 7L, 9L), seen);
+        assertThrows(IllegalArgumentException.class, () -> new MutationRingBuffer(6, List.of((m, seq, end) -> { })));
+    }
+}
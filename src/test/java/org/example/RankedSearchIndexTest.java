@@ -0,0 +1,93 @@
+package org.example;
+
+import org.example.models.Book;
+import org.example.models.Library;
+import org.example.models.RankedSearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RankedSearchIndexTest {
+    private RankedSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new RankedSearchIndex();
+        index.add(new Book("Dune", "Frank Herbert", "1", "Science Fiction"));
+        index.add(new Book("The Road to Dune", "Brian Herbert", "2", "Science Fiction"));
+        index.add(new Book("Herbert's Garden", "Dune Press", "3", "Gardening"));
+        index.add(new Book("Children of Dune", "Frank Herbert", "4", "Science Fiction"));
+        index.add(new Book("The Hobbit", "J.R.R. Tolkien", "5", "Fantasy"));
+    }
+
+    @Test
+    void testTitleMatchOutranksAuthorMatch() {
+        List<String> ranked = isbns(index.search("dune", 10));
+
+        assertEquals("1", ranked.get(0));  // shortest title wins
+        assertEquals("3", ranked.get(ranked.size() - 1));  // only the author mentions it
+        assertEquals(4, ranked.size());
+    }
+
+    @Test
+    void testAllWordsMustMatch() {
+        assertEquals(List.of("1", "4"), isbns(index.search("Frank DUNE", 10)));
+        assertEquals(List.of("2"), isbns(index.search("brian herbert", 10)));
+        assertTrue(index.search("dune tolkien", 10).isEmpty());
+        assertTrue(index.search("dun", 10).isEmpty());  // только целые слова
+        assertTrue(index.search(" ,. ", 10).isEmpty());
+    }
+
+    @Test
+    void testLimitKeepsTheBestResults() {
+        List<String> all = isbns(index.search("herbert", 10));
+
+        for (int limit = 1; limit <= all.size(); limit++) {
+            assertEquals(all.subList(0, limit), isbns(index.search("herbert", limit)));
+        }
+        assertThrows(IllegalArgumentException.class, () -> index.search("herbert", 0));
+    }
+
+    @Test
+    void testLargeCatalogTopK() {
+        RankedSearchIndex large = new RankedSearchIndex();
+        for (int i = 0; i < 5_000; i++) {
+            String title = i % 100 == 0 ? "Java" : "Java Programming Volume " + i;
+            large.add(new Book(title, "Author " + i, String.format("%05d", i), "Programming"));
+        }
+
+        List<Book> top = large.search("java", 3);
+
+        // в коротких названиях слово весит больше, при равенстве раньше идёт меньший ISBN
+        assertEquals(List.of("00000", "00100", "00200"), isbns(top));
+    }
+
+    @Test
+    void testRemovedBookIsNotFound() {
+        Book hobbit = new Book("Hobbit Tales", "Anonymous", "6", "Fantasy");
+        index.add(hobbit);
+        index.remove(hobbit);
+        index.remove(hobbit);
+
+        assertEquals(List.of("5"), isbns(index.search("hobbit", 10)));
+    }
+
+    @Test
+    void testLibraryRankedSearch() {
+        Library library = new Library();
+        library.addBook("Java Programming", "James Gosling", "1", "Programming");
+        library.addBook("Effective Java", "Joshua Bloch", "2", "Programming");
+        library.addBook("Programming Pearls", "Jon Bentley", "3", "Programming");
+
+        assertEquals(List.of("1", "3"), isbns(library.searchBooks("programming", 2)));
+        library.removeBook("1");
+        assertEquals(List.of("2"), isbns(library.searchBooks("java", 5)));
+    }
+
+    private static List<String> isbns(List<Book> books) {
+        return books.stream().map(Book::getIsbn).toList();
+    }
+}
@@ -0,0 +1,202 @@
+package org.example;
+
+import org.example.models.Library;
+import org.example.models.ReplicaLibrary;
+import org.example.models.ReplicationLeader;
+import org.example.models.UserType;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicationTest {
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    @Test
+    void testFollowersApplyLeaderLog() throws Exception {
+        Library library = new Library();
+        library.addBook("Dune", "Frank Herbert", "1", "Science Fiction");
+        library.registerUser("Alice", "alice", "a@example.com", UserType.STUDENT);
+
+        try (ReplicationLeader leader = ReplicationLeader.start(library, loopback(0));
+             ReplicaLibrary first = ReplicaLibrary.connect(loopback(leader.getPort()));
+             ReplicaLibrary second = ReplicaLibrary.connect(loopback(leader.getPort()))) {
+            library.addBook("Dune Messiah", "Frank Herbert", "2", "Science Fiction");
+            library.borrowBook("alice", "1");
+            library.returnBook("alice", "1");
+            library.borrowBook("alice", "2");
+            long sequence = leader.getSequence();
+            assertEquals(4, sequence);
+
+            for (ReplicaLibrary replica : List.of(first, second)) {
+                assertTrue(replica.awaitSequence(sequence, TIMEOUT_MILLIS));
+                assertEquals(0, replica.getLag());
+                assertTrue(replica.findBook("1").isAvailable());
+                assertFalse(replica.findBook("2").isAvailable());
+                assertEquals(2, replica.searchBooks("herbert").size());
+                assertEquals(List.of("2"), replica.findUser("alice").getBorrowedBooks().stream().map(b -> b.getIsbn()).toList());
+                assertTrue(replica.getOverdueBooks().isEmpty());
+                assertThrows(UnsupportedOperationException.class, () -> replica.addBook("X", "Y", "3", null));
+                assertThrows(UnsupportedOperationException.class, () -> replica.tryBorrowBook("alice", "1"));
+            }
+            // подтверждения приходят асинхронно
+            long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (leader.getFollowerLag().values().stream().anyMatch(lag -> lag > 0)
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(2, leader.getFollowerLag().size());
+            assertTrue(leader.getFollowerLag().values().stream().allMatch(lag -> lag == 0));
+        }
+    }
+
+    @Test
+    void testLateFollowerCatchesUpFromSnapshot() throws Exception {
+        Library library = new Library();
+        library.registerUser("Alice", "alice", "a@example.com", UserType.FACULTY);
+        // маленький порог: хранимые изменения постоянно сворачиваются в снимок
+        try (ReplicationLeader leader = ReplicationLeader.start(library, loopback(0), 256)) {
+            for (int i = 0; i < 200; i++) {
+                library.addBook("Book " + i, "Author", Integer.toString(i), "Fiction");
+            }
+            library.borrowBook("alice", "7");
+            library.removeBook("8");
+
+            try (ReplicaLibrary replica = ReplicaLibrary.connect(loopback(leader.getPort()))) {
+                assertTrue(replica.awaitSequence(leader.getSequence(), TIMEOUT_MILLIS));
+                assertEquals(199, replica.showAllBooks().size());
+                assertFalse(replica.findBook("7").isAvailable());
+                assertNull(replica.findBook("8"));
+
+                library.returnBook("alice", "7");
+                assertTrue(replica.awaitSequence(leader.getSequence(), TIMEOUT_MILLIS));
+                assertTrue(replica.findBook("7").isAvailable());
+            }
+        }
+    }
+
+    @Test
+    void testFollowerReconnectsToRestartedLeader() throws Exception {
+        Library library = new Library();
+        library.addBook("Dune", "Frank Herbert", "1", "Science Fiction");
+        ReplicationLeader leader = ReplicationLeader.start(library, loopback(0));
+        int port = leader.getPort();
+        try (ReplicaLibrary replica = ReplicaLibrary.connect(loopback(port))) {
+            awaitUntil(replica, r -> r.findBook("1") != null);
+            leader.close();
+
+            // новый ведущий начинает нумерацию заново и с другой эпохой: реплика берёт снимок
+            Library restarted = new Library();
+            restarted.addBook("Emma", "Jane Austen", "2", "Classic");
+            try (ReplicationLeader next = ReplicationLeader.start(restarted, loopback(port))) {
+                awaitUntil(replica, r -> r.findBook("2") != null);
+                assertNull(replica.findBook("1"));
+                assertEquals(next.getSequence(), replica.getAppliedSequence());
+            }
+        }
+    }
+
+    @Test
+    void testFollowerProcessesReplicateLeaderProcess() throws Exception {
+        Process leader = java("org.example.LibraryConsole", "--batch", "-", "--replicate", "0");
+        List<Process> followers = new ArrayList<>();
+        HttpClient client = HttpClient.newHttpClient();
+        try {
+            int replicationPort = port(leader.errorReader(), "Replication leader listening on port ");
+            List<Integer> apiPorts = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                Process follower = java("org.example.LibraryServer", "0", "--follow", "127.0.0.1:" + replicationPort);
+                followers.add(follower);
+                apiPorts.add(port(follower.inputReader(), "Library API listening on port "));
+            }
+
+            Writer commands = leader.outputWriter(StandardCharsets.UTF_8);
+            commands.write("add\tDune\tFrank Herbert\t1\tScience Fiction\n");
+            commands.write("register\tAlice\talice\ta@example.com\tstudent\n");
+            commands.write("borrow\talice\t1\n");
+            commands.flush();
+
+            for (int apiPort : apiPorts) {
+                String book = awaitBody(client, apiPort, "/books/1", body -> body.contains("\"available\":false"));
+                assertTrue(book.contains("\"title\":\"Dune\""), book);
+                String replication = awaitBody(client, apiPort, "/replication", body -> body.contains("\"lag\":0"));
+                assertTrue(replication.contains("\"applied\":3"), replication);
+                HttpRequest write = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + apiPort + "/books"))
+                        .header("Content-Type", "application/x-www-form-urlencoded")
+                        .POST(HttpRequest.BodyPublishers.ofString("title=X&author=Y&isbn=2")).build();
+                assertEquals(405, client.send(write, HttpResponse.BodyHandlers.ofString()).statusCode());
+            }
+
+            commands.close();
+            assertTrue(leader.waitFor(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        } finally {
+            client.close();
+            leader.destroyForcibly();
+            for (Process follower : followers) {
+                follower.destroyForcibly();
+            }
+        }
+    }
+
+    private static InetSocketAddress loopback(int port) {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+    }
+
+    private static void awaitUntil(ReplicaLibrary replica, Predicate<ReplicaLibrary> condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.test(replica)) {
+            assertTrue(System.currentTimeMillis() < deadline, "replica did not converge");
+            Thread.sleep(10);
+        }
+    }
+
+    private static Process java(String mainClass, String... args) throws IOException {
+        List<String> command = new ArrayList<>(List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"), mainClass));
+        command.addAll(List.of(args));
+        return new ProcessBuilder(command).start();
+    }
+
+    private static int port(BufferedReader output, String prefix) throws IOException {
+        String line;
+        while ((line = output.readLine()) != null) {
+            if (line.startsWith(prefix)) {
+                return Integer.parseInt(line.substring(prefix.length()).trim());
+            }
+        }
+        throw new IOException("Process exited before printing its port");
+    }
+
+    private static String awaitBody(HttpClient client, int port, String path, Predicate<String> condition)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + path)).GET().build();
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        String body = "";
+        while (System.currentTimeMillis() < deadline) {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            body = response.body();
+            if (response.statusCode() == 200 && condition.test(body)) {
+                return body;
+            }
+            Thread.sleep(20);
+        }
+        fail("Timed out waiting for " + path + ", last response " + body);
+        return body;
+    }
+}
@@ -0,0 +1,146 @@
+package org.example;
+
+import org.example.models.Book;
+import org.example.models.ConcurrentLibrary;
+import org.example.models.LoanResult;
+import org.example.models.LoanStatus;
+import org.example.models.ShardedLibrary;
+import org.example.models.UserType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedLibraryTest {
+    private static final int SHARDS = 8;
+
+    private ShardedLibrary library;
+
+    @BeforeEach
+    void setUp() {
+        library = new ShardedLibrary(SHARDS);
+        for (int i = 0; i < 200; i++) {
+            library.addBook("Book " + i, i % 2 == 0 ? "Even Author" : "Odd Author", "isbn" + i, "Fiction");
+        }
+        library.registerUser("Student", "student", "s@example.com", UserType.STUDENT);
+        library.registerUser("Guest", "guest", "g@example.com", UserType.GUEST);
+    }
+
+    @Test
+    void testKeysAreSpreadAcrossShards() {
+        Set<Integer> used = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            used.add(library.shardOf("isbn" + i));
+        }
+        assertEquals(SHARDS, used.size());
+        assertEquals("Book 7", library.findBook("isbn7").getTitle());
+        assertEquals("Guest", library.findUser("guest").getName());
+        assertNull(library.findBook("missing"));
+        assertThrows(IllegalArgumentException.class, () -> new ShardedLibrary(0));
+    }
+
+    @Test
+    void testSearchMatchesSingleLibrary() {
+        ConcurrentLibrary single = new ConcurrentLibrary();
+        for (int i = 0; i < 200; i++) {
+            single.addBook("Book " + i, i % 2 == 0 ? "Even Author" : "Odd Author", "isbn" + i, "Fiction");
+        }
+
+        for (String query : List.of("odd", "book 1", "fiction", "nothing")) {
+            assertEquals(isbns(single.searchBooks(query)), isbns(library.searchBooks(query)), query);
+        }
+        List<Book> ranked = library.searchBooks("book 42", 5);
+        assertEquals("isbn42", ranked.get(0).getIsbn());
+        assertEquals(1, ranked.size());
+        assertEquals(10, library.searchBooks("odd author", 10).size());
+        assertEquals(100, library.searchBooks("odd author", 1000).size());
+    }
+
+    @Test
+    void testLoansAcrossShards() {
+        assertEquals(LoanStatus.OK, library.tryBorrowBook("student", "isbn1"));
+        assertEquals(LoanStatus.NOT_AVAILABLE, library.tryBorrowBook("guest", "isbn1"));
+        assertEquals(LoanStatus.USER_NOT_FOUND, library.tryBorrowBook("nobody", "isbn1"));
+        assertEquals(LoanStatus.BOOK_NOT_FOUND, library.tryBorrowBook("student", "missing"));
+
+        // гость может взять одну книгу: вторая отклоняет весь пакет
+        List<LoanResult> results = library.borrowBooks("guest", List.of("isbn2", "isbn3"));
+        assertEquals(List.of(LoanStatus.SKIPPED, LoanStatus.LIMIT_REACHED),
+                results.stream().map(LoanResult::status).toList());
+        assertTrue(library.findBook("isbn2").isAvailable());
+        assertEquals(List.of(LoanStatus.SKIPPED, LoanStatus.DUPLICATE), library.borrowBooks("guest", List.of("isbn2", "isbn2"))
+                .stream().map(LoanResult::status).toList());
+        assertTrue(library.borrowBooks("guest", List.of("isbn2")).stream().allMatch(LoanResult::isOk));
+        assertTrue(library.getOverdueBooks().isEmpty()); // обе выдачи сделаны сегодня
+
+        assertEquals(LoanStatus.NOT_BORROWED, library.tryReturnBook("student", "isbn2"));
+        assertEquals(List.of(LoanStatus.OK, LoanStatus.NOT_BORROWED), library.returnBooks("guest", List.of("isbn2", "isbn3"))
+                .stream().map(LoanResult::status).toList());
+        assertTrue(library.returnBook("student", "isbn1"));
+        assertTrue(library.findBook("isbn1").isAvailable());
+        assertTrue(library.getOverdueBooks().isEmpty());
+        assertTrue(library.removeBook("isbn1"));
+        assertTrue(library.searchBooks("book 1", 200).stream().noneMatch(b -> b.getIsbn().equals("isbn1")));
+    }
+
+    @Test
+    void testCopiesAreNeverOversold() throws Exception {
+        library.addBook("Book 0", "Even Author", "isbn0", "Fiction");
+        library.addBook("Book 0", "Even Author", "isbn0", "Fiction");
+        int threads = 16;
+        for (int i = 0; i < threads; i++) {
+            library.registerUser("User " + i, "user" + i, "user" + i + "@example.com", UserType.FACULTY);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger holders = new AtomicInteger();
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            String userId = "user" + i;
+            results.add(executor.submit(() -> {
+                start.await();
+                int won = 0;
+                for (int round = 0; round < 1_000; round++) {
+                    if (library.borrowBook(userId, "isbn0")) {
+                        won++;
+                        assertTrue(holders.incrementAndGet() <= 3, "at most three copies on loan");
+                        holders.decrementAndGet();
+                        assertTrue(library.returnBook(userId, "isbn0"));
+                    }
+                }
+                return won;
+            }));
+        }
+        start.countDown();
+        int won = 0;
+        for (Future<Integer> result : results) {
+            won += result.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertTrue(won > 0);
+        assertEquals(3, library.findBook("isbn0").getAvailableCopies());
+        assertTrue(library.getOverdueBooks().isEmpty());
+    }
+
+    private static Set<String> isbns(List<Book> books) {
+        Set<String> result = new HashSet<>();
+        for (Book book : books) {
+            assertTrue(result.add(book.getIsbn()), "no duplicates");
+        }
+        return result;
+    }
+}
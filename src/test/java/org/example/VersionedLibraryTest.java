@@ -0,0 +1,209 @@
+package org.example;
+
+import org.example.models.Book;
+import org.example.models.LibraryView;
+import org.example.models.LoanResult;
+import org.example.models.LoanStatus;
+import org.example.models.UserType;
+import org.example.models.VersionedLibrary;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VersionedLibraryTest {
+    private static final int THREADS = 8;
+
+    private VersionedLibrary library;
+
+    @BeforeEach
+    void setUp() {
+        library = new VersionedLibrary();
+    }
+
+    @Test
+    void testBorrowAndReturnRoundTrip() {
+        library.registerUser("Test User", "user123", "test@example.com", UserType.STUDENT);
+        library.addBook("Война и мир", "Лев Толстой", "1", "Classic");
+        library.addBook("Война и мир", "Лев Толстой", "1", "Classic");
+
+        assertEquals(LoanStatus.USER_NOT_FOUND, library.tryBorrowBook("nobody", "1"));
+        assertEquals(LoanStatus.BOOK_NOT_FOUND, library.tryBorrowBook("user123", "2"));
+        assertEquals(LoanStatus.OK, library.tryBorrowBook("user123", "1"));
+        assertEquals(LoanStatus.DUPLICATE, library.tryBorrowBook("user123", "1"));
+        assertEquals(1, library.findBook("1").getAvailableCopies());
+        assertEquals(2, library.findBook("1").getCopies());
+        assertEquals(1, library.findUser("user123").getBorrowedBooks().size());
+        assertTrue(library.getOverdueBooks().isEmpty()); // срок ещё не наступил
+        assertEquals(1, library.searchBooks("толст").size());
+
+        LibraryView view = library.snapshot();
+        LocalDate due = view.getActiveLoans().get(0).getDueDate();
+        assertTrue(view.getOverdueBooks(due).isEmpty());
+        assertEquals(1, view.getOverdueBooks(due.plusDays(1)).size());
+
+        assertEquals(LoanStatus.OK, library.tryReturnBook("user123", "1"));
+        assertEquals(LoanStatus.NOT_BORROWED, library.tryReturnBook("user123", "1"));
+        assertEquals(2, library.findBook("1").getAvailableCopies());
+        assertTrue(library.findUser("user123").getBorrowedBooks().isEmpty());
+        assertTrue(library.getOverdueBooks().isEmpty());
+
+        assertTrue(library.removeBook("1"));
+        assertFalse(library.removeBook("1"));
+        assertTrue(library.searchBooks("толст").isEmpty());
+    }
+
+    @Test
+    void testSnapshotIsNotAffectedByLaterWrites() {
+        library.registerUser("Test User", "user123", "test@example.com", UserType.FACULTY);
+        library.addBook("Book 1", "Author", "1", "Fiction");
+        library.addBook("Book 2", "Author", "2", "Fiction");
+
+        LibraryView before = library.snapshot();
+        library.borrowBook("user123", "1");
+        library.addBook("Book 3", "Author", "3", "Fiction");
+        library.removeBook("2");
+        LibraryView after = library.snapshot();
+
+        assertTrue(after.getVersion() > before.getVersion());
+        assertTrue(before.findBook("1").isAvailable());
+        assertFalse(after.findBook("1").isAvailable());
+        assertEquals(0, before.loanCount());
+        assertTrue(before.getOverdueBooks(LocalDate.MAX).isEmpty());
+        assertEquals(1, after.getOverdueBooks(LocalDate.MAX).size());
+        assertEquals(1, after.getActiveLoans().size());
+
+        assertEquals(2, before.bookCount());
+        assertNull(before.findBook("3"));
+        assertNotNull(before.findBook("2"));
+        assertEquals(List.of("1", "3"), isbns(after.searchBooks("book")));
+        assertEquals(List.of("1"), isbns(before.searchBooks("book 1")));
+        assertTrue(before.searchBooks("book 3").isEmpty());
+    }
+
+    @Test
+    void testBatchIsPublishedAsOneVersion() {
+        library.registerUser("Test User", "user123", "test@example.com", UserType.FACULTY);
+        for (int i = 1; i <= 4; i++) {
+            library.addBook("Book " + i, "Author", String.valueOf(i), "Fiction");
+        }
+
+        long version = library.snapshot().getVersion();
+        List<LoanResult> results = library.borrowBooks("user123", List.of("1", "2", "3"));
+        assertTrue(results.stream().allMatch(LoanResult::isOk));
+        assertEquals(version + 1, library.snapshot().getVersion());
+        assertEquals(3, library.snapshot().loanCount());
+
+        assertEquals(List.of(LoanStatus.NOT_AVAILABLE, LoanStatus.SKIPPED),
+                library.borrowBooks("user123", List.of("1", "4")).stream().map(LoanResult::status).toList());
+        assertEquals(version + 1, library.snapshot().getVersion());
+
+        library.returnBooks("user123", List.of("1", "2", "5"));
+        assertEquals(version + 2, library.snapshot().getVersion());
+        assertEquals(1, library.snapshot().loanCount());
+    }
+
+    @Test
+    void testCollidingKeys() {
+        // "Aa" и "BB" дают одинаковый hashCode
+        library.addBook("First", "Author", "Aa", "Fiction");
+        library.addBook("Second", "Author", "BB", "Fiction");
+        library.addBook("Third", "Author", "AaAa", "Fiction");
+        library.addBook("Fourth", "Author", "BBBB", "Fiction");
+        library.addBook("Fifth", "Author", "AaBB", "Fiction");
+        for (int i = 0; i < 2000; i++) {
+            library.addBook("Book " + i, "Author", "isbn-" + i, "Fiction");
+        }
+
+        assertEquals("First", library.findBook("Aa").getTitle());
+        assertEquals("Second", library.findBook("BB").getTitle());
+        assertEquals("Fifth", library.findBook("AaBB").getTitle());
+        assertTrue(library.removeBook("Aa"));
+        assertNull(library.findBook("Aa"));
+        assertEquals("Second", library.findBook("BB").getTitle());
+        assertEquals("Fourth", library.findBook("BBBB").getTitle());
+        for (int i = 0; i < 2000; i += 2) {
+            library.removeBook("isbn-" + i);
+        }
+        assertEquals(1004, library.showAllBooks().size());
+        assertEquals(1004, library.streamBooks().distinct().count());
+        assertEquals("Book 1999", library.findBook("isbn-1999").getTitle());
+    }
+
+    @Test
+    void testReadersSeeConsistentVersionsUnderWrites() throws Exception {
+        int books = 50;
+        for (int i = 0; i < books; i++) {
+            library.addBook("Book " + i, "Author", String.valueOf(i), "Fiction");
+            library.addBook("Book " + i, "Author", String.valueOf(i), "Fiction");
+        }
+        for (int i = 0; i < THREADS; i++) {
+            library.registerUser("User " + i, "user" + i, "user" + i + "@example.com", UserType.FACULTY);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS + 2);
+        AtomicBoolean stop = new AtomicBoolean();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            String userId = "user" + t;
+            int seed = t;
+            writers.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 2000; i++) {
+                    String isbn = String.valueOf((seed * 7 + i) % books);
+                    if (library.borrowBook(userId, isbn)) {
+                        library.returnBook(userId, isbn);
+                    }
+                }
+                return null;
+            }));
+        }
+        List<Future<Integer>> readers = new ArrayList<>();
+        for (int r = 0; r < 2; r++) {
+            readers.add(executor.submit(() -> {
+                start.await();
+                int checked = 0;
+                do {
+                    // в каждой версии число занятых экземпляров равно числу выдач
+                    LibraryView view = library.snapshot();
+                    int taken = view.streamBooks().mapToInt(b -> b.getCopies() - b.getAvailableCopies()).sum();
+                    assertEquals(view.loanCount(), taken);
+                    assertEquals(view.loanCount(), view.getActiveLoans().size());
+                    checked++;
+                } while (!stop.get());
+                return checked;
+            }));
+        }
+        start.countDown();
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+        stop.set(true);
+        for (Future<Integer> reader : readers) {
+            assertTrue(reader.get() > 0);
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(0, library.snapshot().loanCount());
+        for (Book book : library.showAllBooks()) {
+            assertEquals(2, book.getAvailableCopies());
+        }
+        assertTrue(library.getOverdueBooks().isEmpty());
+    }
+
+    private static List<String> isbns(List<Book> books) {
+        return books.stream().map(Book::getIsbn).sorted().toList();
+    }
+}